@@ -1,6 +1,7 @@
 package lookup;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -25,6 +26,8 @@ public class ConcurrentLookupTable implements LookupTable {
    * the right side. This is reflected in the getIndex method.
    */
   private final ArrayList<SkipNodeIdentity> nodes;
+  // Number of updates made so far, guarded by the lock.
+  private long version;
 
   /**
    * Constructor for ConcurrentLookupTable.
@@ -51,6 +54,7 @@ public class ConcurrentLookupTable implements LookupTable {
       return LookupTable.EMPTY_NODE;
     }
     SkipNodeIdentity prev = nodes.set(idx, node);
+    version++;
 
     lock.writeLock().unlock();
 
@@ -70,6 +74,7 @@ public class ConcurrentLookupTable implements LookupTable {
       return LookupTable.EMPTY_NODE;
     }
     SkipNodeIdentity prev = nodes.set(idx, node);
+    version++;
 
     lock.writeLock().unlock();
 
@@ -83,6 +88,16 @@ public class ConcurrentLookupTable implements LookupTable {
     return prev;
   }
 
+  @Override
+  public List<SkipNodeIdentity> updateLevels(SkipNodeIdentity node, Direction direction, int fromLevel, int toLevel) {
+    lock.writeLock().lock();
+    try {
+      return LookupTable.super.updateLevels(node, direction, fromLevel, toLevel);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
   @Override
   public SkipNodeIdentity getRight(int level) {
     lock.readLock().lock();
@@ -126,6 +141,26 @@ public class ConcurrentLookupTable implements LookupTable {
     return this.numLevels;
   }
 
+  @Override
+  public LookupTableSnapshot snapshot() {
+    lock.readLock().lock();
+    try {
+      return new LookupTableSnapshot(nodes.toArray(new SkipNodeIdentity[0]), version);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public long getVersion() {
+    lock.readLock().lock();
+    try {
+      return version;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
   private int getIndex(Direction dir, int level) {
     if (level < 0) {
       return Integer.MAX_VALUE;
@@ -0,0 +1,121 @@
+package lookup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import skipnode.SkipNodeIdentity;
+
+/**
+ * CopyOnWriteLookupTable is a lookup table that supports concurrent calls without locking. The
+ * neighbors are kept in an immutable snapshot, which the updates copy, change and swap in with a
+ * compare-and-set. The reads cost a single volatile read, which suits the routing, where the reads
+ * outnumber the updates by far. A `updateLevels` call swaps in all of its levels at once, and
+ * `snapshot` returns the current snapshot itself.
+ */
+public class CopyOnWriteLookupTable implements LookupTable {
+
+  private final int numLevels;
+  /**
+   * The current neighbors, indexed as in `ConcurrentLookupTable`, with EMPTY_NODE for empty nodes.
+   * Every update publishes a new snapshot with the next version.
+   */
+  private final AtomicReference<LookupTableSnapshot> current;
+
+  /**
+   * Constructor for CopyOnWriteLookupTable.
+   *
+   * @param numLevels Integer representing number of levels.
+   */
+  public CopyOnWriteLookupTable(int numLevels) {
+    this.numLevels = numLevels;
+    SkipNodeIdentity[] empty = new SkipNodeIdentity[2 * numLevels];
+    for (int i = 0; i < empty.length; i++) {
+      empty[i] = LookupTable.EMPTY_NODE;
+    }
+    this.current = new AtomicReference<>(new LookupTableSnapshot(empty, 0));
+  }
+
+  @Override
+  public SkipNodeIdentity updateLeft(SkipNodeIdentity node, int level) {
+    return update(node, Direction.LEFT, level);
+  }
+
+  @Override
+  public SkipNodeIdentity updateRight(SkipNodeIdentity node, int level) {
+    return update(node, Direction.RIGHT, level);
+  }
+
+  @Override
+  public List<SkipNodeIdentity> updateLevels(SkipNodeIdentity node, Direction direction, int fromLevel, int toLevel) {
+    int from = Math.max(fromLevel, 0);
+    int to = Math.min(toLevel, numLevels - 1);
+    if (from > to) {
+      return new ArrayList<>();
+    }
+    while (true) {
+      LookupTableSnapshot snapshot = current.get();
+      SkipNodeIdentity[] updated = snapshot.copyNodes();
+      List<SkipNodeIdentity> replaced = new ArrayList<>();
+      for (int level = from; level <= to; level++) {
+        int idx = LookupTableSnapshot.getIndex(direction, level);
+        replaced.add(updated[idx]);
+        updated[idx] = node;
+      }
+      if (current.compareAndSet(snapshot, new LookupTableSnapshot(updated, snapshot.getVersion() + 1))) {
+        return replaced;
+      }
+    }
+  }
+
+  @Override
+  public SkipNodeIdentity getRight(int level) {
+    return current.get().getRight(level);
+  }
+
+  @Override
+  public SkipNodeIdentity getLeft(int level) {
+    return current.get().getLeft(level);
+  }
+
+  @Override
+  public boolean isLeftNeighbor(SkipNodeIdentity neighbor, int level) {
+    return getLeft(level).equals(neighbor);
+  }
+
+  @Override
+  public boolean isRightNeighbor(SkipNodeIdentity neighbor, int level) {
+    return getRight(level).equals(neighbor);
+  }
+
+  @Override
+  public int getNumLevels() {
+    return this.numLevels;
+  }
+
+  @Override
+  public LookupTableSnapshot snapshot() {
+    return current.get();
+  }
+
+  @Override
+  public long getVersion() {
+    return current.get().getVersion();
+  }
+
+  private SkipNodeIdentity update(SkipNodeIdentity node, Direction dir, int level) {
+    if (level < 0 || level >= numLevels) {
+      return LookupTable.EMPTY_NODE;
+    }
+    int idx = LookupTableSnapshot.getIndex(dir, level);
+    while (true) {
+      LookupTableSnapshot snapshot = current.get();
+      SkipNodeIdentity[] updated = snapshot.copyNodes();
+      SkipNodeIdentity previous = updated[idx];
+      updated[idx] = node;
+      if (current.compareAndSet(snapshot, new LookupTableSnapshot(updated, snapshot.getVersion() + 1))) {
+        return previous;
+      }
+    }
+  }
+}
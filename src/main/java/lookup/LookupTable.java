@@ -1,5 +1,8 @@
 package lookup;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import model.skipgraph.SkipGraph;
 import skipnode.SkipNodeIdentity;
 
@@ -35,6 +38,25 @@ public interface LookupTable {
    */
   SkipNodeIdentity updateRight(SkipNodeIdentity node, int level);
 
+  /**
+   * Updates the neighbor in the given direction to be the node on all the levels from `fromLevel` up
+   * to `toLevel`, both inclusive. The levels that are not in the lookup table are skipped. The
+   * implementations may make the update at once, so that the readers see either none or all of it.
+   *
+   * @param node      Node to be put on the lookup table
+   * @param direction The direction of the node
+   * @param fromLevel The lowest level on which to insert the node
+   * @param toLevel   The highest level on which to insert the node
+   * @return Replaced nodes, from the lowest level upwards
+   */
+  default List<SkipNodeIdentity> updateLevels(SkipNodeIdentity node, Direction direction, int fromLevel, int toLevel) {
+    List<SkipNodeIdentity> replaced = new ArrayList<>();
+    for (int level = Math.max(fromLevel, 0); level <= Math.min(toLevel, getNumLevels() - 1); level++) {
+      replaced.add(direction == Direction.LEFT ? updateLeft(node, level) : updateRight(node, level));
+    }
+    return replaced;
+  }
+
   /**
    * Returns the best right neighbor on the given level.
    *
@@ -76,4 +98,20 @@ public interface LookupTable {
    * @return The number of levels in the lookup table
    */
   int getNumLevels();
+
+  /**
+   * Returns an immutable view of all the levels at once, which does not change with the later
+   * updates of the table.
+   *
+   * @return the snapshot of the lookup table.
+   */
+  LookupTableSnapshot snapshot();
+
+  /**
+   * Returns the version of the lookup table, which grows with every update. A snapshot is stale iff
+   * its version differs from the current version of the table.
+   *
+   * @return the current version of the lookup table.
+   */
+  long getVersion();
 }
@@ -0,0 +1,89 @@
+package lookup;
+
+import skipnode.SkipNodeIdentity;
+
+/**
+ * LookupTableSnapshot is an immutable view of all the levels of a lookup table at one point in time,
+ * so that a routing decision made over several levels sees a single state of the table. It is safe
+ * to share between threads without locking. The version tells the snapshots of a table apart: a
+ * table whose version differs from the one of a snapshot has changed since the snapshot was taken.
+ */
+public final class LookupTableSnapshot {
+
+  /**
+   * The neighbors indexed as in the lookup tables, 2*level for a node on the left side and 2*level+1
+   * for a node on the right side. The array is never changed once the snapshot is built.
+   */
+  private final SkipNodeIdentity[] nodes;
+  private final long version;
+
+  /**
+   * Constructor for LookupTableSnapshot. The snapshot takes the array over, so the caller must not
+   * change it afterwards.
+   *
+   * @param nodes   the neighbors, indexed as in the lookup tables.
+   * @param version the version of the table the neighbors were taken from.
+   */
+  LookupTableSnapshot(SkipNodeIdentity[] nodes, long version) {
+    this.nodes = nodes;
+    this.version = version;
+  }
+
+  /**
+   * Returns the right neighbor on the given level.
+   *
+   * @param level The level to get the node from
+   * @return The right neighbor on the given level, or EMPTY_NODE if the level is not in the table
+   */
+  public SkipNodeIdentity getRight(int level) {
+    return get(LookupTable.Direction.RIGHT, level);
+  }
+
+  /**
+   * Returns the left neighbor on the given level.
+   *
+   * @param level The level to get the node from
+   * @return The left neighbor on the given level, or EMPTY_NODE if the level is not in the table
+   */
+  public SkipNodeIdentity getLeft(int level) {
+    return get(LookupTable.Direction.LEFT, level);
+  }
+
+  /**
+   * Get the number of levels in the snapshot.
+   *
+   * @return The number of levels in the snapshot
+   */
+  public int getNumLevels() {
+    return nodes.length / 2;
+  }
+
+  /**
+   * Returns the version of the table at the time the snapshot was taken.
+   *
+   * @return the version of the snapshot.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Returns a copy of the neighbors, for the table to build its next snapshot from.
+   *
+   * @return the neighbors, indexed as in the lookup tables.
+   */
+  SkipNodeIdentity[] copyNodes() {
+    return nodes.clone();
+  }
+
+  private SkipNodeIdentity get(LookupTable.Direction dir, int level) {
+    if (level < 0 || level >= getNumLevels()) {
+      return LookupTable.EMPTY_NODE;
+    }
+    return nodes[getIndex(dir, level)];
+  }
+
+  static int getIndex(LookupTable.Direction dir, int level) {
+    return dir == LookupTable.Direction.LEFT ? level * 2 : level * 2 + 1;
+  }
+}
@@ -0,0 +1,125 @@
+package middlelayer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the requests to a locked overlay until its insertion lock is released, so that they are
+ * handled right away instead of being tried again by their senders after a random backoff. At most
+ * `maxWaiters` requests wait at once, each for at most `timeoutMillis`; the others are answered as
+ * locked and backed off by their senders as before.
+ *
+ * <p>A caller takes the next release with `nextRelease` before it checks the lock, and waits on it
+ * only if the overlay is locked, so that a release in between is not missed.
+ */
+public class LockWaitQueue {
+
+  private final int maxWaiters;
+  private final long timeoutMillis;
+  private final AtomicInteger waiters = new AtomicInteger();
+  // Completed when the lock is released next, and replaced by a fresh future at that time.
+  private final AtomicReference<CompletableFuture<Void>> nextRelease = new AtomicReference<>(new CompletableFuture<>());
+
+  /**
+   * Constructor for LockWaitQueue.
+   *
+   * @param maxWaiters    maximum number of requests that wait at once.
+   * @param timeoutMillis duration in milliseconds a request waits at most.
+   */
+  public LockWaitQueue(int maxWaiters, long timeoutMillis) {
+    if (maxWaiters <= 0) {
+      throw new IllegalArgumentException("max waiters must be positive: " + maxWaiters);
+    }
+    if (timeoutMillis <= 0) {
+      throw new IllegalArgumentException("wait timeout must be positive: " + timeoutMillis);
+    }
+    this.maxWaiters = maxWaiters;
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * Returns the next release of the lock.
+   *
+   * @return future completed when the lock is released next.
+   */
+  public CompletableFuture<Void> nextRelease() {
+    return nextRelease.get();
+  }
+
+  /**
+   * Wakes up the requests that wait for the lock to be released.
+   */
+  public void released() {
+    nextRelease.getAndSet(new CompletableFuture<>()).complete(null);
+  }
+
+  /**
+   * Returns the time the requests that find the lock taken now wait until at most.
+   *
+   * @return the deadline in `System.nanoTime` terms.
+   */
+  public long deadline() {
+    return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+  }
+
+  /**
+   * Blocks until the given release happens.
+   *
+   * @param release       the release taken by `nextRelease`.
+   * @param deadlineNanos the time to wait until at most, see `deadline`.
+   * @return false if the queue is full, the deadline passed or the thread was interrupted.
+   */
+  public boolean await(CompletableFuture<Void> release, long deadlineNanos) {
+    long remaining = deadlineNanos - System.nanoTime();
+    if (remaining <= 0 || !enter()) {
+      return false;
+    }
+    try {
+      release.get(remaining, TimeUnit.NANOSECONDS);
+      return true;
+    } catch (ExecutionException | TimeoutException e) {
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } finally {
+      waiters.decrementAndGet();
+    }
+  }
+
+  /**
+   * Asynchronous variant of `await`. The result is completed on the common pool rather than on the
+   * thread that releases the lock.
+   *
+   * @param release       the release taken by `nextRelease`.
+   * @param deadlineNanos the time to wait until at most, see `deadline`.
+   * @return future completed with false if the queue is full or the deadline passed.
+   */
+  public CompletableFuture<Boolean> awaitAsync(CompletableFuture<Void> release, long deadlineNanos) {
+    long remaining = deadlineNanos - System.nanoTime();
+    if (remaining <= 0 || !enter()) {
+      return CompletableFuture.completedFuture(false);
+    }
+    return release.thenApply(v -> true)
+                  .completeOnTimeout(false, remaining, TimeUnit.NANOSECONDS)
+                  .whenComplete((released, e) -> waiters.decrementAndGet())
+                  .thenApplyAsync(released -> released);
+  }
+
+  /**
+   * Returns the number of requests that wait for the lock to be released.
+   *
+   * @return number of waiting requests.
+   */
+  public int getWaiterCount() {
+    return waiters.get();
+  }
+
+  private boolean enter() {
+    return waiters.getAndUpdate(n -> n < maxWaiters ? n + 1 : n) < maxWaiters;
+  }
+}
@@ -1,13 +1,26 @@
 package middlelayer;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import lookup.LookupTable;
 import model.identifier.Identifier;
 import model.identifier.MembershipVector;
 import module.logger.Logger;
 import module.logger.SkipGraphLogger;
+import skipnode.SearchOrigin;
 import skipnode.SearchResult;
 import skipnode.SkipNodeIdentity;
 import skipnode.SkipNodeInterface;
@@ -16,7 +29,11 @@ import underlay.packets.Request;
 import underlay.packets.Response;
 import underlay.packets.requests.AcquireLockRequest;
 import underlay.packets.requests.AnnounceNeighborRequest;
+import underlay.packets.requests.BatchRequest;
 import underlay.packets.requests.FindLadderRequest;
+import underlay.packets.requests.ForwardedLevelWalkRequest;
+import underlay.packets.requests.ForwardedSearchByIdentifierRequest;
+import underlay.packets.requests.ForwardedSearchByMembershipVectorRequest;
 import underlay.packets.requests.GetIdentityRequest;
 import underlay.packets.requests.GetLeftLadderRequest;
 import underlay.packets.requests.GetLeftNodeRequest;
@@ -25,14 +42,21 @@ import underlay.packets.requests.GetRightNodeRequest;
 import underlay.packets.requests.IncrementRequest;
 import underlay.packets.requests.InjectionRequest;
 import underlay.packets.requests.IsAvailableRequest;
+import underlay.packets.requests.LadderChainRequest;
+import underlay.packets.requests.LockReleasedRequest;
+import underlay.packets.requests.NextHopRequest;
 import underlay.packets.requests.ReleaseLockRequest;
 import underlay.packets.requests.SearchByIdentifierRequest;
 import underlay.packets.requests.SearchByMembershipVectorRecursiveRequest;
 import underlay.packets.requests.SearchByMembershipVectorRequest;
+import underlay.packets.requests.SearchReplyRequest;
 import underlay.packets.requests.UpdateLeftNodeRequest;
 import underlay.packets.requests.UpdateRightNodeRequest;
 import underlay.packets.responses.AckResponse;
+import underlay.packets.responses.BatchResponse;
+import underlay.packets.responses.BusyResponse;
 import underlay.packets.responses.BooleanResponse;
+import underlay.packets.responses.IdentityListResponse;
 import underlay.packets.responses.IdentityResponse;
 import underlay.packets.responses.SearchResultResponse;
 
@@ -48,25 +72,144 @@ public class MiddleLayer {
    * Max trial denotes the maximum number of send trial attempts before giving up.
    */
   private static final int MAX_TRIAL = 3;
+  /**
+   * Number of times a request answered as busy by the remote underlay is sent again before giving up.
+   */
+  private static final int MAX_BUSY_RETRIES = 8;
+  /**
+   * Duration in milliseconds before a request answered as busy is sent again for the first time. It
+   * doubles with every retry.
+   */
+  private static final long BUSY_RETRY_DELAY_MILLIS = 5;
+  /**
+   * Duration in milliseconds the originator of a search in the forwarding mode waits for the reply.
+   */
+  public static final long FORWARDED_SEARCH_TIMEOUT_MILLIS = 30_000;
+  /**
+   * Maximum number of threads that expand the left side of the membership vector searches of the
+   * overlays of a middle layer, see `expandLadderAsync`.
+   */
+  public static final int MAX_LADDER_EXPANDERS = 8;
   private final Logger logger;
   private final Underlay underlay;
   private final SkipNodeInterface masterOverlay;
-  private final ArrayList<SkipNodeInterface> overlays;
+  // Maps the identifiers of the overlays hosted by this middle layer to the overlays.
+  private final ConcurrentHashMap<Identifier, SkipNodeInterface> overlays;
+  // Coalesces the requests to the same peer, null if batching is disabled.
+  private final RequestCoalescer coalescer;
+  // Searches in the forwarding mode originated by the overlays of this middle layer, by their IDs.
+  private final ConcurrentHashMap<Long, CompletableFuture<SearchResult>> pendingSearches = new ConcurrentHashMap<>();
+  private final AtomicLong nextSearchId = new AtomicLong();
+  // Requests waiting for the insertion locks of the overlays to be released, by the identifiers of
+  // the overlays. Empty if the requests to the locked overlays are backed off by their senders.
+  private final ConcurrentHashMap<Identifier, LockWaitQueue> lockWaitQueues = new ConcurrentHashMap<>();
+  private volatile int maxLockWaiters = 0;
+  private volatile long lockWaitTimeoutMillis;
+  // Expands the left side of the membership vector searches of the overlays while the searching
+  // threads expand the right side. Shared by all the overlays of this middle layer.
+  private final ExecutorService ladderExpanders = new ThreadPoolExecutor(0, MAX_LADDER_EXPANDERS, 60, TimeUnit.SECONDS,
+      new SynchronousQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, "ladder-expander");
+        thread.setDaemon(true);
+        return thread;
+      });
 
   /**
-   * Constructor for MiddleLayer.
+   * Constructs a middle layer that sends every request in its own underlay message.
    *
    * @param underlay underlay instance.
    * @param overlay  Skip node implementation which represents the overlay.
    */
   public MiddleLayer(Underlay underlay, SkipNodeInterface overlay) {
+    this(underlay, overlay, 0, 1);
+  }
+
+  /**
+   * Constructor for MiddleLayer. The asynchronous requests that are sent to the same remote peer
+   * within the batch window are coalesced into a single underlay message (see `RequestCoalescer`).
+   * A blocking request is sent right away, together with the requests collected for its peer.
+   *
+   * @param underlay          underlay instance.
+   * @param overlay           Skip node implementation which represents the overlay.
+   * @param batchWindowMillis duration in milliseconds the requests to a peer are collected before
+   *                          they are sent together, zero disables batching.
+   * @param maxBatchSize      maximum number of requests sent together.
+   */
+  public MiddleLayer(Underlay underlay, SkipNodeInterface overlay, long batchWindowMillis, int maxBatchSize) {
+    if (batchWindowMillis < 0) {
+      throw new IllegalArgumentException("batch window must be non-negative: " + batchWindowMillis);
+    }
+    this.coalescer = batchWindowMillis > 0 ? new RequestCoalescer(underlay, batchWindowMillis, maxBatchSize) : null;
     this.underlay = underlay;
     this.masterOverlay = overlay;
-    this.overlays = new ArrayList<>();
-    this.overlays.add(overlay);
+    this.overlays = new ConcurrentHashMap<>();
+    this.overlays.put(overlay.getIdentity().getIdentifier(), overlay);
     this.logger = SkipGraphLogger.getLoggerForNodeComponent(this.getClass().getName(), overlay.getIdentity().getIdentifier());
   }
 
+  /**
+   * Makes the requests to the locked overlays of this middle layer wait for the locks to be released,
+   * see `LockWaitQueue`, instead of answering them as locked right away. Only the requests that would
+   * be backed off by their senders wait, the ones that act on a locked response themselves do not.
+   *
+   * <p>A waiting request holds the thread of the underlay that handles it, so `maxWaiters` should be
+   * kept below the number of worker threads of the underlay, and `timeoutMillis` below the duration
+   * its senders wait for a response.
+   *
+   * @param maxWaiters    maximum number of requests that wait for the lock of an overlay at once,
+   *                      zero makes the senders back off as before.
+   * @param timeoutMillis duration in milliseconds a request waits at most before it is answered as
+   *                      locked.
+   */
+  public void setLockWaitQueue(int maxWaiters, long timeoutMillis) {
+    if (maxWaiters < 0) {
+      throw new IllegalArgumentException("max waiters must be non-negative: " + maxWaiters);
+    }
+    if (maxWaiters > 0 && timeoutMillis <= 0) {
+      throw new IllegalArgumentException("wait timeout must be positive: " + timeoutMillis);
+    }
+    this.lockWaitTimeoutMillis = timeoutMillis;
+    this.maxLockWaiters = maxWaiters;
+    lockWaitQueues.clear();
+  }
+
+  /**
+   * Called by an overlay of this middle layer once its insertion lock is released, so that the
+   * requests waiting for it are handled.
+   *
+   * @param overlayId identifier of the overlay.
+   */
+  public void wakeLockWaiters(Identifier overlayId) {
+    LockWaitQueue queue = lockWaitQueues.get(overlayId);
+    if (queue != null) {
+      queue.released();
+    }
+  }
+
+  /**
+   * Returns the number of requests that wait for the lock of an overlay of this middle layer.
+   *
+   * @param overlayId identifier of the overlay.
+   * @return number of waiting requests.
+   */
+  public int getLockWaiterCount(Identifier overlayId) {
+    LockWaitQueue queue = lockWaitQueues.get(overlayId);
+    return queue == null ? 0 : queue.getWaiterCount();
+  }
+
+  /**
+   * Returns the queue of the requests waiting for the lock of an overlay.
+   *
+   * @param overlay the overlay.
+   * @return the queue, or null if the requests to the locked overlays do not wait.
+   */
+  private LockWaitQueue lockWaitQueue(SkipNodeInterface overlay) {
+    if (maxLockWaiters == 0) {
+      return null;
+    }
+    return lockWaitQueues.computeIfAbsent(overlay.getIdentity().getIdentifier(), id -> new LockWaitQueue(maxLockWaiters, lockWaitTimeoutMillis));
+  }
+
   /**
    * Called by the overlay to send requests to the underlay.
    *
@@ -84,41 +227,287 @@ public class MiddleLayer {
     do {
       trial++;
       // Backoff.
-      if (trial > 1) {
-        int sleepTime = (int) (Math.random() * 2000);
-        try {
-          Thread.sleep(sleepTime);
-        } catch (InterruptedException e) {
-          this.logger.fatal("could not backoff the send trial attempt", e);
-          return null; // technically the return should never executed, since this is a fatal log.
-        }
+      if (trial > 1 && !backoff()) {
+        return null; // technically the return should never executed, since this is a fatal log.
       }
       // Check if the destination address == address of this node.
-      if (destinationAddress.equals(underlay.getAddress()) && port == underlay.getPort()) {
+      if (isLocal(destinationAddress, port)) {
         // Bounce the request up.
         response = receive(request);
       } else {
         // Or receive it from the remote client.
-        response = underlay.sendMessage(destinationAddress, port, request);
+        response = sendRemote(destinationAddress, port, request);
       }
-    } while (request.backoff && response.locked);
+    } while (request.backoff && response != null && response.locked);
 
     return response;
   }
 
+  /**
+   * Called by the overlay to send requests to the underlay without blocking. The locked responses
+   * are retried after a random backoff, as in `send`, but no thread sleeps in the meantime.
+   *
+   * @param destinationAddress destination address.
+   * @param port               destination port.
+   * @param request            the request.
+   * @return future of the response emitted by the remote client.
+   */
+  protected CompletableFuture<Response> sendAsync(String destinationAddress, int port, Request request) {
+    // Fill out the request's sender information to be used by the remote middle layer.
+    request.senderAddress = underlay.getAddress();
+    request.senderPort = underlay.getPort();
+    return trySendAsync(destinationAddress, port, request);
+  }
+
+  private CompletableFuture<Response> trySendAsync(String destinationAddress, int port, Request request) {
+    CompletableFuture<Response> attempt;
+    // Check if the destination address == address of this node.
+    if (isLocal(destinationAddress, port)) {
+      // Bounce the request up.
+      attempt = CompletableFuture.completedFuture(receive(request));
+    } else {
+      // Or receive it from the remote client.
+      attempt = sendRemoteAsync(destinationAddress, port, request, 0);
+    }
+    return attempt.thenCompose(response -> {
+      if (response == null || !request.backoff || !response.locked) {
+        return CompletableFuture.completedFuture(response);
+      }
+      // Backoff.
+      return CompletableFuture.runAsync(() -> { }, backoffExecutor()).thenCompose(v -> trySendAsync(destinationAddress, port, request));
+    });
+  }
+
+  /**
+   * Sends the request to a remote peer, and sends it again after a short delay as long as the
+   * underlay of the peer is too busy to handle it. A busy peer is not necessarily locked, so the
+   * request is neither backed off nor answered as locked.
+   *
+   * @return the response emitted by the remote client, or null if it stayed busy.
+   */
+  private Response sendRemote(String destinationAddress, int port, Request request) {
+    for (int retry = 0; ; retry++) {
+      // The caller waits for the response, so the request is not held back for the batch window.
+      Response response =
+          coalescer == null ? underlay.sendMessage(destinationAddress, port, request) : coalescer.submitAndFlush(destinationAddress, port, request).join();
+      if (!(response instanceof BusyResponse)) {
+        return response;
+      }
+      if (retry == MAX_BUSY_RETRIES) {
+        logger.warn("peer " + destinationAddress + ":" + port + " was too busy to handle a " + request.type + " request");
+        return null;
+      }
+      try {
+        Thread.sleep(BUSY_RETRY_DELAY_MILLIS << retry);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Asynchronous variant of `sendRemote`.
+   *
+   * @param retry number of times the request has been answered as busy so far.
+   * @return future of the response emitted by the remote client, or of null if it stayed busy.
+   */
+  private CompletableFuture<Response> sendRemoteAsync(String destinationAddress, int port, Request request, int retry) {
+    CompletableFuture<Response> attempt =
+        coalescer == null ? underlay.sendMessageAsync(destinationAddress, port, request) : coalescer.submit(destinationAddress, port, request);
+    return attempt.thenCompose(response -> {
+      if (!(response instanceof BusyResponse)) {
+        return CompletableFuture.completedFuture(response);
+      }
+      if (retry == MAX_BUSY_RETRIES) {
+        logger.warn("peer " + destinationAddress + ":" + port + " was too busy to handle a " + request.type + " request");
+        return CompletableFuture.completedFuture(null);
+      }
+      Executor delay = CompletableFuture.delayedExecutor(BUSY_RETRY_DELAY_MILLIS << retry, TimeUnit.MILLISECONDS);
+      return CompletableFuture.runAsync(() -> { }, delay).thenCompose(v -> sendRemoteAsync(destinationAddress, port, request, retry + 1));
+    });
+  }
+
+  /**
+   * Sleeps for a random backoff before a locked request is tried again.
+   *
+   * @return false iff the thread was interrupted.
+   */
+  private boolean backoff() {
+    int sleepTime = (int) (Math.random() * 2000);
+    try {
+      Thread.sleep(sleepTime);
+      return true;
+    } catch (InterruptedException e) {
+      this.logger.fatal("could not backoff the send trial attempt", e);
+      return false;
+    }
+  }
+
+  /**
+   * Returns an executor that runs its tasks after a random backoff, see `backoff`.
+   *
+   * @return the executor.
+   */
+  private static Executor backoffExecutor() {
+    return CompletableFuture.delayedExecutor((long) (Math.random() * 2000), TimeUnit.MILLISECONDS);
+  }
+
+  private boolean isLocal(String destinationAddress, int port) {
+    return destinationAddress.equals(underlay.getAddress()) && port == underlay.getPort();
+  }
+
+  /**
+   * Returns the overlay hosted by this middle layer that a call is destined to, so that the call can
+   * be made directly instead of going through a request and `receive`.
+   *
+   * @param destinationAddress destination address.
+   * @param port               destination port.
+   * @param receiverId         receiver id, null for the master overlay.
+   * @return the overlay, or null if the destination is not hosted by this middle layer.
+   */
+  private SkipNodeInterface localOverlay(String destinationAddress, int port, Identifier receiverId) {
+    if (!isLocal(destinationAddress, port)) {
+      return null;
+    }
+    return receiverId == null ? masterOverlay : getById(receiverId);
+  }
+
+  /**
+   * Checks whether a local overlay accepts a call right now, as `receive` does before handling the
+   * corresponding request.
+   *
+   * @param overlay the overlay.
+   * @param guard   the condition the call requires.
+   * @return false iff `receive` would have returned a locked response.
+   */
+  private boolean admits(SkipNodeInterface overlay, Guard guard) {
+    switch (guard) {
+      case AVAILABLE:
+        return overlay.isAvailable();
+      case UNLOCKED:
+        return !overlay.isLocked() || overlay.isLockedBy(underlay.getAddress(), underlay.getPort());
+      default:
+        return true;
+    }
+  }
+
+  /**
+   * Calls a local overlay directly. While the overlay does not accept the call, it is tried again
+   * once its lock is released if the requests wait for the locks, see `setLockWaitQueue`, or after a
+   * random backoff otherwise, as `send` does with the locked responses.
+   *
+   * @param overlay     the overlay.
+   * @param guard       the condition the call requires.
+   * @param backoff     whether to try again while the overlay does not accept the call.
+   * @param whenLocked  the result if the overlay does not accept the call and `backoff` is false.
+   * @param call        the call.
+   * @param <T>         type of the result.
+   * @return the result of the call.
+   */
+  private <T> T callLocal(SkipNodeInterface overlay, Guard guard, boolean backoff, T whenLocked, Function<SkipNodeInterface, T> call) {
+    LockWaitQueue queue = lockWaitQueue(overlay);
+    long deadline = queue == null ? 0 : queue.deadline();
+    while (true) {
+      CompletableFuture<Void> release = queue == null ? null : queue.nextRelease();
+      if (admits(overlay, guard)) {
+        return call.apply(overlay);
+      }
+      if (!backoff) {
+        return whenLocked;
+      }
+      if (queue != null && queue.await(release, deadline)) {
+        continue;
+      }
+      if (!backoff()) {
+        return null;
+      }
+      if (queue != null) {
+        deadline = queue.deadline();
+      }
+    }
+  }
+
+  /**
+   * Asynchronous variant of `callLocal`. The call itself is made on the calling thread, as
+   * `sendAsync` does with the local requests, but no thread sleeps during the backoff.
+   *
+   * @param overlay     the overlay.
+   * @param guard       the condition the call requires.
+   * @param backoff     whether to try again while the overlay does not accept the call.
+   * @param whenLocked  the result if the overlay does not accept the call and `backoff` is false.
+   * @param call        the call.
+   * @param <T>         type of the result.
+   * @return future of the result of the call.
+   */
+  private <T> CompletableFuture<T> callLocalAsync(SkipNodeInterface overlay, Guard guard, boolean backoff, T whenLocked,
+                                                  Function<SkipNodeInterface, T> call) {
+    LockWaitQueue queue = lockWaitQueue(overlay);
+    return callLocalAsync(overlay, guard, backoff, whenLocked, call, queue == null ? 0 : queue.deadline());
+  }
+
+  private <T> CompletableFuture<T> callLocalAsync(SkipNodeInterface overlay, Guard guard, boolean backoff, T whenLocked,
+                                                  Function<SkipNodeInterface, T> call, long deadline) {
+    LockWaitQueue queue = lockWaitQueue(overlay);
+    CompletableFuture<Void> release = queue == null ? null : queue.nextRelease();
+    if (admits(overlay, guard)) {
+      return CompletableFuture.completedFuture(call.apply(overlay));
+    }
+    if (!backoff) {
+      return CompletableFuture.completedFuture(whenLocked);
+    }
+    if (queue != null) {
+      return queue.awaitAsync(release, deadline).thenCompose(released -> released
+          ? callLocalAsync(overlay, guard, true, whenLocked, call, deadline)
+          : CompletableFuture.runAsync(() -> { }, backoffExecutor()).thenCompose(v -> callLocalAsync(overlay, guard, true, whenLocked, call)));
+    }
+    return CompletableFuture.runAsync(() -> { }, backoffExecutor()).thenCompose(v -> callLocalAsync(overlay, guard, true, whenLocked, call));
+  }
+
   /**
    * Called by the underlay to collect the response from the overlay.
    *
    * @return response emitted by the overlay.
    */
   public Response receive(Request request) {
-    SkipNodeIdentity identity;
-    SearchResult result;
+    // Handle the requests of a batch one by one.
+    if (request instanceof BatchRequest) {
+      List<Response> responses = new ArrayList<>();
+      for (Request batched : ((BatchRequest) request).requests) {
+        responses.add(receive(batched));
+      }
+      return new BatchResponse(responses);
+    }
     SkipNodeInterface overlay = request.receiverId == null ? masterOverlay : getById(request.receiverId);
     // Invalid ID
     if (overlay == null) {
       return null;
     }
+    LockWaitQueue queue = request.backoff ? lockWaitQueue(overlay) : null;
+    if (queue == null) {
+      return handle(request, overlay);
+    }
+    // Hold the request until the lock of the overlay is released instead of letting its sender back off.
+    long deadline = queue.deadline();
+    while (true) {
+      CompletableFuture<Void> release = queue.nextRelease();
+      Response response = handle(request, overlay);
+      if (response == null || !response.locked || !queue.await(release, deadline)) {
+        return response;
+      }
+    }
+  }
+
+  /**
+   * Handles a request by the overlay it is destined to.
+   *
+   * @param request the request.
+   * @param overlay the overlay.
+   * @return response emitted by the overlay.
+   */
+  private Response handle(Request request, SkipNodeInterface overlay) {
+    SkipNodeIdentity identity;
+    SearchResult result;
     // If the overlay is locked, return a response denoting the client to try again later.
     switch (request.type) {
       case SearchByMembershipVector:
@@ -143,6 +532,37 @@ public class MiddleLayer {
         }
         identity = overlay.searchByIdentifier(((SearchByIdentifierRequest) request).searchByIdentifier);
         return new IdentityResponse(identity);
+      case NextHop:
+        // Check whether the node is available for lookups (i.e., already inserted.)
+        if (!overlay.isAvailable()) {
+          return new Response(true);
+        }
+        identity = overlay.nextHop(((NextHopRequest) request).target);
+        return new IdentityResponse(identity);
+      case ForwardedSearchByIdentifier:
+        // Check whether the node is available for lookups (i.e., already inserted.)
+        if (!overlay.isAvailable()) {
+          return new Response(true);
+        }
+        ForwardedSearchByIdentifierRequest forwardedById = (ForwardedSearchByIdentifierRequest) request;
+        overlay.forwardedSearchByIdentifier(forwardedById.target, forwardedById.origin);
+        return new AckResponse();
+      case ForwardedSearchByMembershipVector:
+        // Check whether the node is available for lookups (i.e., already inserted.)
+        if (!overlay.isAvailable()) {
+          return new Response(true);
+        }
+        ForwardedSearchByMembershipVectorRequest forwardedByMemVec = (ForwardedSearchByMembershipVectorRequest) request;
+        overlay.forwardedSearchByMembershipVector(forwardedByMemVec.target, forwardedByMemVec.level, forwardedByMemVec.origin);
+        return new AckResponse();
+      case ForwardedLevelWalk:
+        // The lock of the node is checked against the originator by the node itself.
+        ForwardedLevelWalkRequest levelWalk = (ForwardedLevelWalkRequest) request;
+        overlay.forwardedLevelWalk(levelWalk.level, levelWalk.direction, levelWalk.target, levelWalk.origin);
+        return new AckResponse();
+      case SearchReply:
+        completeSearch(((SearchReplyRequest) request).searchId, ((SearchReplyRequest) request).result);
+        return new AckResponse();
       case GetIdentity:
         identity = overlay.getIdentity();
         return new IdentityResponse(identity);
@@ -187,6 +607,17 @@ public class MiddleLayer {
                                       ((FindLadderRequest) request).direction,
                                       ((FindLadderRequest) request).target);
         return new IdentityResponse(identity);
+      case LadderChain:
+        LadderChainRequest ladderChain = (LadderChainRequest) request;
+        // Can only be invoked when unlocked or by the inserted node that owns the lock. The request
+        // is forwarded along the chain, so the owner is the requester rather than the sender.
+        if (overlay.isLocked() && !overlay.isLockedBy(ladderChain.requester.getAddress(), ladderChain.requester.getPort())) {
+          return new Response(true);
+        }
+        return new IdentityListResponse(overlay.findLadderChain(ladderChain.level, ladderChain.direction, ladderChain.target, ladderChain.requester));
+      case LockReleased:
+        overlay.lockReleased(((LockReleasedRequest) request).node);
+        return new AckResponse();
       case AnnounceNeighbor:
         overlay.announceNeighbor(((AnnounceNeighborRequest) request).newNeighbor, ((AnnounceNeighborRequest) request).minLevel);
         return new AckResponse();
@@ -204,18 +635,32 @@ public class MiddleLayer {
    * @param node skip node instance.
    */
   public void insertDataNode(SkipNodeInterface node) {
-    overlays.add(node);
-    node.setMiddleLayer(this);
+    addOverlay(node);
     node.insert(node.getIdentity().getAddress(), node.getIdentity().getPort());
   }
 
+  /**
+   * Adds a node to the overlays of the middle layer, so that the requests carrying its identifier are
+   * directed to it, without inserting it into the Skip Graph.
+   *
+   * @param node skip node instance.
+   */
+  public void addOverlay(SkipNodeInterface node) {
+    overlays.put(node.getIdentity().getIdentifier(), node);
+    node.setMiddleLayer(this);
+  }
+
+  /**
+   * Returns the number of overlays hosted by the middle layer, including the master overlay.
+   *
+   * @return number of overlays.
+   */
+  public int getOverlayCount() {
+    return overlays.size();
+  }
+
   private SkipNodeInterface getById(Identifier id) {
-    for (SkipNodeInterface overlay : this.overlays) {
-      if (overlay.getIdentity().getIdentifier().equals(id)) {
-        return overlay;
-      }
-    }
-    return null;
+    return overlays.get(id);
   }
 
   /*
@@ -242,6 +687,10 @@ public class MiddleLayer {
    * @return Search results from the search.
    */
   public SearchResult searchByMembershipVector(String destinationAddress, int port, Identifier receiverId, MembershipVector membershipVector) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocal(local, Guard.AVAILABLE, true, null, overlay -> overlay.searchByMembershipVector(membershipVector));
+    }
     Request request = new SearchByMembershipVectorRequest(membershipVector);
     request.receiverId = receiverId;
     // Send the request through the underlay
@@ -260,6 +709,10 @@ public class MiddleLayer {
    * @return search result instance.
    */
   public SearchResult searchByMembershipVector(String destinationAddress, int port, Identifier receiverId, MembershipVector target, int level) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocal(local, Guard.AVAILABLE, true, null, overlay -> overlay.searchByMembershipVector(target, level));
+    }
     Request request = new SearchByMembershipVectorRecursiveRequest(target, level);
     request.receiverId = receiverId;
     // Send the request through the underlay.
@@ -278,16 +731,258 @@ public class MiddleLayer {
    * @param port               Integer value representing the port.
    * @param receiverId         receiver id.
    * @param targetIdentifier   target identifier.
-   * @return skip node identity.
+   * @return skip node identity, or null if the destination could not be reached.
    */
   public SkipNodeIdentity searchByIdentifier(String destinationAddress, int port, Identifier receiverId, Identifier targetIdentifier) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocal(local, Guard.AVAILABLE, true, null, overlay -> overlay.searchByIdentifier(targetIdentifier));
+    }
     Request request = new SearchByIdentifierRequest(targetIdentifier);
     request.receiverId = receiverId;
     // Send the request through the underlay
     Response response = this.send(destinationAddress, port, request);
+    // The destination is unreachable or does not host the receiver.
+    if (!(response instanceof IdentityResponse)) {
+      return null;
+    }
     return ((IdentityResponse) response).identity;
   }
 
+  /**
+   * Asynchronous variant of `searchByIdentifier`.
+   *
+   * @param destinationAddress String value representing the destination address.
+   * @param port               Integer value representing the port.
+   * @param receiverId         receiver id.
+   * @param targetIdentifier   target identifier.
+   * @return future of the skip node identity.
+   */
+  public CompletableFuture<SkipNodeIdentity> searchByIdentifierAsync(String destinationAddress, int port, Identifier receiverId,
+                                                                     Identifier targetIdentifier) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocalAsync(local, Guard.AVAILABLE, true, null, overlay -> overlay.searchByIdentifier(targetIdentifier));
+    }
+    Request request = new SearchByIdentifierRequest(targetIdentifier);
+    request.receiverId = receiverId;
+    return sendAsync(destinationAddress, port, request).thenApply(response -> ((IdentityResponse) response).identity);
+  }
+
+  /**
+   * Starts a search by identifier in the forwarding mode at the given node. The hops forward the
+   * search without waiting for its result, and the last hop replies directly to this middle layer.
+   *
+   * @param destinationAddress String value representing the destination address.
+   * @param port               Integer value representing the port.
+   * @param receiverId         receiver id.
+   * @param targetIdentifier   target identifier.
+   * @return future of the search result, completed with null if the search could not be forwarded to
+   *     one of its hops, or exceptionally if no reply arrives in time.
+   */
+  public CompletableFuture<SearchResult> startForwardedSearchByIdentifier(String destinationAddress, int port, Identifier receiverId,
+                                                                        Identifier targetIdentifier) {
+    CompletableFuture<SearchResult> reply = new CompletableFuture<>();
+    forwardSearchByIdentifier(destinationAddress, port, receiverId, targetIdentifier, newSearch(reply));
+    return reply;
+  }
+
+  /**
+   * Starts a recursive search by membership vector in the forwarding mode at the given node, see
+   * `startForwardedSearchByIdentifier`.
+   *
+   * @param destinationAddress String value representing the destination address.
+   * @param port               Integer value representing the port.
+   * @param receiverId         receiver id.
+   * @param target             target membership vector.
+   * @param level              the level the search starts at.
+   * @return future of the search result, completed with null if the search could not be forwarded to
+   *     one of its hops, or exceptionally if no reply arrives in time.
+   */
+  public CompletableFuture<SearchResult> startForwardedSearchByMembershipVector(String destinationAddress, int port, Identifier receiverId,
+                                                                              MembershipVector target, int level) {
+    CompletableFuture<SearchResult> reply = new CompletableFuture<>();
+    forwardSearchByMembershipVector(destinationAddress, port, receiverId, target, level, newSearch(reply));
+    return reply;
+  }
+
+  /**
+   * Forwards a search by identifier in the forwarding mode to the next hop without waiting for its
+   * result. If the next hop cannot be reached, the search fails at its originator.
+   *
+   * @param destinationAddress String value representing the destination address.
+   * @param port               Integer value representing the port.
+   * @param receiverId         receiver id.
+   * @param targetIdentifier   target identifier.
+   * @param origin             the originator of the search.
+   */
+  public void forwardSearchByIdentifier(String destinationAddress, int port, Identifier receiverId, Identifier targetIdentifier, SearchOrigin origin) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      callLocalAsync(local, Guard.AVAILABLE, true, null, overlay -> {
+        overlay.forwardedSearchByIdentifier(targetIdentifier, origin);
+        return null;
+      });
+      return;
+    }
+    Request request = new ForwardedSearchByIdentifierRequest(targetIdentifier, origin);
+    request.receiverId = receiverId;
+    forward(destinationAddress, port, request, origin);
+  }
+
+  /**
+   * Forwards a recursive search by membership vector in the forwarding mode to the next hop without
+   * waiting for its result. If the next hop cannot be reached, the search fails at its originator.
+   *
+   * @param destinationAddress String value representing the destination address.
+   * @param port               Integer value representing the port.
+   * @param receiverId         receiver id.
+   * @param target             target membership vector.
+   * @param level              the level the search continues at.
+   * @param origin             the originator of the search.
+   */
+  public void forwardSearchByMembershipVector(String destinationAddress, int port, Identifier receiverId, MembershipVector target, int level,
+                                              SearchOrigin origin) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      callLocalAsync(local, Guard.AVAILABLE, true, null, overlay -> {
+        overlay.forwardedSearchByMembershipVector(target, level, origin);
+        return null;
+      });
+      return;
+    }
+    Request request = new ForwardedSearchByMembershipVectorRequest(target, level, origin);
+    request.receiverId = receiverId;
+    forward(destinationAddress, port, request, origin);
+  }
+
+  /**
+   * Starts a walk along a level in search of a ladder in the forwarding mode at the given node, see
+   * `SkipNodeInterface.forwardedLevelWalk`. The walk is replied to through this middle layer, so the
+   * nodes locked by the owner of this middle layer still forward it.
+   *
+   * @param destinationAddress String value representing the destination address.
+   * @param port               Integer value representing the port.
+   * @param receiverId         receiver id.
+   * @param level              the level to walk along.
+   * @param direction          the direction of the walk.
+   * @param target             membership vector of the inserted node.
+   * @return future of the ladder, completed with null if the walk could not be forwarded to one of
+   *     its nodes, or exceptionally if no reply arrives in time.
+   */
+  public CompletableFuture<SearchResult> startForwardedLevelWalk(String destinationAddress, int port, Identifier receiverId, int level,
+                                                                 int direction, MembershipVector target) {
+    CompletableFuture<SearchResult> reply = new CompletableFuture<>();
+    forwardLevelWalk(destinationAddress, port, receiverId, level, direction, target, newSearch(reply));
+    return reply;
+  }
+
+  /**
+   * Forwards a walk along a level in the forwarding mode to the next node without waiting for its
+   * result. If the next node cannot be reached, the walk fails at its originator.
+   *
+   * @param destinationAddress String value representing the destination address.
+   * @param port               Integer value representing the port.
+   * @param receiverId         receiver id.
+   * @param level              the level to walk along.
+   * @param direction          the direction of the walk.
+   * @param target             membership vector of the inserted node.
+   * @param origin             the originator of the walk.
+   */
+  public void forwardLevelWalk(String destinationAddress, int port, Identifier receiverId, int level, int direction, MembershipVector target,
+                               SearchOrigin origin) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      // The lock of the node is checked against the originator by the node itself.
+      callLocalAsync(local, Guard.NONE, false, null, overlay -> {
+        overlay.forwardedLevelWalk(level, direction, target, origin);
+        return null;
+      });
+      return;
+    }
+    Request request = new ForwardedLevelWalkRequest(level, direction, target, origin);
+    request.receiverId = receiverId;
+    forward(destinationAddress, port, request, origin);
+  }
+
+  /**
+   * Sends the result of a search in the forwarding mode to its originator.
+   *
+   * @param origin the originator of the search.
+   * @param result the result of the search, or null if the search failed.
+   */
+  public void replySearch(SearchOrigin origin, SearchResult result) {
+    if (isLocal(origin.address, origin.port)) {
+      completeSearch(origin.searchId, result);
+      return;
+    }
+    sendAsync(origin.address, origin.port, new SearchReplyRequest(origin.searchId, result)).thenAccept(response -> {
+      if (response == null) {
+        logger.warn("could not reply to the originator of search " + origin.searchId + " at " + origin.address + ":" + origin.port);
+      }
+    });
+  }
+
+  /**
+   * Returns the number of searches in the forwarding mode that are waiting for their replies.
+   *
+   * @return number of pending searches.
+   */
+  public int getPendingSearchCount() {
+    return pendingSearches.size();
+  }
+
+  /**
+   * Registers a search in the forwarding mode originated through this middle layer. The search is
+   * forgotten once it is replied to or times out.
+   *
+   * @param reply future completed with the result of the search.
+   * @return the origin to be carried by the search.
+   */
+  private SearchOrigin newSearch(CompletableFuture<SearchResult> reply) {
+    long searchId = nextSearchId.incrementAndGet();
+    pendingSearches.put(searchId, reply);
+    reply.orTimeout(FORWARDED_SEARCH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).whenComplete((result, e) -> pendingSearches.remove(searchId));
+    return new SearchOrigin(underlay.getAddress(), underlay.getPort(), searchId);
+  }
+
+  private void completeSearch(long searchId, SearchResult result) {
+    CompletableFuture<SearchResult> reply = pendingSearches.remove(searchId);
+    if (reply != null) {
+      reply.complete(result);
+    }
+  }
+
+  private void forward(String destinationAddress, int port, Request request, SearchOrigin origin) {
+    sendAsync(destinationAddress, port, request).thenAccept(response -> {
+      if (response == null) {
+        // The next hop cannot be reached, fail the search right away instead of letting it time out.
+        replySearch(origin, null);
+      }
+    });
+  }
+
+  /**
+   * Asks a node for the next hop of an identifier search, see `SkipNodeInterface.nextHop`.
+   *
+   * @param destinationAddress String value representing the destination address.
+   * @param port               Integer value representing the port.
+   * @param receiverId         receiver id.
+   * @param targetIdentifier   target identifier.
+   * @return future of the identity of the next hop, completed with null if the destination could not
+   *     be reached.
+   */
+  public CompletableFuture<SkipNodeIdentity> nextHopAsync(String destinationAddress, int port, Identifier receiverId, Identifier targetIdentifier) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocalAsync(local, Guard.AVAILABLE, true, null, overlay -> overlay.nextHop(targetIdentifier));
+    }
+    Request request = new NextHopRequest(targetIdentifier);
+    request.receiverId = receiverId;
+    return sendAsync(destinationAddress, port, request).thenApply(response -> response instanceof IdentityResponse
+        ? ((IdentityResponse) response).identity : null);
+  }
+
   /**
    * Method for trying to acquire the lock.
    *
@@ -298,6 +993,10 @@ public class MiddleLayer {
    * @return boolean value representing whether the lock is acquired or not.
    */
   public boolean tryAcquire(String destinationAddress, int port, Identifier receiverId, SkipNodeIdentity req) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocal(local, Guard.NONE, true, null, overlay -> overlay.tryAcquire(req));
+    }
     Request request = new AcquireLockRequest(req);
     request.receiverId = receiverId;
 
@@ -305,6 +1004,25 @@ public class MiddleLayer {
     return ((BooleanResponse) response).answer;
   }
 
+  /**
+   * Asynchronous variant of `tryAcquire`.
+   *
+   * @param destinationAddress String value representing the destination address.
+   * @param port               Integer value representing the port.
+   * @param receiverId         receiver id.
+   * @param req                skip node identity.
+   * @return future of the boolean value representing whether the lock is acquired or not.
+   */
+  public CompletableFuture<Boolean> tryAcquireAsync(String destinationAddress, int port, Identifier receiverId, SkipNodeIdentity req) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocalAsync(local, Guard.NONE, true, null, overlay -> overlay.tryAcquire(req));
+    }
+    Request request = new AcquireLockRequest(req);
+    request.receiverId = receiverId;
+    return sendAsync(destinationAddress, port, request).thenApply(response -> ((BooleanResponse) response).answer);
+  }
+
   public boolean unlock(String destinationAddress, int port, SkipNodeIdentity owner) {
     return unlock(destinationAddress, port, null, owner);
   }
@@ -319,12 +1037,35 @@ public class MiddleLayer {
    * @return boolean value representing if the lock is unlocked or not.
    */
   public boolean unlock(String destinationAddress, int port, Identifier receiverId, SkipNodeIdentity owner) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocal(local, Guard.NONE, true, null, overlay -> overlay.unlock(owner));
+    }
     Request request = new ReleaseLockRequest(owner);
     request.receiverId = receiverId;
     Response response = this.send(destinationAddress, port, request);
     return ((BooleanResponse) response).answer;
   }
 
+  /**
+   * Asynchronous variant of `unlock`.
+   *
+   * @param destinationAddress String value representing the destination address.
+   * @param port               Integer value representing the port.
+   * @param receiverId         receiver id.
+   * @param owner              owner node.
+   * @return future of the boolean value representing if the lock is unlocked or not.
+   */
+  public CompletableFuture<Boolean> unlockAsync(String destinationAddress, int port, Identifier receiverId, SkipNodeIdentity owner) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocalAsync(local, Guard.NONE, true, null, overlay -> overlay.unlock(owner));
+    }
+    Request request = new ReleaseLockRequest(owner);
+    request.receiverId = receiverId;
+    return sendAsync(destinationAddress, port, request).thenApply(response -> ((BooleanResponse) response).answer);
+  }
+
   public SkipNodeIdentity updateRightNode(String destinationAddress, int port, SkipNodeIdentity snId, int level) {
     return updateRightNode(destinationAddress, port, null, snId, level);
   }
@@ -340,7 +1081,10 @@ public class MiddleLayer {
    * @return skip node identity.
    */
   public SkipNodeIdentity updateRightNode(String destinationAddress, int port, Identifier receiverId, SkipNodeIdentity snId, int level) {
-
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocal(local, Guard.UNLOCKED, true, null, overlay -> overlay.updateRightNode(snId, level));
+    }
     Request request = new UpdateRightNodeRequest(level, snId);
     request.receiverId = receiverId;
     // Send the request through the underlay
@@ -348,6 +1092,27 @@ public class MiddleLayer {
     return ((IdentityResponse) response).identity;
   }
 
+  /**
+   * Asynchronous variant of `updateRightNode`.
+   *
+   * @param destinationAddress String value representing the destination address.
+   * @param port               Integer value representing the port.
+   * @param receiverId         receiver id.
+   * @param snId               skip node identity.
+   * @param level              Integer representing the level.
+   * @return future of the skip node identity.
+   */
+  public CompletableFuture<SkipNodeIdentity> updateRightNodeAsync(String destinationAddress, int port, Identifier receiverId, SkipNodeIdentity snId,
+                                                                  int level) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocalAsync(local, Guard.UNLOCKED, true, null, overlay -> overlay.updateRightNode(snId, level));
+    }
+    Request request = new UpdateRightNodeRequest(level, snId);
+    request.receiverId = receiverId;
+    return sendAsync(destinationAddress, port, request).thenApply(response -> ((IdentityResponse) response).identity);
+  }
+
   public SkipNodeIdentity updateLeftNode(String destinationAddress, int port, SkipNodeIdentity snId, int level) {
     return updateLeftNode(destinationAddress, port, null, snId, level);
   }
@@ -363,7 +1128,10 @@ public class MiddleLayer {
    * @return skip node identity.
    */
   public SkipNodeIdentity updateLeftNode(String destinationAddress, int port, Identifier receiverId, SkipNodeIdentity snId, int level) {
-
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocal(local, Guard.UNLOCKED, true, null, overlay -> overlay.updateLeftNode(snId, level));
+    }
     Request request = new UpdateLeftNodeRequest(level, snId);
     request.receiverId = receiverId;
     // Send the request through the underlay
@@ -371,6 +1139,27 @@ public class MiddleLayer {
     return ((IdentityResponse) response).identity;
   }
 
+  /**
+   * Asynchronous variant of `updateLeftNode`.
+   *
+   * @param destinationAddress String value representing the destination address.
+   * @param port               Integer value representing the port.
+   * @param receiverId         receiver id.
+   * @param snId               skip node identity.
+   * @param level              Integer representing the level.
+   * @return future of the skip node identity.
+   */
+  public CompletableFuture<SkipNodeIdentity> updateLeftNodeAsync(String destinationAddress, int port, Identifier receiverId, SkipNodeIdentity snId,
+                                                                 int level) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocalAsync(local, Guard.UNLOCKED, true, null, overlay -> overlay.updateLeftNode(snId, level));
+    }
+    Request request = new UpdateLeftNodeRequest(level, snId);
+    request.receiverId = receiverId;
+    return sendAsync(destinationAddress, port, request).thenApply(response -> ((IdentityResponse) response).identity);
+  }
+
   public SkipNodeIdentity getIdentity(String destinationAddress, int port) {
     return getIdentity(destinationAddress, port, null);
   }
@@ -384,9 +1173,13 @@ public class MiddleLayer {
    * @return skip node identity.
    */
   public SkipNodeIdentity getIdentity(String destinationAddress, int port, Identifier receiverId) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocal(local, Guard.NONE, true, null, SkipNodeInterface::getIdentity);
+    }
     Request request = new GetIdentityRequest();
     request.receiverId = receiverId;
-    Response r = send(destinationAddress, port, new GetIdentityRequest());
+    Response r = send(destinationAddress, port, request);
     return ((IdentityResponse) r).identity;
   }
 
@@ -409,6 +1202,10 @@ public class MiddleLayer {
    * @return skip node identity.
    */
   public SkipNodeIdentity getRightNeighborOf(boolean backoff, String destinationAddress, int port, Identifier receiverId, int level) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocal(local, Guard.UNLOCKED, backoff, LookupTable.INVALID_NODE, overlay -> overlay.getRightNode(level));
+    }
     // Send the request through the underlay
     GetRightNodeRequest req = new GetRightNodeRequest(level);
     req.backoff = backoff;
@@ -422,6 +1219,28 @@ public class MiddleLayer {
     return ((IdentityResponse) r).identity;
   }
 
+  /**
+   * Asynchronous variant of `getRightNeighborOf`.
+   *
+   * @param backoff            boolean value for back off.
+   * @param destinationAddress String value representing the destination address.
+   * @param port               Integer value representing the port.
+   * @param receiverId         receiver id.
+   * @param level              Integer representing the level
+   * @return future of the skip node identity.
+   */
+  public CompletableFuture<SkipNodeIdentity> getRightNeighborOfAsync(boolean backoff, String destinationAddress, int port, Identifier receiverId,
+                                                                     int level) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocalAsync(local, Guard.UNLOCKED, backoff, LookupTable.INVALID_NODE, overlay -> overlay.getRightNode(level));
+    }
+    GetRightNodeRequest req = new GetRightNodeRequest(level);
+    req.backoff = backoff;
+    req.receiverId = receiverId;
+    return sendAsync(destinationAddress, port, req).thenApply(r -> r.locked ? LookupTable.INVALID_NODE : ((IdentityResponse) r).identity);
+  }
+
   public SkipNodeIdentity getLeftNeighborOf(String destinationAddress, int port, Identifier receiverId, int level) {
     return getLeftNeighborOf(true, destinationAddress, port, receiverId, level);
   }
@@ -437,6 +1256,10 @@ public class MiddleLayer {
    * @return skip node identity.
    */
   public SkipNodeIdentity getLeftNeighborOf(boolean backoff, String destinationAddress, int port, Identifier receiverId, int level) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocal(local, Guard.UNLOCKED, backoff, LookupTable.INVALID_NODE, overlay -> overlay.getLeftNode(level));
+    }
     // Send the request through the underlay
     GetLeftNodeRequest req = new GetLeftNodeRequest(level);
     req.backoff = backoff;
@@ -450,6 +1273,28 @@ public class MiddleLayer {
     return ((IdentityResponse) r).identity;
   }
 
+  /**
+   * Asynchronous variant of `getLeftNeighborOf`.
+   *
+   * @param backoff            boolean value for back off.
+   * @param destinationAddress String value representing the destination address.
+   * @param port               Integer value representing the port.
+   * @param receiverId         receiver id.
+   * @param level              Integer representing the level
+   * @return future of the skip node identity.
+   */
+  public CompletableFuture<SkipNodeIdentity> getLeftNeighborOfAsync(boolean backoff, String destinationAddress, int port, Identifier receiverId,
+                                                                    int level) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocalAsync(local, Guard.UNLOCKED, backoff, LookupTable.INVALID_NODE, overlay -> overlay.getLeftNode(level));
+    }
+    GetLeftNodeRequest req = new GetLeftNodeRequest(level);
+    req.backoff = backoff;
+    req.receiverId = receiverId;
+    return sendAsync(destinationAddress, port, req).thenApply(r -> r.locked ? LookupTable.INVALID_NODE : ((IdentityResponse) r).identity);
+  }
+
   /**
    * Method for finding a ladder.
    *
@@ -463,7 +1308,10 @@ public class MiddleLayer {
    */
   public SkipNodeIdentity findLadder(String destinationAddress, int port, Identifier receiverId, int level, int direction,
                                      MembershipVector membershipVector) {
-
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocal(local, Guard.UNLOCKED, true, null, overlay -> overlay.findLadder(level, direction, membershipVector));
+    }
     Request request = new FindLadderRequest(level, direction, membershipVector);
     request.receiverId = receiverId;
     // Send the request through the underlay
@@ -471,6 +1319,116 @@ public class MiddleLayer {
     return ((IdentityResponse) r).identity;
   }
 
+  /**
+   * Asynchronous variant of `findLadder`.
+   *
+   * @param destinationAddress String value representing the destination address.
+   * @param port               Integer value representing the port.
+   * @param receiverId         receiver id.
+   * @param level              Integer representing the level.
+   * @param direction          Integer representing the direction.
+   * @param membershipVector   String representing the target.
+   * @return future of the skip node identity.
+   */
+  public CompletableFuture<SkipNodeIdentity> findLadderAsync(String destinationAddress, int port, Identifier receiverId, int level, int direction,
+                                                             MembershipVector membershipVector) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocalAsync(local, Guard.UNLOCKED, true, null, overlay -> overlay.findLadder(level, direction, membershipVector));
+    }
+    Request request = new FindLadderRequest(level, direction, membershipVector);
+    request.receiverId = receiverId;
+    return sendAsync(destinationAddress, port, request).thenApply(r -> ((IdentityResponse) r).identity);
+  }
+
+  /**
+   * Runs the expansion of a search window on one of the ladder expanders of this middle layer. A
+   * search holds at most one of the expanders at a time.
+   *
+   * @param expansion the expansion, e.g., a `findLadder` call.
+   * @return future of the ladder found by the expansion, or null if all the expanders are busy or the
+   *     middle layer is terminated, in which case the caller has to run the expansion itself.
+   */
+  public CompletableFuture<SkipNodeIdentity> expandLadderAsync(Supplier<SkipNodeIdentity> expansion) {
+    try {
+      return CompletableFuture.supplyAsync(expansion, ladderExpanders);
+    } catch (RejectedExecutionException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Method for finding the ladders of an inserted node on all the levels above the given one. The
+   * request is not tried again if the destination is locked by another insertion.
+   *
+   * @param destinationAddress String value representing the destination address.
+   * @param port               Integer value representing the port.
+   * @param receiverId         receiver id.
+   * @param level              the lowest level to find a ladder on.
+   * @param direction          the direction of the ladders.
+   * @param target             membership vector of the inserted node.
+   * @param requester          identity of the inserted node.
+   * @return the ladders as in `SkipNodeInterface.findLadderChain`, a single invalid identity if the
+   *     destination is locked, or null if the destination could not be reached.
+   */
+  public List<SkipNodeIdentity> findLadderChain(String destinationAddress, int port, Identifier receiverId, int level, int direction,
+                                                MembershipVector target, SkipNodeIdentity requester) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocal(local, Guard.NONE, false, null, overlay -> findLocalLadderChain(overlay, level, direction, target, requester));
+    }
+    Request request = ladderChainRequest(receiverId, level, direction, target, requester);
+    return ladderChain(send(destinationAddress, port, request));
+  }
+
+  /**
+   * Asynchronous variant of `findLadderChain`.
+   *
+   * @param destinationAddress String value representing the destination address.
+   * @param port               Integer value representing the port.
+   * @param receiverId         receiver id.
+   * @param level              the lowest level to find a ladder on.
+   * @param direction          the direction of the ladders.
+   * @param target             membership vector of the inserted node.
+   * @param requester          identity of the inserted node.
+   * @return future of the ladders.
+   */
+  public CompletableFuture<List<SkipNodeIdentity>> findLadderChainAsync(String destinationAddress, int port, Identifier receiverId, int level,
+                                                                        int direction, MembershipVector target, SkipNodeIdentity requester) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocalAsync(local, Guard.NONE, false, null, overlay -> findLocalLadderChain(overlay, level, direction, target, requester));
+    }
+    Request request = ladderChainRequest(receiverId, level, direction, target, requester);
+    return sendAsync(destinationAddress, port, request).thenApply(MiddleLayer::ladderChain);
+  }
+
+  private static List<SkipNodeIdentity> findLocalLadderChain(SkipNodeInterface overlay, int level, int direction, MembershipVector target,
+                                                             SkipNodeIdentity requester) {
+    if (overlay.isLocked() && !overlay.isLockedBy(requester.getAddress(), requester.getPort())) {
+      return Collections.singletonList(LookupTable.INVALID_NODE);
+    }
+    return overlay.findLadderChain(level, direction, target, requester);
+  }
+
+  private static Request ladderChainRequest(Identifier receiverId, int level, int direction, MembershipVector target, SkipNodeIdentity requester) {
+    Request request = new LadderChainRequest(level, direction, target, requester);
+    request.backoff = false;
+    request.receiverId = receiverId;
+    return request;
+  }
+
+  private static List<SkipNodeIdentity> ladderChain(Response response) {
+    if (response == null) {
+      return null;
+    }
+    // The destination is locked by another insertion.
+    if (response.locked) {
+      return Collections.singletonList(LookupTable.INVALID_NODE);
+    }
+    return ((IdentityListResponse) response).identities;
+  }
+
   public void announceNeighbor(String destinationAddress, int port, SkipNodeIdentity newNeighbor, int minLevel) {
     announceNeighbor(destinationAddress, port, null, newNeighbor, minLevel);
   }
@@ -485,12 +1443,67 @@ public class MiddleLayer {
    * @param minLevel           Integer representing the minimum level.
    */
   public void announceNeighbor(String destinationAddress, int port, Identifier receiverId, SkipNodeIdentity newNeighbor, int minLevel) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      callLocal(local, Guard.NONE, true, null, overlay -> {
+        overlay.announceNeighbor(newNeighbor, minLevel);
+        return null;
+      });
+      return;
+    }
     Request request = new AnnounceNeighborRequest(newNeighbor, minLevel);
     request.receiverId = receiverId;
     // Send the request through the underlay
     send(destinationAddress, port, request);
   }
 
+  /**
+   * Asynchronous variant of `announceNeighbor`.
+   *
+   * @param destinationAddress String value representing the destination address.
+   * @param port               Integer value representing the port.
+   * @param receiverId         receiver id.
+   * @param newNeighbor        skip node identity of the new neighbour.
+   * @param minLevel           Integer representing the minimum level.
+   * @return future completed once the neighbour is announced.
+   */
+  public CompletableFuture<Void> announceNeighborAsync(String destinationAddress, int port, Identifier receiverId, SkipNodeIdentity newNeighbor,
+                                                       int minLevel) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocalAsync(local, Guard.NONE, true, null, overlay -> {
+        overlay.announceNeighbor(newNeighbor, minLevel);
+        return null;
+      });
+    }
+    Request request = new AnnounceNeighborRequest(newNeighbor, minLevel);
+    request.receiverId = receiverId;
+    return sendAsync(destinationAddress, port, request).thenApply(r -> null);
+  }
+
+  /**
+   * Notifies an inserted node that the given node has released the lock it refused to hand over, see
+   * `SkipNodeInterface.lockReleased`.
+   *
+   * @param destinationAddress String value representing the destination address.
+   * @param port               Integer value representing the port.
+   * @param receiverId         receiver id.
+   * @param node               skip node identity of the node that released its lock.
+   * @return future completed once the notification is delivered.
+   */
+  public CompletableFuture<Void> notifyLockReleasedAsync(String destinationAddress, int port, Identifier receiverId, SkipNodeIdentity node) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocalAsync(local, Guard.NONE, true, null, overlay -> {
+        overlay.lockReleased(node);
+        return null;
+      });
+    }
+    Request request = new LockReleasedRequest(node);
+    request.receiverId = receiverId;
+    return sendAsync(destinationAddress, port, request).thenApply(r -> null);
+  }
+
   public boolean isAvailable(String destinationAddress, int port) {
     return isAvailable(destinationAddress, port, null);
   }
@@ -504,12 +1517,34 @@ public class MiddleLayer {
    * @return boolean representing if node is available or not.
    */
   public boolean isAvailable(String destinationAddress, int port, Identifier receiverId) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocal(local, Guard.NONE, true, null, SkipNodeInterface::isAvailable);
+    }
     Request request = new IsAvailableRequest();
     request.receiverId = receiverId;
     Response r = send(destinationAddress, port, request);
     return ((BooleanResponse) r).answer;
   }
 
+  /**
+   * Asynchronous variant of `isAvailable`.
+   *
+   * @param destinationAddress String value representing the destination address.
+   * @param port               Integer value representing the port.
+   * @param receiverId         receiver id.
+   * @return future of the boolean representing if node is available or not.
+   */
+  public CompletableFuture<Boolean> isAvailableAsync(String destinationAddress, int port, Identifier receiverId) {
+    SkipNodeInterface local = localOverlay(destinationAddress, port, receiverId);
+    if (local != null) {
+      return callLocalAsync(local, Guard.NONE, true, null, SkipNodeInterface::isAvailable);
+    }
+    Request request = new IsAvailableRequest();
+    request.receiverId = receiverId;
+    return sendAsync(destinationAddress, port, request).thenApply(r -> ((BooleanResponse) r).answer);
+  }
+
   public SkipNodeIdentity getLeftLadder(String destinationAddress, int port, int level, MembershipVector membershipVector) {
     return getLeftLadder(destinationAddress, port, null, level, membershipVector);
   }
@@ -615,7 +1650,20 @@ public class MiddleLayer {
    */
   // TODO: this should be with a timeout.
   public boolean terminate() {
+    this.ladderExpanders.shutdown();
     this.underlay.terminate();
     return true;
   }
+
+  /**
+   * Conditions under which an overlay accepts a call, mirroring the checks of `receive`.
+   */
+  private enum Guard {
+    // Always accepted.
+    NONE,
+    // Accepted once the overlay is available for lookups (i.e., already inserted.)
+    AVAILABLE,
+    // Accepted when the overlay is unlocked or locked by this middle layer.
+    UNLOCKED
+  }
 }
@@ -0,0 +1,246 @@
+package middlelayer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import underlay.Underlay;
+import underlay.packets.Request;
+import underlay.packets.Response;
+import underlay.packets.requests.BatchRequest;
+import underlay.packets.responses.BatchResponse;
+import underlay.packets.responses.BusyResponse;
+
+/**
+ * Coalesces the independent requests that are headed for the same peer within a short window into
+ * a single `BatchRequest`, so that they pay the per-message overhead of the underlay once. A batch
+ * is sent once its window expires or it holds `maxBatchSize` requests, whichever comes first; a
+ * batch of a single request is sent as is. A request whose sender waits for the response is sent
+ * right away with the batch collected so far, see `submitAndFlush`. A batch never grows beyond the
+ * maximum packet size of the underlay, so that over UDP it fits into a single datagram.
+ */
+public class RequestCoalescer {
+  private static final Logger logger = LogManager.getLogger(RequestCoalescer.class);
+
+  private final Underlay underlay;
+  private final int maxBatchSize;
+  // Maximum size in bytes of an encoded batch, Integer.MAX_VALUE if the underlay has no limit.
+  private final int maxBatchBytes;
+  // Size in bytes of an encoded batch without requests, -1 until it is first needed.
+  private volatile int envelopeBytes = -1;
+  // Runs the flush of a batch once its window expires.
+  private final Executor delayed;
+  // Maps address:port of a peer to the batch that is currently collecting requests for it.
+  private final ConcurrentHashMap<String, Batch> batches = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor for RequestCoalescer.
+   *
+   * @param underlay     the underlay the batches are sent through.
+   * @param windowMillis duration in milliseconds a batch collects requests before it is sent.
+   * @param maxBatchSize maximum number of requests in a batch.
+   */
+  public RequestCoalescer(Underlay underlay, long windowMillis, int maxBatchSize) {
+    if (windowMillis <= 0) {
+      throw new IllegalArgumentException("batch window must be positive: " + windowMillis);
+    }
+    if (maxBatchSize <= 0) {
+      throw new IllegalArgumentException("max batch size must be positive: " + maxBatchSize);
+    }
+    this.underlay = underlay;
+    this.maxBatchSize = maxBatchSize;
+    this.maxBatchBytes = underlay.getMaxPacketSize();
+    this.delayed = CompletableFuture.delayedExecutor(windowMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Adds the request to the batch of its peer.
+   *
+   * @param address address of the remote server.
+   * @param port    port of the remote server.
+   * @param request the request, with its sender information filled out.
+   * @return future of the response emitted by the remote server, completed with null if the batch
+   *     could not be delivered.
+   */
+  public CompletableFuture<Response> submit(String address, int port, Request request) {
+    return submit(address, port, request, false);
+  }
+
+  /**
+   * Adds the request to the batch of its peer and sends the batch right away, so that a sender that
+   * waits for the response does not wait out the window. The requests already collected for the
+   * peer go along with it.
+   *
+   * @param address address of the remote server.
+   * @param port    port of the remote server.
+   * @param request the request, with its sender information filled out.
+   * @return future of the response emitted by the remote server, completed with null if the batch
+   *     could not be delivered.
+   */
+  public CompletableFuture<Response> submitAndFlush(String address, int port, Request request) {
+    return submit(address, port, request, true);
+  }
+
+  private CompletableFuture<Response> submit(String address, int port, Request request, boolean flushNow) {
+    String peer = address + ":" + port;
+    int size = encodedSize(request);
+    if (size < 0 || size > maxBatchBytes - envelopeBytes(request)) {
+      // The request does not fit into a batch with any other request, send it alone.
+      return underlay.sendMessageAsync(address, port, request).exceptionally(e -> {
+        logger.warn("Could not send a request to " + peer, e);
+        return null;
+      });
+    }
+    CompletableFuture<Response> responseFuture = new CompletableFuture<>();
+    while (true) {
+      Batch batch = batches.computeIfAbsent(peer, k -> {
+        Batch fresh = new Batch(address, port);
+        fresh.bytes = envelopeBytes;
+        delayed.execute(() -> flush(peer, fresh));
+        return fresh;
+      });
+      boolean added;
+      synchronized (batch) {
+        if (batch.sealed) {
+          // The batch has just been sent, wait for the next one.
+          continue;
+        }
+        added = batch.bytes + size <= maxBatchBytes;
+        if (added) {
+          batch.requests.add(request);
+          batch.futures.add(responseFuture);
+          batch.bytes += size;
+          if (!flushNow && batch.requests.size() < maxBatchSize) {
+            return responseFuture;
+          }
+        } else {
+          // The request would not fit into the packet of the batch, it goes into the next one.
+          batch.sealed = true;
+        }
+      }
+      if (added) {
+        // The batch is full or the sender waits for the response, send it right away.
+        flush(peer, batch);
+        return responseFuture;
+      }
+      send(peer, batch);
+    }
+  }
+
+  /**
+   * Returns the size of the encoded request, or zero if the batches are not limited in size.
+   *
+   * @return the size in bytes, -1 if the request could not be encoded.
+   */
+  private int encodedSize(Request request) {
+    if (maxBatchBytes == Integer.MAX_VALUE) {
+      return 0;
+    }
+    try {
+      return underlay.getCodec().encode(request).length;
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Returns the size of an encoded batch without requests from the sender of the given request, or
+   * zero if the batches are not limited in size.
+   */
+  private int envelopeBytes(Request request) {
+    if (envelopeBytes < 0) {
+      BatchRequest empty = new BatchRequest(new ArrayList<>());
+      empty.senderAddress = request.senderAddress;
+      empty.senderPort = request.senderPort;
+      envelopeBytes = Math.max(encodedSize(empty), 0);
+    }
+    return envelopeBytes;
+  }
+
+  /**
+   * Sends the batch, unless it has already been sent.
+   *
+   * @param peer  address:port of the peer of the batch.
+   * @param batch the batch.
+   */
+  private void flush(String peer, Batch batch) {
+    synchronized (batch) {
+      if (batch.sealed) {
+        return;
+      }
+      batch.sealed = true;
+    }
+    send(peer, batch);
+  }
+
+  /**
+   * Sends a sealed batch.
+   *
+   * @param peer  address:port of the peer of the batch.
+   * @param batch the batch.
+   */
+  private void send(String peer, Batch batch) {
+    batches.remove(peer, batch);
+    if (batch.requests.isEmpty()) {
+      return;
+    }
+    if (batch.requests.size() == 1) {
+      underlay.sendMessageAsync(batch.address, batch.port, batch.requests.get(0)).whenComplete((response, e) -> {
+        if (e != null) {
+          logger.warn("Could not send a request to " + peer, e);
+        }
+        batch.futures.get(0).complete(e == null ? response : null);
+      });
+      return;
+    }
+    BatchRequest batchRequest = new BatchRequest(batch.requests);
+    batchRequest.senderAddress = underlay.getAddress();
+    batchRequest.senderPort = underlay.getPort();
+    underlay.sendMessageAsync(batch.address, batch.port, batchRequest).whenComplete((response, e) -> {
+      if (e != null) {
+        logger.warn("Could not send a batch of " + batch.futures.size() + " requests to " + peer, e);
+        batch.futures.forEach(future -> future.complete(null));
+        return;
+      }
+      if (response instanceof BusyResponse) {
+        // The peer was too busy to handle the batch, every request is sent again by the middle layer.
+        batch.futures.forEach(future -> future.complete(response));
+        return;
+      }
+      if (!(response instanceof BatchResponse) || ((BatchResponse) response).responses.size() != batch.futures.size()) {
+        logger.warn("Invalid response to a batch of " + batch.futures.size() + " requests: " + response);
+        batch.futures.forEach(future -> future.complete(null));
+        return;
+      }
+      List<Response> responses = ((BatchResponse) response).responses;
+      for (int i = 0; i < responses.size(); i++) {
+        batch.futures.get(i).complete(responses.get(i));
+      }
+    });
+  }
+
+  /**
+   * Represents the requests collected for a single peer.
+   */
+  private static class Batch {
+    private final String address;
+    private final int port;
+    private final ArrayList<Request> requests = new ArrayList<>();
+    private final List<CompletableFuture<Response>> futures = new ArrayList<>();
+    // Set once the batch is sent, after which no request can join it.
+    private boolean sealed = false;
+    // Upper bound of the size in bytes of the encoded batch.
+    private int bytes;
+
+    private Batch(String address, int port) {
+      this.address = address;
+      this.port = port;
+    }
+  }
+}
@@ -23,11 +23,22 @@ public class InsertionLock {
    * Represents the node that owns this insertion lock.
    */
   public SkipNodeIdentity owner;
+  // Called after the lock is released, null if nobody listens.
+  private volatile Runnable releaseListener;
 
   public InsertionLock(SkipNodeIdentity owner) {
     this.owner = owner;
   }
 
+  /**
+   * Sets the listener that is called every time the lock is released.
+   *
+   * @param releaseListener the listener, null to remove it.
+   */
+  public void setReleaseListener(Runnable releaseListener) {
+    this.releaseListener = releaseListener;
+  }
+
   /**
    * Starts insertion by acquiring the lock if its available.
    *
@@ -51,6 +62,7 @@ public class InsertionLock {
     // logger.debug().addInt("owner_num_id", this.owner.getIdentifier()).addMsg("ending insertion");
     if (holder == null) {
       locked.release();
+      released();
     }
   }
 
@@ -101,9 +113,17 @@ public class InsertionLock {
     }
     this.holder = null;
     locked.release();
+    released();
     return true;
   }
 
+  private void released() {
+    Runnable listener = releaseListener;
+    if (listener != null) {
+      listener.run();
+    }
+  }
+
   /**
    * neighbour instance.
    */
@@ -0,0 +1,212 @@
+package skipnode;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import lookup.LookupTable;
+import middlelayer.MiddleLayer;
+import model.identifier.Identifier;
+import model.identifier.MembershipVector;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Drives the searches of a node iteratively: instead of forwarding a search and waiting for the
+ * rest of the path, the originator asks every hop only for the next one and walks the path itself,
+ * so that no handler thread along the path is held by the search. An identifier search asks every
+ * hop for its next hop (see `SkipNodeInterface.nextHop`); a membership vector search runs the ladder
+ * expansion of the recursive search at the originator, asking the hops for their ladders. Every
+ * question to a hop is bounded by a timeout and asked again a limited number of times, after which
+ * the search fails.
+ */
+public class IterativeSearch {
+
+  /**
+   * Default duration in milliseconds a hop may take to answer. Covers the random backoff on a hop
+   * that is not available yet.
+   */
+  public static final long DEFAULT_HOP_TIMEOUT_MILLIS = 5000;
+  /**
+   * Default number of times a hop is asked again after it did not answer in time.
+   */
+  public static final int DEFAULT_HOP_RETRIES = 2;
+
+  private static final Logger logger = LogManager.getLogger(IterativeSearch.class);
+
+  private final MiddleLayer middleLayer;
+  private final long hopTimeoutMillis;
+  private final int hopRetries;
+  private final AtomicLong hops = new AtomicLong();
+  private final AtomicLong retries = new AtomicLong();
+
+  /**
+   * Constructs an iterative search with the default timeout and retries.
+   *
+   * @param middleLayer the middle layer of the originator.
+   */
+  public IterativeSearch(MiddleLayer middleLayer) {
+    this(middleLayer, DEFAULT_HOP_TIMEOUT_MILLIS, DEFAULT_HOP_RETRIES);
+  }
+
+  /**
+   * Constructor for IterativeSearch.
+   *
+   * @param middleLayer      the middle layer of the originator.
+   * @param hopTimeoutMillis duration in milliseconds a hop may take to answer.
+   * @param hopRetries       number of times a hop is asked again after it did not answer in time.
+   */
+  public IterativeSearch(MiddleLayer middleLayer, long hopTimeoutMillis, int hopRetries) {
+    if (hopTimeoutMillis <= 0) {
+      throw new IllegalArgumentException("hop timeout must be positive: " + hopTimeoutMillis);
+    }
+    if (hopRetries < 0) {
+      throw new IllegalArgumentException("hop retries must be non-negative: " + hopRetries);
+    }
+    this.middleLayer = middleLayer;
+    this.hopTimeoutMillis = hopTimeoutMillis;
+    this.hopRetries = hopRetries;
+  }
+
+  /**
+   * Searches for the given identifier, starting at the originator.
+   *
+   * @param origin           identity of the originator.
+   * @param targetIdentifier the target identifier.
+   * @return the result of the search as in `SkipNodeInterface.searchByIdentifier`, or null if a hop
+   *     did not answer.
+   */
+  public SkipNodeIdentity searchByIdentifier(SkipNodeIdentity origin, Identifier targetIdentifier) {
+    SkipNodeIdentity current = origin;
+    while (true) {
+      SkipNodeIdentity hop = current;
+      SkipNodeIdentity next = ask(hop, () -> middleLayer.nextHopAsync(hop.getAddress(), hop.getPort(), hop.getIdentifier(), targetIdentifier));
+      if (next == null) {
+        return null;
+      }
+      // The search ends at the node that has no next hop.
+      if (next.equals(current)) {
+        return current;
+      }
+      hops.incrementAndGet();
+      current = next;
+    }
+  }
+
+  /**
+   * Searches for the given membership vector, starting at the originator on the given level. Mirrors
+   * `SkipNode.searchByMembershipVector(MembershipVector, int)`, except that climbing a ladder moves
+   * the search to the ladder at the originator rather than forwarding it.
+   *
+   * @param origin identity of the originator.
+   * @param target the target membership vector.
+   * @param level  the level the search starts at.
+   * @return the node with the membership vector most similar to the target, or null if a hop did not
+   *     answer.
+   */
+  public SearchResult searchByMembershipVector(SkipNodeIdentity origin, MembershipVector target, int level) {
+    SkipNodeIdentity current = origin;
+    while (true) {
+      if (current.getMemVec().equals(target)) {
+        return new SearchResult(current);
+      }
+      SkipNodeIdentity left = current;
+      SkipNodeIdentity right = current;
+      SkipNodeIdentity buffer = current;
+      SkipNodeIdentity ladder = null;
+      // Expand the search window on the level until a ladder is found either on the right or the left.
+      while (ladder == null && target.commonPrefix(left.getMemVec()) <= level && target.commonPrefix(right.getMemVec()) <= level) {
+        if (left.getMemVec().equals(target)) {
+          return new SearchResult(left);
+        }
+        if (right.getMemVec().equals(target)) {
+          return new SearchResult(right);
+        }
+        if (!left.equals(LookupTable.EMPTY_NODE)) {
+          buffer = left;
+          left = findLadder(left, level, 0, target);
+          if (left == null) {
+            return null;
+          }
+        }
+        if (!right.equals(LookupTable.EMPTY_NODE)) {
+          buffer = right;
+          right = findLadder(right, level, 1, target);
+          if (right == null) {
+            return null;
+          }
+        }
+        // Try to climb up on the either ladder.
+        if (right.isNotEmpty() && target.commonPrefix(right.getMemVec()) > level) {
+          ladder = right;
+        } else if (left.isNotEmpty() && target.commonPrefix(left.getMemVec()) > level) {
+          ladder = left;
+        } else if (left.isEmpty() && right.isEmpty()) {
+          return new SearchResult(buffer);
+        }
+      }
+      if (ladder == null) {
+        return new SearchResult(buffer);
+      }
+      hops.incrementAndGet();
+      level = target.commonPrefix(ladder.getMemVec());
+      current = ladder;
+    }
+  }
+
+  /**
+   * Returns the number of hops the searches have moved on so far.
+   *
+   * @return number of hops.
+   */
+  public long getHops() {
+    return hops.get();
+  }
+
+  /**
+   * Returns the number of times a hop was asked again after it did not answer in time.
+   *
+   * @return number of retries.
+   */
+  public long getRetries() {
+    return retries.get();
+  }
+
+  private SkipNodeIdentity findLadder(SkipNodeIdentity node, int level, int direction, MembershipVector target) {
+    return ask(node, () -> middleLayer.findLadderAsync(node.getAddress(), node.getPort(), node.getIdentifier(), level, direction, target));
+  }
+
+  /**
+   * Asks a hop a question, asking again while it does not answer within the hop timeout.
+   *
+   * @param hop      the hop.
+   * @param question sends the question to the hop.
+   * @return the answer, or null if the hop did not answer.
+   */
+  private SkipNodeIdentity ask(SkipNodeIdentity hop, Supplier<CompletableFuture<SkipNodeIdentity>> question) {
+    for (int trial = 0; trial <= hopRetries; trial++) {
+      if (trial > 0) {
+        retries.incrementAndGet();
+      }
+      try {
+        SkipNodeIdentity answer = question.get().get(hopTimeoutMillis, TimeUnit.MILLISECONDS);
+        if (answer != null) {
+          return answer;
+        }
+        logger.debug("hop " + hop.getIdentifier() + " could not be reached");
+      } catch (TimeoutException e) {
+        logger.debug("hop " + hop.getIdentifier() + " did not answer within " + hopTimeoutMillis + " ms");
+      } catch (ExecutionException e) {
+        logger.debug("hop " + hop.getIdentifier() + " failed to answer", e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
+      }
+    }
+    logger.error("hop " + hop.getIdentifier() + " did not answer after " + (hopRetries + 1) + " trials");
+    return null;
+  }
+}
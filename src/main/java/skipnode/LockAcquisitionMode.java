@@ -0,0 +1,25 @@
+package skipnode;
+
+/**
+ * Denotes how a joining node acquires the locks of its neighbors on all the levels before linking
+ * itself to them. See `SkipNode.acquireNeighborLocks`.
+ */
+public enum LockAcquisitionMode {
+  /**
+   * The levels are climbed one at a time, and on every level the left and the right neighbor are
+   * locked and asked for their ladders one after the other.
+   */
+  SEQUENTIAL,
+  /**
+   * The left and the right side are handled at once, and the ladders of a level are found while the
+   * locks of the lower levels are still being acquired. The ladders found before the lock of the
+   * neighbor they were found from was held are found again once all the locks are held.
+   */
+  PIPELINED,
+  /**
+   * The neighbors of each side on all the levels are found with a single request to the 0th level
+   * neighbor, which forwards it along the ladders, and are locked at once. The neighbors are found
+   * again once all the locks are held.
+   */
+  CHAINED
+}
@@ -0,0 +1,123 @@
+package skipnode;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lookup.LookupTable;
+import model.identifier.Identifier;
+
+/**
+ * Caches the identities of the neighbors of a skip node, so that the node can answer
+ * `getLeftNode`/`getRightNode` without asking the neighbor for its identity again. The cache is
+ * filled with the identities the node links into its lookup table and with the results of the
+ * explicit identity refreshes. A cached identity is the latest one the node has learned, so it is
+ * answered in place of a lookup table entry with the same identifier, even if the entry is older. An
+ * identity is dropped once it is no longer in the lookup table.
+ *
+ * <p>The version of the cache grows on every change, and each cached identity keeps the version it
+ * was cached at. A caller that read the cache at some version can tell whether the identity of a
+ * node has changed or been dropped since, see `isStale`, and a refresh that was started at some
+ * version does not overwrite the identities cached after it, see `refresh`.
+ */
+public class NeighborIdentityCache {
+
+  private final ConcurrentHashMap<Identifier, Entry> identities = new ConcurrentHashMap<>();
+  private final AtomicLong version = new AtomicLong();
+
+  /**
+   * Returns the cached identity of the node with the given identifier.
+   *
+   * @param identifier identifier of the node, e.g., of a lookup table entry.
+   * @return the latest identity of the node, or null if it is not cached.
+   */
+  public SkipNodeIdentity get(Identifier identifier) {
+    Entry entry = identities.get(identifier);
+    return entry == null ? null : entry.identity;
+  }
+
+  /**
+   * Caches the identity of a neighbor.
+   *
+   * @param identity the identity reported by the neighbor.
+   */
+  public void put(SkipNodeIdentity identity) {
+    if (!isCacheable(identity)) {
+      return;
+    }
+    identities.compute(identity.getIdentifier(), (id, entry) -> entry != null && entry.identity.equals(identity)
+        ? entry
+        : new Entry(identity, version.incrementAndGet()));
+  }
+
+  /**
+   * Caches the refreshed identity of a neighbor, unless its cached identity has changed since the
+   * given version, in which case the cache already holds a newer state of the neighbor.
+   *
+   * @param identity the identity reported by the neighbor.
+   * @param since    the version of the cache at the time the refresh was started.
+   * @return true iff the refreshed identity is cached.
+   */
+  public boolean refresh(SkipNodeIdentity identity, long since) {
+    if (!isCacheable(identity)) {
+      return false;
+    }
+    Entry refreshed = identities.compute(identity.getIdentifier(), (id, entry) -> entry != null && (entry.version > since || entry.identity.equals(identity))
+        ? entry
+        : new Entry(identity, version.incrementAndGet()));
+    return refreshed.identity.equals(identity);
+  }
+
+  /**
+   * Drops the cached identity of a node.
+   *
+   * @param identifier identifier of the node.
+   */
+  public void remove(Identifier identifier) {
+    if (identities.remove(identifier) != null) {
+      version.incrementAndGet();
+    }
+  }
+
+  /**
+   * Returns whether the cached identity of a node has changed or been dropped since the given
+   * version.
+   *
+   * @param identifier identifier of the node.
+   * @param since      a version of the cache the caller has read before.
+   * @return true iff the node is no longer cached or its identity was cached after the version.
+   */
+  public boolean isStale(Identifier identifier, long since) {
+    Entry entry = identities.get(identifier);
+    return entry == null || entry.version > since;
+  }
+
+  /**
+   * Returns the version of the cache, which grows with every change.
+   *
+   * @return the current version of the cache.
+   */
+  public long getVersion() {
+    return version.get();
+  }
+
+  public int size() {
+    return identities.size();
+  }
+
+  private static boolean isCacheable(SkipNodeIdentity identity) {
+    return identity != null && !identity.equals(LookupTable.EMPTY_NODE) && !identity.equals(LookupTable.INVALID_NODE);
+  }
+
+  /**
+   * A cached identity along with the version of the cache it was cached at.
+   */
+  private static class Entry {
+    private final SkipNodeIdentity identity;
+    private final long version;
+
+    private Entry(SkipNodeIdentity identity, long version) {
+      this.identity = identity;
+      this.version = version;
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package skipnode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import lookup.LookupTable;
+import model.identifier.Identifier;
+
+/**
+ * Remembers the nodes found by the earlier identifier searches that went through a skip node, so
+ * that a later search for a nearby identifier can jump straight to one of them instead of routing
+ * through the lookup table level by level. A cached node is used for a search only when it lies
+ * between the next hop of the greedy routing and the target, i.e., on the same side of the target as
+ * the searching node, so that the search ends at the same node as the greedy routing would. The
+ * cache is bounded, the least recently used nodes are forgotten first. A node that turns out to be
+ * unreachable should be invalidated.
+ */
+public class RouteCache {
+
+  /**
+   * Default maximum number of nodes kept in the cache.
+   */
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  private final int capacity;
+  // Access order, so that the least recently used node is the eldest.
+  private final LinkedHashMap<Identifier, SkipNodeIdentity> recent;
+  // The same nodes, ordered by their identifiers to find the one closest to a target.
+  private final TreeMap<Identifier, SkipNodeIdentity> ordered = new TreeMap<>(Identifier::comparedTo);
+  private long hits;
+  private long misses;
+  private long staleEntries;
+
+  /**
+   * Constructor for RouteCache.
+   *
+   * @param capacity maximum number of nodes kept in the cache.
+   */
+  public RouteCache(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    }
+    this.capacity = capacity;
+    this.recent = new LinkedHashMap<Identifier, SkipNodeIdentity>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Identifier, SkipNodeIdentity> eldest) {
+        if (size() > RouteCache.this.capacity) {
+          ordered.remove(eldest.getKey());
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Returns the cached node closest to the target among the ones between the given bound and the
+   * target. Searching to the right, the node is the greatest one not greater than the target;
+   * searching to the left, it is the least one not less than the target.
+   *
+   * @param target the target identifier of the search.
+   * @param bound  identifier of the next hop of the greedy routing, the node must be strictly beyond
+   *               it towards the target.
+   * @param right  whether the search goes to the right, i.e., the target is greater than the bound.
+   * @return the cached node, or null if there is no node between the bound and the target.
+   */
+  public synchronized SkipNodeIdentity shortcut(Identifier target, Identifier bound, boolean right) {
+    Map.Entry<Identifier, SkipNodeIdentity> closest = right ? ordered.floorEntry(target) : ordered.ceilingEntry(target);
+    if (closest == null || (right ? !closest.getKey().isGreaterThan(bound) : !closest.getKey().isLessThan(bound))) {
+      misses++;
+      return null;
+    }
+    hits++;
+    // Refresh the position of the node in the access order.
+    return recent.get(closest.getKey());
+  }
+
+  /**
+   * Caches a node found by a search.
+   *
+   * @param identity identity of the node.
+   */
+  public synchronized void put(SkipNodeIdentity identity) {
+    if (identity == null || identity.equals(LookupTable.EMPTY_NODE) || identity.equals(LookupTable.INVALID_NODE)) {
+      return;
+    }
+    recent.put(identity.getIdentifier(), identity);
+    ordered.put(identity.getIdentifier(), identity);
+  }
+
+  /**
+   * Forgets a node that turned out to be stale, if it is still the cached one.
+   *
+   * @param identity identity of the node.
+   */
+  public synchronized void invalidate(SkipNodeIdentity identity) {
+    if (recent.remove(identity.getIdentifier(), identity)) {
+      ordered.remove(identity.getIdentifier());
+      staleEntries++;
+    }
+  }
+
+  public synchronized int size() {
+    return recent.size();
+  }
+
+  /**
+   * Returns the number of searches that were given a cached node.
+   *
+   * @return number of hits.
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * Returns the number of searches that found no cached node beyond the next hop.
+   *
+   * @return number of misses.
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Returns the number of cached nodes that turned out to be stale.
+   *
+   * @return number of stale entries.
+   */
+  public synchronized long getStaleEntries() {
+    return staleEntries;
+  }
+
+  /**
+   * Returns the fraction of the searches that were given a cached node.
+   *
+   * @return the hit rate, zero if the cache has not been asked yet.
+   */
+  public synchronized double getHitRate() {
+    long lookups = hits + misses;
+    return lookups == 0 ? 0 : (double) hits / lookups;
+  }
+}
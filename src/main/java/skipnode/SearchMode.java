@@ -0,0 +1,22 @@
+package skipnode;
+
+/**
+ * Denotes how a search travels through the skip graph.
+ */
+public enum SearchMode {
+  /**
+   * Every hop forwards the search to the next one and waits for the result, which travels back along
+   * the search path.
+   */
+  RECURSIVE,
+  /**
+   * The originator asks every hop for the next one and drives the search itself, so that no hop waits
+   * on the rest of the path. See `IterativeSearch`.
+   */
+  ITERATIVE,
+  /**
+   * Every hop forwards the search to the next one without waiting for the result, and the last hop
+   * replies directly to the originator.
+   */
+  FORWARDING
+}
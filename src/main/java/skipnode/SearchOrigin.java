@@ -0,0 +1,29 @@
+package skipnode;
+
+import java.io.Serializable;
+
+/**
+ * Identifies a search in the forwarding mode, where the hops forward the search without waiting for
+ * its result and the last hop replies directly to the middle layer of the originator, which matches
+ * the reply to the search by its ID.
+ */
+public class SearchOrigin implements Serializable {
+
+  public final String address;
+  public final int port;
+  // Unique among the searches originated through the same middle layer.
+  public final long searchId;
+
+  /**
+   * Constructor for SearchOrigin.
+   *
+   * @param address  address of the middle layer of the originator.
+   * @param port     port of the middle layer of the originator.
+   * @param searchId ID of the search.
+   */
+  public SearchOrigin(String address, int port, long searchId) {
+    this.address = address;
+    this.port = port;
+    this.searchId = searchId;
+  }
+}
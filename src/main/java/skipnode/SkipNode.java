@@ -1,11 +1,21 @@
 package skipnode;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import lookup.LookupTable;
+import lookup.LookupTableSnapshot;
 import middlelayer.MiddleLayer;
 import model.identifier.Identifier;
 import model.identifier.MembershipVector;
@@ -25,22 +35,71 @@ public class SkipNode implements SkipNodeInterface {
 
   private final LookupTable lookupTable;
   private final InsertionLock insertionLock;
+  // Identities of the neighbors, null if caching is disabled.
+  private final NeighborIdentityCache identityCache;
+  // Nodes found by the earlier searches, null if route caching is disabled.
+  private final RouteCache routeCache;
+  // Number of times this node has forwarded a search, i.e., the hops it has added to the searches.
+  private final AtomicLong searchForwards = new AtomicLong();
   private final LinkedBlockingDeque<InsertionLock.NeighborInstance> ownedLocks = new LinkedBlockingDeque<>();
+  // Inserted nodes this node refused to hand over its lock to, notified once the lock is released.
+  private final Set<SkipNodeIdentity> refusedRequesters = ConcurrentHashMap.newKeySet();
   private MiddleLayer middleLayer;
+  // Drives the iterative searches originated by this node.
+  private IterativeSearch iterativeSearch;
+  private LockAcquisitionMode lockAcquisitionMode = LockAcquisitionMode.SEQUENTIAL;
+  // How `findLadder` walks along a level, either iterative or forwarding.
+  private SearchMode levelWalkMode = SearchMode.ITERATIVE;
+  private volatile boolean lockReleaseNotifications = false;
+  // Completed once a node that refused to hand over its lock during the current insertion attempt
+  // releases it.
+  private volatile CompletableFuture<Void> refusedLockRelease = new CompletableFuture<>();
   private boolean inserted = false;
   // Incremented after each lookup table update.
   private int version = 0;
 
   /**
-   * Constructor for SkipNode.
+   * Constructs a skip node that caches the identities of its neighbors.
    *
    * @param identity    Skip Graph identity of the node.
    * @param lookupTable Lookup table instance of the node.
    */
   public SkipNode(SkipNodeIdentity identity, LookupTable lookupTable) {
+    this(identity, lookupTable, true);
+  }
+
+  /**
+   * Constructor for SkipNode.
+   *
+   * @param identity           Skip Graph identity of the node.
+   * @param lookupTable        Lookup table instance of the node.
+   * @param cacheIdentities    whether `getLeftNode`/`getRightNode` answer from the cached identities
+   *                           of the neighbors instead of asking the neighbors for them.
+   */
+  public SkipNode(SkipNodeIdentity identity, LookupTable lookupTable, boolean cacheIdentities) {
+    this(identity, lookupTable, cacheIdentities, 0);
+  }
+
+  /**
+   * Constructor for SkipNode.
+   *
+   * @param identity           Skip Graph identity of the node.
+   * @param lookupTable        Lookup table instance of the node.
+   * @param cacheIdentities    whether `getLeftNode`/`getRightNode` answer from the cached identities
+   *                           of the neighbors instead of asking the neighbors for them.
+   * @param routeCacheCapacity maximum number of nodes the identifier searches may jump to (see
+   *                           `RouteCache`), zero disables route caching.
+   */
+  public SkipNode(SkipNodeIdentity identity, LookupTable lookupTable, boolean cacheIdentities, int routeCacheCapacity) {
+    if (routeCacheCapacity < 0) {
+      throw new IllegalArgumentException("route cache capacity must be non-negative: " + routeCacheCapacity);
+    }
     this.identity = identity;
     this.lookupTable = lookupTable;
+    this.identityCache = cacheIdentities ? new NeighborIdentityCache() : null;
+    this.routeCache = routeCacheCapacity > 0 ? new RouteCache(routeCacheCapacity) : null;
     this.insertionLock = new InsertionLock(identity);
+    insertionLock.setReleaseListener(this::insertionLockReleased);
     insertionLock.startInsertion();
   }
 
@@ -48,6 +107,34 @@ public class SkipNode implements SkipNodeInterface {
     return lookupTable;
   }
 
+  /**
+   * Returns the cache of the identities of the neighbors.
+   *
+   * @return the cache, or null if caching is disabled.
+   */
+  public NeighborIdentityCache getIdentityCache() {
+    return identityCache;
+  }
+
+  /**
+   * Returns the cache of the nodes found by the earlier searches.
+   *
+   * @return the cache, or null if route caching is disabled.
+   */
+  public RouteCache getRouteCache() {
+    return routeCache;
+  }
+
+  /**
+   * Returns the number of times this node has forwarded an identifier search to another node. The
+   * sum over all the nodes divided by the number of searches is the average hop count.
+   *
+   * @return number of forwarded searches.
+   */
+  public long getSearchForwards() {
+    return searchForwards.get();
+  }
+
   public SkipNodeIdentity getIdentity() {
     return this.identity;
   }
@@ -59,6 +146,64 @@ public class SkipNode implements SkipNodeInterface {
   @Override
   public void setMiddleLayer(MiddleLayer middleLayer) {
     this.middleLayer = middleLayer;
+    this.iterativeSearch = new IterativeSearch(middleLayer);
+  }
+
+  /**
+   * Returns the driver of the iterative searches originated by this node.
+   *
+   * @return the iterative search, or null if the middle layer is not set yet.
+   */
+  public IterativeSearch getIterativeSearch() {
+    return iterativeSearch;
+  }
+
+  /**
+   * Sets the per-hop timeout and number of retries of the iterative searches originated by this node.
+   *
+   * @param hopTimeoutMillis duration in milliseconds a hop may take to answer.
+   * @param hopRetries       number of times a hop is asked again after it did not answer in time.
+   */
+  public void setHopPolicy(long hopTimeoutMillis, int hopRetries) {
+    if (middleLayer == null) {
+      throw new IllegalStateException("middle layer must be set");
+    }
+    this.iterativeSearch = new IterativeSearch(middleLayer, hopTimeoutMillis, hopRetries);
+  }
+
+  /**
+   * Sets how this node acquires the locks of its neighbors when it is inserted.
+   *
+   * @param lockAcquisitionMode the lock acquisition mode, sequential by default.
+   */
+  public void setLockAcquisitionMode(LockAcquisitionMode lockAcquisitionMode) {
+    this.lockAcquisitionMode = lockAcquisitionMode;
+  }
+
+  /**
+   * Sets how `findLadder` walks along a level. In the iterative mode this node asks every node on the
+   * way for its neighbor, in the forwarding mode the walk is forwarded from node to node and the ladder
+   * replies directly to this node.
+   *
+   * @param levelWalkMode the level walk mode, iterative by default.
+   */
+  public void setLevelWalkMode(SearchMode levelWalkMode) {
+    if (levelWalkMode == SearchMode.RECURSIVE) {
+      throw new IllegalArgumentException("level walks are either iterative or forwarding");
+    }
+    this.levelWalkMode = levelWalkMode;
+  }
+
+  /**
+   * Sets whether the inserted nodes this node refuses to hand over its lock to are notified once the
+   * lock is released, and whether this node, when it fails to acquire the locks of its neighbors,
+   * tries again as soon as it is notified instead of after a random backoff. The backoff still bounds
+   * the wait.
+   *
+   * @param lockReleaseNotifications whether the notifications are enabled, false by default.
+   */
+  public void setLockReleaseNotifications(boolean lockReleaseNotifications) {
+    this.lockReleaseNotifications = lockReleaseNotifications;
   }
 
   /**
@@ -86,25 +231,38 @@ public class SkipNode implements SkipNodeInterface {
 
       // First, find my 0-level neighbor by making an identifier search through the introducer.
       SkipNodeIdentity searchResult = middleLayer.searchByIdentifier(this.identity.getIdentifier(), introducerAddress, introducerPort);
-      // Get my 0-level left and right neighbors.
-      if (this.identity.getIdentifier().comparedTo(searchResult.getIdentifier()) < 0) {
-        right = searchResult;
-        left = middleLayer.getLeftNeighborOf(right.getAddress(), right.getPort(), right.getIdentifier(), 0);
+      CompletableFuture<Void> lockRelease = new CompletableFuture<>();
+      refusedLockRelease = lockRelease;
+      if (searchResult == null) {
+        // The search could not reach a node on its way, which is handled like a failed lock acquisition.
+        logger.debug("identifier: " + this.getIdentity().getIdentifier().toString() + " could not find its 0-level neighbors, backing off");
       } else {
-        left = searchResult;
-        right = middleLayer.getRightNeighborOf(left.getAddress(), left.getPort(), left.getIdentifier(), 0);
-      }
-      logger.debug("identifier: " + this.identity.getIdentifier().toString() + " has found its 0-level neighbors: " + " neighbor_left_identifier: "
-                       + left.getIdentifier() + " neighbor_right_identifier: " + right.getIdentifier());
-
-      if (acquireNeighborLocks(left, right)) {
-        break;
+        // Get my 0-level left and right neighbors.
+        if (this.identity.getIdentifier().comparedTo(searchResult.getIdentifier()) < 0) {
+          right = searchResult;
+          left = middleLayer.getLeftNeighborOf(right.getAddress(), right.getPort(), right.getIdentifier(), 0);
+        } else {
+          left = searchResult;
+          right = middleLayer.getRightNeighborOf(left.getAddress(), left.getPort(), left.getIdentifier(), 0);
+        }
+        logger.debug("identifier: " + this.identity.getIdentifier().toString() + " has found its 0-level neighbors: " + " neighbor_left_identifier: "
+                         + left.getIdentifier() + " neighbor_right_identifier: " + right.getIdentifier());
+        if (acquireNeighborLocks(left, right)) {
+          break;
+        }
+        // When we fail, backoff for a random interval before trying again.
+        logger.debug("identifier: " + this.getIdentity().getIdentifier().toString() + " could not acquire the locks, backing off");
       }
-      // When we fail, backoff for a random interval before trying again.
-      logger.debug("identifier: " + this.getIdentity().getIdentifier().toString() + " could not acquire the locks, backing off");
       int sleepTime = (int) (Math.random() * 2000);
       try {
-        Thread.sleep(sleepTime);
+        if (lockReleaseNotifications) {
+          // Try again as soon as a neighbor that refused to hand over its lock releases it.
+          lockRelease.get(sleepTime, TimeUnit.MILLISECONDS);
+        } else {
+          Thread.sleep(sleepTime);
+        }
+      } catch (TimeoutException | ExecutionException e) {
+        // The backoff is over.
       } catch (InterruptedException e) {
         logger.fatal("could not backoff, " + "sleepTime: " + sleepTime, e);
       }
@@ -115,20 +273,23 @@ public class SkipNode implements SkipNodeInterface {
                                                                                                                               .collect(Collectors.joining(
                                                                                                                                   ", ")));
 
-    // At this point, we should have acquired all of our neighbors. Now, it is time to add them.
+    // At this point, we should have acquired all of our neighbors. Now, it is time to add them. The
+    // neighbors are announced to concurrently.
+    List<CompletableFuture<Void>> announcements = new ArrayList<>();
     for (InsertionLock.NeighborInstance n : ownedLocks) {
       // Insert the neighbor into my own table.
       insertIntoTable(n.node, n.minLevel);
       // Let the neighbor insert me in its table.
-      middleLayer.announceNeighbor(n.node.getAddress(), n.node.getPort(), n.node.getIdentifier(), getIdentity(), n.minLevel);
+      announcements.add(middleLayer.announceNeighborAsync(n.node.getAddress(), n.node.getPort(), n.node.getIdentifier(), getIdentity(), n.minLevel));
     }
+    CompletableFuture.allOf(announcements.toArray(new CompletableFuture<?>[0])).join();
     // Now, we release all the locks.
     List<InsertionLock.NeighborInstance> toRelease = new ArrayList<>();
     ownedLocks.drainTo(toRelease);
-    // Release the locks.
-    toRelease.forEach(n -> {
-      middleLayer.unlock(n.node.getAddress(), n.node.getPort(), n.node.getIdentifier(), getIdentity());
-    });
+    // Release the locks concurrently.
+    CompletableFuture.allOf(toRelease.stream()
+                                     .map(n -> middleLayer.unlockAsync(n.node.getAddress(), n.node.getPort(), n.node.getIdentifier(), getIdentity()))
+                                     .toArray(CompletableFuture<?>[]::new)).join();
     // Complete the insertion.
     inserted = true;
     logger.debug("identifier: " + this.identity.getIdentifier() + " was inserted");
@@ -146,13 +307,20 @@ public class SkipNode implements SkipNodeInterface {
   }
 
   /**
-   * ... If not all the locks are acquired, the acquired locks are released.
+   * ... If not all the locks are acquired, the acquired locks are released. The locks are acquired
+   * as set by `setLockAcquisitionMode`.
    *
    * @param left  0th level left neighbor.
    * @param right 0th level right neighbor.
    * @return true iff all the locks were acquired.
    */
   public boolean acquireNeighborLocks(SkipNodeIdentity left, SkipNodeIdentity right) {
+    if (lockAcquisitionMode == LockAcquisitionMode.PIPELINED) {
+      return acquireNeighborLocksPipelined(left, right);
+    }
+    if (lockAcquisitionMode == LockAcquisitionMode.CHAINED) {
+      return acquireNeighborLocksChained(left, right);
+    }
     // Try to acquire the locks for the left and right neighbors at all the levels.
     SkipNodeIdentity leftNeighbor = left;
     SkipNodeIdentity rightNeighbor = right;
@@ -232,6 +400,259 @@ public class SkipNode implements SkipNodeInterface {
     return allAcquired;
   }
 
+  /**
+   * Pipelined variant of `acquireNeighborLocks`. The locks and the ladders of both sides are asked
+   * for at once, and the climb moves on to the next level as soon as the ladders are found, without
+   * waiting for the locks, so that it takes a single round trip per level. A ladder found before the
+   * lock of the neighbor it was found from was held may have changed in the meantime, so those are
+   * found again at once after all the locks are held, and the acquisition fails if any has changed.
+   *
+   * @param left  0th level left neighbor.
+   * @param right 0th level right neighbor.
+   * @return true iff all the locks were acquired.
+   */
+  private boolean acquireNeighborLocksPipelined(SkipNodeIdentity left, SkipNodeIdentity right) {
+    // The lock acquisitions, in the order the sequential climb makes them.
+    List<PendingLock> pendingLocks = new ArrayList<>();
+    // The ladders that are found again once all the locks are held.
+    List<LadderStep> unlockedSteps = new ArrayList<>();
+    // Completed when a lock is refused, so that the climb does not wait for the ladders of a neighbor
+    // that is locked by another insertion.
+    CompletableFuture<Void> refused = new CompletableFuture<>();
+    SkipNodeIdentity leftNeighbor = left;
+    SkipNodeIdentity rightNeighbor = right;
+    PendingLock leftLock = null;
+    PendingLock rightLock = null;
+    boolean allAcquired = true;
+    boolean newLeftNeighbor = true;
+    boolean newRightNeighbor = true;
+    for (int level = 0; level < lookupTable.getNumLevels(); level++) {
+      if (leftNeighbor.equals(LookupTable.EMPTY_NODE) && rightNeighbor.equals(LookupTable.EMPTY_NODE)) {
+        break;
+      }
+      if (newLeftNeighbor && !leftNeighbor.equals(LookupTable.EMPTY_NODE)) {
+        leftLock = acquireAsync(leftNeighbor, level, refused);
+        pendingLocks.add(leftLock);
+      }
+      if (newRightNeighbor && !rightNeighbor.equals(LookupTable.EMPTY_NODE)) {
+        rightLock = acquireAsync(rightNeighbor, level, refused);
+        pendingLocks.add(rightLock);
+      }
+      // The ladders found from a neighbor that is already locked cannot change until the insertion ends.
+      boolean leftLocked = leftLock != null && leftLock.isHeld();
+      boolean rightLocked = rightLock != null && rightLock.isHeld();
+      CompletableFuture<SkipNodeIdentity> leftLadderFuture = findLadderAsync(leftNeighbor, level, 0);
+      CompletableFuture<SkipNodeIdentity> rightLadderFuture = findLadderAsync(rightNeighbor, level, 1);
+      CompletableFuture.anyOf(CompletableFuture.allOf(leftLadderFuture, rightLadderFuture), refused).join();
+      if (refused.isDone()) {
+        allAcquired = false;
+        break;
+      }
+      SkipNodeIdentity leftLadder = leftLadderFuture.join();
+      SkipNodeIdentity rightLadder = rightLadderFuture.join();
+      if (!leftNeighbor.equals(LookupTable.EMPTY_NODE) && !leftLocked) {
+        unlockedSteps.add(new LadderStep(leftNeighbor, level, 0, leftLadder));
+      }
+      if (!rightNeighbor.equals(LookupTable.EMPTY_NODE) && !rightLocked) {
+        unlockedSteps.add(new LadderStep(rightNeighbor, level, 1, rightLadder));
+      }
+      newLeftNeighbor = !leftLadder.equals(leftNeighbor);
+      newRightNeighbor = !rightLadder.equals(rightNeighbor);
+      leftNeighbor = leftLadder;
+      rightNeighbor = rightLadder;
+      // A potential neighbor is locked by another insertion.
+      if (leftLadder.equals(LookupTable.INVALID_NODE) || rightLadder.equals(LookupTable.INVALID_NODE)) {
+        allAcquired = false;
+        break;
+      }
+    }
+    // Wait for the acquisitions that are still in flight, so that every acquired lock is released on a failure.
+    for (PendingLock lock : pendingLocks) {
+      if (lock.acquired.join()) {
+        ownedLocks.add(new InsertionLock.NeighborInstance(lock.node, lock.level));
+      } else {
+        allAcquired = false;
+      }
+    }
+    if (allAcquired) {
+      List<CompletableFuture<Boolean>> checks = new ArrayList<>();
+      // The 0th level neighbors were found before they were locked as well.
+      checks.add(areAdjacentAsync(left, right));
+      unlockedSteps.forEach(step -> checks.add(findLadderAsync(step.neighbor, step.level, step.direction).thenApply(step.ladder::equals)));
+      allAcquired = checks.stream().allMatch(CompletableFuture::join);
+      if (!allAcquired) {
+        logger.debug("identifier: " + this.identity.getIdentifier() + " has found a neighbor that changed before it was locked");
+      }
+    }
+    logger.debug("identifier: " + this.identity.getIdentifier() + " has completed proposal phase");
+    if (!allAcquired) {
+      releaseOwnedLocks();
+    }
+    return allAcquired;
+  }
+
+  /**
+   * Chained variant of `acquireNeighborLocks`. The neighbors of each side on all the levels are found
+   * with a single request to the 0th level neighbor (see `findLadderChain`), and their locks are asked
+   * for at once. The neighbors may change before they are locked, so they are found again after all
+   * the locks are held, and the acquisition fails if any of them has changed.
+   *
+   * @param left  0th level left neighbor.
+   * @param right 0th level right neighbor.
+   * @return true iff all the locks were acquired.
+   */
+  private boolean acquireNeighborLocksChained(SkipNodeIdentity left, SkipNodeIdentity right) {
+    CompletableFuture<List<SkipNodeIdentity>> leftChain = findNeighborsAsync(left, 0);
+    CompletableFuture<List<SkipNodeIdentity>> rightChain = findNeighborsAsync(right, 1);
+    List<SkipNodeIdentity> leftNeighbors = leftChain.join();
+    List<SkipNodeIdentity> rightNeighbors = rightChain.join();
+    // A potential neighbor is locked by another insertion.
+    boolean allAcquired = !leftNeighbors.contains(LookupTable.INVALID_NODE) && !rightNeighbors.contains(LookupTable.INVALID_NODE);
+    if (allAcquired) {
+      // The lock acquisitions, in the order the sequential climb makes them.
+      List<PendingLock> pendingLocks = new ArrayList<>();
+      CompletableFuture<Void> refused = new CompletableFuture<>();
+      for (int level = 0; level < Math.max(leftNeighbors.size(), rightNeighbors.size()); level++) {
+        if (isNewNeighbor(leftNeighbors, level)) {
+          pendingLocks.add(acquireAsync(leftNeighbors.get(level), level, refused));
+        }
+        if (isNewNeighbor(rightNeighbors, level)) {
+          pendingLocks.add(acquireAsync(rightNeighbors.get(level), level, refused));
+        }
+      }
+      for (PendingLock lock : pendingLocks) {
+        if (lock.acquired.join()) {
+          ownedLocks.add(new InsertionLock.NeighborInstance(lock.node, lock.level));
+        } else {
+          allAcquired = false;
+        }
+      }
+    }
+    if (allAcquired) {
+      CompletableFuture<Boolean> adjacent = areAdjacentAsync(left, right);
+      leftChain = findNeighborsAsync(left, 0);
+      rightChain = findNeighborsAsync(right, 1);
+      allAcquired = adjacent.join() && leftNeighbors.equals(leftChain.join()) && rightNeighbors.equals(rightChain.join());
+      if (!allAcquired) {
+        logger.debug("identifier: " + this.identity.getIdentifier() + " has found a neighbor that changed before it was locked");
+      }
+    }
+    logger.debug("identifier: " + this.identity.getIdentifier() + " has completed proposal phase");
+    if (!allAcquired) {
+      releaseOwnedLocks();
+    }
+    return allAcquired;
+  }
+
+  /**
+   * Finds the neighbors of this node on one side on all the levels, given the 0th level one.
+   *
+   * @param neighbor  the 0th level neighbor, may be empty.
+   * @param direction the side.
+   * @return future of the neighbors from the 0th level upwards, ending early with an empty or an
+   *     invalid one.
+   */
+  private CompletableFuture<List<SkipNodeIdentity>> findNeighborsAsync(SkipNodeIdentity neighbor, int direction) {
+    if (neighbor.equals(LookupTable.EMPTY_NODE)) {
+      return CompletableFuture.completedFuture(Collections.singletonList(LookupTable.EMPTY_NODE));
+    }
+    return middleLayer.findLadderChainAsync(neighbor.getAddress(), neighbor.getPort(), neighbor.getIdentifier(), 0, direction,
+        this.identity.getMemVec(), getIdentity()).thenApply(ladders -> {
+          List<SkipNodeIdentity> neighbors = new ArrayList<>();
+          neighbors.add(neighbor);
+          // The neighbor could not be reached.
+          if (ladders == null) {
+            neighbors.add(LookupTable.INVALID_NODE);
+            return neighbors;
+          }
+          for (SkipNodeIdentity ladder : ladders) {
+            if (neighbors.size() == lookupTable.getNumLevels()) {
+              break;
+            }
+            neighbors.add(ladder);
+          }
+          return neighbors;
+        });
+  }
+
+  /**
+   * Returns whether the neighbor on the given level is a node that is not a neighbor on the lower levels.
+   */
+  private static boolean isNewNeighbor(List<SkipNodeIdentity> neighbors, int level) {
+    if (level >= neighbors.size() || neighbors.get(level).equals(LookupTable.EMPTY_NODE)) {
+      return false;
+    }
+    return level == 0 || !neighbors.get(level).equals(neighbors.get(level - 1));
+  }
+
+  /**
+   * Releases all the locks this node has acquired from its neighbors, concurrently.
+   */
+  private void releaseOwnedLocks() {
+    List<NeighborInstance> toRelease = new ArrayList<>();
+    ownedLocks.drainTo(toRelease);
+    CompletableFuture.allOf(toRelease.stream()
+                                     .map(n -> middleLayer.unlockAsync(n.node.getAddress(), n.node.getPort(), n.node.getIdentifier(), getIdentity()))
+                                     .toArray(CompletableFuture<?>[]::new)).join();
+  }
+
+  /**
+   * Checks whether the given nodes are still next to each other on the 0th level, i.e., whether this
+   * node still belongs between them.
+   *
+   * @param left  0th level left neighbor.
+   * @param right 0th level right neighbor.
+   * @return future of whether the neighbors are next to each other.
+   */
+  private CompletableFuture<Boolean> areAdjacentAsync(SkipNodeIdentity left, SkipNodeIdentity right) {
+    if (!right.equals(LookupTable.EMPTY_NODE)) {
+      return middleLayer.getLeftNeighborOfAsync(false, right.getAddress(), right.getPort(), right.getIdentifier(), 0).thenApply(left::equals);
+    }
+    if (!left.equals(LookupTable.EMPTY_NODE)) {
+      return middleLayer.getRightNeighborOfAsync(false, left.getAddress(), left.getPort(), left.getIdentifier(), 0).thenApply(right::equals);
+    }
+    return CompletableFuture.completedFuture(true);
+  }
+
+  /**
+   * Asks a neighbor for its lock without waiting for the answer.
+   *
+   * @param neighbor the neighbor.
+   * @param level    the lowest level the neighbor is a neighbor at.
+   * @param refused  completed if the lock is refused.
+   * @return the lock acquisition.
+   */
+  private PendingLock acquireAsync(SkipNodeIdentity neighbor, int level, CompletableFuture<Void> refused) {
+    logger.debug("identifier: " + this.identity.getIdentifier() + " is trying to acquire a lock from " + neighbor.getIdentifier());
+    CompletableFuture<Boolean> acquired = middleLayer.tryAcquireAsync(neighbor.getAddress(), neighbor.getPort(), neighbor.getIdentifier(), getIdentity())
+                                                     .exceptionally(e -> {
+                                                       logger.error("could not acquire the lock from " + neighbor.getIdentifier(), e);
+                                                       return false;
+                                                     });
+    acquired.thenAccept(held -> {
+      if (!held) {
+        refused.complete(null);
+      }
+    });
+    return new PendingLock(neighbor, level, acquired);
+  }
+
+  /**
+   * Asks a neighbor for the ladder of the inserted node, i.e., this node, on the given level.
+   *
+   * @param neighbor  the neighbor, may be empty.
+   * @param level     the level.
+   * @param direction the direction to search the ladder in.
+   * @return future of the ladder.
+   */
+  private CompletableFuture<SkipNodeIdentity> findLadderAsync(SkipNodeIdentity neighbor, int level, int direction) {
+    if (neighbor.equals(LookupTable.EMPTY_NODE)) {
+      return CompletableFuture.completedFuture(LookupTable.EMPTY_NODE);
+    }
+    return middleLayer.findLadderAsync(neighbor.getAddress(), neighbor.getPort(), neighbor.getIdentifier(), level, direction,
+        this.identity.getMemVec());
+  }
+
   @Override
   public boolean tryAcquire(SkipNodeIdentity requester) {
     // Naively try to acquire the lock.
@@ -239,6 +660,13 @@ public class SkipNode implements SkipNodeInterface {
       logger.debug(
           "identifier: " + this.identity.getIdentifier() + " did not hand over the lock to " + requester.getIdentifier() + " because it " + "is"
               + " already given to " + ((insertionLock.holder == null) ? this.getIdentity() : insertionLock.holder.getIdentifier()));
+      if (lockReleaseNotifications) {
+        refusedRequesters.add(requester);
+        // The lock may have been released before the requester was added.
+        if (!insertionLock.isLocked()) {
+          notifyRefusedRequesters();
+        }
+      }
       return false;
     }
     // After acquiring the lock, make sure that the versions match.
@@ -259,6 +687,32 @@ public class SkipNode implements SkipNodeInterface {
     return unlocked;
   }
 
+  @Override
+  public void lockReleased(SkipNodeIdentity node) {
+    logger.debug("identifier: " + this.identity.getIdentifier() + " was notified that " + node.getIdentifier() + " has released its lock");
+    refusedLockRelease.complete(null);
+  }
+
+  /**
+   * Called every time the insertion lock of this node is released. Wakes up the requests that wait
+   * for the lock at the middle layer and notifies the inserted nodes the lock was refused to.
+   */
+  private void insertionLockReleased() {
+    if (middleLayer == null) {
+      return;
+    }
+    middleLayer.wakeLockWaiters(getIdentifier());
+    notifyRefusedRequesters();
+  }
+
+  private void notifyRefusedRequesters() {
+    for (SkipNodeIdentity requester : refusedRequesters) {
+      if (refusedRequesters.remove(requester)) {
+        middleLayer.notifyLockReleasedAsync(requester.getAddress(), requester.getPort(), requester.getIdentifier(), getIdentity());
+      }
+    }
+  }
+
   /**
    * Returns whether the node is available to be used as a router. If the node is still being
    * inserted, or is a neighbor of a node that is currently being inserted, this will return false.
@@ -292,6 +746,13 @@ public class SkipNode implements SkipNodeInterface {
       return this.getIdentity();
     }
     SkipNodeIdentity curr = (direction == 0) ? getLeftNode(level) : getRightNode(level);
+    if (levelWalkMode == SearchMode.FORWARDING && !curr.equals(LookupTable.EMPTY_NODE) && target.commonPrefix(curr.getMemVec()) <= level) {
+      SearchResult result = awaitForwardedSearch(
+          middleLayer.startForwardedLevelWalk(curr.getAddress(), curr.getPort(), curr.getIdentifier(), level, direction, target));
+      // A walk that did not complete is handled as if it ran into a locked node.
+      logger.debug("num_id: " + getIdentity().getIdentifier() + " is returning a findLadder response");
+      return result == null ? LookupTable.INVALID_NODE : result.result;
+    }
     while (!curr.equals(LookupTable.EMPTY_NODE) && target.commonPrefix(curr.getMemVec()) <= level) {
       logger.debug("num_id: " + getIdentity().getIdentifier() + " is in findLadder loop at level " + level + " with " + curr.getIdentifier());
       // Try to find a new neighbor, but immediately return if the neighbor is locked.
@@ -307,6 +768,47 @@ public class SkipNode implements SkipNodeInterface {
     return curr;
   }
 
+  @Override
+  public void forwardedLevelWalk(int level, int direction, MembershipVector target, SearchOrigin origin) {
+    if (target.commonPrefix(getIdentity().getMemVec()) > level) {
+      middleLayer.replySearch(origin, new SearchResult(getIdentity()));
+      return;
+    }
+    // Mirrors the iterative walk, where a locked node does not tell its neighbor to anyone but its owner.
+    if (insertionLock.isLocked() && !insertionLock.isLockedBy(origin.address, origin.port)) {
+      middleLayer.replySearch(origin, new SearchResult(LookupTable.INVALID_NODE));
+      return;
+    }
+    SkipNodeIdentity next = (direction == 0) ? getLeftNode(level) : getRightNode(level);
+    if (next.equals(LookupTable.EMPTY_NODE)) {
+      middleLayer.replySearch(origin, new SearchResult(LookupTable.EMPTY_NODE));
+      return;
+    }
+    middleLayer.forwardLevelWalk(next.getAddress(), next.getPort(), next.getIdentifier(), level, direction, target, origin);
+  }
+
+  @Override
+  public List<SkipNodeIdentity> findLadderChain(int level, int direction, MembershipVector target, SkipNodeIdentity requester) {
+    List<SkipNodeIdentity> ladders = new ArrayList<>();
+    for (int l = level; l < lookupTable.getNumLevels() - 1; l++) {
+      SkipNodeIdentity ladder = findLadder(l, direction, target);
+      ladders.add(ladder);
+      if (ladder.equals(LookupTable.EMPTY_NODE) || ladder.equals(LookupTable.INVALID_NODE)) {
+        break;
+      }
+      // Climb on my own while I am the ladder, and let the next ladder find the rest of the chain otherwise.
+      if (!ladder.equals(getIdentity())) {
+        if (l + 1 < lookupTable.getNumLevels() - 1) {
+          List<SkipNodeIdentity> rest = middleLayer.findLadderChain(ladder.getAddress(), ladder.getPort(), ladder.getIdentifier(), l + 1, direction,
+              target, requester);
+          ladders.addAll(rest == null ? Collections.singletonList(LookupTable.INVALID_NODE) : rest);
+        }
+        break;
+      }
+    }
+    return ladders;
+  }
+
   /**
    * Given a new neighbor, inserts it to the appropriate levels according to the membership vector of the new
    * node.
@@ -315,6 +817,7 @@ public class SkipNode implements SkipNodeInterface {
    */
   @Override
   public void announceNeighbor(SkipNodeIdentity newNeighbor, int minLevel) {
+    // The identity is cached once it is put into the lookup table, see `onTableUpdate`.
     insertIntoTable(newNeighbor, minLevel);
   }
 
@@ -326,21 +829,18 @@ public class SkipNode implements SkipNodeInterface {
   private void insertIntoTable(SkipNodeIdentity node, int minLevel) {
     logger.debug("num_id: " + getIdentity().getIdentifier() + " has updated its table");
     version++;
-    int direction;
+    LookupTable.Direction direction;
 
     if (node.getIdentifier().comparedTo(this.getIdentity().getIdentifier()) == Identifier.COMPARE_LESS) {
-      direction = 0;
+      direction = LookupTable.Direction.LEFT;
     } else {
-      direction = 1;
+      direction = LookupTable.Direction.RIGHT;
     }
 
     int maxLevel = getIdentity().getMemVec().commonPrefix(node.getMemVec());
-    for (int i = minLevel; i <= maxLevel; i++) {
-      if (direction == 0) {
-        updateLeftNode(node, i);
-      } else {
-        updateRightNode(node, i);
-      }
+    // Put the node on all of its levels with a single update.
+    for (SkipNodeIdentity previous : lookupTable.updateLevels(node, direction, minLevel, maxLevel)) {
+      onTableUpdate(node, previous);
     }
   }
 
@@ -362,19 +862,53 @@ public class SkipNode implements SkipNodeInterface {
    */
   @Override
   public SkipNodeIdentity searchByIdentifier(Identifier targetIdentifier) {
+    SkipNodeIdentity nextHop = nextHop(targetIdentifier);
+    // This node is the one the search is looking for, or the closest one to it.
+    if (nextHop.equals(getIdentity())) {
+      return getIdentity();
+    }
+    return delegateSearch(nextHop, targetIdentifier, getIdentifier().isLessThan(targetIdentifier));
+  }
+
+  /**
+   * Search for the given identifier in the given mode.
+   *
+   * @param targetIdentifier the target identifier.
+   * @param mode             how the search travels through the skip graph.
+   * @return the result of the search as in `searchByIdentifier`, or null if an iterative or forwarded
+   *     search could not reach one of its hops.
+   */
+  public SkipNodeIdentity searchByIdentifier(Identifier targetIdentifier, SearchMode mode) {
+    switch (mode) {
+      case ITERATIVE:
+        return iterativeSearch.searchByIdentifier(getIdentity(), targetIdentifier);
+      case FORWARDING:
+        SearchResult result = awaitForwardedSearch(
+            middleLayer.startForwardedSearchByIdentifier(getIdentity().getAddress(), getIdentity().getPort(), getIdentifier(), targetIdentifier));
+        return result == null ? null : result.result;
+      default:
+        return searchByIdentifier(targetIdentifier);
+    }
+  }
+
+  @Override
+  public SkipNodeIdentity nextHop(Identifier targetIdentifier) {
     // If this is the node the search request is looking for, return its identity
     if (targetIdentifier.equals(this.getIdentity().getIdentifier())) {
       return getIdentity();
     }
+    // Route over a single state of the lookup table, so that a concurrent update cannot change a
+    // neighbor between its checks and the delegation to it.
+    LookupTableSnapshot table = lookupTable.snapshot();
     // Initialize the level to begin looking at
-    int level = lookupTable.getNumLevels();
+    int level = table.getNumLevels();
     // If the target is greater than this node's identifier, the search should continue to the right
     if (this.getIdentity().getIdentifier().comparedTo(targetIdentifier) == Identifier.COMPARE_LESS) {
       // Start from the top, while there is no right neighbor,
       // or the right neighbor's identifier is greater than what we are searching for keep going down
       while (level >= 0) {
-        if (lookupTable.getRight(level).equals(LookupTable.EMPTY_NODE)
-            || lookupTable.getRight(level).getIdentifier().comparedTo(targetIdentifier) == Identifier.COMPARE_GREATER) {
+        if (table.getRight(level).equals(LookupTable.EMPTY_NODE)
+            || table.getRight(level).getIdentifier().comparedTo(targetIdentifier) == Identifier.COMPARE_GREATER) {
           level--;
         } else {
           break;
@@ -386,14 +920,13 @@ public class SkipNode implements SkipNodeInterface {
         return getIdentity();
       }
       // Else, delegate the search to that node on the right
-      SkipNodeIdentity delegateNode = lookupTable.getRight(level);
-      return middleLayer.searchByIdentifier(delegateNode.getAddress(), delegateNode.getPort(), delegateNode.getIdentifier(), targetIdentifier);
+      return table.getRight(level);
     } else {
       // Start from the top, while there is no right neighbor,
       // or the right neighbor's identifier is greater than what we are searching for keep going down
       while (level >= 0) {
-        if (lookupTable.getLeft(level).equals(LookupTable.EMPTY_NODE)
-            || lookupTable.getLeft(level).getIdentifier().comparedTo(targetIdentifier) == Identifier.COMPARE_LESS) {
+        if (table.getLeft(level).equals(LookupTable.EMPTY_NODE)
+            || table.getLeft(level).getIdentifier().comparedTo(targetIdentifier) == Identifier.COMPARE_LESS) {
           level--;
         } else {
           break;
@@ -404,12 +937,55 @@ public class SkipNode implements SkipNodeInterface {
       if (level < 0) {
         return getIdentity();
       }
-      // Else, delegate the search to that node on the right
-      SkipNodeIdentity delegateNode = lookupTable.getLeft(level);
-      return middleLayer.searchByIdentifier(delegateNode.getAddress(), delegateNode.getPort(), delegateNode.getIdentifier(), targetIdentifier);
+      // Else, delegate the search to that node on the left
+      return table.getLeft(level);
     }
   }
 
+  @Override
+  public void forwardedSearchByIdentifier(Identifier targetIdentifier, SearchOrigin origin) {
+    SkipNodeIdentity nextHop = nextHop(targetIdentifier);
+    if (nextHop.equals(getIdentity())) {
+      middleLayer.replySearch(origin, new SearchResult(getIdentity()));
+      return;
+    }
+    middleLayer.forwardSearchByIdentifier(nextHop.getAddress(), nextHop.getPort(), nextHop.getIdentifier(), targetIdentifier, origin);
+  }
+
+  /**
+   * Forwards an identifier search to the given next hop, or to a cached node beyond it towards the
+   * target. A cached node that cannot be reached is forgotten and the search falls back to the next
+   * hop. The result of the search is cached.
+   *
+   * @param delegateNode     the next hop chosen from the lookup table.
+   * @param targetIdentifier the target identifier.
+   * @param right            whether the search goes to the right.
+   * @return the result of the search.
+   */
+  private SkipNodeIdentity delegateSearch(SkipNodeIdentity delegateNode, Identifier targetIdentifier, boolean right) {
+    if (routeCache == null) {
+      return forwardSearch(delegateNode, targetIdentifier);
+    }
+    SkipNodeIdentity shortcut = routeCache.shortcut(targetIdentifier, delegateNode.getIdentifier(), right);
+    if (shortcut != null) {
+      SkipNodeIdentity result = forwardSearch(shortcut, targetIdentifier);
+      if (result != null) {
+        routeCache.put(result);
+        return result;
+      }
+      logger.debug("identifier: " + getIdentifier() + " dropped the stale route to " + shortcut.getIdentifier());
+      routeCache.invalidate(shortcut);
+    }
+    SkipNodeIdentity result = forwardSearch(delegateNode, targetIdentifier);
+    routeCache.put(result);
+    return result;
+  }
+
+  private SkipNodeIdentity forwardSearch(SkipNodeIdentity node, Identifier targetIdentifier) {
+    searchForwards.incrementAndGet();
+    return middleLayer.searchByIdentifier(node.getAddress(), node.getPort(), node.getIdentifier(), targetIdentifier);
+  }
+
   @Override
   public boolean isLocked() {
     return insertionLock.isLocked();
@@ -453,6 +1029,53 @@ public class SkipNode implements SkipNodeInterface {
     return middleLayer.searchByMembershipVector(getIdentity().getAddress(), getIdentity().getPort(), getIdentity().getIdentifier(), target, level);
   }
 
+  /**
+   * Performs a membership vector lookup in the given mode.
+   *
+   * @param target the target membership vector.
+   * @param mode   how the search travels through the skip graph.
+   * @return the node with the membership vector most similar to the target, or null if an iterative
+   *     or forwarded search could not reach one of its hops.
+   */
+  public SearchResult searchByMembershipVector(MembershipVector target, SearchMode mode) {
+    if (mode == SearchMode.RECURSIVE) {
+      return searchByMembershipVector(target);
+    }
+    if (this.getIdentity().getMemVec().equals(target)) {
+      return new SearchResult(getIdentity());
+    }
+    if (!isAvailable()) {
+      return new SearchResult(unavailableIdentity);
+    }
+    int level = this.getIdentity().getMemVec().commonPrefix(target);
+    if (level < 0) {
+      return new SearchResult(getIdentity());
+    }
+    if (mode == SearchMode.ITERATIVE) {
+      return iterativeSearch.searchByMembershipVector(getIdentity(), target, level);
+    }
+    return awaitForwardedSearch(
+        middleLayer.startForwardedSearchByMembershipVector(getIdentity().getAddress(), getIdentity().getPort(), getIdentifier(), target, level));
+  }
+
+  /**
+   * Waits for the reply to a search in the forwarding mode.
+   *
+   * @param reply future of the reply.
+   * @return the result of the search, or null if it failed.
+   */
+  private SearchResult awaitForwardedSearch(CompletableFuture<SearchResult> reply) {
+    try {
+      return reply.get();
+    } catch (ExecutionException e) {
+      logger.error("identifier: " + getIdentifier() + " did not receive the reply to a forwarded search", e.getCause());
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+  }
+
   /**
    * Recursive search by membership vector.
    *
@@ -462,8 +1085,38 @@ public class SkipNode implements SkipNodeInterface {
    */
   @Override
   public SearchResult searchByMembershipVector(MembershipVector target, int level) {
+    LevelSearch levelSearch = searchLevel(target, level);
+    if (levelSearch.ladder == null) {
+      return levelSearch.result;
+    }
+    SkipNodeIdentity ladder = levelSearch.ladder;
+    return middleLayer.searchByMembershipVector(ladder.getAddress(), ladder.getPort(), ladder.getIdentifier(), target,
+                                                target.commonPrefix(ladder.getMemVec()));
+  }
+
+  @Override
+  public void forwardedSearchByMembershipVector(MembershipVector target, int level, SearchOrigin origin) {
+    LevelSearch levelSearch = searchLevel(target, level);
+    if (levelSearch.ladder == null) {
+      middleLayer.replySearch(origin, levelSearch.result);
+      return;
+    }
+    SkipNodeIdentity ladder = levelSearch.ladder;
+    middleLayer.forwardSearchByMembershipVector(ladder.getAddress(), ladder.getPort(), ladder.getIdentifier(), target,
+                                                target.commonPrefix(ladder.getMemVec()), origin);
+  }
+
+  /**
+   * Expands the search window of a membership vector search on the given level until the search
+   * either ends or finds a ladder to climb up on.
+   *
+   * @param target the target membership vector.
+   * @param level  the current level.
+   * @return the result of the search if it ends here, or the ladder it climbs up on.
+   */
+  private LevelSearch searchLevel(MembershipVector target, int level) {
     if (this.getIdentity().getMemVec().equals(target)) {
-      return new SearchResult(getIdentity());
+      return new LevelSearch(new SearchResult(getIdentity()), null);
     }
     // Buffer contains the `most similar node` to return in case we cannot climb up anymore.
     // At first, we try to set this to a non-null potential ladder.
@@ -478,35 +1131,44 @@ public class SkipNode implements SkipNodeInterface {
     while (target.commonPrefix(left.getMemVec()) <= level && target.commonPrefix(right.getMemVec()) <= level) {
       // Return the potential ladder as the result if it is the result we are looking for.
       if (left.getMemVec().equals(target)) {
-        return new SearchResult(left);
+        return new LevelSearch(new SearchResult(left), null);
       }
       if (right.getMemVec().equals(target)) {
-        return new SearchResult(right);
+        return new LevelSearch(new SearchResult(right), null);
       }
-      // Expand the search window on the level.
+      // Expand the search window on the level in both directions at once. The first expansion is a
+      // call to this node, which walks the level on its own, so the left side runs on another thread.
+      Supplier<SkipNodeIdentity> leftExpansion = () -> LookupTable.EMPTY_NODE;
       if (!left.equals(LookupTable.EMPTY_NODE)) {
         buffer = left;
-        left = middleLayer.findLadder(left.getAddress(), left.getPort(), left.getIdentifier(), level, 0, target);
+        SkipNodeIdentity leftCandidate = left;
+        leftExpansion = () -> middleLayer.findLadder(leftCandidate.getAddress(), leftCandidate.getPort(), leftCandidate.getIdentifier(),
+            level, 0, target);
       }
+      CompletableFuture<SkipNodeIdentity> leftLadder = left.equals(LookupTable.EMPTY_NODE) ? null : middleLayer.expandLadderAsync(leftExpansion);
       if (!right.equals(LookupTable.EMPTY_NODE)) {
         buffer = right;
         right = middleLayer.findLadder(right.getAddress(), right.getPort(), right.getIdentifier(), level, 1, target);
       }
-      // Try to climb up on the either ladder.
+      // Try to climb up on the either ladder. The right one is preferred, so it can be climbed up on
+      // without waiting for the left one, whose expansion is then cancelled if it has not started yet.
       if (right.isNotEmpty() && target.commonPrefix(right.getMemVec()) > level) {
-        level = target.commonPrefix(right.getMemVec());
-        return middleLayer.searchByMembershipVector(right.getAddress(), right.getPort(), right.getIdentifier(), target, level);
-      } else if (left.isNotEmpty() && target.commonPrefix(left.getMemVec()) > level) {
-        level = target.commonPrefix(left.getMemVec());
-        return middleLayer.searchByMembershipVector(left.getAddress(), left.getPort(), left.getIdentifier(), target, level);
+        if (leftLadder != null) {
+          leftLadder.cancel(false);
+        }
+        return new LevelSearch(null, right);
+      }
+      left = leftLadder != null ? leftLadder.join() : leftExpansion.get();
+      if (left.isNotEmpty() && target.commonPrefix(left.getMemVec()) > level) {
+        return new LevelSearch(null, left);
       }
       // If we have expanded more than the length of the level,
       // then return the most similar node (buffer).
       if (left.isEmpty() && right.isEmpty()) {
-        return new SearchResult(buffer);
+        return new LevelSearch(new SearchResult(buffer), null);
       }
     }
-    return new SearchResult(buffer);
+    return new LevelSearch(new SearchResult(buffer), null);
   }
 
   @Override
@@ -514,7 +1176,9 @@ public class SkipNode implements SkipNodeInterface {
     logger.debug(
         "num_id: " + getIdentity().getIdentifier() + " has received a updateLeftNode request with " + "skip_node_identity: " + snId + " " + "level"
             + ":" + " " + level);
-    return lookupTable.updateLeft(snId, level);
+    SkipNodeIdentity previous = lookupTable.updateLeft(snId, level);
+    onTableUpdate(snId, previous);
+    return previous;
   }
 
   @Override
@@ -522,26 +1186,147 @@ public class SkipNode implements SkipNodeInterface {
     logger.debug(
         "num_id: " + getIdentity().getIdentifier() + " has received a updateRightNode request with " + "skip_node_identity: " + snId + " " + "level"
             + ": " + level);
-    return lookupTable.updateRight(snId, level);
+    SkipNodeIdentity previous = lookupTable.updateRight(snId, level);
+    onTableUpdate(snId, previous);
+    return previous;
+  }
+
+  /**
+   * Keeps the identity cache in line with the lookup table: the new neighbor is cached, and the
+   * replaced one is dropped unless it is still a neighbor on another level.
+   *
+   * @param node     the node put into the lookup table.
+   * @param previous the node it replaced.
+   */
+  private void onTableUpdate(SkipNodeIdentity node, SkipNodeIdentity previous) {
+    if (identityCache == null) {
+      return;
+    }
+    identityCache.put(node);
+    if (previous == null || previous.equals(LookupTable.EMPTY_NODE) || previous.equals(node)) {
+      return;
+    }
+    LookupTableSnapshot table = lookupTable.snapshot();
+    for (int i = 0; i < table.getNumLevels(); i++) {
+      if (previous.equals(table.getLeft(i)) || previous.equals(table.getRight(i))) {
+        return;
+      }
+    }
+    identityCache.remove(previous.getIdentifier());
   }
 
   @Override
   public SkipNodeIdentity getRightNode(int level) {
+    return getRightNode(level, false);
+  }
+
+  /**
+   * Returns the right neighbor at the given level.
+   *
+   * @param level   the level.
+   * @param refresh whether to ask the neighbor for its identity even if it is cached.
+   * @return the identity of the right neighbor.
+   */
+  public SkipNodeIdentity getRightNode(int level, boolean refresh) {
     logger.debug("num_id: " + getIdentity().getIdentifier() + " has received a getRightNode request with " + "level: " + level);
-    SkipNodeIdentity right = lookupTable.getRight(level);
-    SkipNodeIdentity r =
-        (right.equals(LookupTable.EMPTY_NODE)) ? right : middleLayer.getIdentity(right.getAddress(), right.getPort(), right.getIdentifier());
+    SkipNodeIdentity r = neighborIdentity(lookupTable.getRight(level), refresh);
     logger.debug("num_id: " + getIdentity().getIdentifier() + " is returning a getRightNode response");
     return r;
   }
 
   @Override
   public SkipNodeIdentity getLeftNode(int level) {
+    return getLeftNode(level, false);
+  }
+
+  /**
+   * Returns the left neighbor at the given level.
+   *
+   * @param level   the level.
+   * @param refresh whether to ask the neighbor for its identity even if it is cached.
+   * @return the identity of the left neighbor.
+   */
+  public SkipNodeIdentity getLeftNode(int level, boolean refresh) {
     logger.debug("num_id: " + getIdentity().getIdentifier() + " has received a getLeftNode request with " + "level: " + level);
-    SkipNodeIdentity left = lookupTable.getLeft(level);
-    SkipNodeIdentity r =
-        (left.equals(LookupTable.EMPTY_NODE)) ? left : middleLayer.getIdentity(left.getAddress(), left.getPort(), left.getIdentifier());
+    SkipNodeIdentity r = neighborIdentity(lookupTable.getLeft(level), refresh);
     logger.debug("num_id: " + getIdentity().getIdentifier() + " is returning a getLeftNode response");
     return r;
   }
+
+  /**
+   * Resolves the identity of the neighbor in a lookup table entry, from the cache if possible.
+   *
+   * @param entry   the lookup table entry.
+   * @param refresh whether to ask the neighbor for its identity even if it is cached.
+   * @return the identity of the neighbor.
+   */
+  private SkipNodeIdentity neighborIdentity(SkipNodeIdentity entry, boolean refresh) {
+    if (entry.equals(LookupTable.EMPTY_NODE)) {
+      return entry;
+    }
+    if (identityCache != null && !refresh) {
+      SkipNodeIdentity cached = identityCache.get(entry.getIdentifier());
+      if (cached != null) {
+        return cached;
+      }
+    }
+    // A neighbor announced or linked into the table during the refresh is newer than its answer.
+    long since = identityCache == null ? 0 : identityCache.getVersion();
+    SkipNodeIdentity identity = middleLayer.getIdentity(entry.getAddress(), entry.getPort(), entry.getIdentifier());
+    if (identityCache != null) {
+      identityCache.refresh(identity, since);
+    }
+    return identity;
+  }
+
+  /**
+   * Lock of a neighbor that was asked for by a pipelined acquisition.
+   */
+  private static class PendingLock {
+    private final SkipNodeIdentity node;
+    private final int level;
+    private final CompletableFuture<Boolean> acquired;
+
+    private PendingLock(SkipNodeIdentity node, int level, CompletableFuture<Boolean> acquired) {
+      this.node = node;
+      this.level = level;
+      this.acquired = acquired;
+    }
+
+    private boolean isHeld() {
+      return acquired.getNow(false);
+    }
+  }
+
+  /**
+   * Ladder found from a neighbor by a pipelined acquisition.
+   */
+  private static class LadderStep {
+    private final SkipNodeIdentity neighbor;
+    private final int level;
+    private final int direction;
+    private final SkipNodeIdentity ladder;
+
+    private LadderStep(SkipNodeIdentity neighbor, int level, int direction, SkipNodeIdentity ladder) {
+      this.neighbor = neighbor;
+      this.level = level;
+      this.direction = direction;
+      this.ladder = ladder;
+    }
+  }
+
+  /**
+   * Outcome of a membership vector search on a single level.
+   */
+  private static class LevelSearch {
+    // The result of the search if it ends at this level, null otherwise.
+    private final SearchResult result;
+    // The ladder the search climbs up on otherwise.
+    private final SkipNodeIdentity ladder;
+
+    private LevelSearch(SearchResult result, SkipNodeIdentity ladder) {
+      this.result = result;
+      this.ladder = ladder;
+    }
+  }
 }
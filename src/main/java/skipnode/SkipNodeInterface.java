@@ -1,5 +1,7 @@
 package skipnode;
 
+import java.util.List;
+
 import middlelayer.MiddleLayer;
 import model.identifier.Identifier;
 import model.identifier.MembershipVector;
@@ -47,6 +49,32 @@ public interface SkipNodeInterface {
    */
   SkipNodeIdentity findLadder(int level, int direction, MembershipVector target);
 
+  /**
+   * Finds the ladders of an inserted node on the levels from the given one up to the one below the
+   * top, i.e., its neighbors on the levels above the given one, in a single call. Each ladder is
+   * found by `findLadder` from the previous one.
+   *
+   * @param level     the lowest level to find a ladder on.
+   * @param direction the direction of the ladders.
+   * @param target    membership vector of the inserted node.
+   * @param requester identity of the inserted node.
+   * @return the ladders from the lowest level upwards, ending early with an empty or an invalid one.
+   */
+  List<SkipNodeIdentity> findLadderChain(int level, int direction, MembershipVector target, SkipNodeIdentity requester);
+
+  /**
+   * Handles a walk along a level in search of a ladder in the forwarding mode: replies to its
+   * originator if this node is the ladder, if it is locked by another node than the originator, or
+   * if it has no neighbor in the direction of the walk, and forwards the walk to that neighbor
+   * otherwise. Does not wait for the rest of the walk.
+   *
+   * @param level     the level to walk along.
+   * @param direction the direction of the walk.
+   * @param target    membership vector of the inserted node.
+   * @param origin    the originator of the walk.
+   */
+  void forwardedLevelWalk(int level, int direction, MembershipVector target, SearchOrigin origin);
+
   /**
    * Adds the given neighbor to the appropriate lookup table entries of this node. Should only be
    * used during concurrent insertion (i.e., ConcurrentBackupTable is being used.).
@@ -77,6 +105,24 @@ public interface SkipNodeInterface {
    */
   SkipNodeIdentity searchByIdentifier(Identifier targetIdentifier);
 
+  /**
+   * Returns the node an identifier search for the given target would be forwarded to by this node,
+   * without forwarding it. Used by the originator of an iterative search.
+   *
+   * @param targetIdentifier The target identifier to search for
+   * @return The SkipNodeIdentity of the next hop, or of this node if the search ends here.
+   */
+  SkipNodeIdentity nextHop(Identifier targetIdentifier);
+
+  /**
+   * Handles a search by identifier in the forwarding mode: forwards it to the next hop, or replies
+   * to its originator if the search ends here. Does not wait for the rest of the search path.
+   *
+   * @param targetIdentifier The target identifier to search for
+   * @param origin           The originator of the search
+   */
+  void forwardedSearchByIdentifier(Identifier targetIdentifier, SearchOrigin origin);
+
   /**
    * Search for the given membership vector.
    *
@@ -96,6 +142,17 @@ public interface SkipNodeInterface {
    */
   SearchResult searchByMembershipVector(MembershipVector target, int level);
 
+  /**
+   * Handles a recursive search by membership vector in the forwarding mode: forwards it to the
+   * ladder it climbs up on, or replies to its originator if the search ends here. Does not wait for
+   * the rest of the search path.
+   *
+   * @param target the target membership vector.
+   * @param level  the current level.
+   * @param origin the originator of the search.
+   */
+  void forwardedSearchByMembershipVector(MembershipVector target, int level, SearchOrigin origin);
+
   /**
    * Updates the SkipNode on the left on the given level to the given SkipNodeIdentity.
    *
@@ -145,6 +202,14 @@ public interface SkipNodeInterface {
    */
   boolean unlock(SkipNodeIdentity owner);
 
+  /**
+   * Notifies the node, while it is being inserted, that a node which refused to hand over its lock
+   * to it has released the lock, so that the node may try to acquire the locks again.
+   *
+   * @param node identity of the node that released its lock.
+   */
+  void lockReleased(SkipNodeIdentity node);
+
   /**
    * Method for trying to acquire the lock.
    *
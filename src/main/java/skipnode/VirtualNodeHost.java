@@ -0,0 +1,164 @@
+package skipnode;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lookup.ConcurrentLookupTable;
+import middlelayer.MiddleLayer;
+import model.identifier.Identifier;
+import model.identifier.MembershipVector;
+import model.skipgraph.SkipGraph;
+import underlay.Underlay;
+
+/**
+ * Hosts many virtual skip nodes behind a single underlay, i.e., a single port, so that a process can
+ * take a share of the key space proportional to its capacity without running a process per node.
+ * The nodes share one middle layer, which directs the requests to them by their identifiers and
+ * calls them directly when they talk to each other, and one insertion thread.
+ *
+ * <p>The number of nodes is capped. The lookup tables have as many levels as those of any other
+ * node, `SkipGraph.IDENTIFIER_SIZE`, since the skip graph may span any number of hosts. The first node
+ * added to a host becomes the master node of its middle layer, which introduces the later nodes of
+ * the host to the skip graph.
+ *
+ * <p>The holder of an insertion lock is recognized by its address and port, which the nodes of a
+ * host share, so two nodes of a host inserted at once could read through each other's locks. The
+ * nodes of a host are therefore inserted one at a time.
+ */
+public class VirtualNodeHost {
+
+  /**
+   * Default maximum number of nodes on a host.
+   */
+  public static final int DEFAULT_MAX_NODES = 16_384;
+
+  private final Underlay underlay;
+  private final int maxNodes;
+  private final int numLevels;
+  // Runs the insertions of the nodes one after the other, shared by all the nodes of the host.
+  private final ExecutorService inserters;
+  private final AtomicInteger size = new AtomicInteger();
+  private volatile MiddleLayer middleLayer;
+  // Completed once the master node is inserted, the later nodes join through it.
+  private volatile CompletableFuture<SkipNode> masterInserted;
+
+  /**
+   * Constructs a host with the default parameters.
+   *
+   * @param underlay the initialized underlay shared by the nodes.
+   */
+  public VirtualNodeHost(Underlay underlay) {
+    this(underlay, DEFAULT_MAX_NODES);
+  }
+
+  /**
+   * Constructor for VirtualNodeHost.
+   *
+   * @param underlay the initialized underlay shared by the nodes.
+   * @param maxNodes maximum number of nodes on the host.
+   */
+  public VirtualNodeHost(Underlay underlay, int maxNodes) {
+    if (underlay.getAddress() == null) {
+      throw new IllegalStateException("underlay must be initialized");
+    }
+    if (maxNodes <= 0) {
+      throw new IllegalArgumentException("max nodes must be positive: " + maxNodes);
+    }
+    this.underlay = underlay;
+    this.maxNodes = maxNodes;
+    this.numLevels = SkipGraph.IDENTIFIER_SIZE;
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+        runnable -> {
+          Thread thread = new Thread(runnable, "virtual-node-inserter");
+          thread.setDaemon(true);
+          return thread;
+        });
+    executor.allowCoreThreadTimeOut(true);
+    this.inserters = executor;
+  }
+
+  public Underlay getUnderlay() {
+    return underlay;
+  }
+
+  /**
+   * Returns the middle layer shared by the nodes.
+   *
+   * @return the middle layer, or null if no node has been added yet.
+   */
+  public MiddleLayer getMiddleLayer() {
+    return middleLayer;
+  }
+
+  /**
+   * Returns the number of levels of the lookup tables of the nodes.
+   *
+   * @return number of levels.
+   */
+  public int getNumLevels() {
+    return numLevels;
+  }
+
+  /**
+   * Returns the number of nodes on the host.
+   *
+   * @return number of nodes.
+   */
+  public int size() {
+    return size.get();
+  }
+
+  /**
+   * Adds a node to the host and inserts it into the skip graph on the insertion thread. The first
+   * node of the host joins through the given introducer; the later ones join through the master node
+   * of the host. Without an introducer, the first node starts a new skip graph.
+   *
+   * @param identifier        identifier of the node.
+   * @param membershipVector  membership vector of the node.
+   * @param introducerAddress address of the introducer of the first node, or null.
+   * @param introducerPort    port of the introducer of the first node.
+   * @return future of the node, completed once it is inserted.
+   */
+  public CompletableFuture<SkipNode> addNode(Identifier identifier, MembershipVector membershipVector, String introducerAddress,
+                                             int introducerPort) {
+    if (size.incrementAndGet() > maxNodes) {
+      size.decrementAndGet();
+      throw new IllegalStateException("host is full: " + maxNodes + " nodes");
+    }
+    SkipNodeIdentity identity = new SkipNodeIdentity(identifier, membershipVector, underlay.getAddress(), underlay.getPort());
+    SkipNode node = new SkipNode(identity, new ConcurrentLookupTable(numLevels, identity));
+    synchronized (this) {
+      if (middleLayer == null) {
+        middleLayer = new MiddleLayer(underlay, node);
+        underlay.setMiddleLayer(middleLayer);
+        node.setMiddleLayer(middleLayer);
+        masterInserted = CompletableFuture.supplyAsync(() -> {
+          node.insert(introducerAddress, introducerPort);
+          return node;
+        }, inserters);
+        return masterInserted;
+      }
+      middleLayer.addOverlay(node);
+    }
+    // Wait for the master node instead of backing off on it while it is being inserted.
+    return masterInserted.thenApplyAsync(m -> {
+      node.insert(underlay.getAddress(), underlay.getPort());
+      return node;
+    }, inserters);
+  }
+
+  /**
+   * Stops the insertions that have not started yet and terminates the shared middle layer and
+   * underlay.
+   *
+   * @return true iff the termination was successful.
+   */
+  public boolean terminate() {
+    inserters.shutdownNow();
+    return middleLayer == null ? underlay.terminate() : middleLayer.terminate();
+  }
+}
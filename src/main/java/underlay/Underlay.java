@@ -2,35 +2,87 @@ package underlay;
 
 import java.net.Inet4Address;
 import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import middlelayer.MiddleLayer;
+import underlay.codec.PacketCodec;
+import underlay.nio.NioUnderlay;
 import underlay.packets.Request;
 import underlay.packets.Response;
+import underlay.shm.ShmUnderlay;
 import underlay.tcp.TcpUnderlay;
 
 /**
  * Represents the underlay layer of the skip-graph DHT. Handles node-to-node communication.
  */
 public abstract class Underlay {
+  /**
+   * Name of the system property that selects the default underlay implementation; either `tcp`
+   * (thread per connection, used when the property is not set), `nio` (selector based) or `shm`
+   * (shared memory between the nodes of a host, TCP otherwise).
+   */
+  public static final String DEFAULT_UNDERLAY_PROPERTY = "skipgraph.underlay";
+  /**
+   * Name of the system property that selects the default packet codec of the underlays; either
+   * `java` (Java serialization, used when the property is not set) or `binary`.
+   */
+  public static final String DEFAULT_CODEC_PROPERTY = "skipgraph.codec";
+
+  // Runs the blocking sends of the underlays that do not implement asynchronous sending natively.
+  private static final ExecutorService BLOCKING_SENDERS = Executors.newCachedThreadPool(runnable -> {
+    Thread thread = new Thread(runnable, "underlay-blocking-sender");
+    thread.setDaemon(true);
+    return thread;
+  });
+
   private MiddleLayer middleLayer;
+  // Converts the packets into bytes and back. Not used by the underlays that rely on Java RMI.
+  private PacketCodec codec = PacketCodec.forName(System.getProperty(DEFAULT_CODEC_PROPERTY, "java"));
 
   private int port;
   private String address;
   private String fullAddress;
 
   /**
-   * Constructs a new default underlay. Must be initialized and connected to the middle layer.
+   * Constructs a new default underlay. Must be initialized and connected to the middle layer. The
+   * implementation is selected by the `skipgraph.underlay` system property.
    *
    * @return a new default underlay.
    */
   public static Underlay newDefaultUnderlay() {
-    return new TcpUnderlay();
+    String type = System.getProperty(DEFAULT_UNDERLAY_PROPERTY, "tcp");
+    switch (type) {
+      case "tcp":
+        return new TcpUnderlay();
+      case "nio":
+        return new NioUnderlay();
+      case "shm":
+        return new ShmUnderlay();
+      default:
+        throw new IllegalArgumentException("unknown underlay type: " + type);
+    }
   }
 
   public void setMiddleLayer(MiddleLayer middleLayer) {
     this.middleLayer = middleLayer;
   }
 
+  public PacketCodec getCodec() {
+    return codec;
+  }
+
+  /**
+   * Sets the codec of the packets exchanged by this underlay. Must be called before the underlay is
+   * initialized, and all the underlays of a skip graph must use the same codec.
+   *
+   * @param codec the packet codec.
+   */
+  public void setCodec(PacketCodec codec) {
+    this.codec = codec;
+  }
+
   public int getPort() {
     return port;
   }
@@ -43,6 +95,16 @@ public abstract class Underlay {
     return fullAddress;
   }
 
+  /**
+   * Returns the maximum size in bytes of an encoded packet that this underlay carries in a single
+   * message. Unlimited unless the underlay defines a limit.
+   *
+   * @return the maximum packet size in bytes, Integer.MAX_VALUE if there is no limit.
+   */
+  public int getMaxPacketSize() {
+    return Integer.MAX_VALUE;
+  }
+
   /**
    * Dispatches a request to the middle layer and returns the response.
    *
@@ -94,6 +156,21 @@ public abstract class Underlay {
    */
   public abstract Response sendMessage(String address, int port, Request request);
 
+  /**
+   * Sends a request to a remote server without blocking the calling thread. The returned future is
+   * completed with the response, or with null whenever `sendMessage` would have returned null. The
+   * default implementation runs `sendMessage` on a shared thread pool; underlays that can wait for
+   * the responses without blocking a thread override it.
+   *
+   * @param address address of the remote server.
+   * @param port    port of the remote server.
+   * @param request the request.
+   * @return future of the response emitted by the remote server.
+   */
+  public CompletableFuture<Response> sendMessageAsync(String address, int port, Request request) {
+    return CompletableFuture.supplyAsync(() -> sendMessage(address, port, request), BLOCKING_SENDERS);
+  }
+
   /**
    * Terminates the underlay.
    *
@@ -0,0 +1,667 @@
+package underlay.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import model.identifier.Identifier;
+import model.identifier.MembershipVector;
+import model.skipgraph.SkipGraph;
+import skipnode.SearchOrigin;
+import skipnode.SearchResult;
+import skipnode.SkipNodeIdentity;
+import underlay.packets.Request;
+import underlay.packets.RequestType;
+import underlay.packets.Response;
+import underlay.packets.requests.AcquireLockRequest;
+import underlay.packets.requests.AcquireNeighborsRequest;
+import underlay.packets.requests.AnnounceNeighborRequest;
+import underlay.packets.requests.BatchRequest;
+import underlay.packets.requests.FindLadderRequest;
+import underlay.packets.requests.ForwardedLevelWalkRequest;
+import underlay.packets.requests.ForwardedSearchByIdentifierRequest;
+import underlay.packets.requests.ForwardedSearchByMembershipVectorRequest;
+import underlay.packets.requests.GetIdentityRequest;
+import underlay.packets.requests.GetLeftLadderRequest;
+import underlay.packets.requests.GetLeftNodeRequest;
+import underlay.packets.requests.GetRightLadderRequest;
+import underlay.packets.requests.GetRightNodeRequest;
+import underlay.packets.requests.IncrementRequest;
+import underlay.packets.requests.InjectionRequest;
+import underlay.packets.requests.IsAvailableRequest;
+import underlay.packets.requests.LadderChainRequest;
+import underlay.packets.requests.LockReleasedRequest;
+import underlay.packets.requests.MembershipVectorLevelSearchRequest;
+import underlay.packets.requests.NextHopRequest;
+import underlay.packets.requests.ReleaseLockRequest;
+import underlay.packets.requests.SearchByIdentifierRequest;
+import underlay.packets.requests.SearchByMembershipVectorRecursiveRequest;
+import underlay.packets.requests.SearchByMembershipVectorRequest;
+import underlay.packets.requests.SearchReplyRequest;
+import underlay.packets.requests.UpdateLeftNodeRequest;
+import underlay.packets.requests.UpdateRightNodeRequest;
+import underlay.packets.responses.AckResponse;
+import underlay.packets.responses.BatchResponse;
+import underlay.packets.responses.BooleanResponse;
+import underlay.packets.responses.BusyResponse;
+import underlay.packets.responses.IdentityListResponse;
+import underlay.packets.responses.IdentityResponse;
+import underlay.packets.responses.SearchResultResponse;
+
+/**
+ * Encodes the packets with a compact hand-written binary format. A request starts with its
+ * `RequestType` ordinal and a response with its response kind, followed by the common header
+ * fields and the fields of the specific packet. Identifiers and membership vectors are written as
+ * their raw bytes, IPv4 addresses as 4 bytes and ports as 2 bytes.
+ */
+public class BinaryPacketCodec implements PacketCodec {
+
+  // First byte of every packet.
+  private static final byte REQUEST = 0;
+  private static final byte RESPONSE = 1;
+
+  // Kinds of the responses.
+  private static final byte PLAIN_RESPONSE = 0;
+  private static final byte ACK_RESPONSE = 1;
+  private static final byte BOOLEAN_RESPONSE = 2;
+  private static final byte IDENTITY_RESPONSE = 3;
+  private static final byte SEARCH_RESULT_RESPONSE = 4;
+  private static final byte BATCH_RESPONSE = 5;
+  private static final byte IDENTITY_LIST_RESPONSE = 6;
+  private static final byte BUSY_RESPONSE = 7;
+
+  // Tags of the encoded addresses. An address tag is combined with WIDE_PORT when the port that
+  // follows the address does not fit into 2 bytes (e.g., the -1 port of the empty node).
+  private static final int NULL_ADDRESS = 0;
+  private static final int IPV4_ADDRESS = 1;
+  private static final int NAMED_ADDRESS = 2;
+  private static final int WIDE_PORT = 0x80;
+
+  private static final RequestType[] REQUEST_TYPES = RequestType.values();
+
+  @Override
+  public byte[] encode(Serializable packet) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(128);
+    DataOutputStream out = new DataOutputStream(bos);
+    if (packet instanceof Request) {
+      out.writeByte(REQUEST);
+      writeRequest(out, (Request) packet);
+    } else if (packet instanceof Response) {
+      out.writeByte(RESPONSE);
+      writeResponse(out, (Response) packet);
+    } else {
+      throw new IOException("not a packet: " + packet);
+    }
+    out.flush();
+    return bos.toByteArray();
+  }
+
+  @Override
+  public Object decode(byte[] bytes, int offset, int length) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, offset, length));
+    byte kind = in.readByte();
+    switch (kind) {
+      case REQUEST:
+        return readRequest(in);
+      case RESPONSE:
+        return readResponse(in);
+      default:
+        throw new IOException("unknown packet kind: " + kind);
+    }
+  }
+
+  private static void writeRequest(DataOutputStream out, Request request) throws IOException {
+    out.writeByte(request.type.ordinal());
+    out.writeLong(request.requestId);
+    out.writeBoolean(request.backoff);
+    writeEndpoint(out, request.senderAddress, request.senderPort);
+    writeNullableIdentifier(out, request.receiverId);
+    switch (request.type) {
+      case SearchByMembershipVector:
+        writeNullableMembershipVector(out, ((SearchByMembershipVectorRequest) request).targetMembershipVector);
+        break;
+      case SearchByMembershipVectorRecursive:
+        SearchByMembershipVectorRecursiveRequest recursiveSearch = (SearchByMembershipVectorRecursiveRequest) request;
+        writeNullableMembershipVector(out, recursiveSearch.target);
+        out.writeInt(recursiveSearch.level);
+        break;
+      case SearchByIdentifier:
+        writeNullableIdentifier(out, ((SearchByIdentifierRequest) request).searchByIdentifier);
+        break;
+      case MembershipVectorLevelSearch:
+        MembershipVectorLevelSearchRequest levelSearch = (MembershipVectorLevelSearchRequest) request;
+        out.writeInt(levelSearch.level);
+        out.writeInt(levelSearch.direction);
+        writeNullableMembershipVector(out, levelSearch.target);
+        break;
+      case UpdateLeftNode:
+        UpdateLeftNodeRequest updateLeft = (UpdateLeftNodeRequest) request;
+        out.writeInt(updateLeft.level);
+        writeIdentity(out, updateLeft.snId);
+        break;
+      case UpdateRightNode:
+        UpdateRightNodeRequest updateRight = (UpdateRightNodeRequest) request;
+        out.writeInt(updateRight.level);
+        writeIdentity(out, updateRight.snId);
+        break;
+      case GetLeftNode:
+        out.writeInt(((GetLeftNodeRequest) request).level);
+        break;
+      case GetRightNode:
+        out.writeInt(((GetRightNodeRequest) request).level);
+        break;
+      case AcquireNeighbors:
+        AcquireNeighborsRequest acquireNeighbors = (AcquireNeighborsRequest) request;
+        writeIdentity(out, acquireNeighbors.newNode);
+        out.writeInt(acquireNeighbors.level);
+        break;
+      case FindLadder:
+        FindLadderRequest findLadder = (FindLadderRequest) request;
+        out.writeInt(findLadder.level);
+        out.writeInt(findLadder.direction);
+        writeNullableMembershipVector(out, findLadder.target);
+        break;
+      case AnnounceNeighbor:
+        AnnounceNeighborRequest announceNeighbor = (AnnounceNeighborRequest) request;
+        writeIdentity(out, announceNeighbor.newNeighbor);
+        out.writeInt(announceNeighbor.minLevel);
+        break;
+      case IsAvailable:
+      case GetIdentity:
+        break;
+      case GetLeftLadder:
+        GetLeftLadderRequest leftLadder = (GetLeftLadderRequest) request;
+        out.writeInt(leftLadder.level);
+        writeNullableMembershipVector(out, leftLadder.membershipVector);
+        break;
+      case GetRightLadder:
+        GetRightLadderRequest rightLadder = (GetRightLadderRequest) request;
+        out.writeInt(rightLadder.level);
+        writeNullableMembershipVector(out, rightLadder.membershipVector);
+        break;
+      case Increment:
+        IncrementRequest increment = (IncrementRequest) request;
+        out.writeInt(increment.level);
+        writeIdentity(out, increment.snId);
+        break;
+      case Injection:
+        List<SkipNodeIdentity> snIds = ((InjectionRequest) request).snIds;
+        out.writeInt(snIds == null ? -1 : snIds.size());
+        if (snIds != null) {
+          for (SkipNodeIdentity snId : snIds) {
+            writeIdentity(out, snId);
+          }
+        }
+        break;
+      case AcquireLock:
+        writeIdentity(out, ((AcquireLockRequest) request).requester);
+        break;
+      case ReleaseLock:
+        writeIdentity(out, ((ReleaseLockRequest) request).owner);
+        break;
+      case Batch:
+        List<Request> requests = ((BatchRequest) request).requests;
+        out.writeInt(requests.size());
+        for (Request batched : requests) {
+          writeRequest(out, batched);
+        }
+        break;
+      case NextHop:
+        writeNullableIdentifier(out, ((NextHopRequest) request).target);
+        break;
+      case ForwardedSearchByIdentifier:
+        ForwardedSearchByIdentifierRequest forwardedById = (ForwardedSearchByIdentifierRequest) request;
+        writeNullableIdentifier(out, forwardedById.target);
+        writeOrigin(out, forwardedById.origin);
+        break;
+      case ForwardedSearchByMembershipVector:
+        ForwardedSearchByMembershipVectorRequest forwardedByMemVec = (ForwardedSearchByMembershipVectorRequest) request;
+        writeNullableMembershipVector(out, forwardedByMemVec.target);
+        out.writeInt(forwardedByMemVec.level);
+        writeOrigin(out, forwardedByMemVec.origin);
+        break;
+      case SearchReply:
+        SearchReplyRequest reply = (SearchReplyRequest) request;
+        out.writeLong(reply.searchId);
+        writeSearchResult(out, reply.result);
+        break;
+      case LadderChain:
+        LadderChainRequest ladderChain = (LadderChainRequest) request;
+        out.writeInt(ladderChain.level);
+        out.writeInt(ladderChain.direction);
+        writeNullableMembershipVector(out, ladderChain.target);
+        writeIdentity(out, ladderChain.requester);
+        break;
+      case ForwardedLevelWalk:
+        ForwardedLevelWalkRequest levelWalk = (ForwardedLevelWalkRequest) request;
+        out.writeInt(levelWalk.level);
+        out.writeInt(levelWalk.direction);
+        writeNullableMembershipVector(out, levelWalk.target);
+        writeOrigin(out, levelWalk.origin);
+        break;
+      case LockReleased:
+        writeIdentity(out, ((LockReleasedRequest) request).node);
+        break;
+      default:
+        throw new IOException("unknown request type: " + request.type);
+    }
+  }
+
+  private static Request readRequest(DataInputStream in) throws IOException {
+    int ordinal = in.readUnsignedByte();
+    if (ordinal >= REQUEST_TYPES.length) {
+      throw new IOException("unknown request type: " + ordinal);
+    }
+    long requestId = in.readLong();
+    boolean backoff = in.readBoolean();
+    int addressTag = in.readUnsignedByte();
+    String senderAddress = readAddress(in, addressTag);
+    int senderPort = readPort(in, addressTag);
+    Identifier receiverId = readNullableIdentifier(in);
+    Request request;
+    switch (REQUEST_TYPES[ordinal]) {
+      case SearchByMembershipVector:
+        request = new SearchByMembershipVectorRequest(readNullableMembershipVector(in));
+        break;
+      case SearchByMembershipVectorRecursive:
+        MembershipVector recursiveTarget = readNullableMembershipVector(in);
+        request = new SearchByMembershipVectorRecursiveRequest(recursiveTarget, in.readInt());
+        break;
+      case SearchByIdentifier:
+        request = new SearchByIdentifierRequest(readNullableIdentifier(in));
+        break;
+      case MembershipVectorLevelSearch:
+        int levelSearchLevel = in.readInt();
+        int levelSearchDirection = in.readInt();
+        request = new MembershipVectorLevelSearchRequest(levelSearchLevel, levelSearchDirection, readNullableMembershipVector(in));
+        break;
+      case UpdateLeftNode:
+        int updateLeftLevel = in.readInt();
+        request = new UpdateLeftNodeRequest(updateLeftLevel, readIdentity(in));
+        break;
+      case UpdateRightNode:
+        int updateRightLevel = in.readInt();
+        request = new UpdateRightNodeRequest(updateRightLevel, readIdentity(in));
+        break;
+      case GetLeftNode:
+        request = new GetLeftNodeRequest(in.readInt());
+        break;
+      case GetRightNode:
+        request = new GetRightNodeRequest(in.readInt());
+        break;
+      case AcquireNeighbors:
+        SkipNodeIdentity newNode = readIdentity(in);
+        request = new AcquireNeighborsRequest(newNode, in.readInt());
+        break;
+      case FindLadder:
+        int findLadderLevel = in.readInt();
+        int findLadderDirection = in.readInt();
+        request = new FindLadderRequest(findLadderLevel, findLadderDirection, readNullableMembershipVector(in));
+        break;
+      case AnnounceNeighbor:
+        SkipNodeIdentity newNeighbor = readIdentity(in);
+        request = new AnnounceNeighborRequest(newNeighbor, in.readInt());
+        break;
+      case IsAvailable:
+        request = new IsAvailableRequest();
+        break;
+      case GetLeftLadder:
+        int leftLadderLevel = in.readInt();
+        request = new GetLeftLadderRequest(leftLadderLevel, readNullableMembershipVector(in));
+        break;
+      case GetRightLadder:
+        int rightLadderLevel = in.readInt();
+        request = new GetRightLadderRequest(rightLadderLevel, readNullableMembershipVector(in));
+        break;
+      case Increment:
+        int incrementLevel = in.readInt();
+        request = new IncrementRequest(incrementLevel, readIdentity(in));
+        break;
+      case Injection:
+        int count = in.readInt();
+        List<SkipNodeIdentity> snIds = null;
+        if (count >= 0) {
+          snIds = new ArrayList<>(count);
+          for (int i = 0; i < count; i++) {
+            snIds.add(readIdentity(in));
+          }
+        }
+        request = new InjectionRequest(snIds);
+        break;
+      case AcquireLock:
+        request = new AcquireLockRequest(readIdentity(in));
+        break;
+      case ReleaseLock:
+        request = new ReleaseLockRequest(readIdentity(in));
+        break;
+      case GetIdentity:
+        request = new GetIdentityRequest();
+        break;
+      case Batch:
+        int batchSize = readCount(in);
+        List<Request> requests = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+          requests.add(readRequest(in));
+        }
+        request = new BatchRequest(requests);
+        break;
+      case NextHop:
+        request = new NextHopRequest(readNullableIdentifier(in));
+        break;
+      case ForwardedSearchByIdentifier:
+        Identifier forwardedTarget = readNullableIdentifier(in);
+        request = new ForwardedSearchByIdentifierRequest(forwardedTarget, readOrigin(in));
+        break;
+      case ForwardedSearchByMembershipVector:
+        MembershipVector forwardedMemVec = readNullableMembershipVector(in);
+        int forwardedLevel = in.readInt();
+        request = new ForwardedSearchByMembershipVectorRequest(forwardedMemVec, forwardedLevel, readOrigin(in));
+        break;
+      case SearchReply:
+        long searchId = in.readLong();
+        request = new SearchReplyRequest(searchId, readSearchResult(in));
+        break;
+      case LadderChain:
+        int ladderChainLevel = in.readInt();
+        int ladderChainDirection = in.readInt();
+        MembershipVector ladderChainTarget = readNullableMembershipVector(in);
+        request = new LadderChainRequest(ladderChainLevel, ladderChainDirection, ladderChainTarget, readIdentity(in));
+        break;
+      case ForwardedLevelWalk:
+        int levelWalkLevel = in.readInt();
+        int levelWalkDirection = in.readInt();
+        MembershipVector levelWalkTarget = readNullableMembershipVector(in);
+        request = new ForwardedLevelWalkRequest(levelWalkLevel, levelWalkDirection, levelWalkTarget, readOrigin(in));
+        break;
+      case LockReleased:
+        request = new LockReleasedRequest(readIdentity(in));
+        break;
+      default:
+        throw new IOException("unknown request type: " + REQUEST_TYPES[ordinal]);
+    }
+    request.requestId = requestId;
+    request.backoff = backoff;
+    request.senderAddress = senderAddress;
+    request.senderPort = senderPort;
+    request.receiverId = receiverId;
+    return request;
+  }
+
+  private static void writeResponse(DataOutputStream out, Response response) throws IOException {
+    if (response instanceof AckResponse) {
+      out.writeByte(ACK_RESPONSE);
+      writeResponseHeader(out, response);
+    } else if (response instanceof BusyResponse) {
+      out.writeByte(BUSY_RESPONSE);
+      writeResponseHeader(out, response);
+    } else if (response instanceof BooleanResponse) {
+      out.writeByte(BOOLEAN_RESPONSE);
+      writeResponseHeader(out, response);
+      out.writeBoolean(((BooleanResponse) response).answer);
+    } else if (response instanceof IdentityResponse) {
+      out.writeByte(IDENTITY_RESPONSE);
+      writeResponseHeader(out, response);
+      writeIdentity(out, ((IdentityResponse) response).identity);
+    } else if (response instanceof SearchResultResponse) {
+      out.writeByte(SEARCH_RESULT_RESPONSE);
+      writeResponseHeader(out, response);
+      writeSearchResult(out, ((SearchResultResponse) response).result);
+    } else if (response instanceof IdentityListResponse) {
+      out.writeByte(IDENTITY_LIST_RESPONSE);
+      writeResponseHeader(out, response);
+      List<SkipNodeIdentity> identities = ((IdentityListResponse) response).identities;
+      out.writeInt(identities == null ? -1 : identities.size());
+      if (identities != null) {
+        for (SkipNodeIdentity identity : identities) {
+          writeIdentity(out, identity);
+        }
+      }
+    } else if (response instanceof BatchResponse) {
+      out.writeByte(BATCH_RESPONSE);
+      writeResponseHeader(out, response);
+      List<Response> responses = ((BatchResponse) response).responses;
+      out.writeInt(responses.size());
+      for (Response batched : responses) {
+        // The response of a request that could not be handled is null.
+        out.writeBoolean(batched != null);
+        if (batched != null) {
+          writeResponse(out, batched);
+        }
+      }
+    } else if (response.getClass() == Response.class) {
+      out.writeByte(PLAIN_RESPONSE);
+      writeResponseHeader(out, response);
+    } else {
+      throw new IOException("unknown response type: " + response.getClass().getName());
+    }
+  }
+
+  private static void writeResponseHeader(DataOutputStream out, Response response) throws IOException {
+    out.writeLong(response.requestId);
+    out.writeBoolean(response.locked);
+  }
+
+  private static Response readResponse(DataInputStream in) throws IOException {
+    byte kind = in.readByte();
+    long requestId = in.readLong();
+    boolean locked = in.readBoolean();
+    Response response;
+    switch (kind) {
+      case PLAIN_RESPONSE:
+        response = new Response(locked);
+        break;
+      case ACK_RESPONSE:
+        response = new AckResponse();
+        break;
+      case BUSY_RESPONSE:
+        response = new BusyResponse();
+        break;
+      case BOOLEAN_RESPONSE:
+        response = new BooleanResponse(in.readBoolean());
+        break;
+      case IDENTITY_RESPONSE:
+        response = new IdentityResponse(readIdentity(in));
+        break;
+      case SEARCH_RESULT_RESPONSE:
+        response = new SearchResultResponse(readSearchResult(in));
+        break;
+      case IDENTITY_LIST_RESPONSE:
+        int identityCount = in.readInt();
+        List<SkipNodeIdentity> identities = null;
+        if (identityCount >= 0) {
+          identities = new ArrayList<>(identityCount);
+          for (int i = 0; i < identityCount; i++) {
+            identities.add(readIdentity(in));
+          }
+        }
+        response = new IdentityListResponse(identities);
+        break;
+      case BATCH_RESPONSE:
+        int batchSize = readCount(in);
+        List<Response> responses = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+          responses.add(in.readBoolean() ? readResponse(in) : null);
+        }
+        response = new BatchResponse(responses);
+        break;
+      default:
+        throw new IOException("unknown response kind: " + kind);
+    }
+    if (response.locked != locked) {
+      // Only plain responses are ever sent in the locked state.
+      throw new IOException("unexpected locked flag for response kind " + kind);
+    }
+    response.requestId = requestId;
+    return response;
+  }
+
+  /**
+   * Reads the number of packets in a batch.
+   */
+  private static int readCount(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    // Every packet takes at least one byte, so a larger count is certainly corrupt.
+    if (count < 0 || count > in.available()) {
+      throw new IOException("illegitimate batch size: " + count);
+    }
+    return count;
+  }
+
+  private static void writeIdentity(DataOutputStream out, SkipNodeIdentity identity) throws IOException {
+    out.writeBoolean(identity != null);
+    if (identity == null) {
+      return;
+    }
+    out.write(identity.getIdentifier().getBytes());
+    out.write(identity.getMemVec().getBytes());
+    writeEndpoint(out, identity.getAddress(), identity.getPort());
+  }
+
+  private static SkipNodeIdentity readIdentity(DataInputStream in) throws IOException {
+    if (!in.readBoolean()) {
+      return null;
+    }
+    Identifier identifier = new Identifier(readRaw(in));
+    MembershipVector membershipVector = new MembershipVector(readRaw(in));
+    int addressTag = in.readUnsignedByte();
+    String address = readAddress(in, addressTag);
+    return new SkipNodeIdentity(identifier, membershipVector, address, readPort(in, addressTag));
+  }
+
+  private static void writeSearchResult(DataOutputStream out, SearchResult result) throws IOException {
+    out.writeBoolean(result != null);
+    if (result != null) {
+      writeIdentity(out, result.result);
+    }
+  }
+
+  private static SearchResult readSearchResult(DataInputStream in) throws IOException {
+    return in.readBoolean() ? new SearchResult(readIdentity(in)) : null;
+  }
+
+  private static void writeOrigin(DataOutputStream out, SearchOrigin origin) throws IOException {
+    out.writeBoolean(origin != null);
+    if (origin != null) {
+      writeEndpoint(out, origin.address, origin.port);
+      out.writeLong(origin.searchId);
+    }
+  }
+
+  private static SearchOrigin readOrigin(DataInputStream in) throws IOException {
+    if (!in.readBoolean()) {
+      return null;
+    }
+    int addressTag = in.readUnsignedByte();
+    String address = readAddress(in, addressTag);
+    int port = readPort(in, addressTag);
+    return new SearchOrigin(address, port, in.readLong());
+  }
+
+  private static void writeNullableIdentifier(DataOutputStream out, Identifier identifier) throws IOException {
+    out.writeBoolean(identifier != null);
+    if (identifier != null) {
+      out.write(identifier.getBytes());
+    }
+  }
+
+  private static Identifier readNullableIdentifier(DataInputStream in) throws IOException {
+    return in.readBoolean() ? new Identifier(readRaw(in)) : null;
+  }
+
+  private static void writeNullableMembershipVector(DataOutputStream out, MembershipVector membershipVector) throws IOException {
+    out.writeBoolean(membershipVector != null);
+    if (membershipVector != null) {
+      out.write(membershipVector.getBytes());
+    }
+  }
+
+  private static MembershipVector readNullableMembershipVector(DataInputStream in) throws IOException {
+    return in.readBoolean() ? new MembershipVector(readRaw(in)) : null;
+  }
+
+  private static byte[] readRaw(DataInputStream in) throws IOException {
+    byte[] raw = new byte[SkipGraph.IDENTIFIER_SIZE];
+    in.readFully(raw);
+    return raw;
+  }
+
+  /**
+   * Writes an address followed by a port. IPv4 addresses in dotted decimal form take 4 bytes, other
+   * addresses (e.g., host names) are written as strings.
+   */
+  private static void writeEndpoint(DataOutputStream out, String address, int port) throws IOException {
+    byte[] ipv4 = address == null ? null : parseIpv4(address);
+    int tag = address == null ? NULL_ADDRESS : ipv4 != null ? IPV4_ADDRESS : NAMED_ADDRESS;
+    boolean widePort = port < 0 || port > 0xFFFF;
+    out.writeByte(widePort ? tag | WIDE_PORT : tag);
+    if (ipv4 != null) {
+      out.write(ipv4);
+    } else if (address != null) {
+      out.writeUTF(address);
+    }
+    if (widePort) {
+      out.writeInt(port);
+    } else {
+      out.writeShort(port);
+    }
+  }
+
+  private static String readAddress(DataInputStream in, int tag) throws IOException {
+    switch (tag & ~WIDE_PORT) {
+      case NULL_ADDRESS:
+        return null;
+      case IPV4_ADDRESS:
+        return in.readUnsignedByte() + "." + in.readUnsignedByte() + "." + in.readUnsignedByte() + "." + in.readUnsignedByte();
+      case NAMED_ADDRESS:
+        return in.readUTF();
+      default:
+        throw new IOException("unknown address tag: " + tag);
+    }
+  }
+
+  private static int readPort(DataInputStream in, int tag) throws IOException {
+    return (tag & WIDE_PORT) != 0 ? in.readInt() : in.readUnsignedShort();
+  }
+
+  /**
+   * Parses an IPv4 address in canonical dotted decimal form.
+   *
+   * @return the 4 bytes of the address, or null if the address is not in that form and would not be
+   *     restored exactly by `readAddress`.
+   */
+  private static byte[] parseIpv4(String address) {
+    byte[] bytes = new byte[4];
+    int octet = 0;
+    int value = 0;
+    int digits = 0;
+    for (int i = 0; i <= address.length(); i++) {
+      char c = i < address.length() ? address.charAt(i) : '.';
+      if (c == '.') {
+        if (digits == 0 || octet == 4) {
+          return null;
+        }
+        bytes[octet++] = (byte) value;
+        value = 0;
+        digits = 0;
+      } else if (c >= '0' && c <= '9') {
+        // Leading zeros are not restored, so such addresses are written as strings.
+        if (digits > 0 && value == 0) {
+          return null;
+        }
+        value = value * 10 + (c - '0');
+        digits++;
+        if (value > 255) {
+          return null;
+        }
+      } else {
+        return null;
+      }
+    }
+    return octet == 4 ? bytes : null;
+  }
+}
@@ -0,0 +1,33 @@
+package underlay.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * Encodes the packets with Java serialization. Every packet carries the descriptors of its classes,
+ * which makes the encoding self-describing but large.
+ */
+public class JavaPacketCodec implements PacketCodec {
+
+  @Override
+  public byte[] encode(Serializable packet) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+      oos.writeObject(packet);
+    }
+    return bos.toByteArray();
+  }
+
+  @Override
+  public Object decode(byte[] bytes, int offset, int length) throws IOException {
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes, offset, length))) {
+      return ois.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IOException("unknown packet class.", e);
+    }
+  }
+}
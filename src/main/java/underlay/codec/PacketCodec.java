@@ -0,0 +1,48 @@
+package underlay.codec;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Converts the request and response packets exchanged by the underlays into bytes and back. Both
+ * ends of a connection must use the same codec.
+ */
+public interface PacketCodec {
+
+  /**
+   * Encodes the given request or response.
+   *
+   * @param packet the request or response to encode.
+   * @return the encoded packet.
+   * @throws IOException if the packet could not be encoded.
+   */
+  byte[] encode(Serializable packet) throws IOException;
+
+  /**
+   * Decodes a request or response.
+   *
+   * @param bytes  buffer holding the encoded packet.
+   * @param offset offset of the encoded packet in the buffer.
+   * @param length length of the encoded packet in bytes.
+   * @return the decoded request or response.
+   * @throws IOException if the bytes do not hold a legitimate packet.
+   */
+  Object decode(byte[] bytes, int offset, int length) throws IOException;
+
+  /**
+   * Returns the codec with the given name; either `java` (Java serialization) or `binary`.
+   *
+   * @param name name of the codec.
+   * @return the codec.
+   */
+  static PacketCodec forName(String name) {
+    switch (name) {
+      case "java":
+        return new JavaPacketCodec();
+      case "binary":
+        return new BinaryPacketCodec();
+      default:
+        throw new IllegalArgumentException("unknown codec: " + name);
+    }
+  }
+}
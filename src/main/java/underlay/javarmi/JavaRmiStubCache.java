@@ -0,0 +1,83 @@
+package underlay.javarmi;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the stubs of the remote RMI adapters, so that a request does not have to look the stub
+ * of its destination up in the remote registry first. The cache is bounded, the least recently
+ * used stubs are forgotten first. A stub that fails with a `RemoteException` should be invalidated,
+ * since the remote adapter may have been restarted.
+ */
+public class JavaRmiStubCache {
+
+  private final int capacity;
+  private final LinkedHashMap<String, JavaRmiService> stubs;
+
+  /**
+   * Constructor for JavaRmiStubCache.
+   *
+   * @param capacity maximum number of stubs kept in the cache, zero disables caching.
+   */
+  public JavaRmiStubCache(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("capacity must be non-negative: " + capacity);
+    }
+    this.capacity = capacity;
+    // Access order, so that the least recently used stub is the eldest.
+    this.stubs = new LinkedHashMap<String, JavaRmiService>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, JavaRmiService> eldest) {
+        return size() > capacity;
+      }
+    };
+  }
+
+  /**
+   * Returns the cached stub of the given remote adapter.
+   *
+   * @param fullAddress address of the remote adapter in the form of IP:PORT.
+   * @return the cached stub, or null if there is none.
+   */
+  public synchronized JavaRmiService get(String fullAddress) {
+    return stubs.get(fullAddress);
+  }
+
+  /**
+   * Caches the stub of the given remote adapter.
+   *
+   * @param fullAddress address of the remote adapter in the form of IP:PORT.
+   * @param stub        the stub of the remote adapter.
+   */
+  public synchronized void put(String fullAddress, JavaRmiService stub) {
+    if (capacity > 0) {
+      stubs.put(fullAddress, stub);
+    }
+  }
+
+  /**
+   * Forgets the stub of the given remote adapter, if it is still the cached one.
+   *
+   * @param fullAddress address of the remote adapter in the form of IP:PORT.
+   * @param stub        the stub that turned out to be stale.
+   */
+  public synchronized void invalidate(String fullAddress, JavaRmiService stub) {
+    stubs.remove(fullAddress, stub);
+  }
+
+  /**
+   * Forgets all the stubs.
+   */
+  public synchronized void clear() {
+    stubs.clear();
+  }
+
+  /**
+   * Returns the number of cached stubs.
+   *
+   * @return number of cached stubs.
+   */
+  public synchronized int size() {
+    return stubs.size();
+  }
+}
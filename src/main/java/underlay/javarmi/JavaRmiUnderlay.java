@@ -1,28 +1,81 @@
 package underlay.javarmi;
 
+import java.rmi.ConnectException;
+import java.rmi.ConnectIOException;
 import java.rmi.Naming;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
 import java.rmi.server.ExportException;
+import java.rmi.server.UnicastRemoteObject;
 
 import underlay.Underlay;
 import underlay.packets.Request;
 import underlay.packets.Response;
 
 /**
- * Java RMI connection underlay implementation.
+ * Java RMI connection underlay implementation. The stubs of the remote adapters are cached, so that
+ * a request costs a single remote invocation instead of a registry lookup followed by the
+ * invocation. The RMI runtime reuses the underlying connections of the stubs.
  */
 public class JavaRmiUnderlay extends Underlay {
 
+  /**
+   * Default maximum number of cached stubs of remote adapters.
+   */
+  public static final int DEFAULT_STUB_CACHE_CAPACITY = 256;
+
   // Java RMI instance running at the host machine.
   JavaRmiHost host;
+  // The registry that the host is bound to.
+  private Registry registry;
+  // Stubs of the remote adapters by their address:port.
+  private final JavaRmiStubCache stubCache;
+
+  /**
+   * Constructs a Java RMI underlay with the default stub cache capacity.
+   */
+  public JavaRmiUnderlay() {
+    this(DEFAULT_STUB_CACHE_CAPACITY);
+  }
+
+  /**
+   * Constructor for JavaRmiUnderlay.
+   *
+   * @param stubCacheCapacity maximum number of cached stubs of remote adapters, zero disables the
+   *                          cache so that every request looks its stub up.
+   */
+  public JavaRmiUnderlay(int stubCacheCapacity) {
+    this.stubCache = new JavaRmiStubCache(stubCacheCapacity);
+  }
+
+  public JavaRmiStubCache getStubCache() {
+    return stubCache;
+  }
 
   /**
-   * Connects to the Java RMI adapter of a remote server.
+   * Connects to the Java RMI adapter of a remote server. The stub of the adapter is taken from the
+   * cache when possible.
    *
    * @param fullAddress address of the server in the form of IP:PORT
    * @return a remote Java RMI adapter.
    */
   public JavaRmiService remote(String fullAddress) {
+    JavaRmiService remote = stubCache.get(fullAddress);
+    if (remote != null) {
+      return remote;
+    }
+    return lookup(fullAddress);
+  }
+
+  /**
+   * Looks the Java RMI adapter of a remote server up in its registry and caches its stub.
+   *
+   * @param fullAddress address of the server in the form of IP:PORT
+   * @return a remote Java RMI adapter.
+   */
+  private JavaRmiService lookup(String fullAddress) {
     if (host == null) {
       System.err.println("[JavaRMIUnderlay] Host does not exist.");
       return null;
@@ -34,6 +87,7 @@ public class JavaRmiUnderlay extends Underlay {
       System.err.println("[JavaRMIUnderlay] Could not connect to the remote RMI server!");
       return null;
     }
+    stubCache.put(fullAddress, remote);
     return remote;
   }
 
@@ -48,7 +102,8 @@ public class JavaRmiUnderlay extends Underlay {
     try {
       host = new JavaRmiHost(this);
       // Bind this RMI adapter to the given port.
-      LocateRegistry.createRegistry(port).rebind("node", host);
+      registry = LocateRegistry.createRegistry(port);
+      registry.rebind("node", host);
 
     } catch (ExportException e) {
       port = (port + 1) % 60000; // tries another port in this range.
@@ -64,7 +119,9 @@ public class JavaRmiUnderlay extends Underlay {
   }
 
   /**
-   * Invokes the appropriate RMI method on the server with the given address.
+   * Invokes the appropriate RMI method on the server with the given address. If the cached stub of
+   * the server turns out to be stale, e.g., because the server was restarted, it is invalidated and
+   * the request is retried once with a freshly looked up stub.
    *
    * @param address address of the remote server.
    * @param port    port of the remote server.
@@ -77,29 +134,50 @@ public class JavaRmiUnderlay extends Underlay {
       System.err.println("[JavaRMIUnderlay] Host does not exist.");
       return null;
     }
+    String fullAddress = address + ":" + port;
     // Connect to the remote adapter.
-    JavaRmiService remote = remote(address + ":" + port);
-    if (remote == null) {
-      System.err.println("[JavaRMIUnderlay] Could not connect to the address: " + address + ":" + port);
-      return null;
-    }
-    // Use the remote handler to dispatch the request.
-    try {
-      return remote.handleRequest(request);
-    } catch (Exception e) {
-      System.err.println("[JavaRMIUnderlay] Could not send the message.");
-      e.printStackTrace();
-      return null;
+    JavaRmiService cached = stubCache.get(fullAddress);
+    JavaRmiService remote = cached != null ? cached : lookup(fullAddress);
+    while (true) {
+      if (remote == null) {
+        System.err.println("[JavaRMIUnderlay] Could not connect to the address: " + fullAddress);
+        return null;
+      }
+      // Use the remote handler to dispatch the request.
+      try {
+        return remote.handleRequest(request);
+      } catch (RemoteException e) {
+        stubCache.invalidate(fullAddress, remote);
+        // These failures guarantee that the request has not reached the remote adapter, so it is
+        // safe to send it again.
+        boolean undelivered = e instanceof ConnectException || e instanceof ConnectIOException || e instanceof NoSuchObjectException;
+        if (remote == cached && undelivered) {
+          cached = null;
+          remote = lookup(fullAddress);
+          continue;
+        }
+        System.err.println("[JavaRMIUnderlay] Could not send the message.");
+        e.printStackTrace();
+        return null;
+      } catch (Exception e) {
+        System.err.println("[JavaRMIUnderlay] Could not send the message.");
+        e.printStackTrace();
+        return null;
+      }
     }
   }
 
   /**
-   * Terminates the Java RMI underlay service.
+   * Terminates the Java RMI underlay service. The host and the registry are unexported, so that the
+   * port is released.
    */
   @Override
   public boolean terminate() {
     try {
       Naming.unbind("//" + getFullAddress() + "/node");
+      UnicastRemoteObject.unexportObject(host, true);
+      UnicastRemoteObject.unexportObject(registry, true);
+      stubCache.clear();
     } catch (Exception e) {
       System.err.println("[JavaRMIUnderlay] Could not terminate.");
       e.printStackTrace();
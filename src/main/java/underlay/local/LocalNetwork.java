@@ -0,0 +1,234 @@
+package underlay.local;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import underlay.codec.PacketCodec;
+import underlay.packets.Request;
+import underlay.packets.Response;
+
+/**
+ * Connects the `LocalUnderlay`s of a single JVM, e.g., to simulate a large skip graph. The
+ * underlays are indexed by their ports, so a packet is routed in constant time regardless of the
+ * number of underlays. Every underlay of a network gets a distinct port, which is not bound to any
+ * socket and may exceed the range of the TCP/UDP ports.
+ *
+ * <p>The links between the underlays can optionally be slowed down to model a real network: a
+ * packet is delivered after the latency of its link plus the time its encoded size takes at the
+ * bandwidth of the link. Links are modeled independently of each other, i.e., packets do not queue
+ * behind each other. All the links share the parameters of the network unless they are overridden
+ * with `setLink`.
+ */
+public class LocalNetwork {
+
+  /**
+   * Denotes a link without a bandwidth limit.
+   */
+  public static final long UNLIMITED_BANDWIDTH = 0;
+
+  // Maps the port of an underlay to the underlay.
+  private final ConcurrentHashMap<Integer, LocalUnderlay> underlays = new ConcurrentHashMap<>();
+  // Maps sourcePort:destinationPort to the parameters of the links that override the default ones.
+  private final ConcurrentHashMap<Long, Link> links = new ConcurrentHashMap<>();
+  private final AtomicInteger nextPort = new AtomicInteger(1);
+  private final Link defaultLink;
+  // Delivers the delayed packets of the asynchronous sends.
+  private final ExecutorService deliverers = Executors.newCachedThreadPool(runnable -> {
+    Thread thread = new Thread(runnable, "local-network-deliverer");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Constructs a network whose packets are delivered immediately.
+   */
+  public LocalNetwork() {
+    this(0, UNLIMITED_BANDWIDTH);
+  }
+
+  /**
+   * Constructor for LocalNetwork.
+   *
+   * @param latencyMillis           one-way latency in milliseconds of every link.
+   * @param bandwidthBytesPerSecond bandwidth in bytes per second of every link, or
+   *                                `UNLIMITED_BANDWIDTH`.
+   */
+  public LocalNetwork(long latencyMillis, long bandwidthBytesPerSecond) {
+    this.defaultLink = new Link(latencyMillis, bandwidthBytesPerSecond);
+  }
+
+  /**
+   * Overrides the parameters of the link from one underlay to another. The link in the opposite
+   * direction is not affected.
+   *
+   * @param sourcePort              port of the sending underlay.
+   * @param destinationPort         port of the receiving underlay.
+   * @param latencyMillis           one-way latency in milliseconds of the link.
+   * @param bandwidthBytesPerSecond bandwidth in bytes per second of the link, or
+   *                                `UNLIMITED_BANDWIDTH`.
+   */
+  public void setLink(int sourcePort, int destinationPort, long latencyMillis, long bandwidthBytesPerSecond) {
+    links.put(linkKey(sourcePort, destinationPort), new Link(latencyMillis, bandwidthBytesPerSecond));
+  }
+
+  /**
+   * Adds an underlay to the network.
+   *
+   * @param underlay the underlay.
+   * @param port     the requested port, or 0 to pick a free one.
+   * @return the port of the underlay, or -1 if the requested port is taken.
+   */
+  int register(LocalUnderlay underlay, int port) {
+    if (port > 0) {
+      return underlays.putIfAbsent(port, underlay) == null ? port : -1;
+    }
+    while (true) {
+      int candidate = nextPort.getAndIncrement();
+      if (underlays.putIfAbsent(candidate, underlay) == null) {
+        return candidate;
+      }
+    }
+  }
+
+  /**
+   * Removes an underlay from the network.
+   *
+   * @param underlay the underlay.
+   * @return true iff the underlay was part of the network.
+   */
+  public boolean removeUnderlay(LocalUnderlay underlay) {
+    return underlays.remove(underlay.getPort(), underlay);
+  }
+
+  /**
+   * Returns the underlays of the network.
+   *
+   * @return view of the underlays.
+   */
+  public Collection<LocalUnderlay> getUnderlays() {
+    return underlays.values();
+  }
+
+  /**
+   * Delivers the request to the underlay at the given address and port and returns its response,
+   * after the delays of the links in both directions.
+   *
+   * @param source  the sending underlay.
+   * @param address address of the receiving underlay.
+   * @param port    port of the receiving underlay.
+   * @param request the request.
+   * @return the response of the receiving underlay, or null if there is no such underlay.
+   */
+  Response deliver(LocalUnderlay source, String address, int port, Request request) {
+    LocalUnderlay destination = find(address, port);
+    if (destination == null) {
+      return null;
+    }
+    sleep(delayNanos(source, destination, request));
+    Response response = destination.dispatchRequest(request);
+    sleep(delayNanos(destination, source, response));
+    return response;
+  }
+
+  /**
+   * Delivers the request as in `deliver` without blocking the caller.
+   *
+   * @param source  the sending underlay.
+   * @param address address of the receiving underlay.
+   * @param port    port of the receiving underlay.
+   * @param request the request.
+   * @return future of the response of the receiving underlay, completed with null if there is no
+   *     such underlay.
+   */
+  CompletableFuture<Response> deliverAsync(LocalUnderlay source, String address, int port, Request request) {
+    LocalUnderlay destination = find(address, port);
+    if (destination == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return CompletableFuture.supplyAsync(() -> destination.dispatchRequest(request), after(delayNanos(source, destination, request)))
+        .thenCompose(response -> {
+          long delay = delayNanos(destination, source, response);
+          return delay == 0 ? CompletableFuture.completedFuture(response) : CompletableFuture.supplyAsync(() -> response, after(delay));
+        });
+  }
+
+  private LocalUnderlay find(String address, int port) {
+    LocalUnderlay underlay = underlays.get(port);
+    if (underlay == null || !underlay.getAddress().equals(address)) {
+      System.err.println("[LocalNetwork] No underlay found for address " + address + " and port " + port);
+      return null;
+    }
+    return underlay;
+  }
+
+  /**
+   * Computes the time it takes a packet to cross the link between two underlays.
+   *
+   * @param source      the sending underlay.
+   * @param destination the receiving underlay.
+   * @param packet      the packet.
+   * @return the delay in nanoseconds.
+   */
+  private long delayNanos(LocalUnderlay source, LocalUnderlay destination, Serializable packet) {
+    Link link = links.isEmpty() ? defaultLink : links.getOrDefault(linkKey(source.getPort(), destination.getPort()), defaultLink);
+    long delay = TimeUnit.MILLISECONDS.toNanos(link.latencyMillis);
+    if (link.bandwidthBytesPerSecond != UNLIMITED_BANDWIDTH && packet != null) {
+      // The size is only needed, and the packet only encoded, when the bandwidth is limited.
+      delay += size(source.getCodec(), packet) * TimeUnit.SECONDS.toNanos(1) / link.bandwidthBytesPerSecond;
+    }
+    return delay;
+  }
+
+  private static long size(PacketCodec codec, Serializable packet) {
+    try {
+      return codec.encode(packet).length;
+    } catch (IOException e) {
+      System.err.println("[LocalNetwork] Could not encode the packet.");
+      e.printStackTrace();
+      return 0;
+    }
+  }
+
+  private Executor after(long delayNanos) {
+    return delayNanos == 0 ? deliverers : CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS, deliverers);
+  }
+
+  private static void sleep(long delayNanos) {
+    long deadline = System.nanoTime() + delayNanos;
+    for (long remaining = delayNanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+      LockSupport.parkNanos(remaining);
+    }
+  }
+
+  private static long linkKey(int sourcePort, int destinationPort) {
+    return (long) sourcePort << 32 | (destinationPort & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Represents the parameters of a link.
+   */
+  private static class Link {
+    private final long latencyMillis;
+    private final long bandwidthBytesPerSecond;
+
+    private Link(long latencyMillis, long bandwidthBytesPerSecond) {
+      if (latencyMillis < 0) {
+        throw new IllegalArgumentException("latency must be non-negative: " + latencyMillis);
+      }
+      if (bandwidthBytesPerSecond < 0) {
+        throw new IllegalArgumentException("bandwidth must be non-negative: " + bandwidthBytesPerSecond);
+      }
+      this.latencyMillis = latencyMillis;
+      this.bandwidthBytesPerSecond = bandwidthBytesPerSecond;
+    }
+  }
+}
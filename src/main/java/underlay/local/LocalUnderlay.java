@@ -0,0 +1,77 @@
+package underlay.local;
+
+import java.util.concurrent.CompletableFuture;
+
+import underlay.Underlay;
+import underlay.packets.Request;
+import underlay.packets.Response;
+
+/**
+ * Underlay implementation for the nodes that run in the same JVM. The packets are handed over to
+ * the receiving underlay through their `LocalNetwork` without being serialized, unless the network
+ * models a limited bandwidth.
+ */
+public class LocalUnderlay extends Underlay {
+
+  private final LocalNetwork network;
+
+  /**
+   * Constructor for LocalUnderlay.
+   *
+   * @param network the network the underlay joins once it is initialized.
+   */
+  public LocalUnderlay(LocalNetwork network) {
+    this.network = network;
+  }
+
+  public LocalNetwork getNetwork() {
+    return network;
+  }
+
+  /**
+   * Joins the network.
+   *
+   * @param port the port that the underlay should be identified with, or 0 to pick a free one.
+   * @return port number underlay initialized on or -1 if the port is taken.
+   */
+  @Override
+  protected int initUnderlay(int port) {
+    return network.register(this, port);
+  }
+
+  /**
+   * Delivers the request to the underlay of the network at the given address and port.
+   *
+   * @param address address of the remote server.
+   * @param port    port of the remote server.
+   * @param request the request.
+   * @return the response emitted by the remote server, or null if there is no such server.
+   */
+  @Override
+  public Response sendMessage(String address, int port, Request request) {
+    return network.deliver(this, address, port, request);
+  }
+
+  /**
+   * Delivers the request without blocking the caller.
+   *
+   * @param address address of the remote server.
+   * @param port    port of the remote server.
+   * @param request the request.
+   * @return future of the response emitted by the remote server.
+   */
+  @Override
+  public CompletableFuture<Response> sendMessageAsync(String address, int port, Request request) {
+    return network.deliverAsync(this, address, port, request);
+  }
+
+  /**
+   * Leaves the network.
+   *
+   * @return true iff the underlay was part of the network.
+   */
+  @Override
+  public boolean terminate() {
+    return network.removeUnderlay(this);
+  }
+}
@@ -0,0 +1,170 @@
+package underlay.nio;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import underlay.codec.PacketCodec;
+import underlay.packets.Request;
+import underlay.packets.Response;
+
+/**
+ * Implements the sending side of the NIO underlay. The calling thread blocks on its own channel
+ * while waiting for the response, so the channels are kept open per peer and reused by the
+ * subsequent requests. A channel carries a single outstanding request at a time.
+ */
+public class NioClient {
+
+  private final long idleTimeoutMillis;
+  // Maps address:port of a peer to its idle channels, most recently used first.
+  private final ConcurrentHashMap<String, ConcurrentLinkedDeque<IdleChannel>> idleChannels = new ConcurrentHashMap<>();
+  private volatile boolean closed = false;
+
+  public NioClient(long idleTimeoutMillis) {
+    this.idleTimeoutMillis = idleTimeoutMillis;
+  }
+
+  /**
+   * Sends the request to the given peer and waits for its response. The idle channels that the
+   * remote end has closed are skipped. If a reused channel fails before any byte of the request is
+   * written, the request is retried over another channel. Once the request is written, the remote
+   * end may have handled it, so a failure is not retried.
+   *
+   * @param address address of the remote server.
+   * @param port    port of the remote server.
+   * @param request the request to send.
+   * @param codec   the codec of the underlay.
+   * @return the response emitted by the remote server.
+   * @throws IOException if the request could not be delivered or the response could not be decoded.
+   */
+  public Response send(String address, int port, Request request, PacketCodec codec) throws IOException {
+    String peer = address + ":" + port;
+    ByteBuffer frame = NioFrames.encode(codec, request);
+    while (true) {
+      SocketChannel channel = pollIdle(peer);
+      boolean reused = channel != null;
+      if (!reused) {
+        channel = SocketChannel.open(new InetSocketAddress(address, port));
+        channel.socket().setTcpNoDelay(true);
+      }
+      byte[] body;
+      try {
+        frame.rewind();
+        while (frame.hasRemaining()) {
+          channel.write(frame);
+        }
+        body = readFrame(channel);
+      } catch (IOException e) {
+        channel.close();
+        if (!reused || frame.position() > 0) {
+          throw e;
+        }
+        // The remote end has dropped the idle channel before the request reached it, try again over another one.
+        continue;
+      }
+      release(peer, channel);
+      Object response = NioFrames.decode(codec, body);
+      if (!(response instanceof Response)) {
+        throw new IOException("received a packet that is not a response: " + response);
+      }
+      return (Response) response;
+    }
+  }
+
+  private static byte[] readFrame(SocketChannel channel) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(NioFrames.HEADER_SIZE);
+    readFully(channel, header);
+    header.flip();
+    int length = header.getInt();
+    NioFrames.checkLength(length);
+    ByteBuffer body = ByteBuffer.allocate(length);
+    readFully(channel, body);
+    return body.array();
+  }
+
+  private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        throw new EOFException("connection closed by the remote end.");
+      }
+    }
+  }
+
+  private SocketChannel pollIdle(String peer) throws IOException {
+    ConcurrentLinkedDeque<IdleChannel> idle = idleChannels.get(peer);
+    if (idle == null) {
+      return null;
+    }
+    long now = System.currentTimeMillis();
+    IdleChannel candidate;
+    while ((candidate = idle.pollFirst()) != null) {
+      if (now - candidate.since < idleTimeoutMillis && !isClosedByPeer(candidate.channel)) {
+        return candidate.channel;
+      }
+      candidate.channel.close();
+    }
+    return null;
+  }
+
+  /**
+   * Checks without blocking whether the remote end has closed an idle channel. An idle channel has
+   * nothing to read, so anything else than an empty read makes the channel unusable.
+   *
+   * @param channel the idle channel.
+   * @return true iff the channel cannot carry another request.
+   */
+  private static boolean isClosedByPeer(SocketChannel channel) {
+    try {
+      channel.configureBlocking(false);
+      int read = channel.read(ByteBuffer.allocate(1));
+      channel.configureBlocking(true);
+      return read != 0;
+    } catch (IOException e) {
+      return true;
+    }
+  }
+
+  private void release(String peer, SocketChannel channel) throws IOException {
+    if (closed) {
+      channel.close();
+      return;
+    }
+    idleChannels.computeIfAbsent(peer, k -> new ConcurrentLinkedDeque<>()).offerFirst(new IdleChannel(channel));
+  }
+
+  /**
+   * Closes all the idle channels. Channels that are in use are closed once their exchange is over.
+   */
+  public void close() {
+    closed = true;
+    for (ConcurrentLinkedDeque<IdleChannel> idle : idleChannels.values()) {
+      IdleChannel candidate;
+      while ((candidate = idle.pollFirst()) != null) {
+        try {
+          candidate.channel.close();
+        } catch (IOException e) {
+          System.err.println("[NIOClient] Could not close an idle channel.");
+          e.printStackTrace();
+        }
+      }
+    }
+    idleChannels.clear();
+  }
+
+  /**
+   * An idle channel along with the time it became idle.
+   */
+  private static class IdleChannel {
+    private final SocketChannel channel;
+    private final long since;
+
+    private IdleChannel(SocketChannel channel) {
+      this.channel = channel;
+      this.since = System.currentTimeMillis();
+    }
+  }
+}
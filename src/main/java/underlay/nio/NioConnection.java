@@ -0,0 +1,122 @@
+package underlay.nio;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Represents the state of a single non-blocking connection accepted by the NIO underlay. The
+ * connection is only read and written by the I/O thread of its reactor; the worker threads hand
+ * their responses over through `send`.
+ */
+public class NioConnection {
+
+  private final SocketChannel channel;
+  private final NioReactor reactor;
+  // Holds the length prefix of the frame that is currently being read.
+  private final ByteBuffer header = ByteBuffer.allocate(NioFrames.HEADER_SIZE);
+  // Frames waiting to be written to the channel, in order.
+  private final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+  // Holds the body of the frame that is currently being read, null while reading the header.
+  private ByteBuffer body;
+  private SelectionKey key;
+
+  public NioConnection(SocketChannel channel, NioReactor reactor) {
+    this.channel = channel;
+    this.reactor = reactor;
+  }
+
+  void setKey(SelectionKey key) {
+    this.key = key;
+  }
+
+  /**
+   * Reads everything that is currently available on the channel. Called by the I/O thread when the
+   * channel is readable.
+   *
+   * @return the bodies of the frames that were completed by this read.
+   * @throws IOException if the channel is closed or a malformed frame is received.
+   */
+  List<byte[]> read() throws IOException {
+    List<byte[]> frames = new ArrayList<>();
+    while (true) {
+      ByteBuffer target = (body == null) ? header : body;
+      int read = channel.read(target);
+      if (read < 0) {
+        throw new EOFException("connection closed by the remote end.");
+      }
+      if (target.hasRemaining()) {
+        // No more data available for now.
+        return frames;
+      }
+      if (body == null) {
+        // Header is complete, continue with the body.
+        header.flip();
+        int length = header.getInt();
+        header.clear();
+        NioFrames.checkLength(length);
+        body = ByteBuffer.allocate(length);
+      } else {
+        frames.add(body.array());
+        body = null;
+      }
+    }
+  }
+
+  /**
+   * Enqueues the given frame to be written by the I/O thread. Can be called from any thread.
+   *
+   * @param frame the frame to write.
+   */
+  public void send(ByteBuffer frame) {
+    writeQueue.add(frame);
+    reactor.execute(this::flush);
+  }
+
+  /**
+   * Writes as much of the enqueued frames as the channel accepts. Called by the I/O thread. If the
+   * channel cannot take everything, write readiness is requested and the remainder is written once
+   * the channel becomes writable.
+   */
+  void flush() {
+    if (!key.isValid()) {
+      return;
+    }
+    try {
+      ByteBuffer frame;
+      while ((frame = writeQueue.peek()) != null) {
+        channel.write(frame);
+        if (frame.hasRemaining()) {
+          key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+          return;
+        }
+        writeQueue.poll();
+      }
+      key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+    } catch (IOException e) {
+      close();
+    }
+  }
+
+  /**
+   * Closes the connection.
+   */
+  void close() {
+    if (key != null) {
+      key.cancel();
+    }
+    try {
+      channel.close();
+    } catch (IOException e) {
+      System.err.println("[NIOConnection] Could not close the connection.");
+      e.printStackTrace();
+    }
+    writeQueue.clear();
+  }
+}
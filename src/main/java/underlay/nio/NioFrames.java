@@ -0,0 +1,65 @@
+package underlay.nio;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+import underlay.codec.PacketCodec;
+
+/**
+ * Contains the helper methods for the length-prefixed framing of the NIO underlay. Every frame
+ * starts with a 4-byte big-endian length followed by the packet encoded by the codec of the
+ * underlay.
+ */
+public class NioFrames {
+
+  /**
+   * Size of the length prefix of a frame in bytes.
+   */
+  public static final int HEADER_SIZE = Integer.BYTES;
+  /**
+   * Maximum accepted size of a frame body in bytes. Larger frames are considered corrupt.
+   */
+  public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+  /**
+   * Encodes the given packet into a frame that is ready to be written to a channel.
+   *
+   * @param codec  the codec of the underlay.
+   * @param packet the packet to encode.
+   * @return a buffer holding the length prefix and the encoded packet, flipped for reading.
+   * @throws IOException if the packet could not be encoded.
+   */
+  public static ByteBuffer encode(PacketCodec codec, Serializable packet) throws IOException {
+    byte[] body = codec.encode(packet);
+    ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + body.length);
+    frame.putInt(body.length);
+    frame.put(body);
+    frame.flip();
+    return frame;
+  }
+
+  /**
+   * Decodes the body of a frame.
+   *
+   * @param codec the codec of the underlay.
+   * @param body  the frame body without the length prefix.
+   * @return the packet carried by the frame.
+   * @throws IOException if the body is malformed.
+   */
+  public static Object decode(PacketCodec codec, byte[] body) throws IOException {
+    return codec.decode(body, 0, body.length);
+  }
+
+  /**
+   * Checks the length prefix of a received frame.
+   *
+   * @param length the length read from the frame header.
+   * @throws IOException if the length is not a legitimate frame size.
+   */
+  public static void checkLength(int length) throws IOException {
+    if (length < 0 || length > MAX_FRAME_SIZE) {
+      throw new IOException("illegitimate frame size: " + length);
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package underlay.nio;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Implements an I/O thread of the NIO underlay. A reactor multiplexes any number of connections
+ * over a single `Selector`, reads the incoming frames and hands them to the underlay, and writes
+ * back the responses. The first reactor of an underlay also accepts the incoming connections and
+ * distributes them among all the reactors.
+ */
+public class NioReactor implements Runnable {
+
+  private final Selector selector;
+  private final NioUnderlay underlay;
+  // Tasks that must run on the I/O thread, e.g., registrations and writes.
+  private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+  private volatile boolean running = true;
+
+  /**
+   * Constructor for NioReactor.
+   *
+   * @param underlay the underlay that owns this reactor.
+   * @throws IOException if the selector could not be opened.
+   */
+  public NioReactor(NioUnderlay underlay) throws IOException {
+    this.selector = Selector.open();
+    this.underlay = underlay;
+  }
+
+  /**
+   * Starts accepting the incoming connections of the given server channel on this reactor.
+   *
+   * @param serverChannel the bound server channel.
+   */
+  public void listen(ServerSocketChannel serverChannel) {
+    execute(() -> {
+      try {
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+      } catch (IOException e) {
+        System.err.println("[NIOReactor] Could not listen on the server channel.");
+        e.printStackTrace();
+      }
+    });
+  }
+
+  /**
+   * Hands an accepted connection over to this reactor.
+   *
+   * @param channel the accepted channel.
+   */
+  public void register(SocketChannel channel) {
+    execute(() -> {
+      try {
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        NioConnection connection = new NioConnection(channel, this);
+        connection.setKey(channel.register(selector, SelectionKey.OP_READ, connection));
+      } catch (IOException e) {
+        System.err.println("[NIOReactor] Could not register the accepted connection.");
+        e.printStackTrace();
+      }
+    });
+  }
+
+  /**
+   * Runs the given task on the I/O thread of this reactor.
+   *
+   * @param task the task to run.
+   */
+  public void execute(Runnable task) {
+    pendingTasks.add(task);
+    selector.wakeup();
+  }
+
+  @Override
+  public void run() {
+    try {
+      while (running) {
+        selector.select();
+        Runnable task;
+        while ((task = pendingTasks.poll()) != null) {
+          task.run();
+        }
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          if (!key.isValid()) {
+            continue;
+          }
+          if (key.isAcceptable()) {
+            accept((ServerSocketChannel) key.channel());
+            continue;
+          }
+          NioConnection connection = (NioConnection) key.attachment();
+          if (key.isReadable()) {
+            try {
+              for (byte[] frame : connection.read()) {
+                underlay.handleFrame(connection, frame);
+              }
+            } catch (IOException e) {
+              // The connection is closed by the client or is corrupted.
+              connection.close();
+              continue;
+            }
+          }
+          if (key.isValid() && key.isWritable()) {
+            connection.flush();
+          }
+        }
+      }
+    } catch (IOException | ClosedSelectorException e) {
+      if (running) {
+        System.err.println("[NIOReactor] Selector failed.");
+        e.printStackTrace();
+      }
+    } finally {
+      closeAll();
+    }
+  }
+
+  private void accept(ServerSocketChannel serverChannel) {
+    try {
+      SocketChannel channel;
+      while ((channel = serverChannel.accept()) != null) {
+        underlay.nextReactor().register(channel);
+      }
+    } catch (IOException e) {
+      System.err.println("[NIOReactor] Could not accept the incoming connection.");
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Stops the reactor. All the connections of the reactor are closed by the I/O thread.
+   */
+  public void stop() {
+    running = false;
+    selector.wakeup();
+  }
+
+  private void closeAll() {
+    try {
+      for (SelectionKey key : selector.keys()) {
+        if (key.attachment() instanceof NioConnection) {
+          ((NioConnection) key.attachment()).close();
+        }
+      }
+      selector.close();
+    } catch (IOException | ClosedSelectorException e) {
+      System.err.println("[NIOReactor] Could not close the selector.");
+      e.printStackTrace();
+    }
+  }
+}
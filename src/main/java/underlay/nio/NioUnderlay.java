@@ -0,0 +1,200 @@
+package underlay.nio;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import underlay.Underlay;
+import underlay.packets.Request;
+import underlay.packets.Response;
+import underlay.packets.responses.BusyResponse;
+
+/**
+ * Non-blocking TCP underlay implementation. Incoming connections are multiplexed over a small fixed
+ * set of I/O threads (reactors), each running a `Selector`, instead of a thread per connection. The
+ * packets are exchanged as length-prefixed frames. Decoding and dispatching the requests is done by
+ * a bounded worker pool. The workers are handed the requests directly without queueing: when all of
+ * them are busy, the request is answered with a busy response so that the client tries again
+ * shortly, instead of waiting behind requests that may themselves be waiting on this node.
+ */
+public class NioUnderlay extends Underlay {
+
+  /**
+   * Default number of I/O threads.
+   */
+  public static final int DEFAULT_IO_THREADS = 2;
+  /**
+   * Default maximum number of worker threads that dispatch the requests.
+   */
+  public static final int DEFAULT_MAX_WORKERS = 64;
+  /**
+   * Default duration in milliseconds an idle outgoing connection is kept open.
+   */
+  public static final long DEFAULT_IDLE_TIMEOUT_MS = 30_000;
+
+  private final int ioThreads;
+  private final int maxWorkers;
+  private final NioClient client;
+  private final AtomicInteger nextReactor = new AtomicInteger();
+  private NioReactor[] reactors;
+  private Thread[] reactorThreads;
+  private ThreadPoolExecutor workers;
+  // The local TCP channel that accepts incoming connections.
+  private ServerSocketChannel serverChannel;
+
+  /**
+   * Constructs a NIO underlay with the default parameters.
+   */
+  public NioUnderlay() {
+    this(DEFAULT_IO_THREADS, DEFAULT_MAX_WORKERS, DEFAULT_IDLE_TIMEOUT_MS);
+  }
+
+  /**
+   * Constructor for NioUnderlay.
+   *
+   * @param ioThreads         number of I/O threads.
+   * @param maxWorkers        maximum number of worker threads that dispatch the requests.
+   * @param idleTimeoutMillis duration in milliseconds an idle outgoing connection is kept open.
+   */
+  public NioUnderlay(int ioThreads, int maxWorkers, long idleTimeoutMillis) {
+    if (ioThreads <= 0) {
+      throw new IllegalArgumentException("number of I/O threads must be positive: " + ioThreads);
+    }
+    if (maxWorkers <= 0) {
+      throw new IllegalArgumentException("number of workers must be positive: " + maxWorkers);
+    }
+    this.ioThreads = ioThreads;
+    this.maxWorkers = maxWorkers;
+    this.client = new NioClient(idleTimeoutMillis);
+  }
+
+  /**
+   * Binds a server channel to the given port and starts the I/O and worker threads.
+   *
+   * @param port the port that the underlay should be bound to.
+   * @return port number underlay initialized on or -1 if initialization is unsuccessful.
+   */
+  @Override
+  protected int initUnderlay(int port) {
+    try {
+      serverChannel = ServerSocketChannel.open();
+      serverChannel.bind(new InetSocketAddress(port));
+      reactors = new NioReactor[ioThreads];
+      for (int i = 0; i < ioThreads; i++) {
+        reactors[i] = new NioReactor(this);
+      }
+    } catch (IOException e) {
+      System.err.println("[NIOUnderlay] Could not initialize at the given port.");
+      e.printStackTrace();
+      return -1;
+    }
+    workers = new ThreadPoolExecutor(maxWorkers, maxWorkers, 60, TimeUnit.SECONDS, new SynchronousQueue<>());
+    workers.allowCoreThreadTimeOut(true);
+    // The first reactor accepts the incoming connections for all of them.
+    reactors[0].listen(serverChannel);
+    reactorThreads = new Thread[ioThreads];
+    for (int i = 0; i < ioThreads; i++) {
+      reactorThreads[i] = new Thread(reactors[i]);
+      reactorThreads[i].start();
+    }
+    return serverChannel.socket().getLocalPort();
+  }
+
+  /**
+   * Returns the reactor that should own the next accepted connection.
+   *
+   * @return a reactor chosen in a round-robin fashion.
+   */
+  NioReactor nextReactor() {
+    return reactors[Math.floorMod(nextReactor.getAndIncrement(), reactors.length)];
+  }
+
+  /**
+   * Hands a received request frame over to the worker pool. Called by the I/O threads.
+   *
+   * @param connection the connection the frame was received from.
+   * @param frame      the body of the received frame.
+   */
+  void handleFrame(NioConnection connection, byte[] frame) {
+    try {
+      workers.execute(() -> {
+        Response response;
+        try {
+          response = dispatchRequest((Request) NioFrames.decode(getCodec(), frame));
+        } catch (IOException | ClassCastException e) {
+          System.err.println("[NIOUnderlay] Could not read the request.");
+          e.printStackTrace();
+          connection.close();
+          return;
+        }
+        reply(connection, response);
+      });
+    } catch (RejectedExecutionException e) {
+      // All the workers are busy, ask the client to try again shortly.
+      reply(connection, new BusyResponse());
+    }
+  }
+
+  private void reply(NioConnection connection, Response response) {
+    ByteBuffer responseFrame;
+    try {
+      responseFrame = NioFrames.encode(getCodec(), response);
+    } catch (IOException e) {
+      System.err.println("[NIOUnderlay] Could not send the response.");
+      e.printStackTrace();
+      connection.close();
+      return;
+    }
+    connection.send(responseFrame);
+  }
+
+  /**
+   * Sends the request to the given peer and blocks until its response arrives.
+   *
+   * @param address address of the remote server.
+   * @param port    port of the remote server.
+   * @param request the request to send.
+   * @return the response emitted by the remote server.
+   */
+  @Override
+  public Response sendMessage(String address, int port, Request request) {
+    try {
+      return client.send(address, port, request, getCodec());
+    } catch (IOException e) {
+      System.err.println("[NIOUnderlay] Could not send the request to the address: " + address + ":" + port);
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  /**
+   * Terminates the underlay by unbinding from the port and stopping the I/O and worker threads.
+   *
+   * @return whether the termination was successful.
+   */
+  @Override
+  public boolean terminate() {
+    try {
+      serverChannel.close();
+      for (NioReactor reactor : reactors) {
+        reactor.stop();
+      }
+      for (Thread reactorThread : reactorThreads) {
+        reactorThread.join();
+      }
+      workers.shutdown();
+      client.close();
+    } catch (Exception e) {
+      System.err.println("[NIOUnderlay] Could not terminate.");
+      e.printStackTrace();
+      return false;
+    }
+    return true;
+  }
+}
@@ -21,6 +21,11 @@ public class Request implements Serializable {
   // `locked` response and act accordingly.
   public boolean backoff = true;
 
+  // Correlation ID assigned by the sending underlay, unique among the requests of that underlay. The
+  // response to this request carries the same ID, which lets an underlay have several requests in
+  // flight over a single socket.
+  public long requestId;
+
   public Request(RequestType type) {
     this.type = type;
   }
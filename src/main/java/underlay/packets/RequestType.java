@@ -22,5 +22,13 @@ public enum RequestType {
   GetRightLadder,
   AcquireLock,
   ReleaseLock,
-  GetIdentity
+  GetIdentity,
+  Batch,
+  NextHop,
+  ForwardedSearchByIdentifier,
+  ForwardedSearchByMembershipVector,
+  SearchReply,
+  LadderChain,
+  ForwardedLevelWalk,
+  LockReleased
 }
@@ -9,6 +9,9 @@ public class Response implements Serializable {
 
   public final boolean locked;
 
+  // Correlation ID of the request this response answers. Set by the underlay of the responder.
+  public long requestId;
+
   public Response() {
     this.locked = false;
   }
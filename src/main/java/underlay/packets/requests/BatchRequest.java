@@ -0,0 +1,21 @@
+package underlay.packets.requests;
+
+import java.util.List;
+
+import underlay.packets.Request;
+import underlay.packets.RequestType;
+
+/**
+ * Carries several independent requests to the same peer in a single underlay message. The peer
+ * handles them one by one and answers with a `BatchResponse` holding their responses in the same
+ * order.
+ */
+public class BatchRequest extends Request {
+
+  public final List<Request> requests;
+
+  public BatchRequest(List<Request> requests) {
+    super(RequestType.Batch);
+    this.requests = requests;
+  }
+}
@@ -0,0 +1,33 @@
+package underlay.packets.requests;
+
+import model.identifier.MembershipVector;
+import skipnode.SearchOrigin;
+import underlay.packets.Request;
+import underlay.packets.RequestType;
+
+/**
+ * Request for a walk along a level in search of a ladder in the forwarding mode. Answered with an
+ * acknowledgement right away, the ladder is sent to the originator by the node the walk ends at.
+ */
+public class ForwardedLevelWalkRequest extends Request {
+  public final int level;
+  public final int direction;
+  public final MembershipVector target;
+  public final SearchOrigin origin;
+
+  /**
+   * Constructor for ForwardedLevelWalkRequest.
+   *
+   * @param level     the level to walk along.
+   * @param direction the direction of the walk.
+   * @param target    membership vector of the inserted node.
+   * @param origin    the originator of the walk.
+   */
+  public ForwardedLevelWalkRequest(int level, int direction, MembershipVector target, SearchOrigin origin) {
+    super(RequestType.ForwardedLevelWalk);
+    this.level = level;
+    this.direction = direction;
+    this.target = target;
+    this.origin = origin;
+  }
+}
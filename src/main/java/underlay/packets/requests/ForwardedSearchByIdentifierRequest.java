@@ -0,0 +1,27 @@
+package underlay.packets.requests;
+
+import model.identifier.Identifier;
+import skipnode.SearchOrigin;
+import underlay.packets.Request;
+import underlay.packets.RequestType;
+
+/**
+ * Request for a search by identifier in the forwarding mode. Answered with an acknowledgement right
+ * away, the result is sent to the originator by the last hop.
+ */
+public class ForwardedSearchByIdentifierRequest extends Request {
+  public final Identifier target;
+  public final SearchOrigin origin;
+
+  /**
+   * Constructor for ForwardedSearchByIdentifierRequest.
+   *
+   * @param target the target identifier.
+   * @param origin the originator of the search.
+   */
+  public ForwardedSearchByIdentifierRequest(Identifier target, SearchOrigin origin) {
+    super(RequestType.ForwardedSearchByIdentifier);
+    this.target = target;
+    this.origin = origin;
+  }
+}
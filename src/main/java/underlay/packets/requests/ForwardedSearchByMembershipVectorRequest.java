@@ -0,0 +1,30 @@
+package underlay.packets.requests;
+
+import model.identifier.MembershipVector;
+import skipnode.SearchOrigin;
+import underlay.packets.Request;
+import underlay.packets.RequestType;
+
+/**
+ * Request for a recursive search by membership vector in the forwarding mode. Answered with an
+ * acknowledgement right away, the result is sent to the originator by the last hop.
+ */
+public class ForwardedSearchByMembershipVectorRequest extends Request {
+  public final MembershipVector target;
+  public final int level;
+  public final SearchOrigin origin;
+
+  /**
+   * Constructor for ForwardedSearchByMembershipVectorRequest.
+   *
+   * @param target membership vector of the target node.
+   * @param level  the level the search continues at.
+   * @param origin the originator of the search.
+   */
+  public ForwardedSearchByMembershipVectorRequest(MembershipVector target, int level, SearchOrigin origin) {
+    super(RequestType.ForwardedSearchByMembershipVector);
+    this.target = target;
+    this.level = level;
+    this.origin = origin;
+  }
+}
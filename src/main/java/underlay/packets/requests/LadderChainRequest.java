@@ -0,0 +1,33 @@
+package underlay.packets.requests;
+
+import model.identifier.MembershipVector;
+import skipnode.SkipNodeIdentity;
+import underlay.packets.Request;
+import underlay.packets.RequestType;
+
+/**
+ * Request for finding the ladders of an inserted node on all the levels above a given one.
+ */
+public class LadderChainRequest extends Request {
+
+  public final int level;
+  public final int direction;
+  public final MembershipVector target;
+  public final SkipNodeIdentity requester;
+
+  /**
+   * Constructor for LadderChainRequest.
+   *
+   * @param level     the lowest level to find a ladder on.
+   * @param direction the direction of the ladders.
+   * @param target    membership vector of the inserted node.
+   * @param requester identity of the inserted node.
+   */
+  public LadderChainRequest(int level, int direction, MembershipVector target, SkipNodeIdentity requester) {
+    super(RequestType.LadderChain);
+    this.level = level;
+    this.direction = direction;
+    this.target = target;
+    this.requester = requester;
+  }
+}
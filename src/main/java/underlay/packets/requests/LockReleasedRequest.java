@@ -0,0 +1,24 @@
+package underlay.packets.requests;
+
+import skipnode.SkipNodeIdentity;
+import underlay.packets.Request;
+import underlay.packets.RequestType;
+
+/**
+ * Request for notifying an inserted node that a node which refused to hand over its lock has
+ * released it.
+ */
+public class LockReleasedRequest extends Request {
+
+  public final SkipNodeIdentity node;
+
+  /**
+   * Constructor for LockReleasedRequest.
+   *
+   * @param node identity of the node that released its lock.
+   */
+  public LockReleasedRequest(SkipNodeIdentity node) {
+    super(RequestType.LockReleased);
+    this.node = node;
+  }
+}
@@ -0,0 +1,18 @@
+package underlay.packets.requests;
+
+import model.identifier.Identifier;
+import underlay.packets.Request;
+import underlay.packets.RequestType;
+
+/**
+ * Request for the next hop of an identifier search, used by the originator of an iterative search
+ * to drive the search itself.
+ */
+public class NextHopRequest extends Request {
+  public final Identifier target;
+
+  public NextHopRequest(Identifier target) {
+    super(RequestType.NextHop);
+    this.target = target;
+  }
+}
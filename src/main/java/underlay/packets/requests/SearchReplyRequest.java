@@ -0,0 +1,26 @@
+package underlay.packets.requests;
+
+import skipnode.SearchResult;
+import underlay.packets.Request;
+import underlay.packets.RequestType;
+
+/**
+ * Carries the result of a search in the forwarding mode from its last hop to its originator.
+ */
+public class SearchReplyRequest extends Request {
+  public final long searchId;
+  // Null if the search could not be forwarded to one of its hops.
+  public final SearchResult result;
+
+  /**
+   * Constructor for SearchReplyRequest.
+   *
+   * @param searchId ID of the search at the originator.
+   * @param result   the result of the search, or null if the search failed.
+   */
+  public SearchReplyRequest(long searchId, SearchResult result) {
+    super(RequestType.SearchReply);
+    this.searchId = searchId;
+    this.result = result;
+  }
+}
@@ -0,0 +1,17 @@
+package underlay.packets.responses;
+
+import java.util.List;
+
+import underlay.packets.Response;
+
+/**
+ * Response for a batch request, holding the responses of its requests in the same order.
+ */
+public class BatchResponse extends Response {
+
+  public final List<Response> responses;
+
+  public BatchResponse(List<Response> responses) {
+    this.responses = responses;
+  }
+}
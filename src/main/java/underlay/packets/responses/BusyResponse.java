@@ -0,0 +1,11 @@
+package underlay.packets.responses;
+
+import underlay.packets.Response;
+
+/**
+ * Represents the response to a request that the receiving underlay could not handle since all of
+ * its workers were busy. The request was not handled at all, so the sender may send it again
+ * shortly. Unlike a locked response, it says nothing about the state of the receiving node.
+ */
+public class BusyResponse extends Response {
+}
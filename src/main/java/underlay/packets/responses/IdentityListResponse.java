@@ -0,0 +1,18 @@
+package underlay.packets.responses;
+
+import java.util.List;
+
+import skipnode.SkipNodeIdentity;
+import underlay.packets.Response;
+
+/**
+ * Response for a request that is answered with several identities.
+ */
+public class IdentityListResponse extends Response {
+
+  public final List<SkipNodeIdentity> identities;
+
+  public IdentityListResponse(List<SkipNodeIdentity> identities) {
+    this.identities = identities;
+  }
+}
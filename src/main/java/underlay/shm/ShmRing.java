@@ -0,0 +1,188 @@
+package underlay.shm;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A single-producer/single-consumer ring buffer of frames that lives in a memory-mapped file, so
+ * that two processes on the same host can exchange packets without going through the kernel. The
+ * file starts with a header holding the capacity of the ring and its write and read positions on
+ * separate cache lines; the frames follow as a 4-byte length and the encoded packet,
+ * wrapping around the end of the data region. The positions only grow and are published with
+ * release/acquire semantics. The writers of a process are serialized on the ring, so that the
+ * process is the single producer; the ring must be polled by a single thread.
+ */
+public class ShmRing {
+
+  /**
+   * Default size in bytes of the data region of a ring. Must be a power of two. A host keeps a ring
+   * per ordered pair of communicating nodes, so the rings are kept small.
+   */
+  public static final int DEFAULT_CAPACITY = 1 << 17;
+
+  private static final int CAPACITY_OFFSET = 0;
+  private static final int WRITE_POSITION_OFFSET = 64;
+  private static final int READ_POSITION_OFFSET = 128;
+  private static final int HEADER_SIZE = 192;
+  private static final int LENGTH_SIZE = 4;
+
+  // Atomic access to the positions of the mapped header.
+  private static final VarHandle POSITION = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+  private final Path path;
+  private final MappedByteBuffer buffer;
+  private final int capacity;
+  private final int mask;
+  // Positions cached by the producer and the consumer, so that the shared ones are read only when
+  // the ring looks full or empty.
+  private long cachedReadPosition;
+  private long cachedWritePosition;
+
+  private ShmRing(Path path, MappedByteBuffer buffer) throws IOException {
+    this.path = path;
+    this.buffer = buffer;
+    this.capacity = buffer.getInt(CAPACITY_OFFSET);
+    if (capacity <= 0 || Integer.bitCount(capacity) != 1 || buffer.capacity() != HEADER_SIZE + capacity) {
+      throw new IOException("corrupt ring: " + path);
+    }
+    this.mask = capacity - 1;
+  }
+
+  /**
+   * Opens the ring at the given path, creating it if it does not exist. A new ring is prepared in a
+   * temporary file and then linked into place, so that no process can see a half-initialized ring.
+   *
+   * @param path     path of the ring file.
+   * @param capacity size in bytes of the data region if the ring is created, a power of two.
+   * @return the mapped ring.
+   * @throws IOException if the ring could not be created or mapped.
+   */
+  public static ShmRing open(Path path, int capacity) throws IOException {
+    if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("capacity must be a positive power of two: " + capacity);
+    }
+    if (!Files.exists(path)) {
+      Path temporary = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+      try {
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+          MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+          header.putInt(CAPACITY_OFFSET, capacity);
+          header.force();
+        }
+        // Fails if another process has created the ring in the meantime, whose ring is used instead.
+        Files.createLink(path, temporary);
+      } catch (FileAlreadyExistsException e) {
+        // The ring of the other process is used.
+      } finally {
+        Files.deleteIfExists(temporary);
+      }
+    }
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      // The mapping stays valid after the channel is closed.
+      return new ShmRing(path, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+    }
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  /**
+   * Returns the size in bytes of the largest frame body the ring can hold.
+   *
+   * @return maximum frame size.
+   */
+  public int getMaxFrameSize() {
+    return capacity - LENGTH_SIZE;
+  }
+
+  /**
+   * Appends a frame to the ring if there is enough space.
+   *
+   * @param body the encoded packet.
+   * @return true iff the frame was appended, false if the ring is full.
+   */
+  public synchronized boolean offer(byte[] body) {
+    if (body.length > getMaxFrameSize()) {
+      throw new IllegalArgumentException("frame of size " + body.length + " does not fit into the ring");
+    }
+    long writePosition = (long) POSITION.getOpaque(buffer, WRITE_POSITION_OFFSET);
+    long required = writePosition + LENGTH_SIZE + body.length - capacity;
+    if (required > cachedReadPosition) {
+      cachedReadPosition = (long) POSITION.getAcquire(buffer, READ_POSITION_OFFSET);
+      if (required > cachedReadPosition) {
+        return false;
+      }
+    }
+    byte[] length = {(byte) (body.length >>> 24), (byte) (body.length >>> 16), (byte) (body.length >>> 8), (byte) body.length};
+    copyIn(writePosition, length);
+    copyIn(writePosition + LENGTH_SIZE, body);
+    POSITION.setRelease(buffer, WRITE_POSITION_OFFSET, writePosition + LENGTH_SIZE + body.length);
+    return true;
+  }
+
+  /**
+   * Removes the next frame from the ring. Must only be called by the single consumer thread.
+   *
+   * @return the encoded packet, or null if the ring is empty.
+   */
+  public byte[] poll() {
+    long readPosition = (long) POSITION.getOpaque(buffer, READ_POSITION_OFFSET);
+    if (readPosition >= cachedWritePosition) {
+      cachedWritePosition = (long) POSITION.getAcquire(buffer, WRITE_POSITION_OFFSET);
+      if (readPosition == cachedWritePosition) {
+        return null;
+      }
+    }
+    byte[] length = new byte[LENGTH_SIZE];
+    copyOut(readPosition, length);
+    int size = (length[0] & 0xFF) << 24 | (length[1] & 0xFF) << 16 | (length[2] & 0xFF) << 8 | (length[3] & 0xFF);
+    byte[] body = new byte[size];
+    copyOut(readPosition + LENGTH_SIZE, body);
+    POSITION.setRelease(buffer, READ_POSITION_OFFSET, readPosition + LENGTH_SIZE + size);
+    return body;
+  }
+
+  /**
+   * Returns whether the ring has no frame to poll.
+   *
+   * @return true iff the ring is empty.
+   */
+  public boolean isEmpty() {
+    return (long) POSITION.getAcquire(buffer, READ_POSITION_OFFSET) == (long) POSITION.getAcquire(buffer, WRITE_POSITION_OFFSET);
+  }
+
+  private void copyIn(long position, byte[] bytes) {
+    int index = (int) (position & mask);
+    int first = Math.min(bytes.length, capacity - index);
+    // Absolute bulk puts are only available since Java 13, so the shared buffer is not used.
+    ByteBuffer view = buffer.duplicate();
+    view.position(HEADER_SIZE + index);
+    view.put(bytes, 0, first);
+    if (first < bytes.length) {
+      view.position(HEADER_SIZE);
+      view.put(bytes, first, bytes.length - first);
+    }
+  }
+
+  private void copyOut(long position, byte[] bytes) {
+    int index = (int) (position & mask);
+    int first = Math.min(bytes.length, capacity - index);
+    ByteBuffer view = buffer.duplicate();
+    view.position(HEADER_SIZE + index);
+    view.get(bytes, 0, first);
+    if (first < bytes.length) {
+      view.position(HEADER_SIZE);
+      view.get(bytes, first, bytes.length - first);
+    }
+  }
+}
@@ -0,0 +1,524 @@
+package underlay.shm;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import underlay.Underlay;
+import underlay.packets.Request;
+import underlay.packets.Response;
+import underlay.packets.responses.BusyResponse;
+import underlay.tcp.TcpUnderlay;
+
+/**
+ * Shared-memory underlay implementation for the nodes that run in different processes on the same
+ * host. The packets to a co-located peer are exchanged through a pair of memory-mapped rings (see
+ * `ShmRing`), one per direction, without any system call on the way. The packets to the remote
+ * peers, and to the local peers that do not run this underlay, go through an embedded
+ * `TCPUnderlay`, whose port is the port of this underlay.
+ *
+ * <p>Every underlay owns a directory named after its port under the shared directory, holding an
+ * `alive` marker and the rings it reads from, one per peer, named after the port of the peer. The
+ * underlay that first contacts a peer creates both rings of the pair; the peer discovers its new
+ * ring by scanning its directory. A single poller thread reads all the rings of an underlay, hands
+ * the requests to a bounded worker pool and completes the pending requests with their responses.
+ * When all the workers are busy, the request is answered with a busy response so that the client
+ * tries again shortly.
+ */
+public class ShmUnderlay extends Underlay {
+
+  /**
+   * Default directory shared by the underlays of a host.
+   */
+  public static final Path DEFAULT_DIRECTORY = Files.isDirectory(Paths.get("/dev/shm"))
+      ? Paths.get("/dev/shm", "skipgraph")
+      : Paths.get(System.getProperty("java.io.tmpdir"), "skipgraph-shm");
+  /**
+   * Default duration in milliseconds a sender waits for the response of its request.
+   */
+  public static final long DEFAULT_RESPONSE_TIMEOUT_MS = 30_000;
+  /**
+   * Default maximum number of worker threads that handle the requests.
+   */
+  public static final int DEFAULT_MAX_WORKERS = 64;
+  /**
+   * Interval in milliseconds the directory of an idle underlay is scanned for new rings.
+   */
+  public static final long DISCOVERY_INTERVAL_MS = 10;
+
+  private static final String ALIVE_MARKER = "alive";
+  private static final String RING_SUFFIX = ".ring";
+  // Idle strategy of the poller: spin, then yield for a while after the last frame, then park.
+  private static final int IDLE_SPINS = 100;
+  private static final long IDLE_YIELD_NS = 1_000_000;
+  private static final long IDLE_PARK_NS = 50_000;
+
+  private final Path directory;
+  private final int ringCapacity;
+  private final long responseTimeoutMillis;
+  private final int maxWorkers;
+  // Carries the packets to the peers that cannot be reached through shared memory.
+  private final TcpUnderlay fallback = new TcpUnderlay() {
+    @Override
+    public Response dispatchRequest(Request request) {
+      return ShmUnderlay.this.dispatchRequest(request);
+    }
+  };
+  // Maps the port of a peer to the ring this underlay writes to.
+  private final ConcurrentHashMap<Integer, ShmRing> outgoing = new ConcurrentHashMap<>();
+  // The rings this underlay reads from, polled by the poller thread.
+  private final List<Inbound> inbound = new CopyOnWriteArrayList<>();
+  private final ConcurrentHashMap<Integer, Inbound> inboundByPort = new ConcurrentHashMap<>();
+  // Requests waiting for their responses, keyed by their correlation IDs.
+  private final ConcurrentHashMap<Long, CompletableFuture<Response>> pending = new ConcurrentHashMap<>();
+  private final AtomicLong nextRequestId = new AtomicLong(ThreadLocalRandom.current().nextLong() >>> 1);
+  // Whether the addresses are of this host.
+  private final ConcurrentHashMap<String, Boolean> localAddresses = new ConcurrentHashMap<>();
+  private Path ownDirectory;
+  private ThreadPoolExecutor workers;
+  private ScheduledThreadPoolExecutor timers;
+  private Thread poller;
+  private volatile boolean running;
+
+  /**
+   * Constructs a shared-memory underlay with the default parameters.
+   */
+  public ShmUnderlay() {
+    this(DEFAULT_DIRECTORY, ShmRing.DEFAULT_CAPACITY, DEFAULT_RESPONSE_TIMEOUT_MS);
+  }
+
+  /**
+   * Constructor for ShmUnderlay.
+   *
+   * @param directory             directory shared by the underlays of the host.
+   * @param ringCapacity          size in bytes of the data region of the rings created by this
+   *                              underlay, a power of two.
+   * @param responseTimeoutMillis duration in milliseconds a sender waits for the response of its
+   *                              request before giving up.
+   */
+  public ShmUnderlay(Path directory, int ringCapacity, long responseTimeoutMillis) {
+    if (ringCapacity <= 0 || Integer.bitCount(ringCapacity) != 1) {
+      throw new IllegalArgumentException("ring capacity must be a positive power of two: " + ringCapacity);
+    }
+    if (responseTimeoutMillis <= 0) {
+      throw new IllegalArgumentException("response timeout must be positive: " + responseTimeoutMillis);
+    }
+    this.directory = directory;
+    this.ringCapacity = ringCapacity;
+    this.responseTimeoutMillis = responseTimeoutMillis;
+    this.maxWorkers = DEFAULT_MAX_WORKERS;
+  }
+
+  /**
+   * Binds the embedded TCP underlay to the given port, sets up the directory of this underlay and
+   * starts the poller thread.
+   *
+   * @param port the port that the underlay should be bound to.
+   * @return port number underlay initialized on or -1 if initialization is unsuccessful.
+   */
+  @Override
+  protected int initUnderlay(int port) {
+    fallback.setCodec(getCodec());
+    fallback.initialize(port);
+    int localPort = fallback.getPort();
+    ownDirectory = directory.resolve(String.valueOf(localPort));
+    try {
+      // The rings left behind by a previous underlay at the same port are reused.
+      Files.createDirectories(ownDirectory);
+      Files.write(ownDirectory.resolve(ALIVE_MARKER), new byte[0]);
+    } catch (IOException e) {
+      System.err.println("[ShmUnderlay] Could not create the directory " + ownDirectory);
+      e.printStackTrace();
+      fallback.terminate();
+      return -1;
+    }
+    workers = new ThreadPoolExecutor(maxWorkers, maxWorkers, 60, TimeUnit.SECONDS, new SynchronousQueue<>());
+    workers.allowCoreThreadTimeOut(true);
+    timers = new ScheduledThreadPoolExecutor(1);
+    timers.setRemoveOnCancelPolicy(true);
+    running = true;
+    poller = new Thread(this::poll, "shm-poller-" + localPort);
+    poller.setDaemon(true);
+    poller.start();
+    return localPort;
+  }
+
+  /**
+   * Sends the request and waits for its response. See `sendMessageAsync`.
+   *
+   * @param address address of the remote server.
+   * @param port    port of the remote server.
+   * @param request the request.
+   * @return the response emitted by the remote server.
+   */
+  @Override
+  public Response sendMessage(String address, int port, Request request) {
+    try {
+      return send(address, port, request).get();
+    } catch (InterruptedException | ExecutionException e) {
+      System.err.println("[ShmUnderlay] Could not get the response.");
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  /**
+   * Sends the request through shared memory if the peer runs on this host with a shared-memory
+   * underlay, or through TCP otherwise. The returned future is completed with null once the
+   * response timeout is reached. The dependent actions of the returned future never run on the
+   * poller thread, so they may block.
+   *
+   * @param address address of the remote server.
+   * @param port    port of the remote server.
+   * @param request the request.
+   * @return future of the response emitted by the remote server.
+   */
+  @Override
+  public CompletableFuture<Response> sendMessageAsync(String address, int port, Request request) {
+    return send(address, port, request).thenApplyAsync(Function.identity());
+  }
+
+  /**
+   * Sends a request, see `sendMessageAsync`. The returned future is completed on the poller thread.
+   *
+   * @param address address of the remote server.
+   * @param port    port of the remote server.
+   * @param request the request.
+   * @return future of the response emitted by the remote server.
+   */
+  private CompletableFuture<Response> send(String address, int port, Request request) {
+    ShmRing ring = isLocal(address) ? connect(port) : null;
+    if (ring == null) {
+      return fallback.sendMessageAsync(address, port, request);
+    }
+    // Tag the request so that its response can be told apart from the others in flight.
+    long requestId = nextRequestId.incrementAndGet();
+    request.requestId = requestId;
+    byte[] requestBytes;
+    try {
+      requestBytes = getCodec().encode(request);
+    } catch (IOException e) {
+      System.err.println("[ShmUnderlay] Invalid request.");
+      e.printStackTrace();
+      return CompletableFuture.completedFuture(null);
+    }
+    if (requestBytes.length > ring.getMaxFrameSize()) {
+      return fallback.sendMessageAsync(address, port, request);
+    }
+    // Register before sending, so that an early response cannot be missed.
+    CompletableFuture<Response> responseFuture = new CompletableFuture<>();
+    pending.put(requestId, responseFuture);
+    try {
+      write(ring, requestBytes);
+    } catch (IOException e) {
+      System.err.println("[ShmUnderlay] Could not send the request to " + port);
+      e.printStackTrace();
+      pending.remove(requestId);
+      outgoing.remove(port, ring);
+      return CompletableFuture.completedFuture(null);
+    }
+    try {
+      ScheduledFuture<?> timeout = timers.schedule(() -> {
+        if (pending.remove(requestId, responseFuture)) {
+          System.err.println("[ShmUnderlay] Timed out waiting for the response of request " + requestId);
+          // The peer may have been restarted, open its ring afresh next time.
+          outgoing.remove(port, ring);
+          responseFuture.complete(null);
+        }
+      }, responseTimeoutMillis, TimeUnit.MILLISECONDS);
+      responseFuture.whenComplete((response, e) -> timeout.cancel(false));
+    } catch (RejectedExecutionException e) {
+      // The underlay is terminated.
+      pending.remove(requestId);
+      responseFuture.complete(null);
+    }
+    return responseFuture;
+  }
+
+  /**
+   * Returns the ring towards the given local peer, opening both rings of the pair on the first
+   * contact.
+   *
+   * @param port port of the peer.
+   * @return the ring to write to, or null if the peer does not run a shared-memory underlay.
+   */
+  private ShmRing connect(int port) {
+    ShmRing ring = outgoing.get(port);
+    if (ring != null) {
+      return ring;
+    }
+    Path peerDirectory = directory.resolve(String.valueOf(port));
+    if (!Files.exists(peerDirectory.resolve(ALIVE_MARKER))) {
+      return null;
+    }
+    synchronized (outgoing) {
+      ring = outgoing.get(port);
+      if (ring != null) {
+        return ring;
+      }
+      try {
+        ring = ShmRing.open(peerDirectory.resolve(getPort() + RING_SUFFIX), ringCapacity);
+        attach(port);
+      } catch (IOException e) {
+        System.err.println("[ShmUnderlay] Could not open the rings of " + port);
+        e.printStackTrace();
+        return null;
+      }
+      outgoing.put(port, ring);
+      return ring;
+    }
+  }
+
+  /**
+   * Starts polling the ring of the given peer, creating it if necessary.
+   *
+   * @param port port of the peer.
+   * @throws IOException if the ring could not be opened.
+   */
+  private void attach(int port) throws IOException {
+    synchronized (inboundByPort) {
+      if (inboundByPort.containsKey(port)) {
+        return;
+      }
+      Inbound ring = new Inbound(port, ShmRing.open(ownDirectory.resolve(port + RING_SUFFIX), ringCapacity));
+      inboundByPort.put(port, ring);
+      inbound.add(ring);
+    }
+  }
+
+  /**
+   * Writes a frame to the ring, waiting for space if the ring is full.
+   *
+   * @param ring  the ring.
+   * @param bytes the encoded packet.
+   * @throws IOException if the ring stays full for the response timeout.
+   */
+  private void write(ShmRing ring, byte[] bytes) throws IOException {
+    long start = System.nanoTime();
+    int attempts = 0;
+    while (!ring.offer(bytes)) {
+      long waited = System.nanoTime() - start;
+      if (waited > TimeUnit.MILLISECONDS.toNanos(responseTimeoutMillis)) {
+        throw new IOException("ring is full: " + ring.getPath());
+      }
+      idle(++attempts, waited);
+    }
+  }
+
+  /**
+   * Routine of the poller thread.
+   */
+  private void poll() {
+    int idleRounds = 0;
+    long idleSince = System.nanoTime();
+    long lastScan = 0;
+    while (running) {
+      boolean progress = false;
+      for (Inbound ring : inbound) {
+        byte[] frame;
+        while ((frame = ring.ring.poll()) != null) {
+          handleFrame(ring.port, frame);
+          progress = true;
+        }
+      }
+      if (progress) {
+        idleRounds = 0;
+        continue;
+      }
+      if (idleRounds++ == 0) {
+        idleSince = System.nanoTime();
+      }
+      long idleNanos = System.nanoTime() - idleSince;
+      if (idleRounds > IDLE_SPINS) {
+        long now = System.currentTimeMillis();
+        if (now - lastScan >= DISCOVERY_INTERVAL_MS) {
+          lastScan = now;
+          discover();
+        }
+      }
+      idle(idleRounds, idleNanos);
+    }
+  }
+
+  /**
+   * Attaches the rings that the peers have created in the directory of this underlay.
+   */
+  private void discover() {
+    try (DirectoryStream<Path> rings = Files.newDirectoryStream(ownDirectory, "*" + RING_SUFFIX)) {
+      for (Path path : rings) {
+        String name = path.getFileName().toString();
+        int port;
+        try {
+          port = Integer.parseInt(name.substring(0, name.length() - RING_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+          continue;
+        }
+        if (!inboundByPort.containsKey(port)) {
+          attach(port);
+        }
+      }
+    } catch (IOException e) {
+      if (running) {
+        System.err.println("[ShmUnderlay] Could not scan the directory " + ownDirectory);
+        e.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * Dispatches a received packet. Called on the poller thread.
+   *
+   * @param port  port of the peer that sent the packet.
+   * @param frame the encoded packet.
+   */
+  private void handleFrame(int port, byte[] frame) {
+    Object packet;
+    try {
+      packet = getCodec().decode(frame, 0, frame.length);
+    } catch (IOException e) {
+      System.err.println("[ShmUnderlay] Could not decode the packet from " + port);
+      e.printStackTrace();
+      return;
+    }
+    if (packet instanceof Request) {
+      Request request = (Request) packet;
+      try {
+        workers.execute(() -> reply(port, request, dispatchRequest(request)));
+      } catch (RejectedExecutionException e) {
+        // All the workers are busy, ask the client to try again shortly.
+        reply(port, request, new BusyResponse());
+      }
+    } else if (packet instanceof Response) {
+      CompletableFuture<Response> responseFuture = pending.remove(((Response) packet).requestId);
+      if (responseFuture != null) {
+        responseFuture.complete((Response) packet);
+      }
+    } else {
+      System.err.println("[ShmUnderlay] Could not parse the received packet.");
+    }
+  }
+
+  /**
+   * Sends the response of a request back to its sender.
+   *
+   * @param port     port of the peer that sent the request.
+   * @param request  the request.
+   * @param response the response.
+   */
+  private void reply(int port, Request request, Response response) {
+    if (response == null) {
+      System.err.println("[ShmUnderlay] Invalid response.");
+      return;
+    }
+    // Echo the correlation ID so that the client can match the response to its request.
+    response.requestId = request.requestId;
+    ShmRing ring = connect(port);
+    if (ring == null) {
+      // The peer has terminated.
+      return;
+    }
+    try {
+      write(ring, getCodec().encode(response));
+    } catch (IOException e) {
+      System.err.println("[ShmUnderlay] Could not send the response to " + port);
+      e.printStackTrace();
+    }
+  }
+
+  private boolean isLocal(String address) {
+    return localAddresses.computeIfAbsent(address, a -> {
+      if (a.equals(getAddress())) {
+        return true;
+      }
+      try {
+        return InetAddress.getByName(a).isLoopbackAddress();
+      } catch (UnknownHostException e) {
+        return false;
+      }
+    });
+  }
+
+  /**
+   * Waits a little while, longer the longer the caller has been idle.
+   *
+   * @param rounds    the number of idle rounds so far.
+   * @param idleNanos the time spent idle so far.
+   */
+  private static void idle(int rounds, long idleNanos) {
+    if (rounds <= IDLE_SPINS) {
+      Thread.onSpinWait();
+    } else if (idleNanos <= IDLE_YIELD_NS) {
+      Thread.yield();
+    } else {
+      LockSupport.parkNanos(IDLE_PARK_NS);
+    }
+  }
+
+  /**
+   * Terminates the underlay by stopping the poller and the workers, unbinding the embedded TCP
+   * underlay and removing the directory of this underlay.
+   *
+   * @return whether the termination was successful.
+   */
+  @Override
+  public boolean terminate() {
+    try {
+      Files.deleteIfExists(ownDirectory.resolve(ALIVE_MARKER));
+      running = false;
+      poller.join();
+      workers.shutdown();
+      timers.shutdownNow();
+      // Release the senders that are still waiting.
+      pending.values().forEach(future -> future.complete(null));
+      pending.clear();
+      outgoing.clear();
+      inbound.clear();
+      inboundByPort.clear();
+      try (Stream<Path> paths = Files.walk(ownDirectory)) {
+        for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+          Files.deleteIfExists(path);
+        }
+      }
+    } catch (IOException | InterruptedException e) {
+      System.err.println("[ShmUnderlay] Could not terminate.");
+      e.printStackTrace();
+      return false;
+    }
+    return fallback.terminate();
+  }
+
+  /**
+   * Represents a ring this underlay reads from.
+   */
+  private static class Inbound {
+    private final int port;
+    private final ShmRing ring;
+
+    private Inbound(int port, ShmRing ring) {
+      this.port = port;
+      this.ring = ring;
+    }
+  }
+}
@@ -0,0 +1,225 @@
+package underlay.tcp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import underlay.codec.PacketCodec;
+import underlay.packets.Request;
+import underlay.packets.Response;
+
+/**
+ * Represents a persistent outgoing TCP connection to a remote `TCPUnderlay`. A single connection is
+ * shared by any number of concurrent requests: every request is sent in a frame tagged with a fresh
+ * stream ID (see `TcpFrames`), and a reader thread hands each response frame over to the request
+ * with the same stream ID, in whatever order the responses arrive.
+ */
+public class TcpConnection {
+
+  // The remote peer in the form of address:port. Used as the key of the connection pool.
+  private final String peer;
+  // The underlying TCP socket.
+  private final Socket socket;
+  private final PacketCodec codec;
+  // Streams are created once and shared by every request on this connection. Writers synchronize
+  // on the request stream, and only the reader thread reads the response stream.
+  private final DataOutputStream requestStream;
+  private final DataInputStream responseStream;
+  // Requests that are waiting for their responses, keyed by their stream IDs.
+  private final ConcurrentHashMap<Integer, CompletableFuture<Response>> streams = new ConcurrentHashMap<>();
+  private final AtomicInteger nextStreamId = new AtomicInteger();
+  // Number of completed exchanges on this connection.
+  private final AtomicLong exchanges = new AtomicLong();
+  // The last time (in milliseconds) a request was sent or a response was received on this connection.
+  private volatile long lastUsed;
+  private volatile boolean closed = false;
+
+  /**
+   * Connects to the given remote TCP server, sets up the streams and starts the reader thread.
+   *
+   * @param address address of the remote server.
+   * @param port    port of the remote server.
+   * @param codec   the codec of the underlay.
+   * @throws IOException if the connection or the stream setup fails.
+   */
+  public TcpConnection(String address, int port, PacketCodec codec) throws IOException {
+    this.peer = address + ":" + port;
+    this.codec = codec;
+    this.socket = new Socket(address, port);
+    try {
+      socket.setTcpNoDelay(true);
+      requestStream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      responseStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+    this.lastUsed = System.currentTimeMillis();
+    Thread reader = new Thread(this::readResponses, "tcp-connection-" + peer);
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  public String getPeer() {
+    return peer;
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Returns the number of requests on this connection that are waiting for their responses.
+   *
+   * @return number of requests in flight.
+   */
+  public int getInFlight() {
+    return streams.size();
+  }
+
+  /**
+   * Returns whether this connection has already carried an exchange. A reused connection may have
+   * been closed by the remote end in the meantime.
+   *
+   * @return true iff at least one exchange was completed on this connection.
+   */
+  public boolean isReused() {
+    return exchanges.get() > 0;
+  }
+
+  /**
+   * Returns whether this connection has no requests in flight and has not been used for the given
+   * duration.
+   *
+   * @param now               the current time in milliseconds.
+   * @param idleTimeoutMillis the duration in milliseconds.
+   * @return true iff the connection is idle.
+   */
+  public boolean isIdle(long now, long idleTimeoutMillis) {
+    return streams.isEmpty() && now - lastUsed >= idleTimeoutMillis;
+  }
+
+  /**
+   * Sends the request over this connection without waiting for the response. The returned future is
+   * completed by the reader thread once the response arrives, or exceptionally with an
+   * `IOException` once the connection breaks. It fails with a `ClosedChannelException` iff the
+   * connection was found closed before any byte of the request was written, in which case the
+   * remote server has surely not received the request.
+   *
+   * @param request the request to send.
+   * @return future of the response emitted by the remote server.
+   */
+  public CompletableFuture<Response> send(Request request) {
+    CompletableFuture<Response> future = new CompletableFuture<>();
+    byte[] requestBytes;
+    try {
+      requestBytes = codec.encode(request);
+    } catch (IOException e) {
+      future.completeExceptionally(e);
+      return future;
+    }
+    int streamId = nextStreamId.incrementAndGet();
+    // Register before sending, so that an early response cannot be missed.
+    streams.put(streamId, future);
+    if (closed) {
+      // The connection was closed after its pending requests were failed.
+      streams.remove(streamId);
+      future.completeExceptionally(new ClosedChannelException());
+      return future;
+    }
+    lastUsed = System.currentTimeMillis();
+    try {
+      synchronized (requestStream) {
+        TcpFrames.write(requestStream, streamId, requestBytes);
+      }
+    } catch (IOException e) {
+      streams.remove(streamId);
+      future.completeExceptionally(e);
+      close();
+    }
+    return future;
+  }
+
+  /**
+   * Sends the request over this connection and waits for the response.
+   *
+   * @param request the request to send.
+   * @return the response emitted by the remote server.
+   * @throws IOException if the connection is broken or the response could not be decoded.
+   */
+  public Response exchange(Request request) throws IOException {
+    try {
+      return send(request).get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * Routine of the reader thread, which dispatches the responses to their requests until the
+   * connection is closed.
+   */
+  private void readResponses() {
+    try {
+      while (true) {
+        TcpFrames.Frame frame = TcpFrames.read(responseStream);
+        CompletableFuture<Response> future = streams.remove(frame.streamId);
+        if (future == null) {
+          System.err.println("[TCPConnection] Received a response to an unknown stream " + frame.streamId);
+          continue;
+        }
+        Object response;
+        try {
+          response = codec.decode(frame.body, 0, frame.body.length);
+        } catch (IOException e) {
+          future.completeExceptionally(e);
+          continue;
+        }
+        if (!(response instanceof Response)) {
+          future.completeExceptionally(new IOException("received a packet that is not a response: " + response));
+          continue;
+        }
+        lastUsed = System.currentTimeMillis();
+        exchanges.incrementAndGet();
+        future.complete((Response) response);
+      }
+    } catch (IOException e) {
+      // The connection was closed by either side.
+      close();
+    }
+  }
+
+  /**
+   * Closes the connection and its streams. The requests still in flight fail with an `IOException`.
+   */
+  public void close() {
+    closed = true;
+    try {
+      socket.close();
+    } catch (IOException e) {
+      System.err.println("[TCPConnection] Could not close the connection to " + peer);
+      e.printStackTrace();
+    }
+    IOException failure = new IOException("connection to " + peer + " is closed");
+    for (Integer streamId : streams.keySet()) {
+      CompletableFuture<Response> future = streams.remove(streamId);
+      if (future != null) {
+        future.completeExceptionally(failure);
+      }
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package underlay.tcp;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import underlay.codec.PacketCodec;
+
+/**
+ * Keeps the outgoing TCP connections of a `TCPUnderlay` open and shares them across requests. The
+ * connections are grouped per remote peer (i.e., address:port). Since a connection carries any
+ * number of requests at once, a request is sent over the least loaded connection towards its peer;
+ * a new connection is only opened when every open one already carries `maxStreamsPerConnection`
+ * requests, and at most `maxConnectionsPerPeer` connections are kept open towards a single peer.
+ * Nested (e.g., recursive search) requests never wait for a connection, so they cannot deadlock on
+ * the pool. Idle connections that have not been used for `idleTimeoutMillis` are closed.
+ */
+public class TcpConnectionPool {
+
+  /**
+   * Default duration in milliseconds an idle connection is kept open.
+   */
+  public static final long DEFAULT_IDLE_TIMEOUT_MS = 30_000;
+  /**
+   * Default maximum number of connections kept open towards a single peer.
+   */
+  public static final int DEFAULT_MAX_CONNECTIONS_PER_PEER = 2;
+  /**
+   * Default number of requests in flight on a connection above which another connection is opened
+   * towards the same peer.
+   */
+  public static final int DEFAULT_MAX_STREAMS_PER_CONNECTION = 64;
+
+  private final long idleTimeoutMillis;
+  private final int maxConnectionsPerPeer;
+  private final int maxStreamsPerConnection;
+  // Maps address:port of a peer to its open connections.
+  private final ConcurrentHashMap<String, CopyOnWriteArrayList<TcpConnection>> peers = new ConcurrentHashMap<>();
+  private volatile boolean closed = false;
+
+  /**
+   * Constructs a connection pool with the default number of streams per connection.
+   *
+   * @param idleTimeoutMillis     duration in milliseconds an idle connection is kept open.
+   * @param maxConnectionsPerPeer maximum number of connections kept open towards a single peer.
+   */
+  public TcpConnectionPool(long idleTimeoutMillis, int maxConnectionsPerPeer) {
+    this(idleTimeoutMillis, maxConnectionsPerPeer, DEFAULT_MAX_STREAMS_PER_CONNECTION);
+  }
+
+  /**
+   * Constructor for TcpConnectionPool.
+   *
+   * @param idleTimeoutMillis       duration in milliseconds an idle connection is kept open.
+   * @param maxConnectionsPerPeer   maximum number of connections kept open towards a single peer.
+   * @param maxStreamsPerConnection number of requests in flight on a connection above which another
+   *                                connection is opened towards the same peer.
+   */
+  public TcpConnectionPool(long idleTimeoutMillis, int maxConnectionsPerPeer, int maxStreamsPerConnection) {
+    if (idleTimeoutMillis <= 0) {
+      throw new IllegalArgumentException("idle timeout must be positive: " + idleTimeoutMillis);
+    }
+    if (maxConnectionsPerPeer <= 0) {
+      throw new IllegalArgumentException("max connections per peer must be positive: " + maxConnectionsPerPeer);
+    }
+    if (maxStreamsPerConnection <= 0) {
+      throw new IllegalArgumentException("max streams per connection must be positive: " + maxStreamsPerConnection);
+    }
+    this.idleTimeoutMillis = idleTimeoutMillis;
+    this.maxConnectionsPerPeer = maxConnectionsPerPeer;
+    this.maxStreamsPerConnection = maxStreamsPerConnection;
+  }
+
+  public long getIdleTimeoutMillis() {
+    return idleTimeoutMillis;
+  }
+
+  public int getMaxConnectionsPerPeer() {
+    return maxConnectionsPerPeer;
+  }
+
+  /**
+   * Returns the least loaded open connection towards the given peer, or opens a new one if there is
+   * none or all of them are busy. The returned connection is shared with the other callers.
+   *
+   * @param address address of the remote server.
+   * @param port    port of the remote server.
+   * @param codec   the codec of the underlay, used if a new connection is opened.
+   * @return a connection towards the given peer.
+   * @throws IOException if a new connection could not be established.
+   */
+  public TcpConnection acquire(String address, int port, PacketCodec codec) throws IOException {
+    CopyOnWriteArrayList<TcpConnection> connections = peers.computeIfAbsent(address + ":" + port, k -> new CopyOnWriteArrayList<>());
+    synchronized (connections) {
+      if (closed) {
+        throw new IOException("connection pool is closed");
+      }
+      long now = System.currentTimeMillis();
+      TcpConnection leastLoaded = null;
+      for (TcpConnection connection : connections) {
+        if (connection.isClosed() || connection.isIdle(now, idleTimeoutMillis)) {
+          // The connection is broken, or has been idle for too long and the remote end may have
+          // already dropped it.
+          connections.remove(connection);
+          connection.close();
+        } else if (leastLoaded == null || connection.getInFlight() < leastLoaded.getInFlight()) {
+          leastLoaded = connection;
+        }
+      }
+      if (leastLoaded != null && (leastLoaded.getInFlight() < maxStreamsPerConnection || connections.size() >= maxConnectionsPerPeer)) {
+        return leastLoaded;
+      }
+      TcpConnection connection = new TcpConnection(address, port, codec);
+      connections.add(connection);
+      return connection;
+    }
+  }
+
+  /**
+   * Closes a broken connection and removes it from the pool.
+   *
+   * @param connection the connection obtained from `acquire`.
+   */
+  public void discard(TcpConnection connection) {
+    connection.close();
+    CopyOnWriteArrayList<TcpConnection> connections = peers.get(connection.getPeer());
+    if (connections != null) {
+      connections.remove(connection);
+    }
+  }
+
+  /**
+   * Returns the number of open connections towards the given peer.
+   *
+   * @param address address of the remote server.
+   * @param port    port of the remote server.
+   * @return number of open connections.
+   */
+  public int size(String address, int port) {
+    CopyOnWriteArrayList<TcpConnection> connections = peers.get(address + ":" + port);
+    return connections == null ? 0 : connections.size();
+  }
+
+  /**
+   * Closes all the connections and stops pooling. The requests still in flight fail.
+   */
+  public void close() {
+    closed = true;
+    for (CopyOnWriteArrayList<TcpConnection> connections : peers.values()) {
+      synchronized (connections) {
+        connections.forEach(TcpConnection::close);
+        connections.clear();
+      }
+    }
+    peers.clear();
+  }
+}
@@ -0,0 +1,67 @@
+package underlay.tcp;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Contains the helper methods for the framing of the TCP underlay. Every frame starts with a 4-byte
+ * big-endian length of its body and a 4-byte stream ID, followed by the packet encoded by the codec
+ * of the underlay. A response frame carries the stream ID of its request, so that many requests
+ * can be in flight on a single connection and their responses can come back in any order.
+ */
+public class TcpFrames {
+
+  /**
+   * Maximum accepted size of a frame body in bytes. Larger frames are considered corrupt.
+   */
+  public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+  /**
+   * Writes a frame holding the given encoded packet and flushes the stream. Concurrent writers of
+   * the same stream must synchronize on it.
+   *
+   * @param out      the stream of the connection.
+   * @param streamId the stream ID of the frame.
+   * @param body     the encoded packet.
+   * @throws IOException if the frame could not be written.
+   */
+  public static void write(DataOutputStream out, int streamId, byte[] body) throws IOException {
+    out.writeInt(body.length);
+    out.writeInt(streamId);
+    out.write(body);
+    out.flush();
+  }
+
+  /**
+   * Reads the next frame from the stream.
+   *
+   * @param in the stream of the connection.
+   * @return the frame.
+   * @throws IOException if the stream is closed or the frame is malformed.
+   */
+  public static Frame read(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0 || length > MAX_FRAME_SIZE) {
+      throw new IOException("illegitimate frame size: " + length);
+    }
+    int streamId = in.readInt();
+    byte[] body = new byte[length];
+    in.readFully(body);
+    return new Frame(streamId, body);
+  }
+
+  /**
+   * Represents a frame read from a connection.
+   */
+  public static class Frame {
+    public final int streamId;
+    // The encoded packet.
+    public final byte[] body;
+
+    public Frame(int streamId, byte[] body) {
+      this.streamId = streamId;
+      this.body = body;
+    }
+  }
+}
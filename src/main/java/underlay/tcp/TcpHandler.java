@@ -1,22 +1,39 @@
 package underlay.tcp;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import underlay.packets.Request;
 import underlay.packets.Response;
+import underlay.packets.responses.BusyResponse;
 
 /**
- * Represents a thread that handles an incoming TCP request and emits a response.
+ * Represents a thread that reads the incoming TCP requests of a single connection and dispatches
+ * each of them to the worker pool of the underlay. The responses are written back as soon as they
+ * are ready, tagged with the stream ID of their requests, so a slow request does not hold up the
+ * ones behind it. When all the workers are busy, the request is answered with a busy response so
+ * that the client tries again shortly. The connection is kept open until the client closes
+ * it or it stays idle for too long.
  */
 public class TcpHandler implements Runnable {
 
-  // TCP stream. We use this two-way stream to read the request and send back the response.
+  // TCP stream. We use this two-way stream to read the requests and send back the responses.
   private final Socket incomingConnection;
   // TCP underlay.
   private final TcpUnderlay underlay;
+  // Number of requests of this connection that are being handled.
+  private final AtomicInteger inFlight = new AtomicInteger();
+  // Shared by the workers, which synchronize on it.
+  private DataOutputStream responseStream;
 
   public TcpHandler(Socket incomingConnection, TcpUnderlay underlay) {
     this.incomingConnection = incomingConnection;
@@ -26,44 +43,94 @@ public class TcpHandler implements Runnable {
   // TODO send back an error response when necessary.
   @Override
   public void run() {
-    ObjectInputStream requestStream;
-    ObjectOutputStream responseStream;
+    try {
+      serve();
+    } finally {
+      // Close the connection & streams.
+      try {
+        incomingConnection.close();
+      } catch (IOException e) {
+        System.err.println("[TCPHandler] Could not close the incoming connection.");
+        e.printStackTrace();
+      }
+    }
+  }
+
+  private void serve() {
+    DataInputStream requestStream;
     // Construct the streams from the connection.
     try {
-      requestStream = new ObjectInputStream(incomingConnection.getInputStream());
-      responseStream = new ObjectOutputStream(incomingConnection.getOutputStream());
+      // Idle connections are dropped after the idle timeout of the underlay.
+      incomingConnection.setSoTimeout((int) underlay.getIdleTimeoutMillis());
+      incomingConnection.setTcpNoDelay(true);
+      requestStream = new DataInputStream(new BufferedInputStream(incomingConnection.getInputStream()));
+      responseStream = new DataOutputStream(new BufferedOutputStream(incomingConnection.getOutputStream()));
     } catch (IOException e) {
       System.err.println("[TCPHandler] Could not acquire the streams from the connection.");
       e.printStackTrace();
       return;
     }
-    // Read the request from the connection.
-    Request request;
-    try {
-      request = (Request) requestStream.readObject();
-    } catch (IOException | ClassNotFoundException e) {
-      System.err.println("[TCPHandler] Could not read the request.");
-      e.printStackTrace();
-      return;
+    while (true) {
+      // Read the next request from the connection.
+      TcpFrames.Frame frame;
+      Request request;
+      try {
+        frame = TcpFrames.read(requestStream);
+        request = (Request) underlay.getCodec().decode(frame.body, 0, frame.body.length);
+      } catch (SocketTimeoutException e) {
+        if (inFlight.get() > 0) {
+          // Not idle, the responses are still being prepared.
+          continue;
+        }
+        // The connection was idle for too long.
+        return;
+      } catch (EOFException | SocketException e) {
+        // The connection was closed by either side.
+        return;
+      } catch (IOException | ClassCastException e) {
+        System.err.println("[TCPHandler] Could not read the request.");
+        e.printStackTrace();
+        return;
+      }
+      int streamId = frame.streamId;
+      inFlight.incrementAndGet();
+      try {
+        underlay.getWorkers().execute(() -> reply(streamId, underlay.dispatchRequest(request)));
+      } catch (RejectedExecutionException e) {
+        // All the workers are busy, ask the client to try again shortly.
+        reply(streamId, new BusyResponse());
+      }
     }
-    // Acquire the response.
-    Response responseParameters = underlay.dispatchRequest(request);
-    // Write the response to the connection.
+  }
+
+  /**
+   * Writes the response of a request to the connection.
+   *
+   * @param streamId the stream ID of the request.
+   * @param response the response.
+   */
+  private void reply(int streamId, Response response) {
     try {
-      responseStream.writeObject(responseParameters);
+      byte[] responseBytes = underlay.getCodec().encode(response);
+      synchronized (responseStream) {
+        TcpFrames.write(responseStream, streamId, responseBytes);
+      }
     } catch (IOException e) {
+      if (incomingConnection.isClosed()) {
+        // The connection was closed while the request was being handled.
+        return;
+      }
       System.err.println("[TCPHandler] Could not send the response.");
       e.printStackTrace();
-      return;
-    }
-    // Close the connection & streams.
-    try {
-      requestStream.close();
-      responseStream.close();
-      incomingConnection.close();
-    } catch (IOException e) {
-      System.err.println("[TCPHandler] Could not close the incoming connection.");
-      e.printStackTrace();
+      // The client cannot tell which request has failed, so drop the connection.
+      try {
+        incomingConnection.close();
+      } catch (IOException ex) {
+        System.err.println("[TCPHandler] Could not close the incoming connection.");
+        ex.printStackTrace();
+      }
+    } finally {
+      inFlight.decrementAndGet();
     }
   }
 }
@@ -4,10 +4,12 @@ import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implements a routine that continuously listens a local TCP port and delegates the handling of
- * each received request to a `TCPHandler` thread.
+ * each accepted connection to a `TCPHandler` thread.
  */
 public class TcpListener implements Runnable {
 
@@ -15,6 +17,8 @@ public class TcpListener implements Runnable {
   private final ServerSocket serverSocket;
   // Owned resource by the `TCPUnderlay`.
   private final TcpUnderlay underlay;
+  // Accepted connections that are still open, closed on termination.
+  private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
 
   public TcpListener(ServerSocket serverSocket, TcpUnderlay underlay) {
     this.serverSocket = serverSocket;
@@ -27,9 +31,15 @@ public class TcpListener implements Runnable {
       try {
         // Wait for an incoming connection.
         Socket incomingConnection = serverSocket.accept();
+        connections.add(incomingConnection);
         // Handle the connection in a new thread.
-        // TODO: manage the termination of the handler threads.
-        new Thread(new TcpHandler(incomingConnection, underlay)).start();
+        new Thread(() -> {
+          try {
+            new TcpHandler(incomingConnection, underlay).run();
+          } finally {
+            connections.remove(incomingConnection);
+          }
+        }).start();
       } catch (SocketException e) {
         // Once the listener socket is closed by an outside thread, this point will be reached and
         // we will stop listening.
@@ -40,4 +50,19 @@ public class TcpListener implements Runnable {
       }
     }
   }
+
+  /**
+   * Closes the accepted connections, which terminates their handler threads.
+   */
+  public void closeConnections() {
+    for (Socket connection : connections) {
+      try {
+        connection.close();
+      } catch (IOException e) {
+        System.err.println("[TCPListener] Could not close the incoming connection.");
+        e.printStackTrace();
+      }
+    }
+    connections.clear();
+  }
 }
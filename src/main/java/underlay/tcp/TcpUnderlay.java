@@ -1,25 +1,87 @@
 package underlay.tcp;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.ServerSocket;
-import java.net.Socket;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import underlay.Underlay;
 import underlay.packets.Request;
 import underlay.packets.Response;
 
 /**
- * TCP underlay implementation.
+ * TCP underlay implementation. Outgoing connections are kept open in a per-peer connection pool and
+ * shared across requests; many requests can be in flight on a single connection, and their
+ * responses can come back in any order. The incoming requests are handled by a bounded worker pool
+ * without queueing: when all the workers are busy, the request is answered with a busy response so
+ * that the client tries again shortly.
  */
 public class TcpUnderlay extends Underlay {
 
+  /**
+   * Default maximum number of worker threads that handle the incoming requests.
+   */
+  public static final int DEFAULT_MAX_WORKERS = 64;
+  // Keeps the outgoing connections open between requests.
+  private final TcpConnectionPool connectionPool;
+  private final int maxWorkers;
+  // Handles the requests read from the accepted connections.
+  private ThreadPoolExecutor workers;
   // The thread that continuously listens for incoming connection in the background.
   private Thread listenerThread;
+  // The routine run by the listener thread.
+  private TcpListener listener;
   // The local TCP socket that can accept incoming TCP connections.
   private ServerSocket serverSocket;
 
+  /**
+   * Constructs a TCP underlay with the default connection pool parameters.
+   */
+  public TcpUnderlay() {
+    this(TcpConnectionPool.DEFAULT_IDLE_TIMEOUT_MS, TcpConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_PEER);
+  }
+
+  /**
+   * Constructor for TcpUnderlay.
+   *
+   * @param idleTimeoutMillis     duration in milliseconds an idle connection is kept open, both for
+   *                              the outgoing and the accepted connections.
+   * @param maxConnectionsPerPeer maximum number of outgoing connections kept open towards a peer.
+   */
+  public TcpUnderlay(long idleTimeoutMillis, int maxConnectionsPerPeer) {
+    this(idleTimeoutMillis, maxConnectionsPerPeer, DEFAULT_MAX_WORKERS);
+  }
+
+  /**
+   * Constructor for TcpUnderlay.
+   *
+   * @param idleTimeoutMillis     duration in milliseconds an idle connection is kept open, both for
+   *                              the outgoing and the accepted connections.
+   * @param maxConnectionsPerPeer maximum number of outgoing connections kept open towards a peer.
+   * @param maxWorkers            maximum number of worker threads that handle the incoming requests.
+   */
+  public TcpUnderlay(long idleTimeoutMillis, int maxConnectionsPerPeer, int maxWorkers) {
+    if (maxWorkers <= 0) {
+      throw new IllegalArgumentException("number of workers must be positive: " + maxWorkers);
+    }
+    this.connectionPool = new TcpConnectionPool(idleTimeoutMillis, maxConnectionsPerPeer);
+    this.maxWorkers = maxWorkers;
+  }
+
+  public long getIdleTimeoutMillis() {
+    return connectionPool.getIdleTimeoutMillis();
+  }
+
+  ExecutorService getWorkers() {
+    return workers;
+  }
+
   /**
    * Creates a TCP socket at the given port and starts listening it.
    *
@@ -36,15 +98,19 @@ public class TcpUnderlay extends Underlay {
       e.printStackTrace();
       return -1;
     }
+    workers = new ThreadPoolExecutor(maxWorkers, maxWorkers, 60, TimeUnit.SECONDS, new SynchronousQueue<>());
+    workers.allowCoreThreadTimeOut(true);
     // Create & start the listening thread which will continuously listen for incoming connections
     // and handle the requests as implemented in the `RequestHandler` class.
-    listenerThread = new Thread(new TcpListener(serverSocket, this));
+    listener = new TcpListener(serverSocket, this);
+    listenerThread = new Thread(listener);
     listenerThread.start();
     return serverSocket.getLocalPort();
   }
 
   /**
-   * Method for sending a message.
+   * Method for sending a message. The request is sent over a pooled connection to the remote
+   * server, and the calling thread waits for the response. See `sendMessageAsync`.
    *
    * @param address address of the remote server.
    * @param port    port of the remote serve.r
@@ -53,46 +119,72 @@ public class TcpUnderlay extends Underlay {
    */
   @Override
   public Response sendMessage(String address, int port, Request request) {
-    Socket remote;
-    ObjectOutputStream requestStream;
-    ObjectInputStream responseStream;
-    // Connect to the remote TCP server.
     try {
-      remote = new Socket(address, port);
-    } catch (IOException e) {
-      System.err.println("[TCPUnderlay] Could not connect to the address: " + address + ":" + port);
+      return send(address, port, request, true).get();
+    } catch (InterruptedException | ExecutionException e) {
+      System.err.println("[TCPUnderlay] Could not get the response.");
       e.printStackTrace();
       return null;
     }
-    // Send the request.
+  }
+
+  /**
+   * Sends the request over a pooled connection to the remote server without waiting for the
+   * response. If the pooled connection turns out to be closed before the request is written, the
+   * request is retried once over a fresh connection. A request that fails once written is not
+   * retried, since the remote server may have handled it already and not all the requests are
+   * idempotent. The dependent actions of the returned future never run on
+   * the reader threads of the connections, so they may block.
+   *
+   * @param address address of the remote server.
+   * @param port    port of the remote server.
+   * @param request the request to send.
+   * @return future of the response emitted by the remote server.
+   */
+  @Override
+  public CompletableFuture<Response> sendMessageAsync(String address, int port, Request request) {
+    return send(address, port, request, true).thenApplyAsync(Function.identity());
+  }
+
+  /**
+   * Sends a request, see `sendMessageAsync`. The returned future is completed on the reader thread
+   * of the connection.
+   *
+   * @param address address of the remote server.
+   * @param port    port of the remote server.
+   * @param request the request to send.
+   * @param retry   whether the request is retried if the connection turns out to be closed before
+   *                the request is written.
+   * @return future of the response emitted by the remote server.
+   */
+  private CompletableFuture<Response> send(String address, int port, Request request, boolean retry) {
+    // Connect to the remote TCP server, or reuse an open connection.
+    TcpConnection connection;
     try {
-      requestStream = new ObjectOutputStream(remote.getOutputStream());
-      requestStream.writeObject(request);
+      connection = connectionPool.acquire(address, port, getCodec());
     } catch (IOException e) {
-      System.err.println("[TCPUnderlay] Could not send the request.");
-      e.printStackTrace();
-      return null;
-    }
-    // Receive the response.
-    Response response;
-    try {
-      responseStream = new ObjectInputStream(remote.getInputStream());
-      response = (Response) responseStream.readObject();
-    } catch (IOException | ClassNotFoundException e) {
-      System.err.println("[TCPUnderlay] Could not receive the response.");
+      System.err.println("[TCPUnderlay] Could not connect to the address: " + address + ":" + port);
       e.printStackTrace();
-      return null;
+      return CompletableFuture.completedFuture(null);
     }
-    // Close the connection & streams.
-    try {
-      requestStream.close();
-      responseStream.close();
-      remote.close();
-    } catch (IOException e) {
-      System.err.println("[TCPUnderlay] Could not close the outgoing connection.");
+    CompletableFuture<Response> responseFuture = new CompletableFuture<>();
+    // Send the request and receive the response.
+    connection.send(request).whenComplete((response, e) -> {
+      if (e == null) {
+        responseFuture.complete(response);
+        return;
+      }
+      connectionPool.discard(connection);
+      if (retry && e instanceof ClosedChannelException) {
+        // The connection was closed before the request was written, try again over another one.
+        send(address, port, request, false).thenAccept(responseFuture::complete);
+        return;
+      }
+      System.err.println("[TCPUnderlay] Could not send the request.");
       e.printStackTrace();
-    }
-    return response;
+      responseFuture.complete(null);
+    });
+    return responseFuture;
   }
 
   /**
@@ -107,6 +199,10 @@ public class TcpUnderlay extends Underlay {
       serverSocket.close();
       // Terminate the listener thread.
       listenerThread.join();
+      // Close the accepted and the pooled connections.
+      listener.closeConnections();
+      connectionPool.close();
+      workers.shutdown();
     } catch (Exception e) {
       System.err.println("[TCPUnderlay] Could not terminate.");
       e.printStackTrace();
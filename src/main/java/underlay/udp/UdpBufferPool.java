@@ -0,0 +1,68 @@
+package underlay.udp;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the direct buffers that the UDP packets are received into, so that the receive path does
+ * not allocate a new buffer for every packet. The number of buffers kept in the pool is bounded;
+ * when the pool is empty a new buffer is allocated, and a released buffer that does not fit into
+ * the pool is left to the garbage collector.
+ */
+public class UdpBufferPool {
+
+  private final int bufferSize;
+  private final int capacity;
+  private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+  // Number of buffers in the pool, kept apart since the size of the queue is not constant time.
+  private final AtomicInteger pooled = new AtomicInteger();
+
+  /**
+   * Constructor for UdpBufferPool.
+   *
+   * @param bufferSize size of a buffer in bytes.
+   * @param capacity   maximum number of buffers kept in the pool.
+   */
+  public UdpBufferPool(int bufferSize, int capacity) {
+    this.bufferSize = bufferSize;
+    this.capacity = capacity;
+  }
+
+  /**
+   * Returns a cleared buffer, from the pool if possible.
+   *
+   * @return a buffer ready to receive a packet.
+   */
+  public ByteBuffer acquire() {
+    ByteBuffer buffer = buffers.poll();
+    if (buffer == null) {
+      return ByteBuffer.allocateDirect(bufferSize);
+    }
+    pooled.decrementAndGet();
+    return buffer;
+  }
+
+  /**
+   * Returns a buffer that is no longer used back to the pool.
+   *
+   * @param buffer the buffer to release.
+   */
+  public void release(ByteBuffer buffer) {
+    if (pooled.incrementAndGet() > capacity) {
+      pooled.decrementAndGet();
+      return;
+    }
+    buffer.clear();
+    buffers.offer(buffer);
+  }
+
+  /**
+   * Returns the number of buffers waiting in the pool.
+   *
+   * @return number of pooled buffers.
+   */
+  public int size() {
+    return pooled.get();
+  }
+}
@@ -0,0 +1,88 @@
+package underlay.udp;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the most recent requests received by a reliable `UDPUnderlay` along with their
+ * serialized responses. A retransmitted request is answered from this cache instead of being
+ * dispatched to the middle layer again, which keeps non-idempotent requests (e.g., lock
+ * acquisition or neighbor announcement) from being applied twice. The cache is bounded, the oldest
+ * requests are forgotten first.
+ */
+public class UdpDuplicateCache {
+
+  /**
+   * Default number of requests remembered by the cache.
+   */
+  public static final int DEFAULT_CAPACITY = 4096;
+
+  // Marks a request that is still being handled.
+  private static final byte[] IN_PROGRESS = new byte[0];
+
+  private final LinkedHashMap<String, byte[]> entries;
+
+  /**
+   * Constructor for UdpDuplicateCache.
+   *
+   * @param capacity maximum number of requests remembered by the cache.
+   */
+  public UdpDuplicateCache(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    }
+    this.entries = new LinkedHashMap<String, byte[]>() {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+        return size() > capacity;
+      }
+    };
+  }
+
+  /**
+   * Returns the key of a request in the cache.
+   *
+   * @param address   address of the sender of the request.
+   * @param port      port of the sender of the request.
+   * @param requestId correlation ID of the request.
+   * @return key of the request.
+   */
+  public static String key(String address, int port, long requestId) {
+    return address + ":" + port + "/" + requestId;
+  }
+
+  /**
+   * Called when a request is received. If the request has not been seen before, it is marked as in
+   * progress and should be handled by the caller.
+   *
+   * @param key key of the request.
+   * @return null if the request is new, an empty array if the request is still being handled, or
+   *     the serialized response of the already handled request.
+   */
+  public synchronized byte[] begin(String key) {
+    byte[] previous = entries.get(key);
+    if (previous == null) {
+      entries.put(key, IN_PROGRESS);
+    }
+    return previous;
+  }
+
+  /**
+   * Records the serialized response of a handled request.
+   *
+   * @param key           key of the request.
+   * @param responseBytes the serialized response.
+   */
+  public synchronized void complete(String key, byte[] responseBytes) {
+    entries.put(key, responseBytes);
+  }
+
+  /**
+   * Forgets a request that could not be handled, so that its retransmission is handled afresh.
+   *
+   * @param key key of the request.
+   */
+  public synchronized void abort(String key) {
+    entries.remove(key);
+  }
+}
@@ -1,64 +1,97 @@
 package underlay.udp;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 
 import underlay.packets.Request;
 import underlay.packets.Response;
+import underlay.packets.responses.BusyResponse;
 
 /**
- * Represents a thread that handles a UDP request and emits a response.
+ * Represents a task that handles a UDP request and emits a response. Run on the worker pool of the
+ * underlay.
  */
 public class UdpHandler implements Runnable {
 
-  // The UDP socket that the response will be sent through.
-  private final DatagramSocket udpSocket;
+  // The UDP channel that the response will be sent through.
+  private final DatagramChannel channel;
   // The received request to handle.
   private final Request request;
   // The address of the client that the request was sent from.
-  private final InetAddress clientAddress;
-  // The port of the client that the request was sent from.
-  private final int clientPort;
+  private final InetSocketAddress client;
   // The handler which will be handling this request.
   private final UdpUnderlay underlay;
+  // Key of the request in the duplicate cache.
+  private final String cacheKey;
 
   /**
    * Constructor for UdpHandler.
    *
-   * @param udpSocket     UDP socket instance.
-   * @param request       Request that s going to be handled.
-   * @param clientAddress Client address.
-   * @param clientPort    Integer representing client port.
-   * @param underlay      UDP underlay instance.
+   * @param channel  UDP channel of the underlay.
+   * @param request  Request that s going to be handled.
+   * @param client   Address of the client.
+   * @param underlay UDP underlay instance.
    */
-  public UdpHandler(DatagramSocket udpSocket, Request request, InetAddress clientAddress, int clientPort, UdpUnderlay underlay) {
-    this.udpSocket = udpSocket;
+  public UdpHandler(DatagramChannel channel, Request request, InetSocketAddress client, UdpUnderlay underlay) {
+    this.channel = channel;
     this.request = request;
-    this.clientAddress = clientAddress;
-    this.clientPort = clientPort;
+    this.client = client;
     this.underlay = underlay;
+    this.cacheKey = UdpDuplicateCache.key(client.getAddress().getHostAddress(), client.getPort(), request.requestId);
   }
 
   // TODO send back an error response when necessary.
   @Override
   public void run() {
     Response response = underlay.dispatchRequest(request);
+    if (response == null) {
+      System.err.println("[UDPHandler] Invalid response.");
+      abort();
+      return;
+    }
+    // In reliable mode, the serialized response is kept to answer the retransmissions of the request.
+    send(response, true);
+  }
+
+  /**
+   * Answers the request with a busy response without handling it, so that the client tries again
+   * shortly. Used when all the workers are busy.
+   */
+  public void reject() {
+    // The retransmissions of a rejected request must be handled afresh.
+    abort();
+    send(new BusyResponse(), false);
+  }
+
+  private void send(Response response, boolean cache) {
+    // Echo the correlation ID so that the client can match the response to its request.
+    response.requestId = request.requestId;
     // Serialize the response.
-    byte[] responseBytes = UdpUtils.serialize(response);
+    byte[] responseBytes = UdpUtils.serialize(underlay.getCodec(), response);
     if (responseBytes == null) {
       System.err.println("[UDPHandler] Invalid response.");
+      abort();
       return;
     }
-    // Construct the response packet.
-    DatagramPacket responsePacket = new DatagramPacket(responseBytes, responseBytes.length, clientAddress, clientPort);
+    UdpDuplicateCache duplicateCache = underlay.getDuplicateCache();
+    if (cache && duplicateCache != null) {
+      duplicateCache.complete(cacheKey, responseBytes);
+    }
     // Send the response packet.
     try {
-      udpSocket.send(responsePacket);
+      channel.send(ByteBuffer.wrap(responseBytes), client);
     } catch (IOException e) {
       System.err.println("[UDPHandler] Could not send the response.");
       e.printStackTrace();
     }
   }
+
+  private void abort() {
+    UdpDuplicateCache duplicateCache = underlay.getDuplicateCache();
+    if (duplicateCache != null) {
+      duplicateCache.abort(cacheKey);
+    }
+  }
 }
@@ -1,71 +1,149 @@
 package underlay.udp;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.net.SocketException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 import underlay.packets.Request;
 import underlay.packets.Response;
 
 /**
- * Implements a routine that continuously listens a local UDP port for requests and responses, and
- * delegates the handling of each received request to a `UDPHandler` thread and each received
- * response to the main `UDPUnderlay` thread.
+ * Implements a routine that continuously receives the UDP packets of the underlay into pooled
+ * buffers and hands them over to the bounded decoder pool. A decoded response is dispatched to the
+ * `UDPUnderlay` thread that waits for it, and a decoded request is handled by a `UDPHandler` on the
+ * worker pool. Several listeners may receive from the same channel at the same time.
  */
 public class UdpListener implements Runnable {
 
+  // Scratch space of the decoder threads that a received packet is copied into for decoding.
+  private static final ThreadLocal<byte[]> DECODE_BUFFER = ThreadLocal.withInitial(() -> new byte[UdpUnderlay.MAX_PACKET_SIZE]);
+
   // Owned resource by the `UDPUnderlay`.
-  private final DatagramSocket listenSocket;
+  private final DatagramChannel channel;
   // Owned resource by the `UDPUnderlay`.
   private final UdpUnderlay underlay;
   // Owned resource by the `UDPUnderlay`. Used to dispatch the received
-  // responses to the main thread.
-  private final UdpResponseLock responseLock;
+  // responses to the threads waiting for them.
+  private final UdpPendingRequests pendingRequests;
+  // Owned resource by the `UDPUnderlay`. The received packets are decoded on this pool.
+  private final ExecutorService decoders;
+  // Owned resource by the `UDPUnderlay`. The received requests are handled on this pool.
+  private final ExecutorService workers;
+  // Owned resource by the `UDPUnderlay`.
+  private final UdpBufferPool bufferPool;
 
   /**
    * Constructor for UdpListener.
    *
-   * @param listenSocket listener socket.
-   * @param underlay     UDP underlay instance.
-   * @param responseLock response lock.
+   * @param channel         the channel of the underlay.
+   * @param underlay        UDP underlay instance.
+   * @param pendingRequests requests waiting for their responses.
+   * @param decoders        bounded pool that decodes the received packets.
+   * @param workers         bounded pool that handles the received requests.
+   * @param bufferPool      pool of the receive buffers.
    */
-  public UdpListener(DatagramSocket listenSocket, UdpUnderlay underlay, UdpResponseLock responseLock) {
-    this.listenSocket = listenSocket;
+  public UdpListener(DatagramChannel channel, UdpUnderlay underlay, UdpPendingRequests pendingRequests, ExecutorService decoders,
+                     ExecutorService workers, UdpBufferPool bufferPool) {
+    this.channel = channel;
     this.underlay = underlay;
-    this.responseLock = responseLock;
+    this.pendingRequests = pendingRequests;
+    this.decoders = decoders;
+    this.workers = workers;
+    this.bufferPool = bufferPool;
   }
 
   @Override
   public void run() {
     while (true) {
+      ByteBuffer buffer = bufferPool.acquire();
+      InetSocketAddress sender;
       try {
-        // Allocate the size for a packet.
-        byte[] packetBytes = new byte[UdpUnderlay.MAX_PACKET_SIZE];
-        DatagramPacket packet = new DatagramPacket(packetBytes, packetBytes.length);
         // Wait for a packet.
-        listenSocket.receive(packet);
-        // Deserialize the packet.
-        Object packetObject = UdpUtils.deserialize(packet.getData(), packet.getLength());
-        // If the packet is a request, handle it in a new `UDPHandler` thread.
-        if (packetObject instanceof Request) {
-          Request request = (Request) packetObject;
-          new Thread(new UdpHandler(listenSocket, request, packet.getAddress(), packet.getPort(), underlay)).start();
-        } else if (packetObject instanceof Response) {
-          // If the packet is a response, dispatch the response to the main thread.
-          responseLock.dispatch((Response) packetObject);
-        } else {
-          System.err.println("[UDPListener] Could not parse the received packet.");
-        }
-        // TODO: manage the termination of the handler threads.
-
-      } catch (SocketException e) {
-        // Once the listener socket is closed by an outside thread, this point will be reached and
+        sender = (InetSocketAddress) channel.receive(buffer);
+      } catch (ClosedChannelException e) {
+        // Once the channel is closed by an outside thread, this point will be reached and
         // we will stop listening.
         return;
       } catch (IOException e) {
         throw new IllegalStateException("could not receive UDP packet.", e);
       }
+      buffer.flip();
+      try {
+        decoders.execute(() -> handlePacket(buffer, sender));
+      } catch (RejectedExecutionException e) {
+        // The decoders are lagging behind, drop the packet as the socket would.
+        underlay.packetDropped();
+        bufferPool.release(buffer);
+      }
+    }
+  }
+
+  /**
+   * Decodes a received packet and dispatches it. Called on the decoder pool.
+   *
+   * @param buffer the received packet, flipped for reading.
+   * @param sender the address of the sender of the packet.
+   */
+  private void handlePacket(ByteBuffer buffer, InetSocketAddress sender) {
+    byte[] packetBytes = DECODE_BUFFER.get();
+    int length = buffer.remaining();
+    buffer.get(packetBytes, 0, length);
+    bufferPool.release(buffer);
+    // Deserialize the packet.
+    Object packetObject = UdpUtils.deserialize(underlay.getCodec(), packetBytes, length);
+    // If the packet is a request, handle it on the worker pool.
+    if (packetObject instanceof Request) {
+      Request request = (Request) packetObject;
+      try {
+        if (isRetransmission(request, sender)) {
+          return;
+        }
+      } catch (IOException e) {
+        System.err.println("[UDPListener] Could not resend the cached response.");
+        e.printStackTrace();
+        return;
+      }
+      UdpHandler handler = new UdpHandler(channel, request, sender, underlay);
+      try {
+        workers.execute(handler);
+      } catch (RejectedExecutionException e) {
+        // All the workers are busy, ask the client to try again later.
+        handler.reject();
+      }
+    } else if (packetObject instanceof Response) {
+      // If the packet is a response, dispatch the response to the thread waiting for it.
+      pendingRequests.dispatch((Response) packetObject);
+    } else {
+      System.err.println("[UDPListener] Could not parse the received packet.");
+    }
+  }
+
+  /**
+   * Checks whether the request is a retransmission of an already received request when the underlay
+   * runs in reliable mode. The cached response of an already handled request is sent again, while a
+   * retransmission of a request that is still being handled is ignored.
+   *
+   * @param request the received request.
+   * @param client  the address of the client that the request was sent from.
+   * @return true iff the request must not be handled again.
+   * @throws IOException if the cached response could not be sent.
+   */
+  private boolean isRetransmission(Request request, InetSocketAddress client) throws IOException {
+    UdpDuplicateCache duplicateCache = underlay.getDuplicateCache();
+    if (duplicateCache == null) {
+      return false;
+    }
+    byte[] cached = duplicateCache.begin(UdpDuplicateCache.key(client.getAddress().getHostAddress(), client.getPort(), request.requestId));
+    if (cached == null) {
+      return false;
+    }
+    if (cached.length > 0) {
+      channel.send(ByteBuffer.wrap(cached), client);
     }
+    return true;
   }
 }
@@ -0,0 +1,73 @@
+package underlay.udp;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import underlay.packets.Response;
+
+/**
+ * Used to hand the responses received by the listener thread (i.e. UDPListener) over to the
+ * sender threads (i.e. UDPUnderlay) that are waiting for them. Every outstanding request is
+ * registered under its correlation ID with its own future, so that any number of requests can be in
+ * flight over the same socket and each response is delivered to the sender of its request.
+ */
+public class UdpPendingRequests {
+
+  private final ConcurrentHashMap<Long, CompletableFuture<Response>> pending = new ConcurrentHashMap<>();
+
+  /**
+   * Called by the sender thread before sending a request.
+   *
+   * @param requestId correlation ID of the request.
+   * @return the future to be completed with the response of the request.
+   */
+  public CompletableFuture<Response> register(long requestId) {
+    CompletableFuture<Response> future = new CompletableFuture<>();
+    if (pending.putIfAbsent(requestId, future) != null) {
+      throw new IllegalStateException("request id is already pending: " + requestId);
+    }
+    return future;
+  }
+
+  /**
+   * Called by the sender thread once it stops waiting for the response, e.g., after a timeout.
+   *
+   * @param requestId correlation ID of the request.
+   */
+  public void remove(long requestId) {
+    pending.remove(requestId);
+  }
+
+  /**
+   * Called by the listener thread once it has received a response. Completes the future of the
+   * matching request, if it is still pending.
+   *
+   * @param response the response to dispatch to the sender thread.
+   * @return true iff a pending request was waiting for the response.
+   */
+  public boolean dispatch(Response response) {
+    CompletableFuture<Response> future = pending.remove(response.requestId);
+    if (future == null) {
+      // Late or duplicate response.
+      return false;
+    }
+    return future.complete(response);
+  }
+
+  /**
+   * Completes every pending request without a response. Used on termination.
+   */
+  public void cancelAll() {
+    pending.values().forEach(future -> future.complete(null));
+    pending.clear();
+  }
+
+  /**
+   * Returns the number of requests that are waiting for a response.
+   *
+   * @return number of pending requests.
+   */
+  public int size() {
+    return pending.size();
+  }
+}
@@ -0,0 +1,76 @@
+package underlay.udp;
+
+/**
+ * Estimates the retransmission timeout (RTO) towards a single peer from the observed round trip
+ * times, following the smoothed RTT (SRTT) and RTT variation (RTTVAR) estimators of TCP (RFC 6298).
+ * Only the round trips of requests that were not retransmitted should be sampled (Karn's
+ * algorithm), since the response of a retransmitted request cannot be attributed to one of its
+ * transmissions.
+ */
+public class UdpRttEstimator {
+
+  /**
+   * Retransmission timeout in milliseconds used before any round trip is observed.
+   */
+  public static final long INITIAL_RTO_MS = 1000;
+  /**
+   * Lower bound of the retransmission timeout in milliseconds.
+   */
+  public static final long MIN_RTO_MS = 100;
+  /**
+   * Upper bound of the retransmission timeout in milliseconds.
+   */
+  public static final long MAX_RTO_MS = 10_000;
+
+  // Gains of the smoothed estimators as recommended by RFC 6298.
+  private static final double ALPHA = 1.0 / 8;
+  private static final double BETA = 1.0 / 4;
+  private static final int K = 4;
+
+  // Smoothed round trip time in milliseconds, negative until the first sample.
+  private double srtt = -1;
+  // Round trip time variation in milliseconds.
+  private double rttvar = 0;
+  private long rto = INITIAL_RTO_MS;
+
+  /**
+   * Updates the estimators with a newly observed round trip time.
+   *
+   * @param rttMillis the round trip time of a request that was sent only once.
+   */
+  public synchronized void addSample(double rttMillis) {
+    if (srtt < 0) {
+      srtt = rttMillis;
+      rttvar = rttMillis / 2;
+    } else {
+      rttvar = (1 - BETA) * rttvar + BETA * Math.abs(srtt - rttMillis);
+      srtt = (1 - ALPHA) * srtt + ALPHA * rttMillis;
+    }
+    rto = clamp((long) Math.ceil(srtt + K * rttvar));
+  }
+
+  /**
+   * Returns the current retransmission timeout.
+   *
+   * @return retransmission timeout in milliseconds.
+   */
+  public synchronized long getRto() {
+    return rto;
+  }
+
+  /**
+   * Backs off the retransmission timeout after it has expired, i.e., doubles it. The backed off
+   * timeout is kept until the next round trip sample, so that a peer that is slower than estimated
+   * does not cause a retransmission on every request.
+   *
+   * @return the backed off retransmission timeout in milliseconds.
+   */
+  public synchronized long backoff() {
+    rto = clamp(2 * rto);
+    return rto;
+  }
+
+  private static long clamp(long rtoMillis) {
+    return Math.max(MIN_RTO_MS, Math.min(MAX_RTO_MS, rtoMillis));
+  }
+}
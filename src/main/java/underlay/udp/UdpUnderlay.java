@@ -1,19 +1,36 @@
 package underlay.udp;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.Inet4Address;
 import java.net.InetAddress;
-import java.net.SocketException;
+import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 import underlay.Underlay;
 import underlay.packets.Request;
 import underlay.packets.Response;
 
 /**
- * UDP Underlay implementation.
+ * UDP Underlay implementation. The packets are received into pooled direct buffers by one or more
+ * listener threads, and decoded on a bounded decoder pool whose queue absorbs the bursts; the
+ * packets that arrive while the queue is full are dropped. The requests are handled by a bounded
+ * worker pool without queueing: when all the workers are busy, the request is answered with a
+ * busy response so that the client tries again shortly.
  */
 public class UdpUnderlay extends Underlay {
 
@@ -22,17 +39,164 @@ public class UdpUnderlay extends Underlay {
    * transferred. This parameter defines the maximum size of a packet in bytes.
    */
   public static final int MAX_PACKET_SIZE = 1024;
+  /**
+   * Default duration in milliseconds a sender waits for the response of its request.
+   */
+  public static final long DEFAULT_RESPONSE_TIMEOUT_MS = 30_000;
+  /**
+   * Default number of listener threads that receive the packets.
+   */
+  public static final int DEFAULT_RECEIVER_THREADS = 1;
+  /**
+   * Default maximum number of worker threads that handle the requests.
+   */
+  public static final int DEFAULT_MAX_WORKERS = 64;
+  /**
+   * Maximum number of received packets waiting to be decoded.
+   */
+  public static final int RECEIVE_QUEUE_CAPACITY = 1024;
   // This object will be used to transfer the responses from the listener thread
-  // to the thread that the `sendMessage` was called from.
-  private final UdpResponseLock responseLock = new UdpResponseLock();
-  // The thread that continuously listens for incoming connection in the background.
-  // As opposed to TCP, both requests and responses will be received by this thread.
-  private Thread listenerThread;
-  // The local UDP socket that can accept incoming UDP connections.
-  private DatagramSocket udpSocket;
+  // to the threads that the `sendMessage` was called from.
+  private final UdpPendingRequests pendingRequests = new UdpPendingRequests();
+  // Source of the correlation IDs of the outgoing requests. Starts at a random point so that the IDs
+  // of a restarted underlay do not collide with the ones remembered by the duplicate caches of its peers.
+  private final AtomicLong nextRequestId = new AtomicLong(ThreadLocalRandom.current().nextLong() >>> 1);
+  // Duration in milliseconds a sender waits for the response of its request.
+  private final long responseTimeoutMillis;
+  // Whether lost requests and responses are recovered by retransmission.
+  private final boolean reliable;
+  // Retransmission timeout estimators per peer (address:port), only used in reliable mode.
+  private final ConcurrentHashMap<String, UdpRttEstimator> rttEstimators = new ConcurrentHashMap<>();
+  // Responses of the recently received requests, only used in reliable mode.
+  private final UdpDuplicateCache duplicateCache;
+  private final int receiverThreads;
+  private final int maxWorkers;
+  // Number of received packets dropped because the decoder queue was full.
+  private final AtomicLong droppedPackets = new AtomicLong();
+  // The threads that continuously listen for incoming packets in the background.
+  // As opposed to TCP, both requests and responses will be received by these threads.
+  private Thread[] listenerThreads;
+  private UdpBufferPool bufferPool;
+  private ThreadPoolExecutor decoders;
+  private ThreadPoolExecutor workers;
+  // Retransmits the outgoing requests and gives up on them once their response timeout is reached.
+  private ScheduledThreadPoolExecutor timers;
+  // The local UDP channel that receives the incoming packets and sends the outgoing ones.
+  private DatagramChannel channel;
+
+  /**
+   * Constructs an unreliable UDP underlay with the default response timeout.
+   */
+  public UdpUnderlay() {
+    this(DEFAULT_RESPONSE_TIMEOUT_MS);
+  }
+
+  /**
+   * Constructs an unreliable UDP underlay.
+   *
+   * @param responseTimeoutMillis duration in milliseconds a sender waits for the response of its
+   *                              request before giving up.
+   */
+  public UdpUnderlay(long responseTimeoutMillis) {
+    this(responseTimeoutMillis, false);
+  }
+
+  /**
+   * Constructor for UdpUnderlay. In reliable mode, a request is retransmitted whenever no response
+   * arrives within the retransmission timeout estimated for its peer, and the retransmissions
+   * received from the peers are answered from a cache of the recent responses instead of being
+   * handled again. All the underlays of a skip graph should run in the same mode.
+   *
+   * @param responseTimeoutMillis duration in milliseconds a sender waits for the response of its
+   *                              request before giving up.
+   * @param reliable              whether lost requests and responses are recovered by retransmission.
+   */
+  public UdpUnderlay(long responseTimeoutMillis, boolean reliable) {
+    this(responseTimeoutMillis, reliable, DEFAULT_RECEIVER_THREADS, DEFAULT_MAX_WORKERS);
+  }
+
+  /**
+   * Constructor for UdpUnderlay.
+   *
+   * @param responseTimeoutMillis duration in milliseconds a sender waits for the response of its
+   *                              request before giving up.
+   * @param reliable              whether lost requests and responses are recovered by retransmission.
+   * @param receiverThreads       number of listener threads that receive the packets, which is also
+   *                              the number of decoder threads.
+   * @param maxWorkers            maximum number of worker threads that handle the requests.
+   */
+  public UdpUnderlay(long responseTimeoutMillis, boolean reliable, int receiverThreads, int maxWorkers) {
+    if (responseTimeoutMillis <= 0) {
+      throw new IllegalArgumentException("response timeout must be positive: " + responseTimeoutMillis);
+    }
+    if (receiverThreads <= 0) {
+      throw new IllegalArgumentException("number of receiver threads must be positive: " + receiverThreads);
+    }
+    if (maxWorkers <= 0) {
+      throw new IllegalArgumentException("number of workers must be positive: " + maxWorkers);
+    }
+    this.responseTimeoutMillis = responseTimeoutMillis;
+    this.reliable = reliable;
+    this.duplicateCache = reliable ? new UdpDuplicateCache(UdpDuplicateCache.DEFAULT_CAPACITY) : null;
+    this.receiverThreads = receiverThreads;
+    this.maxWorkers = maxWorkers;
+  }
+
+  public boolean isReliable() {
+    return reliable;
+  }
+
+  @Override
+  public int getMaxPacketSize() {
+    return MAX_PACKET_SIZE;
+  }
+
+  /**
+   * Returns the cache of the responses to the recently received requests.
+   *
+   * @return the duplicate cache in reliable mode, or null otherwise.
+   */
+  public UdpDuplicateCache getDuplicateCache() {
+    return duplicateCache;
+  }
+
+  /**
+   * Returns the number of received packets that were dropped because the decoder queue was full.
+   *
+   * @return number of dropped packets.
+   */
+  public long getDroppedPackets() {
+    return droppedPackets.get();
+  }
+
+  /**
+   * Called by the listeners when a received packet is dropped.
+   */
+  void packetDropped() {
+    droppedPackets.incrementAndGet();
+  }
+
+  /**
+   * Returns the number of packets dropped by the operating system on the socket of the underlay,
+   * e.g., because its receive buffer overflowed. Only available on Linux.
+   *
+   * @return number of packets dropped by the socket, or -1 if not available.
+   */
+  public long getSocketDrops() {
+    return UdpUtils.readSocketDrops(getPort());
+  }
+
+  /**
+   * Returns the number of received packets waiting to be decoded.
+   *
+   * @return depth of the decoder queue.
+   */
+  public int getReceiveQueueDepth() {
+    return decoders == null ? 0 : decoders.getQueue().size();
+  }
 
   /**
-   * Creates a UDP socket at the given port and starts listening it.
+   * Creates a UDP channel at the given port and starts listening it.
    *
    * @param port the port that the underlay should be bound to.
    * @return port number underlay initialized on or -1 if initialization is unsuccessful.
@@ -40,21 +204,33 @@ public class UdpUnderlay extends Underlay {
   @Override
   protected int initUnderlay(int port) {
     // Bind to the given port.
+    int localPort;
     try {
-      udpSocket = new DatagramSocket(port);
-    } catch (SocketException e) {
+      channel = DatagramChannel.open();
+      channel.bind(new InetSocketAddress(port));
+      localPort = ((InetSocketAddress) channel.getLocalAddress()).getPort();
+    } catch (IOException e) {
       throw new IllegalStateException("could not create UDP socket.", e);
     }
+    bufferPool = new UdpBufferPool(MAX_PACKET_SIZE, RECEIVE_QUEUE_CAPACITY + receiverThreads);
+    decoders = new ThreadPoolExecutor(receiverThreads, receiverThreads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(RECEIVE_QUEUE_CAPACITY));
+    workers = new ThreadPoolExecutor(maxWorkers, maxWorkers, 60, TimeUnit.SECONDS, new SynchronousQueue<>());
+    workers.allowCoreThreadTimeOut(true);
+    timers = new ScheduledThreadPoolExecutor(1);
+    timers.setRemoveOnCancelPolicy(true);
 
-    // Create the listener thread that will continuously listen to the UDP packets.
-    listenerThread = new Thread(new UdpListener(udpSocket, this, responseLock));
-    listenerThread.start();
-    return udpSocket.getLocalPort();
+    // Create the listener threads that will continuously listen to the UDP packets.
+    UdpListener listener = new UdpListener(channel, this, pendingRequests, decoders, workers, bufferPool);
+    listenerThreads = new Thread[receiverThreads];
+    for (int i = 0; i < receiverThreads; i++) {
+      listenerThreads[i] = new Thread(listener);
+      listenerThreads[i].start();
+    }
+    return localPort;
   }
 
   /**
-   * Sends an UDP request the given address. The size of the request in bytes cannot exceed the size
-   * defined in `UDPUtils.MAX_PACKET_SIZE`.
+   * Sends an UDP request the given address and waits for its response. See `sendMessageAsync`.
    *
    * @param address address of the remote server.
    * @param port    port of the remote server.
@@ -63,6 +239,46 @@ public class UdpUnderlay extends Underlay {
    */
   @Override
   public Response sendMessage(String address, int port, Request request) {
+    try {
+      // The future is always completed, at the latest once the response timeout is reached.
+      return send(address, port, request).get();
+    } catch (InterruptedException | ExecutionException e) {
+      System.err.println("[UDPUnderlay] Could not get the response.");
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  /**
+   * Sends an UDP request the given address without waiting for its response. The size of the
+   * request in bytes cannot exceed the size defined in `UDPUtils.MAX_PACKET_SIZE`. The request is
+   * tagged with a fresh correlation ID, and the returned future is completed by the listener once
+   * the response carrying the same ID arrives, or with null once the response timeout is reached.
+   * Any number of requests can be in flight over the same underlay, and no thread waits for them.
+   * In reliable mode, the request is retransmitted by the timer of the underlay with an
+   * exponentially backed off timeout until a response arrives. The dependent actions of the
+   * returned future never run on the listener threads, so they may block.
+   *
+   * @param address address of the remote server.
+   * @param port    port of the remote server.
+   * @param request request to send.
+   * @return future of the response emitted by the server.
+   */
+  @Override
+  public CompletableFuture<Response> sendMessageAsync(String address, int port, Request request) {
+    return send(address, port, request).thenApplyAsync(Function.identity());
+  }
+
+  /**
+   * Sends a request, see `sendMessageAsync`. The returned future is completed on the listener
+   * threads.
+   *
+   * @param address address of the remote server.
+   * @param port    port of the remote server.
+   * @param request request to send.
+   * @return future of the response emitted by the server.
+   */
+  private CompletableFuture<Response> send(String address, int port, Request request) {
     // Convert a string address to an actual address to be used for UDP.
     InetAddress destAddress;
     try {
@@ -70,34 +286,118 @@ public class UdpUnderlay extends Underlay {
     } catch (UnknownHostException e) {
       System.err.println("[UDPUnderlay] Could not find the host with the address " + address);
       e.printStackTrace();
-      return null;
+      return CompletableFuture.completedFuture(null);
     }
+    // Tag the request so that its response can be told apart from the others in flight.
+    long requestId = nextRequestId.incrementAndGet();
+    request.requestId = requestId;
     // Serialize the request.
-    byte[] requestBytes = UdpUtils.serialize(request);
+    byte[] requestBytes = UdpUtils.serialize(getCodec(), request);
     if (requestBytes == null) {
       System.err.println("[UDPUnderlay] Invalid request.");
-      return null;
+      return CompletableFuture.completedFuture(null);
     }
-    // Then, send the request.
-    DatagramPacket requestPacket = new DatagramPacket(requestBytes, requestBytes.length, destAddress, port);
-    try {
-      udpSocket.send(requestPacket);
-    } catch (IOException e) {
-      System.err.println("[UDPUnderlay] Could not send the request.");
-      e.printStackTrace();
-      return null;
+    // Register before sending, so that an early response cannot be missed.
+    CompletableFuture<Response> responseFuture = pendingRequests.register(requestId);
+    UdpRttEstimator rttEstimator = reliable ? rttEstimators.computeIfAbsent(address + ":" + port, k -> new UdpRttEstimator()) : null;
+    Transmission transmission = new Transmission(requestId, requestBytes, new InetSocketAddress(destAddress, port), rttEstimator, responseFuture);
+    responseFuture.whenComplete((response, e) -> transmission.completed());
+    transmission.run();
+    return responseFuture;
+  }
+
+  /**
+   * Sends a request and rearms the timer of the underlay to retransmit it, or to give up on it once
+   * the response timeout is reached. Run by the sender first, and then by the timer.
+   */
+  private class Transmission implements Runnable {
+
+    private final long requestId;
+    private final byte[] requestBytes;
+    private final InetSocketAddress destination;
+    // Only set in reliable mode.
+    private final UdpRttEstimator rttEstimator;
+    private final CompletableFuture<Response> responseFuture;
+    private final long deadline = System.currentTimeMillis() + responseTimeoutMillis;
+    private int transmissions;
+    private long sentAt;
+    private ScheduledFuture<?> timer;
+
+    Transmission(long requestId, byte[] requestBytes, InetSocketAddress destination, UdpRttEstimator rttEstimator,
+                 CompletableFuture<Response> responseFuture) {
+      this.requestId = requestId;
+      this.requestBytes = requestBytes;
+      this.destination = destination;
+      this.rttEstimator = rttEstimator;
+      this.responseFuture = responseFuture;
     }
-    // Now, wait for the response.
-    Response response = responseLock.waitForResponse();
-    if (response == null) {
-      System.err.println("[UDPUnderlay] Could not get the response.");
-      return null;
+
+    @Override
+    public synchronized void run() {
+      if (responseFuture.isDone()) {
+        return;
+      }
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0) {
+        System.err.println("[UDPUnderlay] Timed out waiting for the response of request " + requestId);
+        fail();
+        return;
+      }
+      if (transmissions > 0 && rttEstimator == null) {
+        // Woken up early in unreliable mode, keep waiting until the deadline.
+        schedule(remaining);
+        return;
+      }
+      if (transmissions > 0) {
+        rttEstimator.backoff();
+      }
+      // Send the request. In reliable mode, the same request is retransmitted whenever the
+      // retransmission timeout expires, until the response timeout is reached.
+      try {
+        sentAt = System.nanoTime();
+        channel.send(ByteBuffer.wrap(requestBytes), destination);
+        transmissions++;
+      } catch (IOException e) {
+        System.err.println("[UDPUnderlay] Could not send the request.");
+        e.printStackTrace();
+        fail();
+        return;
+      }
+      schedule(rttEstimator != null ? Math.min(rttEstimator.getRto(), remaining) : remaining);
+    }
+
+    /**
+     * Called once the future of the request is completed.
+     */
+    synchronized void completed() {
+      pendingRequests.remove(requestId);
+      if (timer != null) {
+        timer.cancel(false);
+      }
+      // Only the round trips of requests that were sent once are sampled (Karn's algorithm).
+      if (rttEstimator != null && transmissions == 1 && responseFuture.getNow(null) != null) {
+        rttEstimator.addSample((System.nanoTime() - sentAt) / 1e6);
+      }
+    }
+
+    private void schedule(long delayMillis) {
+      try {
+        timer = timers.schedule(this, delayMillis, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        // The underlay is terminated.
+        fail();
+      }
+    }
+
+    private void fail() {
+      pendingRequests.remove(requestId);
+      responseFuture.complete(null);
     }
-    return response;
   }
 
   /**
-   * Terminates the underlay by unbinding the listener from the port.
+   * Terminates the underlay by unbinding the listeners from the port and stopping the decoder and
+   * worker threads.
    *
    * @return whether the termination was successful.
    */
@@ -105,10 +405,17 @@ public class UdpUnderlay extends Underlay {
   public boolean terminate() {
     try {
       // Unbind from the local port.
-      udpSocket.close();
-      // Close the listener thread.
-      listenerThread.join();
-    } catch (InterruptedException e) {
+      channel.close();
+      // Close the listener threads.
+      for (Thread listenerThread : listenerThreads) {
+        listenerThread.join();
+      }
+      decoders.shutdown();
+      workers.shutdown();
+      timers.shutdownNow();
+      // Release the senders that are still waiting.
+      pendingRequests.cancelAll();
+    } catch (IOException | InterruptedException e) {
       throw new IllegalStateException("could not terminate the underlay.", e);
     }
     return true;
@@ -1,11 +1,13 @@
 package underlay.udp;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import underlay.codec.PacketCodec;
 
 /**
  * Contains various static helper methods to be used by the UDP Underlay implementation.
@@ -13,38 +15,21 @@ import java.io.Serializable;
 public class UdpUtils {
 
   /**
-   * Converts the given serializable object into a byte array.
+   * Converts the given packet into a byte array.
    *
-   * @param obj object to serialize.
-   * @return byte array representation of the object.
+   * @param codec the codec of the underlay.
+   * @param obj   packet to serialize.
+   * @return byte array representation of the packet.
    */
-  public static byte[] serialize(Serializable obj) {
-    ByteArrayOutputStream bos;
-    ObjectOutputStream oos;
-    // Create the streams.
+  public static byte[] serialize(PacketCodec codec, Serializable obj) {
+    byte[] bytes;
     try {
-      bos = new ByteArrayOutputStream();
-      // Object output stream will write to the byte array output stream.
-      oos = new ObjectOutputStream(bos);
-      // Write the object to the object output stream.
-      oos.flush();
-      oos.writeObject(obj);
-      oos.flush();
+      bytes = codec.encode(obj);
     } catch (IOException e) {
       System.err.println("[UDPUtils] Could not serialize.");
       e.printStackTrace();
       return null;
     }
-    // Acquire the bytes from the byte array output stream.
-    byte[] bytes = bos.toByteArray();
-    // Close the streams.
-    try {
-      oos.close();
-      bos.close();
-    } catch (IOException e) {
-      System.err.println("[UDPUtils] Could not close the streams.");
-      e.printStackTrace();
-    }
     // Make sure that the byte array size does not exceed the maximum allowed packet size.
     if (bytes.length > UdpUnderlay.MAX_PACKET_SIZE) {
       System.err.println("[UDPUtils] Packet of size " + bytes.length + " is too big.");
@@ -54,36 +39,58 @@ public class UdpUtils {
   }
 
   /**
-   * Converts the given byte array into its object representation.
+   * Converts the given byte array into its packet representation.
    *
+   * @param codec  the codec of the underlay.
    * @param bytes  the byte array to convert.
    * @param length length of the byte array.
-   * @return the object representation.
+   * @return the packet representation.
    */
-  public static Object deserialize(byte[] bytes, int length) {
-    ByteArrayInputStream bis;
-    ObjectInputStream ois;
-    Object obj;
+  public static Object deserialize(PacketCodec codec, byte[] bytes, int length) {
     try {
-      // Create the streams.
-      bis = new ByteArrayInputStream(bytes, 0, length);
-      // Object input stream will read from the byte array input stream.
-      ois = new ObjectInputStream(bis);
-      // Read the object from the object input stream.
-      obj = ois.readObject();
-    } catch (Exception e) {
+      return codec.decode(bytes, 0, length);
+    } catch (IOException e) {
       System.err.println("[UDPUtils] Could not deserialize.");
       e.printStackTrace();
       return null;
     }
-    // Close the streams.
-    try {
-      ois.close();
-      bis.close();
-    } catch (IOException e) {
-      System.err.println("[UDPUtils] Could not close the streams.");
-      e.printStackTrace();
+  }
+
+  /**
+   * Reads the number of packets dropped by the operating system on the UDP sockets bound to the
+   * given local port from `/proc/net/udp` and `/proc/net/udp6`.
+   *
+   * @param port the local port.
+   * @return number of dropped packets, or -1 if the statistics are not available.
+   */
+  public static long readSocketDrops(int port) {
+    long drops = -1;
+    for (String table : new String[] {"/proc/net/udp", "/proc/net/udp6"}) {
+      Path path = Paths.get(table);
+      if (!Files.isReadable(path)) {
+        continue;
+      }
+      List<String> lines;
+      try {
+        lines = Files.readAllLines(path);
+      } catch (IOException e) {
+        continue;
+      }
+      // Skip the header. The local address is the second column in the form of address:port (in
+      // hexadecimal), and the number of drops is the last column.
+      for (String line : lines.subList(Math.min(1, lines.size()), lines.size())) {
+        String[] columns = line.trim().split("\\s+");
+        if (columns.length < 3) {
+          continue;
+        }
+        String localAddress = columns[1];
+        int separator = localAddress.lastIndexOf(':');
+        if (separator < 0 || Integer.parseInt(localAddress.substring(separator + 1), 16) != port) {
+          continue;
+        }
+        drops = Math.max(drops, 0) + Long.parseLong(columns[columns.length - 1]);
+      }
     }
-    return obj;
+    return drops;
   }
 }
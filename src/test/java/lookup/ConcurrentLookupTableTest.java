@@ -41,6 +41,19 @@ public class ConcurrentLookupTableTest {
     Assertions.assertEquals(nodesToInsert.size(), nodesToInsert.size());
   }
 
+  @Test
+  void updateLevelsAtOnce() {
+    SkipNodeIdentity first = nodesToInsert.get(0);
+    SkipNodeIdentity second = nodesToInsert.get(1);
+    concurrentLookupTable.updateLevels(first, LookupTable.Direction.RIGHT, 0, 3);
+    Assertions.assertEquals(List.of(first, first), concurrentLookupTable.updateLevels(second, LookupTable.Direction.RIGHT, 2, 3));
+    Assertions.assertEquals(first, concurrentLookupTable.getRight(1));
+    Assertions.assertEquals(second, concurrentLookupTable.getRight(3));
+    Assertions.assertEquals(LookupTable.EMPTY_NODE, concurrentLookupTable.getLeft(3));
+    // The levels out of the table are skipped.
+    Assertions.assertEquals(1, concurrentLookupTable.updateLevels(first, LookupTable.Direction.LEFT, nodesToInsert.size() - 1, 100).size());
+  }
+
 //  @Test
 //  void addRightNeighborsInOrderTest() {
 //    for (int i = 0; i < nodesToInsert.size(); i++) {
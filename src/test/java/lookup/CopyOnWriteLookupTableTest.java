@@ -0,0 +1,91 @@
+package lookup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import skipnode.SkipNodeIdentity;
+import unittest.IdentityFixture;
+
+/**
+ * Checks the single and batched updates of the copy-on-write lookup table, also under concurrent
+ * updates.
+ */
+class CopyOnWriteLookupTableTest {
+  private static final int LEVELS = 30;
+  private CopyOnWriteLookupTable table;
+  private List<SkipNodeIdentity> nodesToInsert;
+
+  @BeforeEach
+  void setUp() {
+    table = new CopyOnWriteLookupTable(LEVELS);
+    nodesToInsert = new ArrayList<>();
+    for (int i = 0; i < LEVELS; i++) {
+      nodesToInsert.add(IdentityFixture.newIdentity());
+    }
+  }
+
+  @Test
+  void addNeighborsSequentially() {
+    for (int i = 0; i < LEVELS; i++) {
+      Assertions.assertEquals(LookupTable.EMPTY_NODE, table.updateRight(nodesToInsert.get(i), i));
+      Assertions.assertEquals(LookupTable.EMPTY_NODE, table.updateLeft(nodesToInsert.get(LEVELS - 1 - i), i));
+    }
+    for (int i = 0; i < LEVELS; i++) {
+      Assertions.assertEquals(nodesToInsert.get(i), table.getRight(i));
+      Assertions.assertTrue(table.isRightNeighbor(nodesToInsert.get(i), i));
+      Assertions.assertEquals(nodesToInsert.get(LEVELS - 1 - i), table.getLeft(i));
+      Assertions.assertTrue(table.isLeftNeighbor(nodesToInsert.get(LEVELS - 1 - i), i));
+    }
+    // The levels that are not in the table are empty and cannot be updated.
+    Assertions.assertEquals(LookupTable.EMPTY_NODE, table.getLeft(LEVELS));
+    Assertions.assertEquals(LookupTable.EMPTY_NODE, table.getRight(-1));
+    Assertions.assertEquals(LookupTable.EMPTY_NODE, table.updateLeft(nodesToInsert.get(0), LEVELS));
+    Assertions.assertEquals(LookupTable.EMPTY_NODE, table.getLeft(LEVELS));
+  }
+
+  @Test
+  void updateLevels() {
+    SkipNodeIdentity first = nodesToInsert.get(0);
+    SkipNodeIdentity second = nodesToInsert.get(1);
+    Assertions.assertEquals(Arrays.asList(LookupTable.EMPTY_NODE, LookupTable.EMPTY_NODE, LookupTable.EMPTY_NODE),
+        table.updateLevels(first, LookupTable.Direction.LEFT, 2, 4));
+    Assertions.assertEquals(Arrays.asList(first, LookupTable.EMPTY_NODE), table.updateLevels(second, LookupTable.Direction.LEFT, 4, 5));
+    Assertions.assertEquals(LookupTable.EMPTY_NODE, table.getLeft(1));
+    Assertions.assertEquals(first, table.getLeft(3));
+    Assertions.assertEquals(second, table.getLeft(5));
+    Assertions.assertEquals(LookupTable.EMPTY_NODE, table.getRight(3));
+    // The levels out of the table are skipped.
+    Assertions.assertEquals(2, table.updateLevels(first, LookupTable.Direction.RIGHT, LEVELS - 2, LEVELS + 5).size());
+    Assertions.assertEquals(first, table.getRight(LEVELS - 1));
+    Assertions.assertTrue(table.updateLevels(first, LookupTable.Direction.RIGHT, 3, 2).isEmpty());
+  }
+
+  // The updates that race with each other are all applied.
+  @Test
+  void concurrentUpdates() throws InterruptedException {
+    CountDownLatch done = new CountDownLatch(LEVELS);
+    for (int i = 0; i < LEVELS; i++) {
+      int level = i;
+      new Thread(() -> {
+        for (int j = 0; j < 1000; j++) {
+          table.updateLeft(nodesToInsert.get(j % LEVELS), level);
+          table.updateLevels(nodesToInsert.get(j % LEVELS), LookupTable.Direction.RIGHT, level, level);
+        }
+        table.updateLeft(nodesToInsert.get(level), level);
+        table.updateLevels(nodesToInsert.get(level), LookupTable.Direction.RIGHT, level, level);
+        done.countDown();
+      }).start();
+    }
+    Assertions.assertTrue(done.await(30, TimeUnit.SECONDS));
+    for (int i = 0; i < LEVELS; i++) {
+      Assertions.assertEquals(nodesToInsert.get(i), table.getLeft(i));
+      Assertions.assertEquals(nodesToInsert.get(i), table.getRight(i));
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package lookup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+
+import model.skipgraph.SkipGraph;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import skipnode.SkipNodeIdentity;
+import unittest.IdentityFixture;
+
+/**
+ * Compares the read throughput of the lookup table implementations under concurrent reads and
+ * updates. The reader threads walk the levels from the top as the routing does, either with a call
+ * to the table per read or over a snapshot of the table per walk, while a writer thread keeps
+ * putting neighbors on the table with batched updates. The results are printed to the standard
+ * output.
+ */
+class LookupTableBenchmark {
+  private static final int READERS = 4;
+  private static final long DURATION_MILLIS = 1_000;
+  // Pause of the writer between its updates.
+  private static final long UPDATE_INTERVAL_MICROS = 10;
+
+  @Test
+  void compareMixedReadsAndUpdates() throws InterruptedException {
+    String concurrent = measure(numLevels -> new ConcurrentLookupTable(numLevels, IdentityFixture.newIdentity()), false);
+    String copyOnWrite = measure(CopyOnWriteLookupTable::new, false);
+    System.out.printf("Lookup table reads with %d readers and an update every %d us, per second, concurrent %s, copy-on-write %s%n", READERS,
+        UPDATE_INTERVAL_MICROS, concurrent, copyOnWrite);
+  }
+
+  @Test
+  void compareSnapshotReads() throws InterruptedException {
+    String concurrent = measure(numLevels -> new ConcurrentLookupTable(numLevels, IdentityFixture.newIdentity()), true);
+    String copyOnWrite = measure(CopyOnWriteLookupTable::new, true);
+    System.out.printf("Lookup table reads over snapshots with %d readers and an update every %d us, per second, concurrent %s, copy-on-write %s%n",
+        READERS, UPDATE_INTERVAL_MICROS, concurrent, copyOnWrite);
+  }
+
+  // Warms the implementation up on a first table, then measures it on a second one.
+  private static String measure(IntFunction<LookupTable> tables, boolean snapshots) throws InterruptedException {
+    run(tables.apply(SkipGraph.IDENTIFIER_SIZE), snapshots);
+    long[] counts = run(tables.apply(SkipGraph.IDENTIFIER_SIZE), snapshots);
+    double seconds = DURATION_MILLIS / 1e3;
+    return String.format("%.1fM reads and %.0fK updates", counts[0] / 1e6 / seconds, counts[1] / 1e3 / seconds);
+  }
+
+  /**
+   * Runs the readers and the writer on the table.
+   *
+   * @param snapshots whether the readers take a snapshot of the table per walk.
+   * @return the number of reads and the number of updates.
+   */
+  private static long[] run(LookupTable table, boolean snapshots) throws InterruptedException {
+    List<SkipNodeIdentity> neighbors = new ArrayList<>();
+    for (int i = 0; i < 16; i++) {
+      neighbors.add(IdentityFixture.newIdentity());
+    }
+    AtomicBoolean running = new AtomicBoolean(true);
+    AtomicLong reads = new AtomicLong();
+    AtomicLong updates = new AtomicLong();
+    // Keeps the results of the reads alive.
+    AtomicLong found = new AtomicLong();
+    CountDownLatch done = new CountDownLatch(READERS + 1);
+    for (int r = 0; r < READERS; r++) {
+      new Thread(() -> {
+        long count = 0;
+        long nonEmpty = 0;
+        while (running.get()) {
+          if (snapshots) {
+            LookupTableSnapshot snapshot = table.snapshot();
+            for (int level = snapshot.getNumLevels() - 1; level >= 0; level--) {
+              SkipNodeIdentity right = snapshot.getRight(level);
+              if (!right.equals(LookupTable.EMPTY_NODE) && right.equals(snapshot.getRight(level))) {
+                nonEmpty++;
+              }
+              if (!snapshot.getLeft(level).equals(LookupTable.EMPTY_NODE)) {
+                nonEmpty++;
+              }
+            }
+          } else {
+            for (int level = table.getNumLevels() - 1; level >= 0; level--) {
+              SkipNodeIdentity right = table.getRight(level);
+              if (!right.equals(LookupTable.EMPTY_NODE) && table.isRightNeighbor(right, level)) {
+                nonEmpty++;
+              }
+              if (!table.getLeft(level).equals(LookupTable.EMPTY_NODE)) {
+                nonEmpty++;
+              }
+            }
+          }
+          count += 3L * table.getNumLevels();
+        }
+        reads.addAndGet(count);
+        found.addAndGet(nonEmpty);
+        done.countDown();
+      }).start();
+    }
+    new Thread(() -> {
+      int i = 0;
+      while (running.get()) {
+        SkipNodeIdentity neighbor = neighbors.get(i % neighbors.size());
+        LookupTable.Direction direction = i % 2 == 0 ? LookupTable.Direction.LEFT : LookupTable.Direction.RIGHT;
+        table.updateLevels(neighbor, direction, 0, i % table.getNumLevels());
+        i++;
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(UPDATE_INTERVAL_MICROS));
+      }
+      updates.set(i);
+      done.countDown();
+    }).start();
+    Thread.sleep(DURATION_MILLIS);
+    running.set(false);
+    Assertions.assertTrue(done.await(10, TimeUnit.SECONDS));
+    Assertions.assertTrue(found.get() > 0);
+    return new long[] {reads.get(), updates.get()};
+  }
+}
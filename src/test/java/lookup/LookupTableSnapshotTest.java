@@ -0,0 +1,95 @@
+package lookup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import skipnode.SkipNodeIdentity;
+import unittest.IdentityFixture;
+
+/**
+ * Checks that the snapshots of both lookup tables hold a single state of all the levels, and that
+ * their versions tell whether the table has changed since.
+ */
+class LookupTableSnapshotTest {
+  private static final int LEVELS = 30;
+
+  @Test
+  void concurrentTableSnapshot() throws InterruptedException {
+    checkSnapshot(new ConcurrentLookupTable(LEVELS, IdentityFixture.newIdentity()));
+    checkConsistency(new ConcurrentLookupTable(LEVELS, IdentityFixture.newIdentity()));
+  }
+
+  @Test
+  void copyOnWriteTableSnapshot() throws InterruptedException {
+    checkSnapshot(new CopyOnWriteLookupTable(LEVELS));
+    checkConsistency(new CopyOnWriteLookupTable(LEVELS));
+  }
+
+  // The snapshot keeps the neighbors it was taken with, and becomes stale once the table is updated.
+  private static void checkSnapshot(LookupTable table) {
+    List<SkipNodeIdentity> nodes = new ArrayList<>();
+    for (int i = 0; i < LEVELS; i++) {
+      nodes.add(IdentityFixture.newIdentity());
+      table.updateLeft(nodes.get(i), i);
+    }
+    LookupTableSnapshot snapshot = table.snapshot();
+    Assertions.assertEquals(LEVELS, snapshot.getNumLevels());
+    Assertions.assertEquals(table.getVersion(), snapshot.getVersion());
+    // Reading the table does not change its version.
+    Assertions.assertEquals(snapshot.getVersion(), table.snapshot().getVersion());
+
+    table.updateLevels(nodes.get(0), LookupTable.Direction.RIGHT, 0, LEVELS - 1);
+    table.updateLeft(nodes.get(0), LEVELS - 1);
+    for (int i = 0; i < LEVELS; i++) {
+      Assertions.assertEquals(nodes.get(i), snapshot.getLeft(i));
+      Assertions.assertEquals(LookupTable.EMPTY_NODE, snapshot.getRight(i));
+    }
+    Assertions.assertTrue(table.getVersion() > snapshot.getVersion());
+    Assertions.assertEquals(nodes.get(0), table.snapshot().getLeft(LEVELS - 1));
+    Assertions.assertEquals(nodes.get(0), table.snapshot().getRight(LEVELS / 2));
+
+    // The levels that are not in the table are empty.
+    Assertions.assertEquals(LookupTable.EMPTY_NODE, snapshot.getLeft(LEVELS));
+    Assertions.assertEquals(LookupTable.EMPTY_NODE, snapshot.getRight(-1));
+  }
+
+  // A writer keeps putting a single neighbor on all the levels at once, so every snapshot must hold
+  // the same neighbor on all the levels.
+  private static void checkConsistency(LookupTable table) throws InterruptedException {
+    List<SkipNodeIdentity> nodes = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      nodes.add(IdentityFixture.newIdentity());
+    }
+    table.updateLevels(nodes.get(0), LookupTable.Direction.RIGHT, 0, LEVELS - 1);
+    AtomicBoolean running = new AtomicBoolean(true);
+    CountDownLatch done = new CountDownLatch(1);
+    new Thread(() -> {
+      for (int i = 0; running.get(); i++) {
+        table.updateLevels(nodes.get(i % nodes.size()), LookupTable.Direction.RIGHT, 0, LEVELS - 1);
+      }
+      done.countDown();
+    }).start();
+
+    AtomicReference<String> failure = new AtomicReference<>();
+    long lastVersion = -1;
+    for (int n = 0; n < 10_000 && failure.get() == null; n++) {
+      LookupTableSnapshot snapshot = table.snapshot();
+      Assertions.assertTrue(snapshot.getVersion() >= lastVersion);
+      lastVersion = snapshot.getVersion();
+      for (int level = 1; level < LEVELS; level++) {
+        if (!snapshot.getRight(level).equals(snapshot.getRight(0))) {
+          failure.set("level " + level + " differs from level 0 in version " + snapshot.getVersion());
+        }
+      }
+    }
+    running.set(false);
+    Assertions.assertTrue(done.await(10, TimeUnit.SECONDS));
+    Assertions.assertNull(failure.get());
+  }
+}
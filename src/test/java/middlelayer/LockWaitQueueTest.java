@@ -0,0 +1,72 @@
+package middlelayer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the requests waiting in a lock wait queue are woken up by the release of the lock, and
+ * that the number of waiting requests and the duration they wait are bounded.
+ */
+class LockWaitQueueTest {
+
+  @Test
+  void releaseWakesWaiters() throws Exception {
+    LockWaitQueue queue = new LockWaitQueue(2, 10_000);
+    CompletableFuture<Void> release = queue.nextRelease();
+    long deadline = queue.deadline();
+    CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> queue.await(release, deadline));
+    CompletableFuture<Boolean> second = queue.awaitAsync(release, deadline);
+    while (queue.getWaiterCount() < 2) {
+      Thread.sleep(1);
+    }
+    queue.released();
+    Assertions.assertTrue(first.get(1, TimeUnit.SECONDS));
+    Assertions.assertTrue(second.get(1, TimeUnit.SECONDS));
+    Assertions.assertEquals(0, queue.getWaiterCount());
+    // The next release is a fresh one.
+    Assertions.assertFalse(queue.nextRelease().isDone());
+  }
+
+  // A release between taking the next release and waiting on it is not missed.
+  @Test
+  void earlierReleaseIsNotMissed() {
+    LockWaitQueue queue = new LockWaitQueue(1, 10_000);
+    CompletableFuture<Void> release = queue.nextRelease();
+    queue.released();
+    Assertions.assertTrue(queue.await(release, queue.deadline()));
+    Assertions.assertTrue(queue.awaitAsync(release, queue.deadline()).join());
+  }
+
+  @Test
+  void fullQueueRefuses() throws Exception {
+    LockWaitQueue queue = new LockWaitQueue(1, 10_000);
+    CompletableFuture<Void> release = queue.nextRelease();
+    CompletableFuture<Boolean> waiting = queue.awaitAsync(release, queue.deadline());
+    Assertions.assertEquals(1, queue.getWaiterCount());
+    Assertions.assertFalse(queue.await(release, queue.deadline()));
+    Assertions.assertFalse(queue.awaitAsync(release, queue.deadline()).join());
+    queue.released();
+    Assertions.assertTrue(waiting.get(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void waitTimesOut() {
+    LockWaitQueue queue = new LockWaitQueue(1, 50);
+    long start = System.nanoTime();
+    Assertions.assertFalse(queue.await(queue.nextRelease(), queue.deadline()));
+    Assertions.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    Assertions.assertFalse(queue.awaitAsync(queue.nextRelease(), queue.deadline()).join());
+    // A passed deadline is not waited for.
+    Assertions.assertFalse(queue.await(queue.nextRelease(), System.nanoTime()));
+    Assertions.assertEquals(0, queue.getWaiterCount());
+  }
+
+  @Test
+  void rejectsInvalidBounds() {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new LockWaitQueue(0, 10));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new LockWaitQueue(1, 0));
+  }
+}
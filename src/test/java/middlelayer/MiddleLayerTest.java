@@ -0,0 +1,118 @@
+package middlelayer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lookup.ConcurrentLookupTable;
+import lookup.LookupTable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import skipnode.SkipNode;
+import skipnode.SkipNodeInterface;
+import underlay.local.LocalNetwork;
+import underlay.local.LocalUnderlay;
+import underlay.packets.Request;
+import underlay.packets.Response;
+import underlay.packets.responses.BusyResponse;
+
+/**
+ * Checks that the calls between the overlays of the same middle layer are made directly, without
+ * going through the underlay, and that they are subject to the same locking and availability checks
+ * as the requests.
+ */
+class MiddleLayerTest {
+  private CountingUnderlay underlay;
+  private SkipNodeInterface overlay;
+  private MiddleLayer middleLayer;
+
+  /**
+   * A local underlay that counts the messages it sends and receives.
+   */
+  private static class CountingUnderlay extends LocalUnderlay {
+    private final AtomicInteger messages = new AtomicInteger();
+
+    private CountingUnderlay(LocalNetwork network) {
+      super(network);
+    }
+
+    @Override
+    public Response sendMessage(String address, int port, Request request) {
+      messages.incrementAndGet();
+      return super.sendMessage(address, port, request);
+    }
+
+    @Override
+    public CompletableFuture<Response> sendMessageAsync(String address, int port, Request request) {
+      messages.incrementAndGet();
+      return super.sendMessageAsync(address, port, request);
+    }
+
+    @Override
+    public Response dispatchRequest(Request request) {
+      messages.incrementAndGet();
+      return super.dispatchRequest(request);
+    }
+  }
+
+  @BeforeEach
+  void setup() {
+    underlay = new CountingUnderlay(new LocalNetwork());
+    // The node is locked and unavailable until it is inserted.
+    overlay = new SkipNode(LookupTable.EMPTY_NODE, new ConcurrentLookupTable(2, LookupTable.EMPTY_NODE));
+    middleLayer = new MiddleLayer(underlay, overlay);
+    underlay.setMiddleLayer(middleLayer);
+    overlay.setMiddleLayer(middleLayer);
+    Assertions.assertTrue(underlay.initialize(0));
+  }
+
+  @AfterEach
+  void tearDown() {
+    Assertions.assertTrue(underlay.terminate());
+  }
+
+  // The calls to the local overlay never reach the underlay.
+  @Test
+  void localCalls() {
+    String address = underlay.getAddress();
+    int port = underlay.getPort();
+    Assertions.assertEquals(overlay.getIdentity(), middleLayer.getIdentity(address, port));
+    Assertions.assertFalse(middleLayer.isAvailable(address, port));
+    Assertions.assertFalse(middleLayer.isAvailableAsync(address, port, null).join());
+    Assertions.assertEquals(0, underlay.messages.get());
+  }
+
+  // A local overlay that is locked by another node turns down the calls that require it to be unlocked.
+  @Test
+  void lockedOverlay() {
+    String address = underlay.getAddress();
+    int port = underlay.getPort();
+    Assertions.assertEquals(LookupTable.INVALID_NODE, middleLayer.getRightNeighborOf(false, address, port, null, 0));
+    Assertions.assertEquals(LookupTable.INVALID_NODE, middleLayer.getLeftNeighborOfAsync(false, address, port, null, 0).join());
+    Assertions.assertEquals(0, underlay.messages.get());
+  }
+
+  // A request answered as busy by the remote underlay is sent again shortly, and not taken as locked.
+  @Test
+  void busyPeer() {
+    AtomicInteger busy = new AtomicInteger(2);
+    LocalUnderlay remoteUnderlay = new LocalUnderlay(underlay.getNetwork()) {
+      @Override
+      public Response dispatchRequest(Request request) {
+        return busy.getAndDecrement() > 0 ? new BusyResponse() : super.dispatchRequest(request);
+      }
+    };
+    SkipNodeInterface remote = new SkipNode(LookupTable.EMPTY_NODE, new ConcurrentLookupTable(2, LookupTable.EMPTY_NODE));
+    MiddleLayer remoteLayer = new MiddleLayer(remoteUnderlay, remote);
+    remoteUnderlay.setMiddleLayer(remoteLayer);
+    remote.setMiddleLayer(remoteLayer);
+    Assertions.assertTrue(remoteUnderlay.initialize(0));
+
+    Assertions.assertEquals(remote.getIdentity(), middleLayer.getIdentity(remoteUnderlay.getAddress(), remoteUnderlay.getPort()));
+    busy.set(2);
+    Assertions.assertFalse(middleLayer.isAvailableAsync(remoteUnderlay.getAddress(), remoteUnderlay.getPort(), null).join());
+    Assertions.assertTrue(busy.get() < 0);
+    Assertions.assertTrue(remoteUnderlay.terminate());
+  }
+}
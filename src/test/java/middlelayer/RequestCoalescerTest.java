@@ -0,0 +1,199 @@
+package middlelayer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lookup.ConcurrentLookupTable;
+import lookup.LookupTable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import skipnode.SkipNode;
+import skipnode.SkipNodeInterface;
+import underlay.Underlay;
+import underlay.UnderlayTest;
+import underlay.packets.Request;
+import underlay.packets.Response;
+import underlay.packets.requests.BatchRequest;
+import underlay.packets.requests.IsAvailableRequest;
+import underlay.tcp.TcpUnderlay;
+
+/**
+ * Checks that the requests sent to the same peer within the batch window are delivered in a single
+ * underlay message, and that each of them receives its own response.
+ */
+class RequestCoalescerTest {
+  private static final long WINDOW_MS = 100;
+  private static final long LONG_WINDOW_MS = 600_000;
+  private static final int MAX_BATCH_SIZE = 8;
+
+  private TcpUnderlay local;
+  private CountingUnderlay remote;
+  private MiddleLayer middleLayer;
+
+  /**
+   * A TCP underlay that counts the underlay messages it receives.
+   */
+  private static class CountingUnderlay extends TcpUnderlay {
+    private final AtomicInteger messages = new AtomicInteger();
+
+    @Override
+    public Response dispatchRequest(Request request) {
+      messages.incrementAndGet();
+      return super.dispatchRequest(request);
+    }
+  }
+
+  @BeforeEach
+  void setup() {
+    local = new TcpUnderlay();
+    SkipNodeInterface overlay = new SkipNode(LookupTable.EMPTY_NODE, new ConcurrentLookupTable(2, LookupTable.EMPTY_NODE));
+    middleLayer = new MiddleLayer(local, overlay, WINDOW_MS, MAX_BATCH_SIZE);
+    local.setMiddleLayer(middleLayer);
+    overlay.setMiddleLayer(middleLayer);
+    Assertions.assertTrue(local.initialize(0));
+
+    remote = new CountingUnderlay();
+    UnderlayTest.buildLayers(remote);
+    Assertions.assertTrue(remote.initialize(0));
+  }
+
+  @AfterEach
+  void tearDown() {
+    Assertions.assertTrue(local.terminate());
+    Assertions.assertTrue(remote.terminate());
+  }
+
+  // A full batch is sent right away as a single message.
+  @Test
+  void fullBatch() {
+    List<CompletableFuture<Boolean>> answers = sendRequests(MAX_BATCH_SIZE);
+    for (CompletableFuture<Boolean> answer : answers) {
+      Assertions.assertNotNull(answer.join());
+    }
+    Assertions.assertEquals(1, remote.messages.get());
+  }
+
+  // A partial batch is sent once its window expires, and the requests beyond a full batch go into the next one.
+  @Test
+  void windowExpires() {
+    List<CompletableFuture<Boolean>> answers = sendRequests(MAX_BATCH_SIZE + 3);
+    for (CompletableFuture<Boolean> answer : answers) {
+      Assertions.assertNotNull(answer.join());
+    }
+    Assertions.assertEquals(2, remote.messages.get());
+  }
+
+  // A request that is alone in its window is sent as is.
+  @Test
+  void singleRequest() {
+    Assertions.assertFalse(middleLayer.isAvailableAsync(remote.getAddress(), remote.getPort(), null).join());
+    Assertions.assertEquals(1, remote.messages.get());
+  }
+
+  // A blocking request does not wait out the window, and takes the requests collected so far along.
+  // The window is far longer than the test, so the requests are answered only if the blocking one flushes them.
+  @Test
+  void blockingRequestFlushes() {
+    TcpUnderlay sender = new TcpUnderlay();
+    SkipNodeInterface overlay = new SkipNode(LookupTable.EMPTY_NODE, new ConcurrentLookupTable(2, LookupTable.EMPTY_NODE));
+    MiddleLayer slowLayer = new MiddleLayer(sender, overlay, LONG_WINDOW_MS, MAX_BATCH_SIZE);
+    sender.setMiddleLayer(slowLayer);
+    overlay.setMiddleLayer(slowLayer);
+    Assertions.assertTrue(sender.initialize(0));
+
+    List<CompletableFuture<Boolean>> answers = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      answers.add(slowLayer.isAvailableAsync(remote.getAddress(), remote.getPort(), null));
+    }
+    Assertions.assertFalse(slowLayer.isAvailable(remote.getAddress(), remote.getPort()));
+    for (CompletableFuture<Boolean> answer : answers) {
+      Assertions.assertTrue(answer.isDone());
+      Assertions.assertNotNull(answer.join());
+    }
+    Assertions.assertEquals(1, remote.messages.get());
+    Assertions.assertTrue(sender.terminate());
+  }
+
+  // The requests of a batch that could not be sent are answered with null instead of being left pending.
+  @Test
+  void failedSend() {
+    // Sends through the default asynchronous adapter, whose futures fail as `sendMessage` throws.
+    Underlay failing = new Underlay() {
+      @Override
+      protected int initUnderlay(int port) {
+        return port;
+      }
+
+      @Override
+      public Response sendMessage(String address, int port, Request request) {
+        throw new IllegalStateException("unreachable");
+      }
+
+      @Override
+      public boolean terminate() {
+        return true;
+      }
+    };
+    RequestCoalescer coalescer = new RequestCoalescer(failing, WINDOW_MS, MAX_BATCH_SIZE);
+    List<CompletableFuture<Response>> responses = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      responses.add(coalescer.submit(remote.getAddress(), remote.getPort(), new IsAvailableRequest()));
+    }
+    responses.add(coalescer.submitAndFlush(remote.getAddress(), remote.getPort(), new IsAvailableRequest()));
+    for (CompletableFuture<Response> response : responses) {
+      Assertions.assertNull(response.join());
+    }
+    // A request alone in its window goes out as is.
+    Assertions.assertNull(coalescer.submitAndFlush(remote.getAddress(), remote.getPort(), new IsAvailableRequest()).join());
+  }
+
+  // The batches do not grow beyond the maximum packet size of the underlay.
+  @Test
+  void packetSizeLimit() throws IOException {
+    Request sample = new IsAvailableRequest();
+    sample.senderAddress = local.getAddress();
+    sample.senderPort = local.getPort();
+    BatchRequest empty = new BatchRequest(new ArrayList<>());
+    empty.senderAddress = local.getAddress();
+    empty.senderPort = local.getPort();
+    // Room for three requests per batch.
+    int maxPacketSize = local.getCodec().encode(empty).length + 3 * local.getCodec().encode(sample).length;
+    TcpUnderlay limited = new TcpUnderlay() {
+      @Override
+      public int getMaxPacketSize() {
+        return maxPacketSize;
+      }
+    };
+    SkipNodeInterface overlay = new SkipNode(LookupTable.EMPTY_NODE, new ConcurrentLookupTable(2, LookupTable.EMPTY_NODE));
+    MiddleLayer limitedLayer = new MiddleLayer(limited, overlay, WINDOW_MS, MAX_BATCH_SIZE);
+    limited.setMiddleLayer(limitedLayer);
+    overlay.setMiddleLayer(limitedLayer);
+    Assertions.assertTrue(limited.initialize(0));
+
+    List<CompletableFuture<Boolean>> answers = new ArrayList<>();
+    for (int i = 0; i < MAX_BATCH_SIZE; i++) {
+      answers.add(limitedLayer.isAvailableAsync(remote.getAddress(), remote.getPort(), null));
+    }
+    for (CompletableFuture<Boolean> answer : answers) {
+      Assertions.assertNotNull(answer.join());
+    }
+    Assertions.assertEquals(3, remote.messages.get());
+    Assertions.assertTrue(limited.terminate());
+  }
+
+  /**
+   * Sends the given number of availability checks to the remote peer at once.
+   */
+  private List<CompletableFuture<Boolean>> sendRequests(int count) {
+    List<CompletableFuture<Boolean>> answers = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      answers.add(middleLayer.isAvailableAsync(remote.getAddress(), remote.getPort(), null));
+    }
+    return answers;
+  }
+}
@@ -0,0 +1,71 @@
+package skipnode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import underlay.local.LocalNetwork;
+import unittest.LocalSkipGraph;
+
+/**
+ * Compares the latencies of concurrent insertions when the requests to the locked nodes are backed
+ * off by their senders and when they wait on the locked nodes, with the joiners notified of the
+ * released locks, over an in-JVM network with a fixed latency per message. The results are printed
+ * to the standard output.
+ */
+class ContendedJoinBenchmark {
+  private static final int NODES = 32;
+  private static final long LATENCY_MILLIS = 1;
+
+  @Test
+  void compareLockWaits() throws Exception {
+    String backoff = summarize(insert(false));
+    String waiting = summarize(insert(true));
+    System.out.printf("Concurrent insertion of %d nodes with %d ms links, backoff %s, waiting %s%n", NODES, LATENCY_MILLIS, backoff, waiting);
+  }
+
+  private static String summarize(List<Long> latencies) {
+    Collections.sort(latencies);
+    double mean = latencies.stream().mapToLong(Long::longValue).average().getAsDouble();
+    return String.format("mean %.0f ms, median %d ms, max %d ms", mean / 1e6, latencies.get(latencies.size() / 2) / 1_000_000,
+        latencies.get(latencies.size() - 1) / 1_000_000);
+  }
+
+  /**
+   * Inserts the nodes of a fresh skip graph at once, except for the first one.
+   *
+   * @return the latencies of the insertions in nanoseconds.
+   */
+  private static List<Long> insert(boolean lockWaits) throws Exception {
+    LocalNetwork network = new LocalNetwork(LATENCY_MILLIS, LocalNetwork.UNLIMITED_BANDWIDTH);
+    LocalSkipGraph.Options options = new LocalSkipGraph.Options();
+    if (lockWaits) {
+      options.lockWaits(NODES, 1_000);
+    }
+    LocalSkipGraph graph = new LocalSkipGraph(NODES, network, options);
+    List<SkipNode> nodes = graph.getNodes();
+    nodes.get(0).insert(null, -1);
+    SkipNodeIdentity introducer = nodes.get(0).getIdentity();
+    ExecutorService joiners = Executors.newFixedThreadPool(NODES - 1);
+    List<CompletableFuture<Long>> latencies = new ArrayList<>();
+    for (SkipNode node : nodes.subList(1, NODES)) {
+      latencies.add(CompletableFuture.supplyAsync(() -> {
+        long start = System.nanoTime();
+        node.insert(introducer.getAddress(), introducer.getPort());
+        return System.nanoTime() - start;
+      }, joiners));
+    }
+    List<Long> results = new ArrayList<>();
+    for (CompletableFuture<Long> latency : latencies) {
+      results.add(latency.get(120, TimeUnit.SECONDS));
+    }
+    joiners.shutdown();
+    graph.terminate();
+    return results;
+  }
+}
@@ -0,0 +1,111 @@
+package skipnode;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import lookup.LookupTable;
+import model.identifier.Identifier;
+import model.identifier.MembershipVector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import unittest.LocalSkipGraph;
+import unittest.MembershipVectorFixture;
+
+/**
+ * Checks that `findLadder` finds the same ladders when it forwards its walks along the levels as when
+ * it walks them itself.
+ */
+class ForwardedLevelWalkTest {
+  private static final int NODES = 20;
+  private LocalSkipGraph g;
+
+  @BeforeEach
+  public void setup() {
+    g = new LocalSkipGraph(NODES, false);
+  }
+
+  @AfterEach
+  public void teardown() {
+    g.terminate();
+  }
+
+  @Test
+  void matchesIterativeWalk() {
+    g.insertAll();
+    List<MembershipVector> targets = new ArrayList<>();
+    for (SkipNode node : g.getNodes()) {
+      targets.add(node.getIdentity().getMemVec());
+      targets.add(MembershipVectorFixture.newMembershipVector());
+    }
+    for (SkipNode node : g.getNodes()) {
+      for (MembershipVector target : targets) {
+        for (int level = 0; level < node.getLookupTable().getNumLevels(); level++) {
+          for (int direction = 0; direction <= 1; direction++) {
+            Assertions.assertEquals(findLadder(node, SearchMode.ITERATIVE, level, direction, target),
+                findLadder(node, SearchMode.FORWARDING, level, direction, target));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  void lockedNodeEndsWalk() {
+    g.insertAll();
+    List<SkipNode> nodes = new ArrayList<>(g.getNodes());
+    nodes.sort(Comparator.comparing(SkipNode::getIdentifier, Identifier::comparedTo));
+    // Find a node and its right neighbor on the 0th level that share their first bit.
+    int i = 0;
+    while (nodes.get(i).getIdentity().getMemVec().commonPrefix(nodes.get(i + 1).getIdentity().getMemVec()) == 0) {
+      i++;
+    }
+    SkipNode walker = nodes.get(i);
+    SkipNode locked = nodes.get(i + 1);
+    // Neither of them is the ladder, so the walk to the right has to go past the locked node.
+    byte[] bytes = locked.getIdentity().getMemVec().getBytes().clone();
+    bytes[0] = (byte) ~bytes[0];
+    MembershipVector target = new MembershipVector(bytes);
+
+    SkipNodeIdentity owner = nodes.get((i + 2) % NODES).getIdentity();
+    Assertions.assertTrue(locked.tryAcquire(owner));
+    Assertions.assertEquals(LookupTable.INVALID_NODE, findLadder(walker, SearchMode.ITERATIVE, 0, 1, target));
+    Assertions.assertEquals(LookupTable.INVALID_NODE, findLadder(walker, SearchMode.FORWARDING, 0, 1, target));
+
+    Assertions.assertTrue(locked.unlock(owner));
+    Assertions.assertNotEquals(LookupTable.INVALID_NODE, findLadder(walker, SearchMode.FORWARDING, 0, 1, target));
+    Assertions.assertEquals(findLadder(walker, SearchMode.ITERATIVE, 0, 1, target), findLadder(walker, SearchMode.FORWARDING, 0, 1, target));
+  }
+
+  @Test
+  void concurrentInsertions() throws InterruptedException {
+    g.getNodes().forEach(n -> n.setLevelWalkMode(SearchMode.FORWARDING));
+    g.getNodes().get(0).insert(null, -1);
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 1; i < NODES; i++) {
+      // Choose an already inserted introducer.
+      SkipNode introducer = g.getNodes().get((int) (Math.random() * i));
+      SkipNode node = g.getNodes().get(i);
+      Thread thread = new Thread(() -> node.insert(introducer.getIdentity().getAddress(), introducer.getIdentity().getPort()));
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join(60_000);
+      Assertions.assertFalse(thread.isAlive());
+    }
+    LockAcquisitionTest.checkTables(g);
+  }
+
+  @Test
+  void rejectsRecursiveMode() {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> g.getNodes().get(0).setLevelWalkMode(SearchMode.RECURSIVE));
+  }
+
+  private static SkipNodeIdentity findLadder(SkipNode node, SearchMode mode, int level, int direction, MembershipVector target) {
+    node.setLevelWalkMode(mode);
+    return node.findLadder(level, direction, target);
+  }
+}
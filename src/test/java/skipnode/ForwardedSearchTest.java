@@ -0,0 +1,95 @@
+package skipnode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import middlelayer.MiddleLayer;
+import model.identifier.Identifier;
+import model.identifier.MembershipVector;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import underlay.local.LocalNetwork;
+import underlay.local.LocalUnderlay;
+import unittest.IdentifierFixture;
+import unittest.LocalSkipGraph;
+import unittest.MembershipVectorFixture;
+
+/**
+ * Checks that the searches in the forwarding mode find the same nodes as the recursive ones, and that
+ * their originators are replied to.
+ */
+class ForwardedSearchTest {
+  private static final int NODES = 32;
+
+  private final LocalNetwork network = new LocalNetwork();
+  private LocalSkipGraph graph;
+
+  @Test
+  void matchesRecursiveSearch() {
+    List<SkipNode> nodes = insert();
+    for (SkipNode searcher : List.of(nodes.get(0), nodes.get(NODES / 2), nodes.get(NODES - 1))) {
+      for (SkipNode target : nodes) {
+        Assertions.assertEquals(target.getIdentity(), searcher.searchByIdentifier(target.getIdentifier(), SearchMode.FORWARDING));
+        MembershipVector memVec = target.getIdentity().getMemVec();
+        Assertions.assertEquals(searcher.searchByMembershipVector(memVec, SearchMode.RECURSIVE).result,
+            searcher.searchByMembershipVector(memVec, SearchMode.FORWARDING).result);
+      }
+      for (int i = 0; i < NODES; i++) {
+        Identifier identifier = IdentifierFixture.newIdentifier();
+        Assertions.assertEquals(searcher.searchByIdentifier(identifier, SearchMode.RECURSIVE),
+            searcher.searchByIdentifier(identifier, SearchMode.FORWARDING));
+        MembershipVector memVec = MembershipVectorFixture.newMembershipVector();
+        Assertions.assertEquals(searcher.searchByMembershipVector(memVec, SearchMode.RECURSIVE).result,
+            searcher.searchByMembershipVector(memVec, SearchMode.FORWARDING).result);
+      }
+    }
+    graph.getMiddleLayers().forEach(m -> Assertions.assertEquals(0, m.getPendingSearchCount()));
+    nodes.forEach(SkipNode::terminate);
+  }
+
+  @Test
+  void concurrentSearches() throws Exception {
+    List<SkipNode> nodes = insert();
+    ExecutorService searchers = Executors.newFixedThreadPool(NODES);
+    List<CompletableFuture<Void>> searches = new ArrayList<>();
+    for (SkipNode searcher : nodes) {
+      for (SkipNode target : nodes) {
+        searches.add(CompletableFuture.runAsync(() ->
+            Assertions.assertEquals(target.getIdentity(), searcher.searchByIdentifier(target.getIdentifier(), SearchMode.FORWARDING)), searchers));
+      }
+    }
+    CompletableFuture.allOf(searches.toArray(new CompletableFuture<?>[0])).get(60, TimeUnit.SECONDS);
+    searchers.shutdown();
+    nodes.forEach(SkipNode::terminate);
+  }
+
+  @Test
+  void failsOnUnreachableHop() {
+    List<SkipNode> nodes = insert();
+    SkipNode searcher = nodes.get(0);
+    SkipNode target = nodes.get(NODES - 1);
+    // The search cannot be forwarded to its last hop.
+    LocalUnderlay targetUnderlay = (LocalUnderlay) graph.getUnderlays().get(graph.getNodes().indexOf(target));
+    Assertions.assertTrue(network.removeUnderlay(targetUnderlay));
+
+    long start = System.nanoTime();
+    Assertions.assertNull(searcher.searchByIdentifier(target.getIdentifier(), SearchMode.FORWARDING));
+    // The originator is told right away instead of waiting for the timeout.
+    Assertions.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(MiddleLayer.FORWARDED_SEARCH_TIMEOUT_MILLIS / 2));
+    graph.getMiddleLayers().forEach(m -> Assertions.assertEquals(0, m.getPendingSearchCount()));
+    nodes.forEach(SkipNode::terminate);
+  }
+
+  /**
+   * Inserts a skip graph of nodes, sorted by their identifiers.
+   */
+  private List<SkipNode> insert() {
+    graph = new LocalSkipGraph(NODES, network, new LocalSkipGraph.Options());
+    graph.insertAll();
+    return graph.getNodesByIdentifier();
+  }
+}
@@ -0,0 +1,67 @@
+package skipnode;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import underlay.local.LocalNetwork;
+import underlay.local.LocalUnderlay;
+import underlay.packets.Request;
+import underlay.packets.RequestType;
+import underlay.packets.Response;
+import unittest.LocalSkipGraph;
+
+/**
+ * Inserts the nodes of a skip graph one by one, each behind its own in-JVM underlay, and counts the
+ * requests sent between the nodes, with and without the neighbor identity cache. The results are
+ * printed to the standard output.
+ */
+class InsertionBenchmark {
+  private static final int NODES = 64;
+
+  @Test
+  void compareRequests() {
+    Map<RequestType, Integer> uncached = insert(false);
+    Map<RequestType, Integer> cached = insert(true);
+    System.out.printf("Insertion of %d nodes: %d requests (%d GetIdentity) without the identity cache, %d requests (%d GetIdentity) with it%n",
+        NODES, total(uncached), uncached.getOrDefault(RequestType.GetIdentity, 0), total(cached), cached.getOrDefault(RequestType.GetIdentity, 0));
+  }
+
+  /**
+   * Inserts the nodes of a fresh skip graph.
+   *
+   * @return number of requests sent per request type.
+   */
+  private static Map<RequestType, Integer> insert(boolean cacheIdentities) {
+    LocalNetwork network = new LocalNetwork();
+    Map<RequestType, AtomicInteger> requests = new EnumMap<>(RequestType.class);
+    for (RequestType type : RequestType.values()) {
+      requests.put(type, new AtomicInteger());
+    }
+    LocalSkipGraph.Options options = new LocalSkipGraph.Options().cacheIdentities(cacheIdentities).underlays(n -> new LocalUnderlay(n) {
+      @Override
+      public Response sendMessage(String address, int port, Request request) {
+        requests.get(request.type).incrementAndGet();
+        return super.sendMessage(address, port, request);
+      }
+
+      @Override
+      public CompletableFuture<Response> sendMessageAsync(String address, int port, Request request) {
+        requests.get(request.type).incrementAndGet();
+        return super.sendMessageAsync(address, port, request);
+      }
+    });
+    LocalSkipGraph graph = new LocalSkipGraph(NODES, network, options);
+    graph.insertAll();
+    graph.terminate();
+    Map<RequestType, Integer> counts = new EnumMap<>(RequestType.class);
+    requests.forEach((type, count) -> counts.put(type, count.get()));
+    return counts;
+  }
+
+  private static int total(Map<RequestType, Integer> counts) {
+    return counts.values().stream().mapToInt(Integer::intValue).sum();
+  }
+}
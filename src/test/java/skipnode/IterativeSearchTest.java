@@ -0,0 +1,102 @@
+package skipnode;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import model.identifier.Identifier;
+import model.identifier.MembershipVector;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import underlay.local.LocalNetwork;
+import underlay.local.LocalUnderlay;
+import underlay.packets.Request;
+import underlay.packets.RequestType;
+import underlay.packets.Response;
+import unittest.IdentifierFixture;
+import unittest.LocalSkipGraph;
+import unittest.MembershipVectorFixture;
+
+/**
+ * Checks that the iterative searches find the same nodes as the recursive ones, and that a hop that
+ * does not answer is asked again.
+ */
+class IterativeSearchTest {
+  private static final int NODES = 32;
+
+  private LocalSkipGraph graph;
+
+  @Test
+  void matchesRecursiveSearch() {
+    List<SkipNode> nodes = insert();
+    for (SkipNode searcher : List.of(nodes.get(0), nodes.get(NODES / 2), nodes.get(NODES - 1))) {
+      for (SkipNode target : nodes) {
+        Assertions.assertEquals(target.getIdentity(), searcher.searchByIdentifier(target.getIdentifier(), SearchMode.ITERATIVE));
+        // Both modes end at the same node.
+        MembershipVector memVec = target.getIdentity().getMemVec();
+        Assertions.assertEquals(searcher.searchByMembershipVector(memVec, SearchMode.RECURSIVE).result,
+            searcher.searchByMembershipVector(memVec, SearchMode.ITERATIVE).result);
+      }
+      // Targets that do not exist end at the same nodes as well.
+      for (int i = 0; i < NODES; i++) {
+        Identifier identifier = IdentifierFixture.newIdentifier();
+        Assertions.assertEquals(searcher.searchByIdentifier(identifier, SearchMode.RECURSIVE),
+            searcher.searchByIdentifier(identifier, SearchMode.ITERATIVE));
+        MembershipVector memVec = MembershipVectorFixture.newMembershipVector();
+        Assertions.assertEquals(searcher.searchByMembershipVector(memVec, SearchMode.RECURSIVE).result,
+            searcher.searchByMembershipVector(memVec, SearchMode.ITERATIVE).result);
+      }
+      Assertions.assertTrue(searcher.getIterativeSearch().getHops() > 0);
+      Assertions.assertEquals(0, searcher.getIterativeSearch().getRetries());
+    }
+    nodes.forEach(SkipNode::terminate);
+  }
+
+  @Test
+  void retriesUnansweredHop() {
+    List<SkipNode> nodes = insert();
+    SkipNode searcher = nodes.get(0);
+    SkipNode target = nodes.get(NODES - 1);
+    DroppingUnderlay underlay = (DroppingUnderlay) graph.getUnderlays().get(graph.getNodes().indexOf(searcher));
+
+    // The first remote hop is asked twice.
+    searcher.setHopPolicy(100, 1);
+    underlay.drops.set(1);
+    Assertions.assertEquals(target.getIdentity(), searcher.searchByIdentifier(target.getIdentifier(), SearchMode.ITERATIVE));
+    Assertions.assertEquals(1, searcher.getIterativeSearch().getRetries());
+
+    // Without retries, the search fails.
+    searcher.setHopPolicy(100, 0);
+    underlay.drops.set(1);
+    Assertions.assertNull(searcher.searchByIdentifier(target.getIdentifier(), SearchMode.ITERATIVE));
+    nodes.forEach(SkipNode::terminate);
+  }
+
+  /**
+   * Inserts a skip graph of nodes, sorted by their identifiers.
+   */
+  private List<SkipNode> insert() {
+    graph = new LocalSkipGraph(NODES, new LocalNetwork(), new LocalSkipGraph.Options().underlays(DroppingUnderlay::new));
+    graph.insertAll();
+    return graph.getNodesByIdentifier();
+  }
+
+  /**
+   * Never answers the given number of next hop requests.
+   */
+  private static class DroppingUnderlay extends LocalUnderlay {
+    private final AtomicInteger drops = new AtomicInteger();
+
+    private DroppingUnderlay(LocalNetwork network) {
+      super(network);
+    }
+
+    @Override
+    public CompletableFuture<Response> sendMessageAsync(String address, int port, Request request) {
+      if (request.type == RequestType.NextHop && drops.getAndUpdate(d -> Math.max(0, d - 1)) > 0) {
+        return new CompletableFuture<>();
+      }
+      return super.sendMessageAsync(address, port, request);
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package skipnode;
+
+
+import org.junit.jupiter.api.Test;
+import underlay.local.LocalNetwork;
+import unittest.LocalSkipGraph;
+
+/**
+ * Compares the average latency of the insertions in every lock acquisition mode and level walk mode
+ * over an in-JVM network with a fixed latency per message. The nodes have full-size lookup tables and are inserted
+ * one by one. The results are printed to the standard output.
+ */
+class JoinLatencyBenchmark {
+  private static final int NODES = 64;
+  private static final long LATENCY_MILLIS = 1;
+
+  @Test
+  void compareLockAcquisitionModes() {
+    StringBuilder results = new StringBuilder();
+    for (LockAcquisitionMode mode : LockAcquisitionMode.values()) {
+      long elapsed = insert(mode, SearchMode.ITERATIVE);
+      results.append(String.format(", %s %.2f ms", mode.name().toLowerCase(), elapsed / 1e6 / (NODES - 1)));
+    }
+    System.out.printf("Insertion of %d nodes with %d ms links, per insertion%s%n", NODES, LATENCY_MILLIS, results);
+  }
+
+  @Test
+  void compareLevelWalkModes() {
+    StringBuilder results = new StringBuilder();
+    for (SearchMode mode : new SearchMode[] {SearchMode.ITERATIVE, SearchMode.FORWARDING}) {
+      long elapsed = insert(LockAcquisitionMode.SEQUENTIAL, mode);
+      results.append(String.format(", %s %.2f ms", mode.name().toLowerCase(), elapsed / 1e6 / (NODES - 1)));
+    }
+    System.out.printf("Insertion of %d nodes with %d ms links by level walk mode, per insertion%s%n", NODES, LATENCY_MILLIS, results);
+  }
+
+  /**
+   * Inserts the nodes of a fresh skip graph one after the other.
+   *
+   * @return the elapsed time of the insertions in nanoseconds.
+   */
+  private static long insert(LockAcquisitionMode lockAcquisitionMode, SearchMode levelWalkMode) {
+    LocalNetwork network = new LocalNetwork(LATENCY_MILLIS, LocalNetwork.UNLIMITED_BANDWIDTH);
+    LocalSkipGraph graph = new LocalSkipGraph(NODES, network,
+        new LocalSkipGraph.Options().lockAcquisitionMode(lockAcquisitionMode).levelWalkMode(levelWalkMode));
+    long start = System.nanoTime();
+    // The insertion of the first node takes no requests, so the time is spent on the others.
+    graph.insertAll();
+    long elapsed = System.nanoTime() - start;
+    graph.terminate();
+    return elapsed;
+  }
+}
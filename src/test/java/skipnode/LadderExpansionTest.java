@@ -0,0 +1,57 @@
+package skipnode;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import underlay.local.LocalNetwork;
+import underlay.local.LocalUnderlay;
+import underlay.packets.Request;
+import underlay.packets.RequestType;
+import underlay.packets.Response;
+import unittest.LocalSkipGraph;
+
+/**
+ * Checks that a membership vector search expands its window to the left and to the right at once.
+ */
+class LadderExpansionTest {
+  private static final int NODES = 32;
+  private static final long LATENCY_MILLIS = 5;
+
+  // Number of neighbor requests of the ladder walks that are not answered yet, and its maximum.
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+
+  @Test
+  void expandsBothDirectionsAtOnce() {
+    LocalNetwork network = new LocalNetwork(LATENCY_MILLIS, LocalNetwork.UNLIMITED_BANDWIDTH);
+    LocalSkipGraph graph = new LocalSkipGraph(NODES, network, new LocalSkipGraph.Options().underlays(n -> new LocalUnderlay(n) {
+      @Override
+      public Response sendMessage(String address, int port, Request request) {
+        if (request.type != RequestType.GetLeftNode && request.type != RequestType.GetRightNode) {
+          return super.sendMessage(address, port, request);
+        }
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+          return super.sendMessage(address, port, request);
+        } finally {
+          inFlight.decrementAndGet();
+        }
+      }
+    }));
+    graph.insertAll();
+    List<SkipNode> nodes = graph.getNodes();
+
+    // The searches are made one after the other, so the requests overlap only if the two directions of
+    // a search are walked at once.
+    maxInFlight.set(0);
+    SkipNode searcher = nodes.get(0);
+    for (SkipNode target : nodes) {
+      SearchResult result = searcher.searchByMembershipVector(target.getIdentity().getMemVec());
+      Assertions.assertNotNull(result.result);
+    }
+    Assertions.assertTrue(maxInFlight.get() >= 2, "max in flight: " + maxInFlight.get());
+    graph.terminate();
+  }
+}
@@ -0,0 +1,65 @@
+package skipnode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import model.identifier.Identifier;
+import model.identifier.MembershipVector;
+import model.skipgraph.SkipGraph;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import underlay.local.LocalNetwork;
+import unittest.IdentifierFixture;
+import unittest.LocalSkipGraph;
+
+/**
+ * Compares the latency of a long walk along a level in the iterative and the forwarding level walk
+ * modes over an in-JVM network with a fixed latency per message. Only the node with the greatest
+ * identifier shares the first bit of the target, so the walk from the node with the smallest one
+ * goes past every other node. The results are printed to the standard output.
+ */
+class LevelWalkBenchmark {
+  private static final int NODES = 32;
+  // The walk is on the 0th level, which is the only one the nodes are inserted to with two levels.
+  private static final int LEVELS = 2;
+  private static final long LATENCY_MILLIS = 1;
+  private static final int WALKS = 10;
+
+  @Test
+  void compareLevelWalkModes() {
+    List<SkipNode> nodes = insert(new LocalNetwork(LATENCY_MILLIS, LocalNetwork.UNLIMITED_BANDWIDTH));
+    SkipNode walker = nodes.get(0);
+    MembershipVector target = nodes.get(NODES - 1).getIdentity().getMemVec();
+    StringBuilder results = new StringBuilder();
+    for (SearchMode mode : new SearchMode[] {SearchMode.ITERATIVE, SearchMode.FORWARDING}) {
+      walker.setLevelWalkMode(mode);
+      long start = System.nanoTime();
+      for (int i = 0; i < WALKS; i++) {
+        Assertions.assertEquals(nodes.get(NODES - 1).getIdentity(), walker.findLadder(0, 1, target));
+      }
+      results.append(String.format(", %s %.2f ms", mode.name().toLowerCase(), (System.nanoTime() - start) / 1e6 / WALKS));
+    }
+    System.out.printf("Walk past %d nodes with %d ms links, per walk%s%n", NODES - 2, LATENCY_MILLIS, results);
+    nodes.forEach(SkipNode::terminate);
+  }
+
+  /**
+   * Inserts a skip graph of nodes in the order of their identifiers, where the membership vector of the
+   * last node differs from the others in the first bit.
+   */
+  private static List<SkipNode> insert(LocalNetwork network) {
+    List<Identifier> identifiers = new ArrayList<>();
+    for (int i = 0; i < NODES; i++) {
+      identifiers.add(IdentifierFixture.newIdentifier());
+    }
+    identifiers.sort(Identifier::comparedTo);
+    LocalSkipGraph graph = new LocalSkipGraph(NODES, network, new LocalSkipGraph.Options().levels(LEVELS).identities((i, underlay) -> {
+      byte[] memVec = new byte[SkipGraph.IDENTIFIER_SIZE];
+      Arrays.fill(memVec, i == NODES - 1 ? (byte) 0xFF : 0);
+      return new SkipNodeIdentity(identifiers.get(i), new MembershipVector(memVec), underlay.getAddress(), underlay.getPort());
+    }));
+    graph.insertAll();
+    return graph.getNodes();
+  }
+}
@@ -0,0 +1,138 @@
+package skipnode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import lookup.LookupTable;
+import model.identifier.Identifier;
+import model.identifier.MembershipVector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import unittest.LocalSkipGraph;
+
+/**
+ * Checks that the nodes inserted with the lock acquisition modes other than the sequential one end
+ * up with the same lookup tables as a skip graph built by hand.
+ */
+class LockAcquisitionTest {
+  private static final int NODES = 20;
+  private LocalSkipGraph g;
+
+  @BeforeEach
+  public void setup() {
+    g = new LocalSkipGraph(NODES, false);
+  }
+
+  @AfterEach
+  public void teardown() {
+    g.terminate();
+  }
+
+  @Test
+  void pipelinedSequentialInsertion() {
+    setMode(LockAcquisitionMode.PIPELINED);
+    g.insertAllRandomized();
+    checkTables(g);
+  }
+
+  @Test
+  void pipelinedConcurrentInsertions() throws InterruptedException {
+    setMode(LockAcquisitionMode.PIPELINED);
+    insertConcurrently();
+    checkTables(g);
+  }
+
+  @Test
+  void chainedSequentialInsertion() {
+    setMode(LockAcquisitionMode.CHAINED);
+    g.insertAllRandomized();
+    checkTables(g);
+  }
+
+  @Test
+  void chainedConcurrentInsertions() throws InterruptedException {
+    setMode(LockAcquisitionMode.CHAINED);
+    insertConcurrently();
+    checkTables(g);
+  }
+
+  /**
+   * Checks that a ladder chain holds the ladders `findLadder` finds one after the other.
+   */
+  @Test
+  void ladderChainMatchesLadders() {
+    g.insertAll();
+    for (SkipNode node : g.getNodes()) {
+      for (SkipNode inserted : g.getNodes()) {
+        MembershipVector target = inserted.getIdentity().getMemVec();
+        for (int direction = 0; direction <= 1; direction++) {
+          List<SkipNodeIdentity> ladders = new ArrayList<>();
+          SkipNode current = node;
+          for (int level = 0; level < node.getLookupTable().getNumLevels() - 1; level++) {
+            SkipNodeIdentity ladder = current.findLadder(level, direction, target);
+            ladders.add(ladder);
+            if (ladder.equals(LookupTable.EMPTY_NODE)) {
+              break;
+            }
+            current = g.getNodes().stream().filter(n -> n.getIdentity().equals(ladder)).findFirst().get();
+          }
+          Assertions.assertEquals(ladders, node.findLadderChain(0, direction, target, inserted.getIdentity()));
+        }
+      }
+    }
+  }
+
+  private void setMode(LockAcquisitionMode mode) {
+    g.getNodes().forEach(n -> n.setLockAcquisitionMode(mode));
+  }
+
+  private void insertConcurrently() throws InterruptedException {
+    g.getNodes().get(0).insert(null, -1);
+    CountDownLatch insertionDone = new CountDownLatch(NODES - 1);
+    for (int i = 1; i < NODES; i++) {
+      // Choose an already inserted introducer.
+      SkipNode introducer = g.getNodes().get((int) (Math.random() * i));
+      SkipNode node = g.getNodes().get(i);
+      new Thread(() -> {
+        node.insert(introducer.getIdentity().getAddress(), introducer.getIdentity().getPort());
+        insertionDone.countDown();
+      }).start();
+    }
+    Assertions.assertTrue(insertionDone.await(60, TimeUnit.SECONDS));
+  }
+
+  /**
+   * Checks that every node is linked to the closest nodes that share the prefix of each level.
+   */
+  static void checkTables(LocalSkipGraph g) {
+    Map<Identifier, LookupTable> tableMap = g.identifierLookupTableMap();
+    List<SkipNode> nodes = g.getNodes();
+    for (SkipNode n : nodes) {
+      SkipNodeTest.tableCorrectnessCheck(n.getIdentifier(), n.getIdentity().getMemVec(), n.getLookupTable());
+      SkipNodeTest.tableConsistencyCheck(tableMap, n);
+      for (int level = 0; level < n.getLookupTable().getNumLevels(); level++) {
+        SkipNodeIdentity left = LookupTable.EMPTY_NODE;
+        SkipNodeIdentity right = LookupTable.EMPTY_NODE;
+        for (SkipNode other : nodes) {
+          if (other.getIdentity().getMemVec().commonPrefix(n.getIdentity().getMemVec()) < level) {
+            continue;
+          }
+          Identifier id = other.getIdentifier();
+          if (id.isLessThan(n.getIdentifier()) && (left.equals(LookupTable.EMPTY_NODE) || id.isGreaterThan(left.getIdentifier()))) {
+            left = other.getIdentity();
+          }
+          if (id.isGreaterThan(n.getIdentifier()) && (right.equals(LookupTable.EMPTY_NODE) || id.isLessThan(right.getIdentifier()))) {
+            right = other.getIdentity();
+          }
+        }
+        Assertions.assertEquals(left, n.getLookupTable().getLeft(level));
+        Assertions.assertEquals(right, n.getLookupTable().getRight(level));
+      }
+    }
+  }
+}
@@ -0,0 +1,168 @@
+package skipnode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import lookup.ConcurrentLookupTable;
+import middlelayer.MiddleLayer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import underlay.local.LocalNetwork;
+import underlay.local.LocalUnderlay;
+import unittest.IdentifierFixture;
+import unittest.LocalSkipGraph;
+import unittest.MembershipVectorFixture;
+
+/**
+ * Checks that the requests to a locked node wait on the node until its lock is released, and that the
+ * inserted nodes whose locks were refused are notified of the release.
+ */
+class LockWaitTest {
+  private static final int NODES = 20;
+  private LocalSkipGraph g;
+
+  @BeforeEach
+  public void setup() {
+    g = new LocalSkipGraph(NODES, false);
+  }
+
+  @AfterEach
+  public void teardown() {
+    g.terminate();
+  }
+
+  @Test
+  void requestWaitsForRelease() throws Exception {
+    g.insertAll();
+    g.getMiddleLayers().forEach(m -> m.setLockWaitQueue(4, 10_000));
+    MiddleLayer sender = g.getMiddleLayers().get(0);
+    SkipNode target = g.getNodes().get(1);
+    SkipNodeIdentity owner = g.getNodes().get(2).getIdentity();
+    Assertions.assertTrue(target.tryAcquire(owner));
+
+    CompletableFuture<SkipNodeIdentity> neighbor = CompletableFuture.supplyAsync(() ->
+        sender.getRightNeighborOf(target.getIdentity().getAddress(), target.getIdentity().getPort(), target.getIdentifier(), 0));
+    awaitWaiters(g.getMiddleLayers().get(1), target, 1);
+    Assertions.assertFalse(neighbor.isDone());
+
+    Assertions.assertTrue(target.unlock(owner));
+    Assertions.assertEquals(target.getRightNode(0), neighbor.get(1, TimeUnit.SECONDS));
+    Assertions.assertEquals(0, g.getMiddleLayers().get(1).getLockWaiterCount(target.getIdentifier()));
+  }
+
+  // The calls to a locked overlay of the same middle layer wait in the same queue.
+  @Test
+  void localCallWaitsForRelease() throws Exception {
+    g.insertAll();
+    MiddleLayer middleLayer = g.getMiddleLayers().get(0);
+    middleLayer.setLockWaitQueue(4, 10_000);
+    SkipNode target = g.getNodes().get(0);
+    SkipNodeIdentity owner = g.getNodes().get(1).getIdentity();
+    Assertions.assertTrue(target.tryAcquire(owner));
+
+    String address = target.getIdentity().getAddress();
+    int port = target.getIdentity().getPort();
+    CompletableFuture<SkipNodeIdentity> neighbor = CompletableFuture.supplyAsync(() ->
+        middleLayer.getRightNeighborOf(address, port, target.getIdentifier(), 0));
+    CompletableFuture<SkipNodeIdentity> neighborAsync = middleLayer.getLeftNeighborOfAsync(true, address, port, target.getIdentifier(), 0);
+    awaitWaiters(middleLayer, target, 2);
+    Assertions.assertFalse(neighbor.isDone());
+    Assertions.assertFalse(neighborAsync.isDone());
+
+    Assertions.assertTrue(target.unlock(owner));
+    Assertions.assertEquals(target.getRightNode(0), neighbor.get(1, TimeUnit.SECONDS));
+    Assertions.assertEquals(target.getLeftNode(0), neighborAsync.get(1, TimeUnit.SECONDS));
+  }
+
+  // Once its wait is over, a request is answered as locked and its sender backs off as before.
+  @Test
+  void waitTimesOut() throws Exception {
+    g.insertAll();
+    g.getMiddleLayers().forEach(m -> m.setLockWaitQueue(4, 100));
+    MiddleLayer sender = g.getMiddleLayers().get(0);
+    SkipNode target = g.getNodes().get(1);
+    SkipNodeIdentity owner = g.getNodes().get(2).getIdentity();
+    Assertions.assertTrue(target.tryAcquire(owner));
+
+    CompletableFuture<SkipNodeIdentity> neighbor = CompletableFuture.supplyAsync(() ->
+        sender.getRightNeighborOf(target.getIdentity().getAddress(), target.getIdentity().getPort(), target.getIdentifier(), 0));
+    awaitWaiters(g.getMiddleLayers().get(1), target, 1);
+    awaitWaiters(g.getMiddleLayers().get(1), target, 0);
+    Assertions.assertTrue(target.unlock(owner));
+    Assertions.assertEquals(target.getRightNode(0), neighbor.get(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void refusedRequesterIsNotified() throws Exception {
+    LocalNetwork network = new LocalNetwork();
+    SkipNode target = newNode(network);
+    target.setLockReleaseNotifications(true);
+    target.insert(null, -1);
+    CompletableFuture<SkipNodeIdentity> notification = new CompletableFuture<>();
+    LocalUnderlay underlay = new LocalUnderlay(network);
+    Assertions.assertTrue(underlay.initialize(0));
+    SkipNodeIdentity identity = new SkipNodeIdentity(IdentifierFixture.newIdentifier(), MembershipVectorFixture.newMembershipVector(),
+        underlay.getAddress(), underlay.getPort());
+    SkipNode requester = new SkipNode(identity, new ConcurrentLookupTable(2, identity)) {
+      @Override
+      public void lockReleased(SkipNodeIdentity node) {
+        notification.complete(node);
+      }
+    };
+    MiddleLayer middleLayer = new MiddleLayer(underlay, requester);
+    underlay.setMiddleLayer(middleLayer);
+    requester.setMiddleLayer(middleLayer);
+
+    SkipNodeIdentity owner = newNode(network).getIdentity();
+    Assertions.assertTrue(target.tryAcquire(owner));
+    Assertions.assertFalse(middleLayer.tryAcquire(target.getIdentity().getAddress(), target.getIdentity().getPort(), target.getIdentifier(), identity));
+    Assertions.assertFalse(notification.isDone());
+    Assertions.assertTrue(target.unlock(owner));
+    Assertions.assertEquals(target.getIdentity(), notification.get(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void concurrentInsertions() throws InterruptedException {
+    g.getNodes().forEach(n -> n.setLockReleaseNotifications(true));
+    g.getMiddleLayers().forEach(m -> m.setLockWaitQueue(4, 1_000));
+    g.getNodes().get(0).insert(null, -1);
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 1; i < NODES; i++) {
+      // Choose an already inserted introducer.
+      SkipNode introducer = g.getNodes().get((int) (Math.random() * i));
+      SkipNode node = g.getNodes().get(i);
+      Thread thread = new Thread(() -> node.insert(introducer.getIdentity().getAddress(), introducer.getIdentity().getPort()));
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join(60_000);
+      Assertions.assertFalse(thread.isAlive());
+    }
+    LockAcquisitionTest.checkTables(g);
+  }
+
+  private static SkipNode newNode(LocalNetwork network) {
+    LocalUnderlay underlay = new LocalUnderlay(network);
+    Assertions.assertTrue(underlay.initialize(0));
+    SkipNodeIdentity identity = new SkipNodeIdentity(IdentifierFixture.newIdentifier(), MembershipVectorFixture.newMembershipVector(),
+        underlay.getAddress(), underlay.getPort());
+    SkipNode node = new SkipNode(identity, new ConcurrentLookupTable(2, identity));
+    MiddleLayer middleLayer = new MiddleLayer(underlay, node);
+    underlay.setMiddleLayer(middleLayer);
+    node.setMiddleLayer(middleLayer);
+    return node;
+  }
+
+  private static void awaitWaiters(MiddleLayer middleLayer, SkipNode node, int count) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (middleLayer.getLockWaiterCount(node.getIdentifier()) != count) {
+      Assertions.assertTrue(System.nanoTime() < deadline, "waiters: " + middleLayer.getLockWaiterCount(node.getIdentifier()));
+      Thread.sleep(1);
+    }
+  }
+}
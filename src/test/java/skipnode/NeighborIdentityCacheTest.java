@@ -0,0 +1,82 @@
+package skipnode;
+
+import lookup.ConcurrentLookupTable;
+import lookup.LookupTable;
+import model.skipgraph.SkipGraph;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import unittest.IdentifierFixture;
+import unittest.IdentityFixture;
+import unittest.MembershipVectorFixture;
+
+/**
+ * Checks the neighbor identity cache.
+ */
+class NeighborIdentityCacheTest {
+
+  @Test
+  void cachesIdentities() {
+    NeighborIdentityCache cache = new NeighborIdentityCache();
+    SkipNodeIdentity neighbor = new SkipNodeIdentity(IdentifierFixture.newIdentifier(), MembershipVectorFixture.newMembershipVector(),
+        "localhost", 1234);
+    Assertions.assertNull(cache.get(neighbor.getIdentifier()));
+
+    cache.put(neighbor);
+    Assertions.assertSame(neighbor, cache.get(neighbor.getIdentifier()));
+
+    // A refreshed identity replaces the older one, and is answered for the lookup table entries that still hold the older one.
+    SkipNodeIdentity moved = new SkipNodeIdentity(neighbor.getIdentifier(), neighbor.getMemVec(), "localhost", 4321);
+    cache.put(moved);
+    Assertions.assertSame(moved, cache.get(neighbor.getIdentifier()));
+
+    cache.put(LookupTable.EMPTY_NODE);
+    cache.put(LookupTable.INVALID_NODE);
+    Assertions.assertEquals(1, cache.size());
+
+    long version = cache.getVersion();
+    Assertions.assertFalse(cache.isStale(neighbor.getIdentifier(), version));
+    cache.remove(neighbor.getIdentifier());
+    Assertions.assertNull(cache.get(neighbor.getIdentifier()));
+    Assertions.assertEquals(0, cache.size());
+    Assertions.assertTrue(cache.isStale(neighbor.getIdentifier(), version));
+    Assertions.assertTrue(cache.getVersion() > version);
+  }
+
+  // A refresh does not overwrite an identity cached after it was started.
+  @Test
+  void refreshKeepsNewerIdentities() {
+    NeighborIdentityCache cache = new NeighborIdentityCache();
+    SkipNodeIdentity neighbor = new SkipNodeIdentity(IdentifierFixture.newIdentifier(), MembershipVectorFixture.newMembershipVector(),
+        "localhost", 1234);
+    SkipNodeIdentity moved = new SkipNodeIdentity(neighbor.getIdentifier(), neighbor.getMemVec(), "localhost", 4321);
+    cache.put(neighbor);
+
+    long version = cache.getVersion();
+    // Caching the same identity again is not a change.
+    cache.put(neighbor);
+    Assertions.assertEquals(version, cache.getVersion());
+    Assertions.assertTrue(cache.refresh(moved, version));
+    Assertions.assertSame(moved, cache.get(neighbor.getIdentifier()));
+    Assertions.assertTrue(cache.isStale(neighbor.getIdentifier(), version));
+
+    // The neighbor moves back while a refresh started before is in flight, whose answer is older.
+    long started = cache.getVersion();
+    cache.put(neighbor);
+    Assertions.assertFalse(cache.refresh(moved, started));
+    Assertions.assertSame(neighbor, cache.get(neighbor.getIdentifier()));
+  }
+
+  // A neighbor is cached only once it is put into the lookup table.
+  @Test
+  void announcedNeighborOutsideTable() {
+    SkipNodeIdentity identity = IdentityFixture.newIdentity();
+    SkipNode node = new SkipNode(identity, new ConcurrentLookupTable(SkipGraph.IDENTIFIER_SIZE, identity));
+    SkipNodeIdentity neighbor = IdentityFixture.newIdentity();
+    // No level of the table is at or above the minimum level.
+    node.announceNeighbor(neighbor, SkipGraph.IDENTIFIER_SIZE);
+    Assertions.assertNull(node.getIdentityCache().get(neighbor.getIdentifier()));
+
+    node.announceNeighbor(neighbor, 0);
+    Assertions.assertSame(neighbor, node.getIdentityCache().get(neighbor.getIdentifier()));
+  }
+}
@@ -0,0 +1,147 @@
+package skipnode;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import lookup.LookupTable;
+import model.identifier.Identifier;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import underlay.local.LocalNetwork;
+import unittest.IdentifierFixture;
+import unittest.LocalSkipGraph;
+import unittest.MembershipVectorFixture;
+
+/**
+ * Checks the route cache, on its own and as used by the identifier searches of a skip graph.
+ */
+class RouteCacheTest {
+  private static final int NODES = 32;
+
+  @Test
+  void shortcutBracketsTarget() {
+    List<SkipNodeIdentity> ids = sortedIdentities(5);
+    RouteCache cache = new RouteCache(RouteCache.DEFAULT_CAPACITY);
+    cache.put(ids.get(1));
+    cache.put(ids.get(3));
+    cache.put(LookupTable.EMPTY_NODE);
+    Assertions.assertEquals(2, cache.size());
+
+    // Searching to the right, the greatest cached node not greater than the target and beyond the next hop.
+    Assertions.assertEquals(ids.get(3), cache.shortcut(ids.get(3).getIdentifier(), ids.get(0).getIdentifier(), true));
+    Assertions.assertEquals(ids.get(1), cache.shortcut(ids.get(2).getIdentifier(), ids.get(0).getIdentifier(), true));
+    Assertions.assertNull(cache.shortcut(ids.get(2).getIdentifier(), ids.get(1).getIdentifier(), true));
+    // Searching to the left, the least cached node not less than the target and beyond the next hop.
+    Assertions.assertEquals(ids.get(3), cache.shortcut(ids.get(2).getIdentifier(), ids.get(4).getIdentifier(), false));
+    Assertions.assertNull(cache.shortcut(ids.get(2).getIdentifier(), ids.get(3).getIdentifier(), false));
+    Assertions.assertNull(cache.shortcut(ids.get(4).getIdentifier(), ids.get(4).getIdentifier(), false));
+
+    Assertions.assertEquals(3, cache.getHits());
+    Assertions.assertEquals(3, cache.getMisses());
+    Assertions.assertEquals(0.5, cache.getHitRate());
+  }
+
+  @Test
+  void evictsLeastRecentlyUsed() {
+    List<SkipNodeIdentity> ids = sortedIdentities(4);
+    RouteCache cache = new RouteCache(2);
+    cache.put(ids.get(1));
+    cache.put(ids.get(2));
+    // Use the first one, so that the second one is the least recently used.
+    Assertions.assertEquals(ids.get(1), cache.shortcut(ids.get(1).getIdentifier(), ids.get(0).getIdentifier(), true));
+    cache.put(ids.get(3));
+    Assertions.assertEquals(2, cache.size());
+    Assertions.assertEquals(ids.get(1), cache.shortcut(ids.get(2).getIdentifier(), ids.get(0).getIdentifier(), true));
+
+    cache.invalidate(ids.get(1));
+    Assertions.assertEquals(1, cache.getStaleEntries());
+    Assertions.assertNull(cache.shortcut(ids.get(2).getIdentifier(), ids.get(0).getIdentifier(), true));
+    // Invalidating a node that is not cached is not counted.
+    cache.invalidate(ids.get(1));
+    Assertions.assertEquals(1, cache.getStaleEntries());
+  }
+
+  @Test
+  void searchesJumpToCachedNodes() {
+    LocalNetwork network = new LocalNetwork();
+    List<SkipNode> nodes = insert(network);
+    SkipNode searcher = nodes.get(0);
+
+    long forwardsBefore = totalForwards(nodes);
+    searchAll(searcher, nodes);
+    long coldHops = totalForwards(nodes) - forwardsBefore;
+    forwardsBefore = totalForwards(nodes);
+    searchAll(searcher, nodes);
+    long warmHops = totalForwards(nodes) - forwardsBefore;
+
+    // Every repeated search jumps straight to its result.
+    Assertions.assertTrue(warmHops < coldHops, "warm: " + warmHops + ", cold: " + coldHops);
+    Assertions.assertTrue(warmHops <= NODES - 1, "warm: " + warmHops);
+    Assertions.assertTrue(searcher.getRouteCache().getHitRate() > 0);
+    nodes.forEach(SkipNode::terminate);
+  }
+
+  @Test
+  void fallsBackOnStaleEntry() {
+    LocalNetwork network = new LocalNetwork();
+    List<SkipNode> nodes = insert(network);
+    SkipNode searcher = nodes.get(0);
+    // Pick a target that is not a neighbor of the searcher, so that the search takes more than one hop.
+    SkipNode target = null;
+    for (int i = NODES - 1; i > 0 && target == null; i--) {
+      if (!isNeighbor(searcher, nodes.get(i).getIdentity())) {
+        target = nodes.get(i);
+      }
+    }
+    Assertions.assertNotNull(target);
+    // Cache a node with the identifier of the target that nobody listens on.
+    SkipNodeIdentity stale = new SkipNodeIdentity(target.getIdentifier(), target.getIdentity().getMemVec(), target.getIdentity().getAddress(),
+        Integer.MAX_VALUE);
+    searcher.getRouteCache().put(stale);
+
+    Assertions.assertEquals(target.getIdentity(), searcher.searchByIdentifier(target.getIdentifier()));
+    Assertions.assertEquals(1, searcher.getRouteCache().getStaleEntries());
+    // The result of the fallback search replaced the stale entry.
+    Assertions.assertEquals(target.getIdentity(), searcher.getRouteCache().shortcut(target.getIdentifier(), searcher.getIdentifier(), true));
+    nodes.forEach(SkipNode::terminate);
+  }
+
+  /**
+   * Inserts a skip graph of nodes with route caches, sorted by their identifiers.
+   */
+  private static List<SkipNode> insert(LocalNetwork network) {
+    LocalSkipGraph graph = new LocalSkipGraph(NODES, network, new LocalSkipGraph.Options().routeCacheCapacity(RouteCache.DEFAULT_CAPACITY));
+    graph.insertAll();
+    return graph.getNodesByIdentifier();
+  }
+
+  private static void searchAll(SkipNode searcher, List<SkipNode> nodes) {
+    for (SkipNode target : nodes) {
+      Assertions.assertEquals(target.getIdentity(), searcher.searchByIdentifier(target.getIdentifier()));
+    }
+  }
+
+  private static long totalForwards(List<SkipNode> nodes) {
+    return nodes.stream().mapToLong(SkipNode::getSearchForwards).sum();
+  }
+
+  private static boolean isNeighbor(SkipNode node, SkipNodeIdentity other) {
+    LookupTable table = node.getLookupTable();
+    for (int level = 0; level <= table.getNumLevels(); level++) {
+      if (table.getRight(level).equals(other) || table.getLeft(level).equals(other)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static List<SkipNodeIdentity> sortedIdentities(int count) {
+    List<SkipNodeIdentity> identities = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      identities.add(new SkipNodeIdentity(IdentifierFixture.newIdentifier(), MembershipVectorFixture.newMembershipVector(), "localhost", i));
+    }
+    identities.sort(Comparator.comparing(SkipNodeIdentity::getIdentifier, Identifier::comparedTo));
+    return identities;
+  }
+}
@@ -0,0 +1,59 @@
+package skipnode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import model.identifier.Identifier;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import underlay.local.LocalNetwork;
+import unittest.LocalSkipGraph;
+
+/**
+ * Compares the average latency of the identifier searches in every search mode over an in-JVM network
+ * with a fixed latency per message. The results are printed to the standard output.
+ */
+class SearchModeBenchmark {
+  private static final int NODES = 64;
+  private static final long LATENCY_MILLIS = 1;
+  private static final int SEARCHES = 200;
+
+  @Test
+  void compareSearchModes() {
+    LocalNetwork network = new LocalNetwork(LATENCY_MILLIS, LocalNetwork.UNLIMITED_BANDWIDTH);
+    List<SkipNode> nodes = insert(network);
+    List<Identifier> targets = new ArrayList<>();
+    for (int i = 0; i < SEARCHES; i++) {
+      targets.add(nodes.get(i % NODES).getIdentifier());
+    }
+    SkipNode searcher = nodes.get(0);
+    StringBuilder results = new StringBuilder();
+    for (SearchMode mode : SearchMode.values()) {
+      // Warm up the mode.
+      search(searcher, targets, mode);
+      long elapsed = search(searcher, targets, mode);
+      results.append(String.format(", %s %.2f ms", mode.name().toLowerCase(), elapsed / 1e6 / SEARCHES));
+    }
+    System.out.printf("Identifier search over %d nodes with %d ms links, per search%s%n", NODES, LATENCY_MILLIS, results);
+    nodes.forEach(SkipNode::terminate);
+  }
+
+  /**
+   * Runs the searches one after the other.
+   *
+   * @return the elapsed time in nanoseconds.
+   */
+  private static long search(SkipNode searcher, List<Identifier> targets, SearchMode mode) {
+    long start = System.nanoTime();
+    for (Identifier target : targets) {
+      Assertions.assertEquals(target, searcher.searchByIdentifier(target, mode).getIdentifier());
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static List<SkipNode> insert(LocalNetwork network) {
+    LocalSkipGraph graph = new LocalSkipGraph(NODES, network, new LocalSkipGraph.Options());
+    graph.insertAll();
+    return graph.getNodes();
+  }
+}
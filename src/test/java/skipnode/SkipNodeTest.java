@@ -13,6 +13,11 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import underlay.local.LocalNetwork;
+import underlay.local.LocalUnderlay;
+import underlay.packets.Request;
+import underlay.packets.RequestType;
+import underlay.packets.Response;
 import unittest.LocalSkipGraph;
 
 /**
@@ -71,6 +76,33 @@ class SkipNodeTest {
     g.terminate();
   }
 
+  // An insertion whose search for its neighbors could not reach a node tries again after a backoff.
+  @Test
+  void unreachableSearchIsRetried() {
+    AtomicInteger drops = new AtomicInteger(1);
+    LocalSkipGraph graph = new LocalSkipGraph(2, new LocalNetwork(), new LocalSkipGraph.Options().underlays(n -> new LocalUnderlay(n) {
+      @Override
+      public Response sendMessage(String address, int port, Request request) {
+        if (request.type == RequestType.SearchByIdentifier && drops.getAndDecrement() > 0) {
+          return null;
+        }
+        return super.sendMessage(address, port, request);
+      }
+    }));
+    graph.insertAll();
+    // The search was sent once more after the dropped one.
+    Assertions.assertTrue(drops.get() < 0);
+    Map<Identifier, LookupTable> tableMap = graph.identifierLookupTableMap();
+    for (SkipNode node : graph.getNodes()) {
+      tableCorrectnessCheck(node.getIdentifier(), node.getIdentity().getMemVec(), node.getLookupTable());
+      tableConsistencyCheck(tableMap, node);
+    }
+    LookupTable first = graph.getNodes().get(0).getLookupTable();
+    SkipNodeIdentity second = graph.getNodes().get(1).getIdentity();
+    Assertions.assertTrue(first.isLeftNeighbor(second, 0) || first.isRightNeighbor(second, 0));
+    graph.terminate();
+  }
+
   @Test
   void concurrentInsertionsAndSearches() {
     // Insert the first node.
@@ -0,0 +1,93 @@
+package skipnode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import lookup.LookupTable;
+import model.identifier.Identifier;
+import model.skipgraph.SkipGraph;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import underlay.local.LocalNetwork;
+import underlay.local.LocalUnderlay;
+import unittest.IdentifierFixture;
+import unittest.MembershipVectorFixture;
+
+/**
+ * Builds a skip graph of virtual nodes on two hosts, each behind a single underlay, and checks that
+ * the lookup tables are correct and the nodes can find each other.
+ */
+class VirtualNodeHostTest {
+  private static final int NODES_PER_HOST = 50;
+  private static final int MAX_NODES = 64;
+
+  private VirtualNodeHost first;
+  private VirtualNodeHost second;
+
+  @BeforeEach
+  void setup() {
+    LocalNetwork network = new LocalNetwork();
+    LocalUnderlay firstUnderlay = new LocalUnderlay(network);
+    LocalUnderlay secondUnderlay = new LocalUnderlay(network);
+    Assertions.assertTrue(firstUnderlay.initialize(0));
+    Assertions.assertTrue(secondUnderlay.initialize(0));
+    first = new VirtualNodeHost(firstUnderlay, MAX_NODES);
+    second = new VirtualNodeHost(secondUnderlay, MAX_NODES);
+  }
+
+  @AfterEach
+  void tearDown() {
+    Assertions.assertTrue(first.terminate());
+    Assertions.assertTrue(second.terminate());
+  }
+
+  @Test
+  void virtualNodes() {
+    List<CompletableFuture<SkipNode>> insertions = new ArrayList<>();
+    for (int i = 0; i < NODES_PER_HOST; i++) {
+      insertions.add(first.addNode(IdentifierFixture.newIdentifier(), MembershipVectorFixture.newMembershipVector(), null, -1));
+    }
+    // The nodes of the second host join through the master node of the first one.
+    insertions.get(0).join();
+    String introducerAddress = first.getUnderlay().getAddress();
+    int introducerPort = first.getUnderlay().getPort();
+    for (int i = 0; i < NODES_PER_HOST; i++) {
+      insertions.add(second.addNode(IdentifierFixture.newIdentifier(), MembershipVectorFixture.newMembershipVector(), introducerAddress,
+          introducerPort));
+    }
+    List<SkipNode> nodes = insertions.stream().map(f -> f.orTimeout(120, TimeUnit.SECONDS).join()).collect(Collectors.toList());
+    Assertions.assertEquals(NODES_PER_HOST, first.size());
+    Assertions.assertEquals(NODES_PER_HOST, first.getMiddleLayer().getOverlayCount());
+
+    Map<Identifier, LookupTable> tableMap = nodes.stream().collect(Collectors.toMap(SkipNode::getIdentifier, SkipNode::getLookupTable));
+    for (SkipNode node : nodes) {
+      // The tables are as tall as those of any other node, whatever the number of nodes per host.
+      Assertions.assertEquals(SkipGraph.IDENTIFIER_SIZE, node.getLookupTable().getNumLevels());
+      SkipNodeTest.tableCorrectnessCheck(node.getIdentifier(), node.getIdentity().getMemVec(), node.getLookupTable());
+      SkipNodeTest.tableConsistencyCheck(tableMap, node);
+    }
+    // Every node finds every other node, on either host.
+    for (SkipNode source : nodes) {
+      for (SkipNode target : nodes) {
+        Assertions.assertEquals(target.getIdentity(), source.searchByIdentifier(target.getIdentifier()));
+      }
+    }
+  }
+
+  @Test
+  void fullHost() {
+    LocalUnderlay underlay = new LocalUnderlay(new LocalNetwork());
+    Assertions.assertTrue(underlay.initialize(0));
+    VirtualNodeHost tiny = new VirtualNodeHost(underlay, 1);
+    tiny.addNode(IdentifierFixture.newIdentifier(), MembershipVectorFixture.newMembershipVector(), null, -1).join();
+    Assertions.assertThrows(IllegalStateException.class,
+        () -> tiny.addNode(IdentifierFixture.newIdentifier(), MembershipVectorFixture.newMembershipVector(), null, -1));
+    Assertions.assertTrue(tiny.terminate());
+  }
+}
@@ -1,12 +1,19 @@
 package underlay;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 import lookup.ConcurrentLookupTable;
 import lookup.LookupTable;
 import middlelayer.MiddleLayer;
 import org.junit.jupiter.api.*;
 import skipnode.SkipNode;
 import skipnode.SkipNodeInterface;
+import underlay.packets.Response;
 import underlay.packets.requests.*;
+import underlay.packets.responses.BooleanResponse;
 import unittest.IdentifierFixture;
 import unittest.MembershipVectorFixture;
 
@@ -26,7 +33,7 @@ public class UnderlayTest {
    *
    * @param underlay underlay to be built.
    */
-  protected static void buildLayers(Underlay underlay) {
+  public static void buildLayers(Underlay underlay) {
     SkipNodeInterface overlay = new SkipNode(LookupTable.EMPTY_NODE,
         new ConcurrentLookupTable(2, LookupTable.EMPTY_NODE));
     MiddleLayer middleLayer = new MiddleLayer(underlay, overlay);
@@ -66,6 +73,21 @@ public class UnderlayTest {
     Assertions.assertNotNull(localUnderlay.sendMessage(remoteAddress, remotePort, new UpdateRightNodeRequest(0, LookupTable.EMPTY_NODE)));
   }
 
+  // Checks that many requests can be in flight at once through the asynchronous API.
+  @Test
+  void sendMessageAsync() {
+    String remoteAddress = remoteUnderlay.getAddress();
+    int remotePort = remoteUnderlay.getPort();
+
+    List<CompletableFuture<Response>> responses = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      responses.add(localUnderlay.sendMessageAsync(remoteAddress, remotePort, new IsAvailableRequest()));
+    }
+    for (CompletableFuture<Response> response : responses) {
+      Assertions.assertTrue(response.orTimeout(30, TimeUnit.SECONDS).join() instanceof BooleanResponse);
+    }
+  }
+
   // Terminates the underlays.
   @AfterEach
   void tearDown() {
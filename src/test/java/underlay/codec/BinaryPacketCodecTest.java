@@ -0,0 +1,233 @@
+package underlay.codec;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import lookup.LookupTable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import skipnode.SearchOrigin;
+import skipnode.SearchResult;
+import skipnode.SkipNodeIdentity;
+import underlay.UnderlayTest;
+import underlay.packets.Request;
+import underlay.packets.RequestType;
+import underlay.packets.Response;
+import underlay.packets.requests.AcquireLockRequest;
+import underlay.packets.requests.AcquireNeighborsRequest;
+import underlay.packets.requests.AnnounceNeighborRequest;
+import underlay.packets.requests.BatchRequest;
+import underlay.packets.requests.FindLadderRequest;
+import underlay.packets.requests.ForwardedLevelWalkRequest;
+import underlay.packets.requests.ForwardedSearchByIdentifierRequest;
+import underlay.packets.requests.ForwardedSearchByMembershipVectorRequest;
+import underlay.packets.requests.GetIdentityRequest;
+import underlay.packets.requests.GetLeftLadderRequest;
+import underlay.packets.requests.GetLeftNodeRequest;
+import underlay.packets.requests.GetRightLadderRequest;
+import underlay.packets.requests.GetRightNodeRequest;
+import underlay.packets.requests.IncrementRequest;
+import underlay.packets.requests.InjectionRequest;
+import underlay.packets.requests.IsAvailableRequest;
+import underlay.packets.requests.LadderChainRequest;
+import underlay.packets.requests.LockReleasedRequest;
+import underlay.packets.requests.MembershipVectorLevelSearchRequest;
+import underlay.packets.requests.NextHopRequest;
+import underlay.packets.requests.ReleaseLockRequest;
+import underlay.packets.requests.SearchByIdentifierRequest;
+import underlay.packets.requests.SearchByMembershipVectorRecursiveRequest;
+import underlay.packets.requests.SearchByMembershipVectorRequest;
+import underlay.packets.requests.SearchReplyRequest;
+import underlay.packets.requests.UpdateLeftNodeRequest;
+import underlay.packets.requests.UpdateRightNodeRequest;
+import underlay.packets.responses.AckResponse;
+import underlay.packets.responses.BatchResponse;
+import underlay.packets.responses.BooleanResponse;
+import underlay.packets.responses.BusyResponse;
+import underlay.packets.responses.IdentityListResponse;
+import underlay.packets.responses.IdentityResponse;
+import underlay.packets.responses.SearchResultResponse;
+import underlay.udp.UdpUnderlay;
+import unittest.IdentifierFixture;
+import unittest.MembershipVectorFixture;
+
+/**
+ * Checks that every request and response type survives a round trip through the binary codec. A
+ * decoded packet is compared to the original one through their Java serialization, which covers
+ * all of their fields.
+ */
+public class BinaryPacketCodecTest {
+  private final PacketCodec binary = new BinaryPacketCodec();
+  private final PacketCodec java = new JavaPacketCodec();
+
+  /**
+   * Returns a request of every type with all of its fields set.
+   *
+   * @return sample requests.
+   */
+  public static List<Request> sampleRequests() {
+    List<Request> requests = new ArrayList<>();
+    requests.add(new SearchByMembershipVectorRequest(MembershipVectorFixture.newMembershipVector()));
+    requests.add(new SearchByMembershipVectorRecursiveRequest(MembershipVectorFixture.newMembershipVector(), 3));
+    requests.add(new SearchByIdentifierRequest(IdentifierFixture.newIdentifier()));
+    requests.add(new MembershipVectorLevelSearchRequest(4, 1, MembershipVectorFixture.newMembershipVector()));
+    requests.add(new UpdateLeftNodeRequest(5, newIdentity("10.0.0.1", 1234)));
+    requests.add(new UpdateRightNodeRequest(6, newIdentity("192.168.1.255", 65535)));
+    requests.add(new GetLeftNodeRequest(7));
+    requests.add(new GetRightNodeRequest(8));
+    requests.add(new AcquireNeighborsRequest(newIdentity("localhost", 0), 9));
+    requests.add(new FindLadderRequest(10, 0, MembershipVectorFixture.newMembershipVector()));
+    requests.add(new AnnounceNeighborRequest(newIdentity("127.0.0.1", 8080), 11));
+    requests.add(new IsAvailableRequest());
+    requests.add(new GetLeftLadderRequest(12, MembershipVectorFixture.newMembershipVector()));
+    requests.add(new IncrementRequest(13, newIdentity("127.0.0.1", 4444)));
+    requests.add(new InjectionRequest(new ArrayList<>(Arrays.asList(newIdentity("127.0.0.1", 1), newIdentity("127.0.0.2", 2)))));
+    requests.add(new GetRightLadderRequest(14, MembershipVectorFixture.newMembershipVector()));
+    requests.add(new AcquireLockRequest(newIdentity("127.0.0.1", 5555)));
+    requests.add(new ReleaseLockRequest(newIdentity("127.0.0.1", 5556)));
+    requests.add(new GetIdentityRequest());
+    requests.add(new NextHopRequest(IdentifierFixture.newIdentifier()));
+    requests.add(new ForwardedSearchByIdentifierRequest(IdentifierFixture.newIdentifier(), new SearchOrigin("10.0.0.7", 7000, 1L << 33)));
+    requests.add(new ForwardedSearchByMembershipVectorRequest(MembershipVectorFixture.newMembershipVector(), 15,
+        new SearchOrigin("localhost", 7001, 3)));
+    requests.add(new SearchReplyRequest(4, new SearchResult(newIdentity("127.0.0.1", 7002))));
+    requests.add(new LadderChainRequest(2, 0, MembershipVectorFixture.newMembershipVector(), newIdentity("127.0.0.1", 7003)));
+    requests.add(new ForwardedLevelWalkRequest(5, 1, MembershipVectorFixture.newMembershipVector(), new SearchOrigin("127.0.0.1", 7004, 6)));
+    requests.add(new LockReleasedRequest(newIdentity("127.0.0.1", 7005)));
+    for (Request request : requests) {
+      request.senderAddress = "10.1.2.3";
+      request.senderPort = 40000;
+      request.receiverId = IdentifierFixture.newIdentifier();
+      request.requestId = 1L << 40;
+      request.backoff = false;
+    }
+    // Batched requests with distinct sender addresses, since the shared strings are written once by
+    // the Java serialization.
+    Request available = new IsAvailableRequest();
+    available.senderAddress = "10.1.2.4";
+    Request leftNode = new GetLeftNodeRequest(2);
+    leftNode.senderAddress = "10.1.2.5";
+    leftNode.receiverId = IdentifierFixture.newIdentifier();
+    Request batch = new BatchRequest(new ArrayList<>(Arrays.asList(available, leftNode)));
+    batch.senderAddress = "10.1.2.6";
+    requests.add(batch);
+    return requests;
+  }
+
+  /**
+   * Returns a response of every type.
+   *
+   * @return sample responses.
+   */
+  public static List<Response> sampleResponses() {
+    List<Response> responses = new ArrayList<>();
+    responses.add(new Response(true));
+    responses.add(new Response(false));
+    responses.add(new AckResponse());
+    responses.add(new BusyResponse());
+    responses.add(new BooleanResponse(true));
+    responses.add(new IdentityResponse(newIdentity("127.0.0.1", 6000)));
+    responses.add(new SearchResultResponse(new SearchResult(newIdentity("127.0.0.1", 6001))));
+    responses.add(new SearchResultResponse(null));
+    responses.add(new IdentityListResponse(new ArrayList<>(Arrays.asList(newIdentity("127.0.0.1", 6002), newIdentity("10.0.0.2", 6003)))));
+    responses.add(new BatchResponse(new ArrayList<>(Arrays.asList(new BooleanResponse(false), null, new Response(true)))));
+    for (Response response : responses) {
+      response.requestId = 42;
+    }
+    return responses;
+  }
+
+  private static SkipNodeIdentity newIdentity(String address, int port) {
+    return new SkipNodeIdentity(IdentifierFixture.newIdentifier(), MembershipVectorFixture.newMembershipVector(), address, port);
+  }
+
+  // Every request type is covered by the samples.
+  @Test
+  void samplesCoverAllRequestTypes() {
+    EnumSet<RequestType> types = EnumSet.noneOf(RequestType.class);
+    for (Request request : sampleRequests()) {
+      types.add(request.type);
+    }
+    Assertions.assertEquals(EnumSet.allOf(RequestType.class), types);
+  }
+
+  @Test
+  void roundTripRequests() throws IOException {
+    for (Request request : sampleRequests()) {
+      assertRoundTrip(request);
+    }
+  }
+
+  @Test
+  void roundTripResponses() throws IOException {
+    for (Response response : sampleResponses()) {
+      assertRoundTrip(response);
+    }
+  }
+
+  // The special nodes of the lookup table, requests with unset fields and host names are restored as they were.
+  @Test
+  void roundTripSpecialValues() throws IOException {
+    assertRoundTrip(new UpdateLeftNodeRequest(0, LookupTable.EMPTY_NODE));
+    assertRoundTrip(new UpdateRightNodeRequest(0, LookupTable.INVALID_NODE));
+    assertRoundTrip(new IdentityResponse(null));
+    assertRoundTrip(new InjectionRequest(null));
+    assertRoundTrip(new FindLadderRequest(0, 1, null));
+    assertRoundTrip(new SearchByIdentifierRequest(null));
+    Request request = new GetLeftNodeRequest(0);
+    for (String address : new String[] {"example.org", "010.0.0.1", "1.2.3", "1.2.3.4.5", "256.0.0.1", "::1", ""}) {
+      request.senderAddress = address;
+      assertRoundTrip(request);
+    }
+  }
+
+  @Test
+  void rejectsMalformedPackets() throws IOException {
+    byte[] bytes = binary.encode(new FindLadderRequest(0, 1, MembershipVectorFixture.newMembershipVector()));
+    Assertions.assertThrows(IOException.class, () -> binary.decode(bytes, 0, bytes.length - 1));
+    Assertions.assertThrows(IOException.class, () -> binary.decode(new byte[] {7}, 0, 1));
+    Assertions.assertThrows(IOException.class, () -> binary.decode(new byte[] {0, (byte) 200}, 0, 2));
+  }
+
+  // The binary encoding is considerably smaller than the Java serialization.
+  @Test
+  void binaryIsSmaller() throws IOException {
+    for (Request request : sampleRequests()) {
+      Assertions.assertTrue(binary.encode(request).length * 2 < java.encode(request).length, request.type.toString());
+    }
+  }
+
+  // Two UDP underlays exchange requests and responses using the binary codec.
+  @Test
+  void udpExchange() {
+    UdpUnderlay local = new UdpUnderlay();
+    UdpUnderlay remote = new UdpUnderlay();
+    local.setCodec(binary);
+    remote.setCodec(new BinaryPacketCodec());
+    UnderlayTest.buildLayers(local);
+    UnderlayTest.buildLayers(remote);
+    Assertions.assertTrue(local.initialize(0));
+    Assertions.assertTrue(remote.initialize(0));
+    try {
+      Assertions.assertTrue(local.sendMessage(remote.getAddress(), remote.getPort(), new IsAvailableRequest()) instanceof BooleanResponse);
+      Assertions.assertTrue(local.sendMessage(remote.getAddress(), remote.getPort(), new GetIdentityRequest()) instanceof IdentityResponse);
+    } finally {
+      Assertions.assertTrue(local.terminate());
+      Assertions.assertTrue(remote.terminate());
+    }
+  }
+
+  private void assertRoundTrip(Serializable packet) throws IOException {
+    byte[] bytes = binary.encode(packet);
+    // Decode from the middle of a larger buffer.
+    byte[] buffer = new byte[bytes.length + 6];
+    System.arraycopy(bytes, 0, buffer, 3, bytes.length);
+    Object decoded = binary.decode(buffer, 3, bytes.length);
+    Assertions.assertEquals(packet.getClass(), decoded.getClass());
+    Assertions.assertArrayEquals(java.encode(packet), java.encode((Serializable) decoded), packet.getClass().getSimpleName());
+  }
+}
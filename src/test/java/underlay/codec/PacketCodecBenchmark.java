@@ -0,0 +1,69 @@
+package underlay.codec;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import underlay.packets.Request;
+
+/**
+ * Compares the binary codec against Java serialization in terms of the encoded size and the time
+ * spent encoding and decoding every request and response type. The results are printed to the
+ * standard output.
+ */
+class PacketCodecBenchmark {
+  private static final int WARMUP_ITERATIONS = 5_000;
+  private static final int MEASURED_ITERATIONS = 20_000;
+
+  @Test
+  void compareCodecs() throws IOException {
+    PacketCodec binary = new BinaryPacketCodec();
+    PacketCodec java = new JavaPacketCodec();
+    List<Serializable> packets = new ArrayList<>(BinaryPacketCodecTest.sampleRequests());
+    packets.addAll(BinaryPacketCodecTest.sampleResponses());
+
+    System.out.printf("%-42s %8s %8s %12s %12s %12s %12s%n", "packet", "java B", "binary B", "java enc ns", "binary enc ns", "java dec ns",
+        "binary dec ns");
+    for (Serializable packet : packets) {
+      String name = packet instanceof Request ? ((Request) packet).type.toString() : packet.getClass().getSimpleName();
+      Result javaResult = measure(java, packet);
+      Result binaryResult = measure(binary, packet);
+      System.out.printf("%-42s %8d %8d %12d %12d %12d %12d%n", name, javaResult.size, binaryResult.size, javaResult.encodeNanos,
+          binaryResult.encodeNanos, javaResult.decodeNanos, binaryResult.decodeNanos);
+      Assertions.assertTrue(binaryResult.size < javaResult.size);
+    }
+  }
+
+  private static Result measure(PacketCodec codec, Serializable packet) throws IOException {
+    byte[] bytes = codec.encode(packet);
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      codec.decode(codec.encode(packet), 0, bytes.length);
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+      bytes = codec.encode(packet);
+    }
+    long encodeNanos = (System.nanoTime() - start) / MEASURED_ITERATIONS;
+    start = System.nanoTime();
+    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+      codec.decode(bytes, 0, bytes.length);
+    }
+    long decodeNanos = (System.nanoTime() - start) / MEASURED_ITERATIONS;
+    return new Result(bytes.length, encodeNanos, decodeNanos);
+  }
+
+  private static class Result {
+    private final int size;
+    private final long encodeNanos;
+    private final long decodeNanos;
+
+    private Result(int size, long encodeNanos, long decodeNanos) {
+      this.size = size;
+      this.encodeNanos = encodeNanos;
+      this.decodeNanos = decodeNanos;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package underlay.javarmi;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import underlay.UnderlayTest;
+import underlay.packets.requests.IsAvailableRequest;
+
+/**
+ * Compares the per-request latency of the Java RMI underlay with and without the stub cache, on
+ * two underlays running on the host machine as in `JavaRMIUnderlayTest`. The results are printed to
+ * the standard output.
+ */
+class JavaRmiStubCacheBenchmark {
+  private static final int WARMUP_REQUESTS = 200;
+  private static final int MEASURED_REQUESTS = 1_000;
+
+  @Test
+  void compareLatency() {
+    long uncached = measure(0, 21_300);
+    long cached = measure(JavaRmiUnderlay.DEFAULT_STUB_CACHE_CAPACITY, 21_400);
+    System.out.printf("RMI request latency: %d ns without the stub cache, %d ns with the stub cache%n", uncached, cached);
+  }
+
+  /**
+   * Sends requests between two fresh underlays.
+   *
+   * @return average latency of a request in nanoseconds.
+   */
+  private static long measure(int stubCacheCapacity, int basePort) {
+    JavaRmiUnderlay local = new JavaRmiUnderlay(stubCacheCapacity);
+    JavaRmiUnderlay remote = new JavaRmiUnderlay(stubCacheCapacity);
+    UnderlayTest.buildLayers(local);
+    UnderlayTest.buildLayers(remote);
+    Assertions.assertTrue(local.initialize(basePort));
+    Assertions.assertTrue(remote.initialize(basePort + 50));
+    try {
+      for (int i = 0; i < WARMUP_REQUESTS; i++) {
+        Assertions.assertNotNull(local.sendMessage(remote.getAddress(), remote.getPort(), new IsAvailableRequest()));
+      }
+      long start = System.nanoTime();
+      for (int i = 0; i < MEASURED_REQUESTS; i++) {
+        Assertions.assertNotNull(local.sendMessage(remote.getAddress(), remote.getPort(), new IsAvailableRequest()));
+      }
+      return (System.nanoTime() - start) / MEASURED_REQUESTS;
+    } finally {
+      Assertions.assertTrue(local.terminate());
+      Assertions.assertTrue(remote.terminate());
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package underlay.javarmi;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import underlay.UnderlayTest;
+import underlay.packets.requests.IsAvailableRequest;
+import underlay.packets.responses.BooleanResponse;
+
+/**
+ * Checks that the Java RMI underlay caches the stubs of the remote adapters, and recovers from a
+ * stale stub once the remote adapter is restarted.
+ */
+class JavaRmiStubCacheTest {
+  private static final int LOCAL_PORT = 21_100;
+  private static final int REMOTE_PORT = 21_200;
+
+  private JavaRmiUnderlay local;
+  private JavaRmiUnderlay remote;
+
+  @BeforeEach
+  void setup() {
+    local = new JavaRmiUnderlay();
+    remote = new JavaRmiUnderlay();
+    UnderlayTest.buildLayers(local);
+    UnderlayTest.buildLayers(remote);
+    Assertions.assertTrue(local.initialize(LOCAL_PORT));
+    Assertions.assertTrue(remote.initialize(REMOTE_PORT));
+  }
+
+  @AfterEach
+  void tearDown() {
+    Assertions.assertTrue(local.terminate());
+    Assertions.assertTrue(remote.terminate());
+  }
+
+  @Test
+  void cachesStub() {
+    Assertions.assertTrue(local.sendMessage(remote.getAddress(), remote.getPort(), new IsAvailableRequest()) instanceof BooleanResponse);
+    Assertions.assertEquals(1, local.getStubCache().size());
+    JavaRmiService stub = local.remote(remote.getFullAddress());
+    Assertions.assertSame(stub, local.remote(remote.getFullAddress()));
+  }
+
+  @Test
+  void replacesStaleStub() {
+    Assertions.assertTrue(local.sendMessage(remote.getAddress(), remote.getPort(), new IsAvailableRequest()) instanceof BooleanResponse);
+    JavaRmiService stale = local.remote(remote.getFullAddress());
+
+    // Restart the remote adapter at the same port.
+    int port = remote.getPort();
+    Assertions.assertTrue(remote.terminate());
+    awaitPortReleased(port);
+    remote = new JavaRmiUnderlay();
+    UnderlayTest.buildLayers(remote);
+    Assertions.assertTrue(remote.initialize(port));
+    Assertions.assertEquals(port, remote.getPort());
+
+    Assertions.assertTrue(local.sendMessage(remote.getAddress(), remote.getPort(), new IsAvailableRequest()) instanceof BooleanResponse);
+    Assertions.assertNotSame(stale, local.remote(remote.getFullAddress()));
+  }
+
+  /**
+   * Waits until the given port can be bound again. RMI closes the listening socket of an unexported
+   * registry asynchronously.
+   *
+   * @param port the port.
+   */
+  private static void awaitPortReleased(int port) {
+    long deadline = System.currentTimeMillis() + 5_000;
+    while (true) {
+      try {
+        new ServerSocket(port).close();
+        return;
+      } catch (IOException e) {
+        Assertions.assertTrue(System.currentTimeMillis() < deadline, "port " + port + " was not released");
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException interrupted) {
+          Assertions.fail(interrupted);
+        }
+      }
+    }
+  }
+
+  @Test
+  void boundsCapacity() {
+    JavaRmiStubCache cache = new JavaRmiStubCache(2);
+    JavaRmiService first = request -> null;
+    cache.put("a", first);
+    cache.put("b", request -> null);
+    // Access the first stub, so that the second one is the least recently used.
+    Assertions.assertSame(first, cache.get("a"));
+    cache.put("c", request -> null);
+    Assertions.assertEquals(2, cache.size());
+    Assertions.assertNull(cache.get("b"));
+    cache.invalidate("a", first);
+    Assertions.assertNull(cache.get("a"));
+
+    JavaRmiStubCache disabled = new JavaRmiStubCache(0);
+    disabled.put("a", first);
+    Assertions.assertNull(disabled.get("a"));
+  }
+}
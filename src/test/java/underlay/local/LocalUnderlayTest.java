@@ -0,0 +1,83 @@
+package underlay.local;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import underlay.UnderlayTest;
+import underlay.packets.requests.IsAvailableRequest;
+import underlay.packets.responses.BooleanResponse;
+
+/**
+ * This test creates two local underlays on the same network and checks the connectivity between
+ * them. `sendMessage` and `terminate` tests are implemented in the `UnderlayTest` class.
+ */
+class LocalUnderlayTest extends UnderlayTest {
+  private static final int UNDERLAYS = 10_000;
+  private static final long LATENCY_MS = 20;
+
+  private LocalNetwork network;
+
+  @BeforeEach
+  void setup() {
+    network = new LocalNetwork();
+    localUnderlay = new LocalUnderlay(network);
+    remoteUnderlay = new LocalUnderlay(network);
+
+    buildLayers(localUnderlay);
+    buildLayers(remoteUnderlay);
+
+    Assertions.assertTrue(localUnderlay.initialize(LOCAL_PORT));
+    Assertions.assertTrue(remoteUnderlay.initialize(REMOTE_PORT));
+  }
+
+  // Checks that every underlay of a large network gets its own port and can be reached.
+  @Test
+  void manyUnderlays() {
+    List<LocalUnderlay> underlays = new ArrayList<>();
+    Set<Integer> ports = new HashSet<>();
+    for (int i = 0; i < UNDERLAYS; i++) {
+      LocalUnderlay underlay = new LocalUnderlay(network);
+      buildLayers(underlay);
+      Assertions.assertTrue(underlay.initialize(0));
+      Assertions.assertTrue(ports.add(underlay.getPort()));
+      underlays.add(underlay);
+    }
+    LocalUnderlay last = underlays.get(UNDERLAYS - 1);
+    Assertions.assertTrue(localUnderlay.sendMessage(last.getAddress(), last.getPort(), new IsAvailableRequest()) instanceof BooleanResponse);
+    underlays.forEach(underlay -> Assertions.assertTrue(underlay.terminate()));
+    // A terminated underlay is no longer reachable.
+    Assertions.assertNull(localUnderlay.sendMessage(last.getAddress(), last.getPort(), new IsAvailableRequest()));
+  }
+
+  // Checks that a port cannot be taken twice.
+  @Test
+  void portTaken() {
+    LocalUnderlay underlay = new LocalUnderlay(network);
+    Assertions.assertThrows(IllegalArgumentException.class, () -> underlay.initialize(remoteUnderlay.getPort()));
+  }
+
+  // Checks that the latency of a link delays the request and its response, in both send modes.
+  @Test
+  void linkLatency() {
+    network.setLink(localUnderlay.getPort(), remoteUnderlay.getPort(), LATENCY_MS, LocalNetwork.UNLIMITED_BANDWIDTH);
+    network.setLink(remoteUnderlay.getPort(), localUnderlay.getPort(), LATENCY_MS, LocalNetwork.UNLIMITED_BANDWIDTH);
+
+    long start = System.nanoTime();
+    Assertions.assertTrue(localUnderlay.sendMessage(remoteUnderlay.getAddress(), remoteUnderlay.getPort(), new IsAvailableRequest()) instanceof BooleanResponse);
+    Assertions.assertTrue(System.nanoTime() - start >= 2 * LATENCY_MS * 1_000_000);
+
+    start = System.nanoTime();
+    Assertions.assertTrue(localUnderlay.sendMessageAsync(remoteUnderlay.getAddress(), remoteUnderlay.getPort(), new IsAvailableRequest()).join() instanceof BooleanResponse);
+    Assertions.assertTrue(System.nanoTime() - start >= 2 * LATENCY_MS * 1_000_000);
+
+    // The links from the other underlays are not affected.
+    start = System.nanoTime();
+    Assertions.assertTrue(remoteUnderlay.sendMessage(remoteUnderlay.getAddress(), remoteUnderlay.getPort(), new IsAvailableRequest()) instanceof BooleanResponse);
+    Assertions.assertTrue(System.nanoTime() - start < LATENCY_MS * 1_000_000);
+  }
+}
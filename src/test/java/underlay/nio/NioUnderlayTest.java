@@ -0,0 +1,131 @@
+package underlay.nio;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import underlay.Underlay;
+import underlay.UnderlayTest;
+import underlay.packets.Response;
+import underlay.packets.requests.IsAvailableRequest;
+import underlay.packets.responses.BooleanResponse;
+import underlay.packets.responses.BusyResponse;
+
+/**
+ * This test creates two NIO underlays on the host machine at different ports and checks the
+ * connectivity between them. `sendMessage` and `terminate` tests are implemented in the
+ * `UnderlayTest` class.
+ */
+class NioUnderlayTest extends UnderlayTest {
+  private static final int CONCURRENT_SENDERS = 50;
+  private static final int REQUESTS_PER_SENDER = 20;
+
+  @BeforeEach
+  void setup() {
+    // Construct the underlays through the default underlay selection.
+    String previous = System.setProperty(Underlay.DEFAULT_UNDERLAY_PROPERTY, "nio");
+    try {
+      localUnderlay = Underlay.newDefaultUnderlay();
+      remoteUnderlay = Underlay.newDefaultUnderlay();
+    } finally {
+      if (previous == null) {
+        System.clearProperty(Underlay.DEFAULT_UNDERLAY_PROPERTY);
+      } else {
+        System.setProperty(Underlay.DEFAULT_UNDERLAY_PROPERTY, previous);
+      }
+    }
+    Assertions.assertTrue(localUnderlay instanceof NioUnderlay);
+
+    buildLayers(localUnderlay);
+    buildLayers(remoteUnderlay);
+
+    Assertions.assertTrue(localUnderlay.initialize(LOCAL_PORT));
+    Assertions.assertTrue(remoteUnderlay.initialize(REMOTE_PORT));
+  }
+
+  // Checks that many threads can exchange messages with the same remote underlay at the same time.
+  @Test
+  void concurrentSendMessage() throws InterruptedException {
+    CountDownLatch done = new CountDownLatch(CONCURRENT_SENDERS);
+    AtomicInteger answered = new AtomicInteger();
+    List<Thread> senders = new ArrayList<>();
+    for (int i = 0; i < CONCURRENT_SENDERS; i++) {
+      senders.add(new Thread(() -> {
+        for (int j = 0; j < REQUESTS_PER_SENDER; j++) {
+          Response response = localUnderlay.sendMessage(remoteUnderlay.getAddress(), remoteUnderlay.getPort(), new IsAvailableRequest());
+          // A busy response denotes that all the workers of the remote underlay were busy.
+          if (response instanceof BooleanResponse || response instanceof BusyResponse) {
+            answered.incrementAndGet();
+          }
+        }
+        done.countDown();
+      }));
+    }
+    senders.forEach(Thread::start);
+    Assertions.assertTrue(done.await(30, TimeUnit.SECONDS));
+    Assertions.assertEquals(CONCURRENT_SENDERS * REQUESTS_PER_SENDER, answered.get());
+  }
+
+  // An idle channel closed by the remote end is replaced, but a request that reached the remote end
+  // is not sent again when the channel breaks before the response, since it may have been handled already.
+  @Test
+  void writtenRequestIsNotRetried() throws Exception {
+    NioClient client = new NioClient(60_000);
+    AtomicInteger received = new AtomicInteger();
+    try (ServerSocket server = new ServerSocket(0)) {
+      // Answers the first request and closes its connection, answers the second one, and drops the
+      // connection on the others.
+      Thread acceptor = new Thread(() -> {
+        while (!server.isClosed()) {
+          try {
+            Socket socket = server.accept();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            new Thread(() -> {
+              try {
+                while (true) {
+                  in.readFully(new byte[in.readInt()]);
+                  int count = received.incrementAndGet();
+                  if (count > 2) {
+                    socket.close();
+                    return;
+                  }
+                  out.write(NioFrames.encode(localUnderlay.getCodec(), new BooleanResponse(true)).array());
+                  if (count == 1) {
+                    socket.close();
+                    return;
+                  }
+                }
+              } catch (IOException e) {
+                // The connection is closed.
+              }
+            }).start();
+          } catch (IOException e) {
+            // The server socket is closed.
+          }
+        }
+      });
+      acceptor.start();
+
+      Assertions.assertNotNull(client.send("localhost", server.getLocalPort(), new IsAvailableRequest(), localUnderlay.getCodec()));
+      // Lets the close of the first connection reach the client.
+      Thread.sleep(200);
+      Assertions.assertNotNull(client.send("localhost", server.getLocalPort(), new IsAvailableRequest(), localUnderlay.getCodec()));
+      Assertions.assertThrows(IOException.class,
+          () -> client.send("localhost", server.getLocalPort(), new IsAvailableRequest(), localUnderlay.getCodec()));
+      Thread.sleep(200);
+      Assertions.assertEquals(3, received.get());
+    }
+    client.close();
+  }
+}
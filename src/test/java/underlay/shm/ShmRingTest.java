@@ -0,0 +1,82 @@
+package underlay.shm;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the framing of the shared-memory ring, with a producer and a consumer that map the same
+ * file separately as two processes would.
+ */
+class ShmRingTest {
+  private static final int CAPACITY = 64;
+
+  private Path directory;
+  private ShmRing producer;
+  private ShmRing consumer;
+
+  @BeforeEach
+  void setup() throws IOException {
+    directory = Files.createTempDirectory("shm-ring-test");
+    producer = ShmRing.open(directory.resolve("ring"), CAPACITY);
+    consumer = ShmRing.open(directory.resolve("ring"), CAPACITY);
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    Files.deleteIfExists(directory.resolve("ring"));
+    Files.deleteIfExists(directory);
+  }
+
+  // Checks that the frames written through one mapping are read in order through the other.
+  @Test
+  void offerAndPoll() {
+    Assertions.assertTrue(consumer.isEmpty());
+    Assertions.assertNull(consumer.poll());
+    Assertions.assertTrue(producer.offer(new byte[] {1, 2, 3}));
+    Assertions.assertTrue(producer.offer(new byte[0]));
+    Assertions.assertArrayEquals(new byte[] {1, 2, 3}, consumer.poll());
+    Assertions.assertArrayEquals(new byte[0], consumer.poll());
+    Assertions.assertNull(consumer.poll());
+  }
+
+  // Checks that the frames that cross the end of the data region are read back intact.
+  @Test
+  void wrapAround() {
+    for (int i = 0; i < 100; i++) {
+      byte[] frame = new byte[i % 23];
+      for (int j = 0; j < frame.length; j++) {
+        frame[j] = (byte) (i + j);
+      }
+      Assertions.assertTrue(producer.offer(frame));
+      Assertions.assertArrayEquals(frame, consumer.poll());
+    }
+  }
+
+  // Checks that a full ring rejects frames until the consumer catches up.
+  @Test
+  void fullRing() {
+    byte[] frame = new byte[CAPACITY / 2 - 4];
+    Assertions.assertTrue(producer.offer(frame));
+    Assertions.assertTrue(producer.offer(frame));
+    Assertions.assertFalse(producer.offer(new byte[0]));
+    Assertions.assertNotNull(consumer.poll());
+    Assertions.assertTrue(producer.offer(frame));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> producer.offer(new byte[CAPACITY]));
+  }
+
+  // Checks that reopening a ring resumes from the positions stored in the file.
+  @Test
+  void reopen() throws IOException {
+    Assertions.assertTrue(producer.offer(new byte[] {7}));
+    ShmRing reopened = ShmRing.open(directory.resolve("ring"), CAPACITY * 2);
+    Assertions.assertEquals(CAPACITY - 4, reopened.getMaxFrameSize());
+    Assertions.assertArrayEquals(new byte[] {7}, reopened.poll());
+    Assertions.assertNull(reopened.poll());
+  }
+}
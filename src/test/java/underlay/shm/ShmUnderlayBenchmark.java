@@ -0,0 +1,50 @@
+package underlay.shm;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import underlay.Underlay;
+import underlay.UnderlayTest;
+import underlay.packets.requests.IsAvailableRequest;
+import underlay.tcp.TcpUnderlay;
+
+/**
+ * Compares the per-request latency of the shared-memory underlay with the TCP underlay over the
+ * loopback interface, on two underlays running on the host machine. The results are printed to the
+ * standard output.
+ */
+class ShmUnderlayBenchmark {
+  private static final int WARMUP_REQUESTS = 2_000;
+  private static final int MEASURED_REQUESTS = 10_000;
+
+  @Test
+  void compareLatency() {
+    long tcp = measure(new TcpUnderlay(), new TcpUnderlay());
+    long shm = measure(new ShmUnderlay(), new ShmUnderlay());
+    System.out.printf("Request latency: %d ns over loopback TCP, %d ns over shared memory%n", tcp, shm);
+  }
+
+  /**
+   * Sends requests between two fresh underlays.
+   *
+   * @return average latency of a request in nanoseconds.
+   */
+  private static long measure(Underlay local, Underlay remote) {
+    UnderlayTest.buildLayers(local);
+    UnderlayTest.buildLayers(remote);
+    Assertions.assertTrue(local.initialize(0));
+    Assertions.assertTrue(remote.initialize(0));
+    try {
+      for (int i = 0; i < WARMUP_REQUESTS; i++) {
+        Assertions.assertNotNull(local.sendMessage(remote.getAddress(), remote.getPort(), new IsAvailableRequest()));
+      }
+      long start = System.nanoTime();
+      for (int i = 0; i < MEASURED_REQUESTS; i++) {
+        Assertions.assertNotNull(local.sendMessage(remote.getAddress(), remote.getPort(), new IsAvailableRequest()));
+      }
+      return (System.nanoTime() - start) / MEASURED_REQUESTS;
+    } finally {
+      Assertions.assertTrue(local.terminate());
+      Assertions.assertTrue(remote.terminate());
+    }
+  }
+}
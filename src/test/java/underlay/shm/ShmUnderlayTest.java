@@ -0,0 +1,88 @@
+package underlay.shm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import underlay.Underlay;
+import underlay.UnderlayTest;
+import underlay.packets.Response;
+import underlay.packets.requests.IsAvailableRequest;
+import underlay.packets.responses.BooleanResponse;
+import underlay.packets.responses.BusyResponse;
+import underlay.tcp.TcpUnderlay;
+
+/**
+ * This test creates two shared-memory underlays on the host machine at different ports and checks
+ * the connectivity between them. `sendMessage` and `terminate` tests are implemented in the
+ * `UnderlayTest` class.
+ */
+class ShmUnderlayTest extends UnderlayTest {
+  private static final int CONCURRENT_SENDERS = 50;
+  private static final int REQUESTS_PER_SENDER = 20;
+
+  @BeforeEach
+  void setup() {
+    // Construct the underlays through the default underlay selection.
+    String previous = System.setProperty(Underlay.DEFAULT_UNDERLAY_PROPERTY, "shm");
+    try {
+      localUnderlay = Underlay.newDefaultUnderlay();
+      remoteUnderlay = Underlay.newDefaultUnderlay();
+    } finally {
+      if (previous == null) {
+        System.clearProperty(Underlay.DEFAULT_UNDERLAY_PROPERTY);
+      } else {
+        System.setProperty(Underlay.DEFAULT_UNDERLAY_PROPERTY, previous);
+      }
+    }
+    Assertions.assertTrue(localUnderlay instanceof ShmUnderlay);
+
+    buildLayers(localUnderlay);
+    buildLayers(remoteUnderlay);
+
+    Assertions.assertTrue(localUnderlay.initialize(LOCAL_PORT));
+    Assertions.assertTrue(remoteUnderlay.initialize(REMOTE_PORT));
+  }
+
+  // Checks that many threads can exchange messages over the same pair of rings at the same time.
+  @Test
+  void concurrentSendMessage() throws InterruptedException {
+    CountDownLatch done = new CountDownLatch(CONCURRENT_SENDERS);
+    AtomicInteger answered = new AtomicInteger();
+    List<Thread> senders = new ArrayList<>();
+    for (int i = 0; i < CONCURRENT_SENDERS; i++) {
+      senders.add(new Thread(() -> {
+        for (int j = 0; j < REQUESTS_PER_SENDER; j++) {
+          Response response = localUnderlay.sendMessage(remoteUnderlay.getAddress(), remoteUnderlay.getPort(), new IsAvailableRequest());
+          // A busy response denotes that all the workers of the remote underlay were busy.
+          if (response instanceof BooleanResponse || response instanceof BusyResponse) {
+            answered.incrementAndGet();
+          }
+        }
+        done.countDown();
+      }));
+    }
+    senders.forEach(Thread::start);
+    Assertions.assertTrue(done.await(30, TimeUnit.SECONDS));
+    Assertions.assertEquals(CONCURRENT_SENDERS * REQUESTS_PER_SENDER, answered.get());
+  }
+
+  // Checks that the peers that do not run a shared-memory underlay are reached through TCP, both ways.
+  @Test
+  void tcpFallback() {
+    TcpUnderlay tcpUnderlay = new TcpUnderlay();
+    buildLayers(tcpUnderlay);
+    Assertions.assertTrue(tcpUnderlay.initialize(0));
+    try {
+      Assertions.assertTrue(localUnderlay.sendMessage(tcpUnderlay.getAddress(), tcpUnderlay.getPort(), new IsAvailableRequest()) instanceof BooleanResponse);
+      Assertions.assertTrue(tcpUnderlay.sendMessage(localUnderlay.getAddress(), localUnderlay.getPort(), new IsAvailableRequest()) instanceof BooleanResponse);
+    } finally {
+      Assertions.assertTrue(tcpUnderlay.terminate());
+    }
+  }
+}
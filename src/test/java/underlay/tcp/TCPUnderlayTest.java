@@ -1,8 +1,19 @@
 package underlay.tcp;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
 import underlay.UnderlayTest;
+import underlay.packets.requests.IsAvailableRequest;
+import underlay.packets.responses.BooleanResponse;
 
 /**
  * This test creates two TCP underlays on the host machine at different ports and checks the
@@ -24,4 +35,49 @@ class TCPUnderlayTest extends UnderlayTest {
     Assertions.assertTrue(localUnderlay.initialize(LOCAL_PORT));
     Assertions.assertTrue(remoteUnderlay.initialize(REMOTE_PORT));
   }
-}
\ No newline at end of file
+
+  // A request that reached the remote end over a reused connection is not sent again when the
+  // connection breaks before the response, since it may have been handled already.
+  @Test
+  void writtenRequestIsNotRetried() throws Exception {
+    TcpUnderlay sender = new TcpUnderlay();
+    buildLayers(sender);
+    Assertions.assertTrue(sender.initialize(0));
+    AtomicInteger received = new AtomicInteger();
+    try (ServerSocket server = new ServerSocket(0)) {
+      // Answers the first request it receives, and drops the connection on the others.
+      Thread acceptor = new Thread(() -> {
+        while (!server.isClosed()) {
+          try {
+            Socket socket = server.accept();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            new Thread(() -> {
+              try {
+                while (true) {
+                  TcpFrames.Frame frame = TcpFrames.read(in);
+                  if (received.incrementAndGet() > 1) {
+                    socket.close();
+                    return;
+                  }
+                  TcpFrames.write(out, frame.streamId, sender.getCodec().encode(new BooleanResponse(true)));
+                }
+              } catch (IOException e) {
+                // The connection is closed.
+              }
+            }).start();
+          } catch (IOException e) {
+            // The server socket is closed.
+          }
+        }
+      });
+      acceptor.start();
+
+      Assertions.assertNotNull(sender.sendMessage("localhost", server.getLocalPort(), new IsAvailableRequest()));
+      Assertions.assertNull(sender.sendMessage("localhost", server.getLocalPort(), new IsAvailableRequest()));
+      Thread.sleep(200);
+      Assertions.assertEquals(2, received.get());
+    }
+    Assertions.assertTrue(sender.terminate());
+  }
+}
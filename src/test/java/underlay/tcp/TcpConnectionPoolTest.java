@@ -0,0 +1,89 @@
+package underlay.tcp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import underlay.UnderlayTest;
+import underlay.packets.Response;
+import underlay.packets.requests.GetIdentityRequest;
+import underlay.packets.requests.IsAvailableRequest;
+import underlay.packets.responses.BooleanResponse;
+
+/**
+ * Checks that the TCP connection pool shares the connections towards a peer, opens another one
+ * only when the open ones are busy, bounds the number of connections, and drops the idle ones.
+ */
+class TcpConnectionPoolTest {
+  private static final long IDLE_TIMEOUT_MS = 200;
+  private static final int MAX_CONNECTIONS = 2;
+  private static final int MAX_STREAMS = 1;
+
+  private TcpUnderlay remote;
+  private TcpConnectionPool pool;
+
+  @BeforeEach
+  void setup() {
+    remote = new TcpConnectionTest.SlowTcpUnderlay();
+    UnderlayTest.buildLayers(remote);
+    Assertions.assertTrue(remote.initialize(0));
+    pool = new TcpConnectionPool(IDLE_TIMEOUT_MS, MAX_CONNECTIONS, MAX_STREAMS);
+  }
+
+  @AfterEach
+  void tearDown() {
+    pool.close();
+    Assertions.assertTrue(remote.terminate());
+  }
+
+  // A connection without requests in flight is handed out again for the next exchange with the same peer.
+  @Test
+  void reusesConnection() throws Exception {
+    TcpConnection first = pool.acquire(remote.getAddress(), remote.getPort(), remote.getCodec());
+    Assertions.assertTrue(first.exchange(new IsAvailableRequest()) instanceof BooleanResponse);
+
+    TcpConnection second = pool.acquire(remote.getAddress(), remote.getPort(), remote.getCodec());
+    Assertions.assertSame(first, second);
+    Assertions.assertTrue(second.isReused());
+    Assertions.assertTrue(second.exchange(new IsAvailableRequest()) instanceof BooleanResponse);
+  }
+
+  // Busy connections are shared once the per-peer limit is reached.
+  @Test
+  void boundsConnectionsPerPeer() throws Exception {
+    List<CompletableFuture<Response>> responses = new ArrayList<>();
+    for (int i = 0; i < 2 * MAX_CONNECTIONS + 1; i++) {
+      // Slow requests, so that they are all in flight at once.
+      responses.add(pool.acquire(remote.getAddress(), remote.getPort(), remote.getCodec()).send(new GetIdentityRequest()));
+    }
+    Assertions.assertEquals(MAX_CONNECTIONS, pool.size(remote.getAddress(), remote.getPort()));
+    for (CompletableFuture<Response> response : responses) {
+      Assertions.assertNotNull(response.get());
+    }
+  }
+
+  // Connections that stay idle longer than the timeout are not reused.
+  @Test
+  void dropsIdleConnection() throws Exception {
+    TcpConnection first = pool.acquire(remote.getAddress(), remote.getPort(), remote.getCodec());
+    first.exchange(new IsAvailableRequest());
+    Thread.sleep(2 * IDLE_TIMEOUT_MS);
+
+    TcpConnection second = pool.acquire(remote.getAddress(), remote.getPort(), remote.getCodec());
+    Assertions.assertNotSame(first, second);
+    Assertions.assertTrue(first.isClosed());
+    Assertions.assertTrue(second.exchange(new IsAvailableRequest()) instanceof BooleanResponse);
+  }
+
+  // A closed pool does not hand out connections.
+  @Test
+  void closedPool() {
+    pool.close();
+    Assertions.assertThrows(IOException.class, () -> pool.acquire(remote.getAddress(), remote.getPort(), remote.getCodec()));
+  }
+}
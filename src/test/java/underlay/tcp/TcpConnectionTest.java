@@ -0,0 +1,126 @@
+package underlay.tcp;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import underlay.UnderlayTest;
+import underlay.packets.Request;
+import underlay.packets.Response;
+import underlay.packets.requests.GetIdentityRequest;
+import underlay.packets.requests.IsAvailableRequest;
+import underlay.packets.responses.BooleanResponse;
+import underlay.packets.responses.BusyResponse;
+import underlay.packets.responses.IdentityResponse;
+
+/**
+ * Checks that many requests can be in flight on a single TCP connection, and that their responses
+ * come back as soon as they are ready.
+ */
+class TcpConnectionTest {
+  // Duration in milliseconds the `SlowTcpUnderlay` takes to handle an identity request.
+  static final long SLOW_REQUEST_MS = 500;
+
+  private TcpUnderlay remote;
+  private TcpConnection connection;
+
+  /**
+   * A TCP underlay that takes its time to answer the identity requests.
+   */
+  static class SlowTcpUnderlay extends TcpUnderlay {
+    SlowTcpUnderlay() {
+    }
+
+    SlowTcpUnderlay(int maxWorkers) {
+      super(TcpConnectionPool.DEFAULT_IDLE_TIMEOUT_MS, TcpConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_PEER, maxWorkers);
+    }
+
+    @Override
+    public Response dispatchRequest(Request request) {
+      if (request instanceof GetIdentityRequest) {
+        try {
+          Thread.sleep(SLOW_REQUEST_MS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return super.dispatchRequest(request);
+    }
+  }
+
+  @BeforeEach
+  void setup() throws Exception {
+    remote = new SlowTcpUnderlay();
+    UnderlayTest.buildLayers(remote);
+    Assertions.assertTrue(remote.initialize(0));
+    connection = new TcpConnection(remote.getAddress(), remote.getPort(), remote.getCodec());
+  }
+
+  @AfterEach
+  void tearDown() {
+    connection.close();
+    Assertions.assertTrue(remote.terminate());
+  }
+
+  // A fast request is answered while a slow one sent before it on the same connection is still being handled.
+  @Test
+  void outOfOrderResponses() throws Exception {
+    CompletableFuture<Response> slow = connection.send(new GetIdentityRequest());
+    CompletableFuture<Response> fast = connection.send(new IsAvailableRequest());
+
+    Assertions.assertTrue(fast.get() instanceof BooleanResponse);
+    Assertions.assertFalse(slow.isDone());
+    Assertions.assertTrue(slow.get() instanceof IdentityResponse);
+    Assertions.assertEquals(0, connection.getInFlight());
+  }
+
+  // Many requests are in flight on the same connection at once.
+  @Test
+  void pipelinedRequests() throws Exception {
+    long start = System.currentTimeMillis();
+    List<CompletableFuture<Response>> responses = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      responses.add(connection.send(new GetIdentityRequest()));
+    }
+    for (CompletableFuture<Response> response : responses) {
+      Assertions.assertTrue(response.get() instanceof IdentityResponse);
+    }
+    // Handled concurrently rather than one after another.
+    Assertions.assertTrue(System.currentTimeMillis() - start < 10 * SLOW_REQUEST_MS);
+  }
+
+  // Requests that find all the workers busy are answered as busy rather than locked.
+  @Test
+  void busyWorkers() throws Exception {
+    TcpUnderlay busy = new SlowTcpUnderlay(1);
+    UnderlayTest.buildLayers(busy);
+    Assertions.assertTrue(busy.initialize(0));
+    TcpConnection busyConnection = new TcpConnection(busy.getAddress(), busy.getPort(), busy.getCodec());
+
+    CompletableFuture<Response> first = busyConnection.send(new GetIdentityRequest());
+    Response second = busyConnection.exchange(new GetIdentityRequest());
+    Assertions.assertTrue(second instanceof BusyResponse);
+    Assertions.assertFalse(second.locked);
+    Assertions.assertTrue(first.get() instanceof IdentityResponse);
+
+    busyConnection.close();
+    Assertions.assertTrue(busy.terminate());
+  }
+
+  // The requests in flight fail once the connection is closed, and the later ones fail as not sent.
+  @Test
+  void closeFailsPendingRequests() throws Exception {
+    CompletableFuture<Response> slow = connection.send(new GetIdentityRequest());
+    connection.close();
+    ExecutionException pending = Assertions.assertThrows(ExecutionException.class, slow::get);
+    Assertions.assertFalse(pending.getCause() instanceof ClosedChannelException);
+    ExecutionException unsent = Assertions.assertThrows(ExecutionException.class, () -> connection.send(new IsAvailableRequest()).get());
+    Assertions.assertTrue(unsent.getCause() instanceof ClosedChannelException);
+  }
+}
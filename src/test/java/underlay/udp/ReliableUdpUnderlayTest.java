@@ -0,0 +1,144 @@
+package underlay.udp;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import underlay.UnderlayTest;
+import underlay.packets.Request;
+import underlay.packets.Response;
+import underlay.packets.requests.IsAvailableRequest;
+import underlay.packets.responses.BooleanResponse;
+
+/**
+ * Checks that the reliable mode of the UDP underlay recovers lost requests and responses through
+ * retransmission without handling a request twice. The underlays talk through a proxy that drops
+ * the first request and the first response.
+ */
+class ReliableUdpUnderlayTest {
+  private UdpUnderlay client;
+  private UdpUnderlay server;
+  private LossyProxy proxy;
+  private Thread proxyThread;
+  // Number of requests the server has handed over to its middle layer.
+  private final AtomicInteger dispatched = new AtomicInteger();
+
+  @BeforeEach
+  void setup() throws SocketException {
+    client = new UdpUnderlay(UdpUnderlay.DEFAULT_RESPONSE_TIMEOUT_MS, true);
+    server = new UdpUnderlay(UdpUnderlay.DEFAULT_RESPONSE_TIMEOUT_MS, true) {
+      @Override
+      public Response dispatchRequest(Request request) {
+        dispatched.incrementAndGet();
+        return super.dispatchRequest(request);
+      }
+    };
+    UnderlayTest.buildLayers(client);
+    UnderlayTest.buildLayers(server);
+    Assertions.assertTrue(client.initialize(0));
+    Assertions.assertTrue(server.initialize(0));
+
+    proxy = new LossyProxy(server.getAddress(), server.getPort());
+    proxyThread = new Thread(proxy);
+    proxyThread.start();
+  }
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    proxy.socket.close();
+    proxyThread.join();
+    Assertions.assertTrue(client.terminate());
+    Assertions.assertTrue(server.terminate());
+  }
+
+  @Test
+  void recoversLostPackets() {
+    Response response = client.sendMessage(server.getAddress(), proxy.socket.getLocalPort(), new IsAvailableRequest());
+    Assertions.assertTrue(response instanceof BooleanResponse);
+    // The first request was dropped, the second one was handled and the third one was answered from the cache.
+    Assertions.assertEquals(1, dispatched.get());
+    Assertions.assertEquals(3, proxy.requests.get());
+  }
+
+  @Test
+  void duplicateCacheAnswersRetransmissions() {
+    UdpDuplicateCache cache = new UdpDuplicateCache(2);
+    String first = UdpDuplicateCache.key("127.0.0.1", 1, 1);
+    Assertions.assertNull(cache.begin(first));
+    // Still in progress.
+    Assertions.assertEquals(0, cache.begin(first).length);
+    cache.complete(first, new byte[] {42});
+    Assertions.assertArrayEquals(new byte[] {42}, cache.begin(first));
+    // Older requests are forgotten once the capacity is exceeded.
+    Assertions.assertNull(cache.begin(UdpDuplicateCache.key("127.0.0.1", 1, 2)));
+    Assertions.assertNull(cache.begin(UdpDuplicateCache.key("127.0.0.1", 1, 3)));
+    Assertions.assertNull(cache.begin(first));
+  }
+
+  @Test
+  void rttEstimation() {
+    UdpRttEstimator estimator = new UdpRttEstimator();
+    Assertions.assertEquals(UdpRttEstimator.INITIAL_RTO_MS, estimator.getRto());
+    for (int i = 0; i < 50; i++) {
+      estimator.addSample(40);
+    }
+    // A stable round trip time converges to the lower bound of the timeout.
+    Assertions.assertEquals(UdpRttEstimator.MIN_RTO_MS, estimator.getRto());
+    Assertions.assertEquals(2 * UdpRttEstimator.MIN_RTO_MS, estimator.backoff());
+  }
+
+  /**
+   * Forwards the datagrams between a single client and the server, dropping the first request and
+   * the first response.
+   */
+  private static class LossyProxy implements Runnable {
+    private final DatagramSocket socket;
+    private final InetAddress serverAddress;
+    private final int serverPort;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger responses = new AtomicInteger();
+    private SocketAddress clientAddress;
+
+    private LossyProxy(String serverAddress, int serverPort) throws SocketException {
+      this.socket = new DatagramSocket();
+      try {
+        this.serverAddress = InetAddress.getByName(serverAddress);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+      this.serverPort = serverPort;
+    }
+
+    @Override
+    public void run() {
+      byte[] buffer = new byte[UdpUnderlay.MAX_PACKET_SIZE];
+      while (true) {
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        try {
+          socket.receive(packet);
+          boolean fromServer = packet.getAddress().equals(serverAddress) && packet.getPort() == serverPort;
+          if (fromServer) {
+            if (responses.incrementAndGet() > 1) {
+              socket.send(new DatagramPacket(packet.getData(), packet.getLength(), clientAddress));
+            }
+          } else {
+            clientAddress = packet.getSocketAddress();
+            if (requests.incrementAndGet() > 1) {
+              socket.send(new DatagramPacket(packet.getData(), packet.getLength(), serverAddress, serverPort));
+            }
+          }
+        } catch (IOException e) {
+          return;
+        }
+      }
+    }
+  }
+}
@@ -1,8 +1,16 @@
 package underlay.udp;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import underlay.UnderlayTest;
+import underlay.packets.Request;
+import underlay.packets.Response;
+import underlay.packets.requests.IsAvailableRequest;
 
 /**
  * This test creates two UDP underlays on the host machine at different ports and checks the
@@ -10,6 +18,8 @@ import underlay.UnderlayTest;
  * `UnderlayTest` class.
  */
 class UDPUnderlayTest extends UnderlayTest {
+  private static final int CONCURRENT_SENDERS = 50;
+  private static final int REQUESTS_PER_SENDER = 10;
 
   @BeforeEach
   void setup() {
@@ -23,4 +33,71 @@ class UDPUnderlayTest extends UnderlayTest {
     Assertions.assertTrue(localUnderlay.initialize(LOCAL_PORT));
     Assertions.assertTrue(remoteUnderlay.initialize(REMOTE_PORT));
   }
-}
\ No newline at end of file
+
+  // Checks that concurrent senders over the same underlay each receive the response to their own request.
+  @Test
+  void concurrentSendMessage() throws InterruptedException {
+    Assertions.assertEquals(CONCURRENT_SENDERS * REQUESTS_PER_SENDER, sendConcurrently((UdpUnderlay) localUnderlay, (UdpUnderlay) remoteUnderlay));
+  }
+
+  // Checks that the underlays work with several receiver threads and a small worker pool, and report their counters.
+  @Test
+  void multipleReceivers() throws InterruptedException {
+    UdpUnderlay local = new UdpUnderlay(UdpUnderlay.DEFAULT_RESPONSE_TIMEOUT_MS, false, 4, 4);
+    UdpUnderlay remote = new UdpUnderlay(UdpUnderlay.DEFAULT_RESPONSE_TIMEOUT_MS, false, 4, 4);
+    buildLayers(local);
+    buildLayers(remote);
+    Assertions.assertTrue(local.initialize(0));
+    Assertions.assertTrue(remote.initialize(0));
+
+    // Requests that find all the workers busy are answered as busy, with their own correlation ID too.
+    Assertions.assertEquals(CONCURRENT_SENDERS * REQUESTS_PER_SENDER, sendConcurrently(local, remote));
+    Assertions.assertEquals(0, remote.getDroppedPackets());
+    Assertions.assertTrue(remote.getReceiveQueueDepth() >= 0);
+    Assertions.assertTrue(remote.getSocketDrops() >= -1);
+
+    Assertions.assertTrue(local.terminate());
+    Assertions.assertTrue(remote.terminate());
+  }
+
+  /**
+   * Sends requests from many threads at the same time.
+   *
+   * @return the number of requests answered with a response carrying their own correlation ID.
+   */
+  private static int sendConcurrently(UdpUnderlay local, UdpUnderlay remote) throws InterruptedException {
+    CountDownLatch done = new CountDownLatch(CONCURRENT_SENDERS);
+    AtomicInteger matched = new AtomicInteger();
+    for (int i = 0; i < CONCURRENT_SENDERS; i++) {
+      new Thread(() -> {
+        for (int j = 0; j < REQUESTS_PER_SENDER; j++) {
+          Request request = new IsAvailableRequest();
+          Response response = local.sendMessage(remote.getAddress(), remote.getPort(), request);
+          if (response != null && response.requestId == request.requestId) {
+            matched.incrementAndGet();
+          }
+        }
+        done.countDown();
+      }).start();
+    }
+    Assertions.assertTrue(done.await(30, TimeUnit.SECONDS));
+    return matched.get();
+  }
+
+  // Checks that a request without a response does not block the sender forever.
+  @Test
+  void responseTimeout() {
+    UdpUnderlay underlay = new UdpUnderlay(100);
+    buildLayers(underlay);
+    Assertions.assertTrue(underlay.initialize(0));
+    UdpUnderlay silent = new UdpUnderlay();
+    Assertions.assertTrue(silent.initialize(0));
+    // Nothing listens on the port of the silent underlay once it is terminated.
+    Assertions.assertTrue(silent.terminate());
+
+    Assertions.assertNull(underlay.sendMessage(silent.getAddress(), silent.getPort(), new IsAvailableRequest()));
+    // The asynchronous sends are given up on by the timer of the underlay.
+    Assertions.assertNull(underlay.sendMessageAsync(silent.getAddress(), silent.getPort(), new IsAvailableRequest()).orTimeout(5, TimeUnit.SECONDS).join());
+    Assertions.assertTrue(underlay.terminate());
+  }
+}
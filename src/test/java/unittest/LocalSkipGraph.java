@@ -2,8 +2,11 @@ package unittest;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import lookup.ConcurrentLookupTable;
@@ -12,9 +15,13 @@ import middlelayer.MiddleLayer;
 import model.identifier.Identifier;
 import model.skipgraph.SkipGraph;
 import org.junit.jupiter.api.Assertions;
+import skipnode.LockAcquisitionMode;
+import skipnode.SearchMode;
 import skipnode.SkipNode;
 import skipnode.SkipNodeIdentity;
 import underlay.Underlay;
+import underlay.local.LocalNetwork;
+import underlay.local.LocalUnderlay;
 
 /**
  * Represents a locally constructed skip-graph with correct lookup tables. The lookup tables are
@@ -25,6 +32,7 @@ public class LocalSkipGraph {
   private final NetworkHub networkHub;
   private final List<SkipNode> skipNodes;
   private final List<Underlay> underlays;
+  private final List<MiddleLayer> middleLayers;
 
   public LocalSkipGraph(int size, String localAddress, int startingPort, boolean manualJoin) {
     throw new UnsupportedOperationException("Not implemented yet");
@@ -88,21 +96,60 @@ public class LocalSkipGraph {
 
     // Finally, construct the nodes.
     skipNodes = new ArrayList<>(size);
+    middleLayers = new ArrayList<>(size);
+    Options options = new Options();
     for (int i = 0; i < size; i++) {
-      SkipNode skipNode = new SkipNode(identities.get(i), lookupTables.get(i));
-
-      MiddleLayer middleLayer = new MiddleLayer(underlays.get(i), skipNode);
-      skipNode.setMiddleLayer(middleLayer);
-      underlays.get(i).setMiddleLayer(middleLayer);
-
+      SkipNode skipNode = addNode(underlays.get(i), identities.get(i), lookupTables.get(i), options);
       // Mark as inserted if lookup table was created manually.
       if (manualJoin) {
         skipNode.insert(null, -1);
       }
-      skipNodes.add(skipNode);
     }
   }
 
+  /**
+   * Constructs a skip graph whose nodes are connected through the given in-JVM network. The nodes
+   * are not inserted, see `insertAll`.
+   *
+   * @param size    number of nodes.
+   * @param network the network the underlays of the nodes are attached to.
+   * @param options options of the nodes.
+   */
+  public LocalSkipGraph(int size, LocalNetwork network, Options options) {
+    this.networkHub = null;
+    this.underlays = new ArrayList<>(size);
+    this.skipNodes = new ArrayList<>(size);
+    this.middleLayers = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      LocalUnderlay underlay = options.underlayFactory.apply(network);
+      Assertions.assertTrue(underlay.initialize(0));
+      underlays.add(underlay);
+      SkipNodeIdentity identity = options.identityFactory.apply(i, underlay);
+      addNode(underlay, identity, new ConcurrentLookupTable(options.levels, identity), options);
+    }
+  }
+
+  /**
+   * Constructs a node on top of the given underlay and wires their middle layer.
+   *
+   * @return the node.
+   */
+  private SkipNode addNode(Underlay underlay, SkipNodeIdentity identity, LookupTable lookupTable, Options options) {
+    SkipNode skipNode = new SkipNode(identity, lookupTable, options.cacheIdentities, options.routeCacheCapacity);
+    skipNode.setLockAcquisitionMode(options.lockAcquisitionMode);
+    skipNode.setLevelWalkMode(options.levelWalkMode);
+    MiddleLayer middleLayer = new MiddleLayer(underlay, skipNode);
+    if (options.maxLockWaiters > 0) {
+      middleLayer.setLockWaitQueue(options.maxLockWaiters, options.lockWaitTimeoutMillis);
+      skipNode.setLockReleaseNotifications(true);
+    }
+    skipNode.setMiddleLayer(middleLayer);
+    underlay.setMiddleLayer(middleLayer);
+    middleLayers.add(middleLayer);
+    skipNodes.add(skipNode);
+    return skipNode;
+  }
+
   /**
    * Prepends `0`s on the beginning of the given string until the desired length is reached.
    *
@@ -129,6 +176,35 @@ public class LocalSkipGraph {
     return skipNodes;
   }
 
+  /**
+   * Returns the nodes sorted by their identifiers.
+   *
+   * @return a new list of the nodes.
+   */
+  public List<SkipNode> getNodesByIdentifier() {
+    List<SkipNode> sorted = new ArrayList<>(skipNodes);
+    sorted.sort(Comparator.comparing(SkipNode::getIdentifier, Identifier::comparedTo));
+    return sorted;
+  }
+
+  /**
+   * Returns the underlays of the nodes, in the order of `getNodes`.
+   *
+   * @return the list of underlays.
+   */
+  public List<Underlay> getUnderlays() {
+    return underlays;
+  }
+
+  /**
+   * Returns the middle layers of the nodes, in the order of `getNodes`.
+   *
+   * @return the list of middle layers.
+   */
+  public List<MiddleLayer> getMiddleLayers() {
+    return middleLayers;
+  }
+
   /**
    * Invokes the insertion protocol on every node. This should not be used when the local skip graph
    * was constructed with `manualJoin` flag set.
@@ -167,8 +243,117 @@ public class LocalSkipGraph {
   }
 
   public void terminate() {
-    for (Underlay underlay : underlays) {
-      underlay.terminate();
+    for (MiddleLayer middleLayer : middleLayers) {
+      middleLayer.terminate();
+    }
+  }
+
+  /**
+   * Options of the nodes of a local skip graph, see `LocalSkipGraph(int, LocalNetwork, Options)`.
+   */
+  public static class Options {
+    private Function<LocalNetwork, LocalUnderlay> underlayFactory = LocalUnderlay::new;
+    private BiFunction<Integer, Underlay, SkipNodeIdentity> identityFactory = (index, underlay) -> new SkipNodeIdentity(
+        IdentifierFixture.newIdentifier(), MembershipVectorFixture.newMembershipVector(), underlay.getAddress(), underlay.getPort());
+    private int levels = SkipGraph.IDENTIFIER_SIZE;
+    private boolean cacheIdentities = true;
+    private int routeCacheCapacity = 0;
+    private LockAcquisitionMode lockAcquisitionMode = LockAcquisitionMode.SEQUENTIAL;
+    private SearchMode levelWalkMode = SearchMode.ITERATIVE;
+    private int maxLockWaiters = 0;
+    private long lockWaitTimeoutMillis = 0;
+
+    /**
+     * Sets how the underlays of the nodes are constructed, e.g., to count the requests they send.
+     *
+     * @param underlayFactory constructs an underlay attached to the given network.
+     * @return these options.
+     */
+    public Options underlays(Function<LocalNetwork, LocalUnderlay> underlayFactory) {
+      this.underlayFactory = underlayFactory;
+      return this;
+    }
+
+    /**
+     * Sets the identities of the nodes, which are random by default.
+     *
+     * @param identityFactory constructs the identity of the node with the given index on top of the
+     *                        given underlay.
+     * @return these options.
+     */
+    public Options identities(BiFunction<Integer, Underlay, SkipNodeIdentity> identityFactory) {
+      this.identityFactory = identityFactory;
+      return this;
+    }
+
+    /**
+     * Sets the number of levels of the lookup tables, `SkipGraph.IDENTIFIER_SIZE` by default.
+     *
+     * @param levels number of levels.
+     * @return these options.
+     */
+    public Options levels(int levels) {
+      this.levels = levels;
+      return this;
+    }
+
+    /**
+     * Sets whether the nodes cache the identities of their neighbors, see `NeighborIdentityCache`.
+     *
+     * @param cacheIdentities whether the identities are cached, true by default.
+     * @return these options.
+     */
+    public Options cacheIdentities(boolean cacheIdentities) {
+      this.cacheIdentities = cacheIdentities;
+      return this;
+    }
+
+    /**
+     * Sets the capacity of the route caches of the nodes, see `RouteCache`.
+     *
+     * @param routeCacheCapacity capacity of the route caches, zero by default, which disables them.
+     * @return these options.
+     */
+    public Options routeCacheCapacity(int routeCacheCapacity) {
+      this.routeCacheCapacity = routeCacheCapacity;
+      return this;
+    }
+
+    /**
+     * Sets how the nodes acquire the locks of their neighbors during their insertions.
+     *
+     * @param lockAcquisitionMode the lock acquisition mode, `SEQUENTIAL` by default.
+     * @return these options.
+     */
+    public Options lockAcquisitionMode(LockAcquisitionMode lockAcquisitionMode) {
+      this.lockAcquisitionMode = lockAcquisitionMode;
+      return this;
+    }
+
+    /**
+     * Sets how the nodes walk along a level while looking for a ladder.
+     *
+     * @param levelWalkMode the level walk mode, `ITERATIVE` by default.
+     * @return these options.
+     */
+    public Options levelWalkMode(SearchMode levelWalkMode) {
+      this.levelWalkMode = levelWalkMode;
+      return this;
+    }
+
+    /**
+     * Makes the requests to the locked nodes wait for the locks to be released, and the nodes notify
+     * the joiners they refused their locks to once they release them. By default, the requests to
+     * the locked nodes are backed off by their senders.
+     *
+     * @param maxLockWaiters        maximum number of requests waiting on a locked node.
+     * @param lockWaitTimeoutMillis duration in milliseconds a request waits at most.
+     * @return these options.
+     */
+    public Options lockWaits(int maxLockWaiters, long lockWaitTimeoutMillis) {
+      this.maxLockWaiters = maxLockWaiters;
+      this.lockWaitTimeoutMillis = lockWaitTimeoutMillis;
+      return this;
     }
   }
 }